@@ -0,0 +1,22 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.buildpath.core;
+
+public interface IPreferenceConstants
+{
+	/**
+	 * Whether the unified builder should build files concurrently.
+	 */
+	public static final String PARALLEL_BUILD = "PARALLEL_BUILD"; //$NON-NLS-1$
+
+	/**
+	 * The number of worker threads to use for parallel builds. Values less than 1 mean one thread per available
+	 * processor.
+	 */
+	public static final String BUILD_THREADS = "BUILD_THREADS"; //$NON-NLS-1$
+}
@@ -118,6 +118,14 @@ public interface IBuildParticipant
 	 */
 	public boolean isRequired();
 
+	/**
+	 * Can this participant safely build different files concurrently? When the unified builder runs in parallel mode,
+	 * participants that return false are never handed more than one {@link BuildContext} at a time.
+	 * 
+	 * @return
+	 */
+	public boolean isThreadSafe();
+
 	/**
 	 * Returns the list of filters.
 	 * 
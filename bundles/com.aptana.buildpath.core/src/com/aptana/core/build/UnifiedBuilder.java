@@ -15,6 +15,16 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
@@ -33,12 +43,16 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
 
 import com.aptana.buildpath.core.BuildPathCorePlugin;
 import com.aptana.buildpath.core.BuildPathManager;
 import com.aptana.buildpath.core.IBuildPathEntry;
+import com.aptana.buildpath.core.IPreferenceConstants;
 import com.aptana.core.CorePlugin;
 import com.aptana.core.IDebugScopes;
 import com.aptana.core.IFilter;
@@ -63,6 +77,17 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 {
 
 	public static final String ID = "com.aptana.ide.core.unifiedBuilder"; //$NON-NLS-1$
+
+	/**
+	 * The number of files whose markers we update in a single workspace operation during parallel builds.
+	 */
+	private static final int MARKER_BATCH_SIZE = 50;
+
+	/**
+	 * How long the builder thread waits on the workers before re-checking for cancellation, in milliseconds.
+	 */
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
 	private boolean traceParticipantsEnabled = false;
 
 	public UnifiedBuilder()
@@ -507,6 +532,12 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			return;
 		}
 
+		if (files.size() > 1 && isParallelBuildEnabled())
+		{
+			doBuildFilesInParallel(participants, files, monitor);
+			return;
+		}
+
 		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
 		for (IFile file : files)
 		{
@@ -533,6 +564,133 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		sub.done();
 	}
 
+	/**
+	 * Builds the files concurrently on a pool of worker threads. Each worker handles a whole file, running the
+	 * participants in priority order against a single {@link BuildContext} (so the file is parsed once). Participants
+	 * that don't declare themselves thread-safe are only ever handed one file at a time. Progress, cancellation and
+	 * marker updates are all handled here on the builder thread, with the markers for completed files flushed in
+	 * batches to keep the number of workspace operations down.
+	 * 
+	 * @param participants
+	 * @param files
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	private void doBuildFilesInParallel(List<IBuildParticipant> participants, Collection<IFile> files,
+			IProgressMonitor monitor) throws CoreException
+	{
+		IBuildParticipantManager manager = getBuildParticipantManager();
+		if (manager == null)
+		{
+			return;
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor, 15 * files.size());
+		WorkerMonitor workerMonitor = new WorkerMonitor();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(getBuildThreadCount(), files.size()),
+				new BuildThreadFactory(getProjectHandle().getName()));
+		try
+		{
+			CompletionService<BuildContext> completionService = new ExecutorCompletionService<BuildContext>(executor);
+			for (IFile file : files)
+			{
+				completionService.submit(new BuildFileTask(file, participants, manager, workerMonitor));
+			}
+
+			List<BuildContext> completed = new ArrayList<BuildContext>(MARKER_BATCH_SIZE);
+			int remaining = files.size();
+			while (remaining > 0)
+			{
+				if (sub.isCanceled())
+				{
+					workerMonitor.setCanceled(true);
+					break;
+				}
+
+				Future<BuildContext> future;
+				try
+				{
+					future = completionService.poll(CANCEL_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				}
+				catch (InterruptedException e)
+				{
+					workerMonitor.setCanceled(true);
+					Thread.currentThread().interrupt();
+					break;
+				}
+				if (future == null)
+				{
+					continue;
+				}
+				remaining--;
+
+				BuildContext context = getResult(future);
+				sub.worked(13);
+				if (context != null && !CollectionsUtil.isEmpty(context.getProblems()))
+				{
+					completed.add(context);
+					if (completed.size() >= MARKER_BATCH_SIZE)
+					{
+						updateMarkers(completed, sub.newChild(2 * completed.size()));
+						completed.clear();
+					}
+				}
+			}
+
+			// flush the markers for anything that finished, even if we were canceled
+			updateMarkers(completed, sub.newChild(2 * completed.size()));
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		sub.done();
+	}
+
+	private BuildContext getResult(Future<BuildContext> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			IdeLog.logError(BuildPathCorePlugin.getDefault(), "Error building file", e.getCause()); //$NON-NLS-1$
+		}
+		return null;
+	}
+
+	/**
+	 * Parallel builds are opt-in via the {@link IPreferenceConstants#PARALLEL_BUILD} preference.
+	 * 
+	 * @return
+	 */
+	protected boolean isParallelBuildEnabled()
+	{
+		return Platform.getPreferencesService().getBoolean(BuildPathCorePlugin.PLUGIN_ID,
+				IPreferenceConstants.PARALLEL_BUILD, false, null);
+	}
+
+	/**
+	 * The number of worker threads to use for parallel builds. Defaults to the number of available processors.
+	 * 
+	 * @return
+	 */
+	protected int getBuildThreadCount()
+	{
+		int threads = Platform.getPreferencesService().getInt(BuildPathCorePlugin.PLUGIN_ID,
+				IPreferenceConstants.BUILD_THREADS, 0, null);
+		if (threads < 1)
+		{
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		return threads;
+	}
+
 	/**
 	 * FIXME This is a holy hell of a mess! We map from IFiles to IFileStores, then filter on that, then map back! Can't
 	 * we make the IIndexFilterParticipants also operate on IFiles? It seems like the only impl does anyways.
@@ -610,16 +768,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		SubMonitor sub = SubMonitor.convert(monitor, 2 * participants.size());
 		for (IBuildParticipant participant : participants)
 		{
-			long startTime = System.nanoTime();
-			participant.buildFile(context, sub.newChild(1));
-			if (traceParticipantsEnabled)
-			{
-				double endTime = ((double) System.nanoTime() - startTime) / 1000000;
-				IdeLog.logTrace(BuildPathCorePlugin.getDefault(),
-						MessageFormat.format("Executed build participant ''{0}'' on ''{1}'' in {2} ms.", //$NON-NLS-1$
-								participant.getName(), context.getURI(), endTime),
-						IDebugScopes.BUILDER_PARTICIPANTS);
-			}
+			buildFile(participant, context, sub.newChild(1));
 
 			// stop building if it has been canceled
 			if (sub.isCanceled())
@@ -631,6 +780,19 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		sub.done();
 	}
 
+	private void buildFile(IBuildParticipant participant, BuildContext context, IProgressMonitor monitor)
+	{
+		long startTime = System.nanoTime();
+		participant.buildFile(context, monitor);
+		if (traceParticipantsEnabled)
+		{
+			double endTime = ((double) System.nanoTime() - startTime) / 1000000;
+			IdeLog.logTrace(BuildPathCorePlugin.getDefault(),
+					MessageFormat.format("Executed build participant ''{0}'' on ''{1}'' in {2} ms.", //$NON-NLS-1$
+							participant.getName(), context.getURI(), endTime), IDebugScopes.BUILDER_PARTICIPANTS);
+		}
+	}
+
 	private void updateMarkers(BuildContext context, IProgressMonitor monitor)
 	{
 		final IFile file = context.getFile();
@@ -659,6 +821,54 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		}
 	}
 
+	/**
+	 * Updates the markers for a batch of files in a single workspace operation.
+	 * 
+	 * @param contexts
+	 * @param monitor
+	 */
+	private void updateMarkers(List<BuildContext> contexts, IProgressMonitor monitor)
+	{
+		if (CollectionsUtil.isEmpty(contexts))
+		{
+			return;
+		}
+
+		final List<BuildContext> batch = new ArrayList<BuildContext>(contexts);
+		List<ISchedulingRule> rules = new ArrayList<ISchedulingRule>(batch.size());
+		for (BuildContext context : batch)
+		{
+			ISchedulingRule rule = getMarkerRule(context.getFile());
+			if (rule != null)
+			{
+				rules.add(rule);
+			}
+		}
+		IWorkspaceRunnable runnable = new IWorkspaceRunnable()
+		{
+			public void run(IProgressMonitor monitor)
+			{
+				SubMonitor sub = SubMonitor.convert(monitor, batch.size());
+				for (BuildContext context : batch)
+				{
+					updateMarkers(context.getFile(), context.getProblems(), sub.newChild(1));
+				}
+				sub.done();
+			}
+		};
+
+		try
+		{
+			ResourcesPlugin.getWorkspace().run(runnable,
+					MultiRule.combine(rules.toArray(new ISchedulingRule[rules.size()])), IWorkspace.AVOID_UPDATE,
+					monitor);
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(BuildPathCorePlugin.getDefault(), "Error updating markers", e); //$NON-NLS-1$
+		}
+	}
+
 	/**
 	 * @param resource
 	 * @return
@@ -721,6 +931,104 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		sub.done();
 	}
 
+	/**
+	 * Builds a single file on a worker thread during a parallel build. Markers are not touched here; the completed
+	 * context is handed back to the builder thread, which updates them in batches.
+	 */
+	private class BuildFileTask implements Callable<BuildContext>
+	{
+		private final IFile file;
+		private final List<IBuildParticipant> participants;
+		private final IBuildParticipantManager manager;
+		private final IProgressMonitor monitor;
+
+		private BuildFileTask(IFile file, List<IBuildParticipant> participants, IBuildParticipantManager manager,
+				IProgressMonitor monitor)
+		{
+			this.file = file;
+			this.participants = participants;
+			this.manager = manager;
+			this.monitor = monitor;
+		}
+
+		public BuildContext call() throws Exception
+		{
+			if (monitor.isCanceled())
+			{
+				return null;
+			}
+
+			BuildContext context = new BuildContext(file);
+			List<IBuildParticipant> filteredParticipants = manager.filterParticipants(participants,
+					context.getContentType());
+			for (IBuildParticipant participant : filteredParticipants)
+			{
+				if (participant.isThreadSafe())
+				{
+					buildFile(participant, context, monitor);
+				}
+				else
+				{
+					// Participants that keep per-file state get handed one file at a time
+					synchronized (participant)
+					{
+						buildFile(participant, context, monitor);
+					}
+				}
+
+				// stop building if it has been canceled
+				if (monitor.isCanceled())
+				{
+					break;
+				}
+			}
+			return context;
+		}
+	}
+
+	/**
+	 * The progress monitor handed to participants running on worker threads. Progress from the workers is discarded
+	 * (the builder thread reports it per file), but cancellation is propagated from the builder thread.
+	 */
+	private static class WorkerMonitor extends NullProgressMonitor
+	{
+		private volatile boolean canceled;
+
+		@Override
+		public boolean isCanceled()
+		{
+			return canceled;
+		}
+
+		@Override
+		public void setCanceled(boolean canceled)
+		{
+			this.canceled = canceled;
+		}
+	}
+
+	/**
+	 * Creates named daemon threads for parallel builds.
+	 */
+	private static class BuildThreadFactory implements ThreadFactory
+	{
+		private final String projectName;
+		private final AtomicInteger count = new AtomicInteger();
+
+		private BuildThreadFactory(String projectName)
+		{
+			this.projectName = projectName;
+		}
+
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, MessageFormat.format(
+					"Build worker {0} for {1}", count.incrementAndGet(), projectName)); //$NON-NLS-1$
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
 	/**
 	 * Collects all files with infinite depth. Used to grab all files inside an {@link IProject} for full builds.
 	 * 
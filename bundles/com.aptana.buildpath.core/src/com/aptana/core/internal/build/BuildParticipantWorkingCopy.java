@@ -95,6 +95,11 @@ public class BuildParticipantWorkingCopy implements IBuildParticipantWorkingCopy
 		return wrapped.getId();
 	}
 
+	public boolean isThreadSafe()
+	{
+		return wrapped.isThreadSafe();
+	}
+
 	public boolean isEnabled(BuildType type)
 	{
 		switch (type)
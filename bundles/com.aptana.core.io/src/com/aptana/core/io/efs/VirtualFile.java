@@ -26,6 +26,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 
+import com.aptana.core.io.vfs.IChecksumConnectionFileManager;
 import com.aptana.core.io.vfs.IConnectionFileManager;
 import com.aptana.core.io.vfs.IExtendedFileStore;
 import com.aptana.core.io.vfs.IFileTreeVisitor;
@@ -226,6 +227,13 @@ public class VirtualFile extends FileStore implements IExtendedFileStore {
 			}
 	}
 
+	public long computeCRC32(IProgressMonitor monitor) throws CoreException {
+		if (fileManager instanceof IChecksumConnectionFileManager) {
+			return ((IChecksumConnectionFileManager) fileManager).computeCRC32(path, monitor);
+		}
+		return -1;
+	}
+
 	public String toString() {
 	    return toCanonicalURI().toString();
 	}
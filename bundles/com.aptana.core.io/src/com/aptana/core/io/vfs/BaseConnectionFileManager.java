@@ -50,7 +50,7 @@ import com.aptana.ide.core.io.preferences.PreferenceUtils;
 /**
  * @author Max Stepanov
  */
-public abstract class BaseConnectionFileManager implements IConnectionFileManager
+public abstract class BaseConnectionFileManager implements IChecksumConnectionFileManager
 {
 
 	protected static final int CACHE_TTL = 60000; /* 1min */
@@ -645,6 +645,42 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IChecksumConnectionFileManager#computeCRC32(org.eclipse.core.runtime.IPath,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public final synchronized long computeCRC32(IPath path, IProgressMonitor monitor) throws CoreException
+	{
+		monitor = Policy.monitorFor(monitor);
+		try
+		{
+			ProgressMonitorInterrupter.setCurrentThreadInterruptDelegate(interruptDelegate);
+			testOrConnect(monitor);
+			long crc = fetchCRC32(basePath.append(path), monitor);
+			setLastOperationTime();
+			return crc;
+		}
+		finally
+		{
+			ProgressMonitorInterrupter.setCurrentThreadInterruptDelegate(null);
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Has the server compute the CRC32 of a file. Servers can't do that by default.
+	 * 
+	 * @param path
+	 * @param monitor
+	 * @return the CRC32, or -1 if the server can't compute it
+	 * @throws CoreException
+	 */
+	protected long fetchCRC32(IPath path, IProgressMonitor monitor) throws CoreException
+	{
+		return -1;
+	}
+
 	protected abstract void testConnection(boolean force);
 
 	protected abstract boolean canUseTemporaryFile(IPath path, ExtendedFileInfo fileInfo, IProgressMonitor monitor);
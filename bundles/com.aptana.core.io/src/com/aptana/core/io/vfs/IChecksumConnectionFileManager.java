@@ -0,0 +1,30 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.io.vfs;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * A connection file manager that may be able to have the server checksum a file, so comparing its contents doesn't
+ * require downloading it.
+ */
+public interface IChecksumConnectionFileManager extends IConnectionFileManager {
+
+	/**
+	 * Returns the CRC32 of a file as computed by the server
+	 * 
+	 * @param path
+	 * @param monitor
+	 * @return the CRC32, or -1 if the server can't compute it
+	 * @throws CoreException
+	 */
+	public long computeCRC32(IPath path, IProgressMonitor monitor) throws CoreException;
+
+}
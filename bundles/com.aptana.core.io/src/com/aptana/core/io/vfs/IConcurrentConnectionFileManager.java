@@ -0,0 +1,23 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.io.vfs;
+
+/**
+ * A connection file manager whose input and output streams each use their own connection, so several files can be
+ * transferred at the same time.
+ */
+public interface IConcurrentConnectionFileManager extends IConnectionFileManager {
+
+	/**
+	 * Returns the number of streams that can be open and transferring at the same time
+	 * 
+	 * @return
+	 */
+	public int getMaxConcurrentTransfers();
+
+}
@@ -54,4 +54,12 @@ public interface IExtendedFileStore extends IFileStore {
 	 */
 	public IFileTree fetchFileTree(IFileTreeVisitor visitor, IProgressMonitor monitor) throws CoreException;
 
+	/**
+	 * Compute the CRC32 of the file where it's stored, without transferring it
+	 * @param monitor
+	 * @return the CRC32, or -1 if it can't be computed remotely
+	 * @throws CoreException
+	 */
+	public long computeCRC32(IProgressMonitor monitor) throws CoreException;
+
 }
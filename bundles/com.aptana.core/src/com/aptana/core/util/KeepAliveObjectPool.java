@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -9,86 +9,373 @@ package com.aptana.core.util;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import com.aptana.core.CorePlugin;
 import com.aptana.core.logging.IdeLog;
 
+/**
+ * A pool of objects that are kept alive while idle: a reaper thread regularly validates the idle objects, and expires
+ * them once they've been idle for too long. The pool can be bounded, in which case {@link #checkOut()} waits for an
+ * object to be checked in, serving the waiting threads in order.
+ */
 public abstract class KeepAliveObjectPool<T> implements IObjectPool<T> {
 
+	private static final long DEFAULT_WAIT_TIMEOUT = 60000;
+
+	/**
+	 * Counters of a pool, as of the time they were taken
+	 */
+	public static class Statistics {
+
+		private final int busy;
+		private final int idle;
+		private final long checkOuts;
+		private final long waits;
+		private final long waitTime;
+		private final long timeouts;
+		private final long created;
+		private final long expired;
+
+		Statistics(int busy, int idle, long checkOuts, long waits, long waitTime, long timeouts, long created,
+				long expired) {
+			this.busy = busy;
+			this.idle = idle;
+			this.checkOuts = checkOuts;
+			this.waits = waits;
+			this.waitTime = waitTime;
+			this.timeouts = timeouts;
+			this.created = created;
+			this.expired = expired;
+		}
+
+		/**
+		 * @return the number of objects checked out, or being created or validated
+		 */
+		public int getBusy() {
+			return busy;
+		}
+
+		/**
+		 * @return the number of objects waiting in the pool
+		 */
+		public int getIdle() {
+			return idle;
+		}
+
+		/**
+		 * @return the number of calls to {@link KeepAliveObjectPool#checkOut()}
+		 */
+		public long getCheckOuts() {
+			return checkOuts;
+		}
+
+		/**
+		 * @return the number of check outs that had to wait for an object to be checked in
+		 */
+		public long getWaits() {
+			return waits;
+		}
+
+		/**
+		 * @return the total time spent waiting, in milliseconds
+		 */
+		public long getWaitTime() {
+			return waitTime;
+		}
+
+		/**
+		 * @return the number of check outs that gave up waiting
+		 */
+		public long getTimeouts() {
+			return timeouts;
+		}
+
+		/**
+		 * @return the number of objects created
+		 */
+		public long getCreated() {
+			return created;
+		}
+
+		/**
+		 * @return the number of objects expired, because they were idle for too long or no longer valid
+		 */
+		public long getExpired() {
+			return expired;
+		}
+	}
+
 	private final List<T> locked;
 	private final Map<T, Long> unlocked;
-	private final ConnectionReaper reaper;
+	private final LinkedList<Object> waiters;
 	private final int releaseTime;
+	private ConnectionReaper reaper;
+	private boolean started;
+	private int minIdle;
+	private int maxSize = Integer.MAX_VALUE;
+	private long waitTimeout = DEFAULT_WAIT_TIMEOUT;
+	private int pending;
+
+	private long checkOuts;
+	private long waits;
+	private long waitTime;
+	private long timeouts;
+	private long created;
+	private long expired;
 
 	public KeepAliveObjectPool(int releaseTime) {
 		this.releaseTime = releaseTime;
 		locked = new ArrayList<T>();
 		unlocked = new LinkedHashMap<T, Long>();
+		waiters = new LinkedList<Object>();
+	}
 
-		reaper = new ConnectionReaper();
+	protected synchronized void start() {
+		started = true;
+		if (reaper == null) {
+			reaper = new ConnectionReaper();
+			reaper.start();
+		}
+	}
+
+	/**
+	 * Sets the bounds of the pool
+	 * 
+	 * @param minIdle
+	 *            The number of idle objects kept alive past the release time
+	 * @param maxSize
+	 *            The maximum number of objects, checked out or not
+	 */
+	public synchronized void setLimits(int minIdle, int maxSize) {
+		this.minIdle = Math.max(0, minIdle);
+		this.maxSize = Math.max(1, maxSize);
+		notifyAll();
+	}
+
+	/**
+	 * @return the maximum number of objects, checked out or not
+	 */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets how long {@link #checkOut()} waits for an object when the pool is full
+	 * 
+	 * @param timeout
+	 *            in milliseconds
+	 */
+	public synchronized void setWaitTimeout(long timeout) {
+		this.waitTimeout = timeout;
 	}
 
-	protected void start() {
-		reaper.start();
+	/**
+	 * Returns whether an idle object needs to be validated before being checked out. Objects are validated regularly
+	 * while idle, so subclasses can skip the validation of objects that were checked in recently.
+	 * 
+	 * @param o
+	 * @param idleTime
+	 *            How long the object has been idle, in milliseconds
+	 * @return
+	 */
+	protected boolean shouldValidate(T o, long idleTime) {
+		return true;
 	}
 
 	public synchronized void checkIn(T t) {
 		locked.remove(t);
 		unlocked.put(t, System.currentTimeMillis());
+		notifyAll();
 	}
 
-	public synchronized T checkOut() {
-		// returns the first valid connection from the unused queue
-		for (T c : unlocked.keySet()) {
-			if (validate(c)) {
-				unlocked.remove(c);
-				locked.add(c);
+	/**
+	 * Returns an idle object that's still valid, or a new one. If the pool is full, waits for an object to be checked
+	 * in.
+	 * 
+	 * @return the object, or null if none was checked in in time
+	 */
+	public T checkOut() {
+		long start = System.currentTimeMillis();
+		synchronized (this) {
+			checkOuts++;
+			if (started && reaper == null) {
+				start();
+			}
+		}
+		while (true) {
+			T c = null;
+			long idleTime = 0;
+			synchronized (this) {
+				if (!acquire(start)) {
+					return null;
+				}
+				if (!unlocked.isEmpty()) {
+					// the most recently used object, so the others can be released
+					Map.Entry<T, Long> last = null;
+					for (Map.Entry<T, Long> entry : unlocked.entrySet()) {
+						last = entry;
+					}
+					c = last.getKey();
+					idleTime = System.currentTimeMillis() - last.getValue();
+					unlocked.remove(c);
+					locked.add(c);
+				} else {
+					pending++;
+				}
+			}
+			if (c == null) {
+				return createLocked();
+			}
+			// validates outside the lock, as it may take a round trip
+			if (!shouldValidate(c, idleTime) || validate(c)) {
 				return c;
 			}
+			synchronized (this) {
+				locked.remove(c);
+				expired++;
+				notifyAll();
+			}
+			expire(c);
 		}
+	}
 
-		// creates a new connection
-		T c = create();
-		locked.add(c);
+	/**
+	 * Waits for this thread's turn and a free object or slot
+	 * 
+	 * @return false if the wait timed out or was interrupted
+	 */
+	private boolean acquire(long start) {
+		if (waiters.isEmpty() && (!unlocked.isEmpty() || size() < maxSize)) {
+			return true;
+		}
+		Object ticket = new Object();
+		waiters.addLast(ticket);
+		waits++;
+		try {
+			while (waiters.getFirst() != ticket || (unlocked.isEmpty() && size() >= maxSize)) {
+				long remaining = start + waitTimeout - System.currentTimeMillis();
+				if (remaining <= 0) {
+					timeouts++;
+					return false;
+				}
+				wait(remaining);
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			waiters.remove(ticket);
+			waitTime += System.currentTimeMillis() - start;
+			notifyAll();
+		}
+	}
+
+	private T createLocked() {
+		T c = null;
+		try {
+			c = create();
+		} finally {
+			synchronized (this) {
+				pending--;
+				if (c != null) {
+					locked.add(c);
+					created++;
+				}
+				notifyAll();
+			}
+		}
 		return c;
 	}
 
-	public synchronized void dispose() {
-		for (T c : unlocked.keySet()) {
-			expire(c);
+	private int size() {
+		return locked.size() + unlocked.size() + pending;
+	}
+
+	/**
+	 * @return the current counters of the pool
+	 */
+	public synchronized Statistics getStatistics() {
+		return new Statistics(locked.size() + pending, unlocked.size(), checkOuts, waits, waitTime, timeouts,
+				created, expired);
+	}
+
+	public void dispose() {
+		List<T> idle;
+		synchronized (this) {
+			idle = new ArrayList<T>(unlocked.keySet());
+			unlocked.clear();
+			if (locked.size() > 0) {
+				IdeLog.logWarning(CorePlugin.getDefault(),
+						MessageFormat.format(
+						"Killed a connection pool that still has {0} locked items", locked.size())); //$NON-NLS-1$
+				locked.clear();
+			}
+			if (reaper != null) {
+				reaper.exit();
+				reaper = null;
+			}
+			notifyAll();
 		}
-		unlocked.clear();
-		if (locked.size() > 0) {
-			IdeLog.logWarning(CorePlugin.getDefault(),
-					MessageFormat.format(
-					"Killed a connection pool that still has {0} locked items", locked.size())); //$NON-NLS-1$
-			locked.clear();
+		for (T c : idle) {
+			expire(c);
 		}
-		reaper.exit();
 	}
 
-	protected synchronized void reap() {
-		long now = System.currentTimeMillis();
-		for (T c : unlocked.keySet()) {
-			if ((now - unlocked.get(c)) > timeToRelease()) {
-				// time to release the connection
-				unlocked.remove(c);
+	protected void reap() {
+		List<T> toExpire = new ArrayList<T>();
+		Map<T, Long> toValidate = new LinkedHashMap<T, Long>();
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			long release = timeToRelease();
+			int idle = unlocked.size();
+			// the least recently used objects come first
+			for (Iterator<Map.Entry<T, Long>> i = unlocked.entrySet().iterator(); i.hasNext();) {
+				Map.Entry<T, Long> entry = i.next();
+				i.remove();
+				if ((now - entry.getValue()) > release && idle > minIdle) {
+					// time to release the connection
+					toExpire.add(entry.getKey());
+					idle--;
+				} else {
+					toValidate.put(entry.getKey(), entry.getValue());
+				}
+			}
+			expired += toExpire.size();
+			// objects being validated still count towards the size of the pool
+			pending += toValidate.size();
+		}
+		for (T c : toExpire) {
+			expire(c);
+		}
+		// keeps the connections alive unless they no longer validate
+		for (Iterator<T> i = toValidate.keySet().iterator(); i.hasNext();) {
+			T c = i.next();
+			if (!validate(c)) {
+				i.remove();
 				expire(c);
-			} else {
-				// keeps the connection alive unless it no longer validates
-				if (!validate(c)) {
-					unlocked.remove(c);
-					expire(c);
+				synchronized (this) {
+					pending--;
+					expired++;
+					notifyAll();
 				}
 			}
 		}
+		synchronized (this) {
+			pending -= toValidate.size();
+			unlocked.putAll(toValidate);
+			notifyAll();
+		}
 	}
 
 	private int timeToRelease() {
-		int divider = ((unlocked.size() + locked.size()) ^ 2);
+		int size = unlocked.size() + locked.size();
+		int divider = size * size;
 		return releaseTime / (divider > 0 ? divider : 1);
 	}
 
@@ -96,9 +383,11 @@ public abstract class KeepAliveObjectPool<T> implements IObjectPool<T> {
 
 		private static final long INTERVAL = 15000; // 15 seconds
 
-		private boolean isRunning;
+		private volatile boolean isRunning;
 
 		public ConnectionReaper() {
+			super("Connection Reaper"); //$NON-NLS-1$
+			setDaemon(true);
 			isRunning = true;
 		}
 
@@ -108,12 +397,15 @@ public abstract class KeepAliveObjectPool<T> implements IObjectPool<T> {
 					sleep(INTERVAL);
 				} catch (InterruptedException e) {
 				}
-				reap();
+				if (isRunning) {
+					reap();
+				}
 			}
 		}
 
 		public void exit() {
 			isRunning = false;
+			interrupt();
 		}
 	}
 }
@@ -0,0 +1,395 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.html.parsing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import com.aptana.css.core.ICSSConstants;
+import com.aptana.css.core.parsing.ast.CSSDeclarationNode;
+import com.aptana.css.core.parsing.ast.CSSRuleNode;
+import com.aptana.editor.html.parsing.ast.HTMLElementNode;
+import com.aptana.editor.html.parsing.ast.HTMLSpecialNode;
+import com.aptana.editor.html.parsing.ast.HTMLTextNode;
+import com.aptana.js.core.IJSConstants;
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.IParser;
+import com.aptana.parsing.IParserPool;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ParserPoolFactory;
+import com.aptana.parsing.ParsingEngine;
+import com.aptana.parsing.WorkingParseResult;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.ParseError;
+
+/**
+ * Collects the regions of other languages embedded in a HTML document (script and style blocks, style and event
+ * handler attributes) while its tags are scanned, then parses them all at once. Blocks of at least
+ * {@link #PARALLEL_PARSE_THRESHOLD} chars are parsed on a shared pool of threads. Blocks large enough to enter the
+ * parse cache ({@link ParsingEngine#MINIMUM_NUMBER_OF_CHARS_TO_ENTER_CACHE}) always go through
+ * {@link ParserPoolFactory#parse(String, IParseState)}, so they're still looked up in the cache. The calling thread
+ * parses the remaining snippets with a single parser per language, checked out of the pool once for the whole batch
+ * rather than once per snippet. The results are stitched back into the elements the regions came from in document order, so the tree and
+ * the errors come out as if each region had been parsed as soon as it was scanned.
+ */
+class EmbeddedRegionBatch
+{
+
+	/**
+	 * Blocks with at least this many chars are worth handing to another thread.
+	 */
+	static final int PARALLEL_PARSE_THRESHOLD = 4 * 1024;
+
+	private static ExecutorService fgExecutor;
+
+	private enum Kind
+	{
+		BLOCK, CSS_ATTRIBUTE, JS_ATTRIBUTE
+	}
+
+	private static class Region
+	{
+		final Kind kind;
+		final HTMLElementNode element;
+		final String language;
+		final String source;
+		final int offset;
+
+		/**
+		 * The number of errors the HTML parse had reported when the region was scanned, i.e. where the errors of the
+		 * region go
+		 */
+		final int errorIndex;
+
+		ParseResult result;
+
+		Region(Kind kind, HTMLElementNode element, String language, String source, int offset, int errorIndex)
+		{
+			this.kind = kind;
+			this.element = element;
+			this.language = language;
+			this.source = source;
+			this.offset = offset;
+			this.errorIndex = errorIndex;
+		}
+	}
+
+	private final List<Region> fRegions;
+
+	EmbeddedRegionBatch()
+	{
+		fRegions = new ArrayList<Region>();
+	}
+
+	/**
+	 * Adds the content of a script or style block, whose parse result becomes the only child of the node.
+	 * 
+	 * @param node
+	 * @param language
+	 *            the content type of the content, or null if it isn't to be parsed
+	 * @param source
+	 * @param offset
+	 * @param errorIndex
+	 *            the number of errors reported so far
+	 */
+	void addBlock(HTMLSpecialNode node, String language, String source, int offset, int errorIndex)
+	{
+		fRegions.add(new Region(Kind.BLOCK, node, language, source, offset, errorIndex));
+	}
+
+	/**
+	 * Adds a style attribute, wrapped in a rule so it parses as CSS. The declarations of the rule are added to the
+	 * element.
+	 * 
+	 * @param element
+	 * @param source
+	 * @param offset
+	 */
+	void addCSSAttribute(HTMLElementNode element, String source, int offset)
+	{
+		fRegions.add(new Region(Kind.CSS_ATTRIBUTE, element, ICSSConstants.CONTENT_TYPE_CSS, source, offset, 0));
+	}
+
+	/**
+	 * Adds an event handler attribute, whose statements are added to the element.
+	 * 
+	 * @param element
+	 * @param source
+	 * @param offset
+	 */
+	void addJSAttribute(HTMLElementNode element, String source, int offset)
+	{
+		fRegions.add(new Region(Kind.JS_ATTRIBUTE, element, IJSConstants.CONTENT_TYPE_JS, source, offset, 0));
+	}
+
+	/**
+	 * Parses all the regions and adds their nodes to the elements they came from, and the errors of the blocks to the
+	 * working result.
+	 * 
+	 * @param working
+	 * @param monitor
+	 */
+	void parse(WorkingParseResult working, IProgressMonitor monitor)
+	{
+		if (fRegions.isEmpty())
+		{
+			return;
+		}
+
+		List<Region> large = new ArrayList<Region>();
+		List<Region> cached = new ArrayList<Region>();
+		List<Region> small = new ArrayList<Region>(fRegions.size());
+		for (Region region : fRegions)
+		{
+			int length = region.source.length();
+			if (region.kind != Kind.BLOCK || length < ParsingEngine.MINIMUM_NUMBER_OF_CHARS_TO_ENTER_CACHE)
+			{
+				small.add(region);
+			}
+			else if (length >= PARALLEL_PARSE_THRESHOLD)
+			{
+				large.add(region);
+			}
+			else
+			{
+				cached.add(region);
+			}
+		}
+
+		// only go to the pool if this thread has something else to do in the meantime
+		List<Future<ParseResult>> futures = new ArrayList<Future<ParseResult>>(large.size());
+		if (large.size() > 1 || (!large.isEmpty() && (!small.isEmpty() || !cached.isEmpty())))
+		{
+			ExecutorService executor = getExecutor();
+			for (final Region region : large)
+			{
+				futures.add(executor.submit(new Callable<ParseResult>()
+				{
+					public ParseResult call() throws Exception
+					{
+						return ParserPoolFactory.parse(region.language, new ParseState(region.source, region.offset));
+					}
+				}));
+			}
+		}
+		else
+		{
+			cached.addAll(large);
+			large.clear();
+		}
+
+		parseWithSharedParsers(small, monitor);
+		parseThroughCache(cached, monitor);
+
+		for (int i = 0; i < futures.size(); i++)
+		{
+			large.get(i).result = getResult(futures.get(i));
+		}
+
+		for (Region region : fRegions)
+		{
+			addNodes(region);
+		}
+
+		// insert from the back, so the indices of the earlier regions still hold
+		List<IParseError> errors = working.getErrors();
+		for (int i = fRegions.size() - 1; i >= 0; --i)
+		{
+			Region region = fRegions.get(i);
+			if (region.kind == Kind.BLOCK && region.result != null)
+			{
+				errors.addAll(region.errorIndex, getErrors(region));
+			}
+		}
+	}
+
+	private void parseWithSharedParsers(List<Region> regions, IProgressMonitor monitor)
+	{
+		Map<String, IParserPool> pools = new HashMap<String, IParserPool>();
+		Map<String, IParser> parsers = new HashMap<String, IParser>();
+		try
+		{
+			for (Region region : regions)
+			{
+				if (monitor != null && monitor.isCanceled())
+				{
+					return;
+				}
+				if (region.language == null)
+				{
+					region.result = ParseResult.EMPTY;
+					continue;
+				}
+
+				if (!parsers.containsKey(region.language))
+				{
+					IParserPool pool = ParserPoolFactory.getInstance().getParserPool(region.language);
+					if (pool != null)
+					{
+						pools.put(region.language, pool);
+					}
+					parsers.put(region.language, (pool == null) ? null : pool.checkOut());
+				}
+
+				IParser parser = parsers.get(region.language);
+				if (parser == null)
+				{
+					region.result = ParseResult.EMPTY;
+					continue;
+				}
+				try
+				{
+					region.result = parser.parse(new ParseState(region.source, region.offset));
+				}
+				catch (Exception e)
+				{
+					// leaves the region without a result, like a region that failed to parse on its own
+				}
+			}
+		}
+		finally
+		{
+			for (Map.Entry<String, IParser> entry : parsers.entrySet())
+			{
+				if (entry.getValue() != null)
+				{
+					pools.get(entry.getKey()).checkIn(entry.getValue());
+				}
+			}
+		}
+	}
+
+	private void parseThroughCache(List<Region> regions, IProgressMonitor monitor)
+	{
+		for (Region region : regions)
+		{
+			if (monitor != null && monitor.isCanceled())
+			{
+				return;
+			}
+			try
+			{
+				region.result = ParserPoolFactory.parse(region.language, new ParseState(region.source, region.offset));
+			}
+			catch (Exception e)
+			{
+				// leaves the region without a result, like a region that failed to parse on its own
+			}
+		}
+	}
+
+	private ParseResult getResult(Future<ParseResult> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			// leaves the region without a result
+		}
+		return null;
+	}
+
+	private void addNodes(Region region)
+	{
+		ParseResult result = region.result;
+		if (result == null)
+		{
+			// the parse failed
+			return;
+		}
+
+		IParseNode root = result.getRootNode();
+		switch (region.kind)
+		{
+			case BLOCK:
+				if (root == null)
+				{
+					root = new HTMLTextNode(region.source, region.offset, region.offset + region.source.length() - 1);
+				}
+				region.element.setChildren(new IParseNode[] { root });
+				break;
+
+			case CSS_ATTRIBUTE:
+				// should always have a rule node
+				if (root != null && root.hasChildren())
+				{
+					IParseNode rule = root.getChild(0);
+					if (rule instanceof CSSRuleNode)
+					{
+						for (CSSDeclarationNode declaration : ((CSSRuleNode) rule).getDeclarations())
+						{
+							region.element.addCSSStyleNode(declaration);
+						}
+					}
+				}
+				break;
+
+			case JS_ATTRIBUTE:
+				if (root != null)
+				{
+					for (IParseNode child : root)
+					{
+						region.element.addJSAttributeNode(child);
+					}
+				}
+				break;
+		}
+	}
+
+	private List<IParseError> getErrors(Region region)
+	{
+		List<IParseError> subErrors = region.result.getErrors();
+		List<IParseError> errors = new ArrayList<IParseError>(subErrors.size());
+		for (IParseError subError : subErrors)
+		{
+			// Shift the line/offsets based on the starting offset/line of the sub-language!
+			errors.add(new ParseError(region.language, region.offset + subError.getOffset(), subError.getLength(),
+					subError.getMessage(), subError.getSeverity()));
+		}
+		return errors;
+	}
+
+	private static synchronized ExecutorService getExecutor()
+	{
+		if (fgExecutor == null)
+		{
+			fgExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+			{
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "HTML Embedded Parser " + count.incrementAndGet()); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return fgExecutor;
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -26,8 +26,6 @@ import beaver.Symbol;
 
 import com.aptana.core.util.StringUtil;
 import com.aptana.css.core.ICSSConstants;
-import com.aptana.css.core.parsing.ast.CSSDeclarationNode;
-import com.aptana.css.core.parsing.ast.CSSRuleNode;
 import com.aptana.editor.html.core.IHTMLConstants;
 import com.aptana.editor.html.parsing.ast.HTMLCommentNode;
 import com.aptana.editor.html.parsing.ast.HTMLElementNode;
@@ -39,9 +37,6 @@ import com.aptana.editor.html.parsing.lexer.HTMLTokens;
 import com.aptana.js.core.IJSConstants;
 import com.aptana.parsing.AbstractParser;
 import com.aptana.parsing.IParseState;
-import com.aptana.parsing.ParseResult;
-import com.aptana.parsing.ParseState;
-import com.aptana.parsing.ParserPoolFactory;
 import com.aptana.parsing.WorkingParseResult;
 import com.aptana.parsing.ast.IParseError;
 import com.aptana.parsing.ast.IParseNode;
@@ -78,9 +73,10 @@ public class HTMLParser extends AbstractParser
 	private List<IParseNode> fCommentNodes;
 	private boolean previousSymbolSkipped;
 	private WorkingParseResult fWorkingParseResult;
+	private EmbeddedRegionBatch fEmbeddedRegions;
 
 	/**
-	 * parse
+	 * parse. The regions of other languages found while scanning the tags are parsed together once the scan is done.
 	 */
 	protected synchronized void parse(IParseState parseState, WorkingParseResult working) throws java.lang.Exception
 	{
@@ -89,6 +85,7 @@ public class HTMLParser extends AbstractParser
 		fElementStack = new Stack<IParseNode>();
 		fCommentNodes = new ArrayList<IParseNode>();
 		fWorkingParseResult = working;
+		fEmbeddedRegions = new EmbeddedRegionBatch();
 
 		String source = parseState.getSource();
 		if (parseState instanceof HTMLParseState)
@@ -110,12 +107,14 @@ public class HTMLParser extends AbstractParser
 			fCurrentElement = root;
 
 			parseAll(source);
+			fEmbeddedRegions.parse(working, fMonitor);
 			root.setCommentNodes(fCommentNodes.toArray(new IParseNode[fCommentNodes.size()]));
 		}
 		finally
 		{
 			// clear for garbage collection
 			fWorkingParseResult = null;
+			fEmbeddedRegions = null;
 			fMonitor = null;
 			fScanner = null;
 			fElementStack = null;
@@ -180,11 +179,16 @@ public class HTMLParser extends AbstractParser
 			((HTMLTokenScanner) tokenScanner).setInsideSpecialTag(false);
 		}
 
-		IParseNode[] nested = getParseResult(language, start, end);
+		String text = getText(start, end);
 		if (fCurrentElement != null)
 		{
-			HTMLSpecialNode node = new HTMLSpecialNode(startTag, nested, startTag.getStart(), fCurrentSymbol.getEnd());
+			HTMLSpecialNode node = new HTMLSpecialNode(startTag, HTMLParserConstants.NO_PARSE_NODES,
+					startTag.getStart(), fCurrentSymbol.getEnd());
 			node.setEndNode(fCurrentSymbol.getStart(), fCurrentSymbol.getEnd());
+			if (text != null)
+			{
+				fEmbeddedRegions.addBlock(node, language, text, start, fWorkingParseResult.getErrors().size());
+			}
 			parseAttribute(node, startTag);
 			fCurrentElement.addChild(node);
 		}
@@ -269,35 +273,22 @@ public class HTMLParser extends AbstractParser
 		return false;
 	}
 
-	private IParseNode[] getParseResult(String language, int start, int end)
+	/**
+	 * Returns the source between the specified offsets, inclusive, or null if there is none.
+	 */
+	private String getText(int start, int end)
 	{
 		if (start <= end)
 		{
 			try
 			{
-				String text = fScanner.getSource().get(start, end - start + 1);
-
-				ParseState subParseState = new ParseState(text,start);
-				// FIXME We need to propagate options down to sub-languages, i.e. JS's attach/collect comments
-				ParseResult subParseResult = ParserPoolFactory.parse(language, subParseState);
-				IParseNode node = subParseResult.getRootNode();
-				for (IParseError subError : subParseResult.getErrors())
-				{
-					// Shift the line/offsets based on the starting offset/line of the sub-language!
-					fWorkingParseResult.addError(new ParseError(language, start + subError.getOffset(), subError
-							.getLength(), subError.getMessage(), subError.getSeverity()));
-				}
-				if (node == null)
-				{
-					node = new HTMLTextNode(text, start, end);
-				}
-				return new IParseNode[] { node };
+				return fScanner.getSource().get(start, end - start + 1);
 			}
 			catch (java.lang.Exception e)
 			{
 			}
 		}
-		return HTMLParserConstants.NO_PARSE_NODES;
+		return null;
 	}
 
 	private void processComment()
@@ -494,48 +485,12 @@ public class HTMLParser extends AbstractParser
 				if (HTMLUtils.isCSSAttribute(name))
 				{
 					String text = tagName + " {" + value + "}"; //$NON-NLS-1$ //$NON-NLS-2$
-					try
-					{
-
-						int startingOffset = absoluteOffset - (tagName.length() + 1);
-						IParseNode node = ParserPoolFactory.parse(ICSSConstants.CONTENT_TYPE_CSS, text, startingOffset)
-								.getRootNode();
-
-						// should always have a rule node
-						if (node.hasChildren())
-						{
-							IParseNode rule = node.getChild(0);
-							if (rule instanceof CSSRuleNode)
-							{
-								CSSDeclarationNode[] declarations = ((CSSRuleNode) rule).getDeclarations();
-								for (CSSDeclarationNode declaration : declarations)
-								{
-									element.addCSSStyleNode(declaration);
-								}
-							}
-						}
-					}
-					catch (java.lang.Exception e)
-					{
-					}
+					fEmbeddedRegions.addCSSAttribute(element, text, absoluteOffset - (tagName.length() + 1));
 				}
 				// checks if we need to process the value as JS
 				else if (HTMLUtils.isJSAttribute(tagName, name))
 				{
-					try
-					{
-						int startingOffset = absoluteOffset + 1;
-						IParseNode node = ParserPoolFactory.parse(IJSConstants.CONTENT_TYPE_JS, value, startingOffset)
-								.getRootNode();
-
-						for (IParseNode child : node)
-						{
-							element.addJSAttributeNode(child);
-						}
-					}
-					catch (java.lang.Exception e)
-					{
-					}
+					fEmbeddedRegions.addJSAttribute(element, value, absoluteOffset + 1);
 				}
 			}
 		}
@@ -46,6 +46,11 @@ import com.aptana.editor.js.outline.JSOutlineLabelProvider;
 import com.aptana.js.core.IJSConstants;
 import com.aptana.js.core.model.PropertyElement;
 import com.aptana.js.core.model.SinceElement;
+import com.aptana.js.core.parsing.JSIncrementalParseState;
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ParserPoolFactory;
 import com.aptana.parsing.ast.INameNode;
 import com.aptana.parsing.ast.IParseNode;
 import com.aptana.parsing.ast.IParseRootNode;
@@ -271,6 +276,14 @@ public class JSSourceEditor extends AbstractThemeableEditor
 		}
 	}
 
+	/**
+	 * The last source parsed by {@link #doGetAST(IDocument)} and its result, used to re-parse only the edited part of
+	 * the document.
+	 */
+	private final Object fLastParseLock = new Object();
+	private String fLastSource;
+	private ParseResult fLastResult;
+
 	@Override
 	protected void initializeEditor()
 	{
@@ -364,6 +377,39 @@ public class JSSourceEditor extends AbstractThemeableEditor
 		return IJSConstants.CONTENT_TYPE_JS;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.AbstractThemeableEditor#doGetAST(org.eclipse.jface.text.IDocument)
+	 */
+	@Override
+	protected ParseResult doGetAST(IDocument document) throws Exception
+	{
+		String source = document.get();
+		IParseState parseState;
+
+		synchronized (fLastParseLock)
+		{
+			// The reconciler doesn't hand us the dirty regions, so derive the edit by comparing with the last parse
+			if (fLastSource != null && fLastResult != null)
+			{
+				parseState = new JSIncrementalParseState(source, fLastSource, fLastResult);
+			}
+			else
+			{
+				parseState = new ParseState(source);
+			}
+		}
+
+		ParseResult result = ParserPoolFactory.parse(getContentType(), parseState);
+
+		synchronized (fLastParseLock)
+		{
+			fLastSource = source;
+			fLastResult = result;
+		}
+		return result;
+	}
+
 	@Override
 	public Object getAdapter(Class adapter)
 	{
@@ -0,0 +1,39 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.contentassist;
+
+import org.eclipse.swt.graphics.Image;
+
+import com.aptana.editor.common.contentassist.CommonCompletionProposal;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.SearchPattern;
+
+/**
+ * A proposal for a name that was found by a {@link SearchPattern#CAMEL_CASE_MATCH} query. It stays valid while the
+ * user keeps typing as long as the name still matches the typed camel case pattern, so "HDE" keeps proposing
+ * HTMLDivElement even though it isn't a prefix of it.
+ */
+public class CamelCaseProposal extends CommonCompletionProposal
+{
+
+	public CamelCaseProposal(String name, int offset, int replaceLength, Image image)
+	{
+		super(name, offset, replaceLength, name.length(), image, name, null, null);
+	}
+
+	@Override
+	protected boolean isValidPrefix(String prefix, String displayString, boolean ignoreCase)
+	{
+		if (super.isValidPrefix(prefix, displayString, ignoreCase))
+		{
+			return true;
+		}
+		return prefix != null && displayString != null
+				&& Index.isMatch(prefix, displayString, SearchPattern.CAMEL_CASE_MATCH);
+	}
+}
@@ -50,6 +50,7 @@ import com.aptana.editor.js.JSSourceConfiguration;
 import com.aptana.editor.js.internal.JSModelUtil;
 import com.aptana.editor.js.text.JSFlexLexemeProvider;
 import com.aptana.index.core.Index;
+import com.aptana.index.core.SearchPattern;
 import com.aptana.js.core.IJSConstants;
 import com.aptana.js.core.JSLanguageConstants;
 import com.aptana.js.core.JSTypeConstants;
@@ -310,6 +311,46 @@ public class JSContentAssistProcessor extends CommonContentAssistProcessor
 		}
 	}
 
+	/**
+	 * Proposes the types whose names match the camel case prefix being typed, so "XHR" proposes XMLHttpRequest. A prefix
+	 * with a single hump is left to the globals, which already cover it.
+	 * 
+	 * @param proposals
+	 * @param document
+	 */
+	private void addCamelCaseTypes(Set<ICompletionProposal> proposals, IDocument document)
+	{
+		if (replaceRange == null)
+		{
+			return;
+		}
+
+		String prefix;
+		try
+		{
+			prefix = document.get(replaceRange.getStartingOffset(), replaceRange.getLength());
+		}
+		catch (BadLocationException e)
+		{
+			return;
+		}
+		if (Index.getCamelCaseInitials(prefix, true).length() < 2)
+		{
+			return;
+		}
+
+		for (String typeName : getQueryHelper().getTypeNames(prefix, SearchPattern.CAMEL_CASE_MATCH))
+		{
+			// the indexed words carry the super types as well, so match the name on its own again. Generic types like
+			// Array<String> can't be typed as a name.
+			if (typeName.indexOf('<') == -1 && Index.isMatch(prefix, typeName, SearchPattern.CAMEL_CASE_MATCH))
+			{
+				proposals.add(new CamelCaseProposal(typeName, replaceRange.getStartingOffset(), replaceRange
+						.getLength(), JS_FUNCTION));
+			}
+		}
+	}
+
 	/**
 	 * addProperties
 	 * 
@@ -725,14 +766,8 @@ public class JSContentAssistProcessor extends CommonContentAssistProcessor
 	@SuppressWarnings("unchecked")
 	protected void addTypeProperties(Set<ICompletionProposal> proposals, String typeName, int offset, boolean isInstance)
 	{
-		// grab all ancestors of the specified type
-		List<String> allTypes = getQueryHelper().getTypeAncestorNames(typeName);
-
-		// include the type in the list as well
-		allTypes.add(0, typeName);
-
-		// add properties and methods
-		Collection<PropertyElement> properties = getQueryHelper().getTypeMembers(allTypes);
+		// add properties and methods of the type and all its ancestors
+		Collection<PropertyElement> properties = getQueryHelper().getAllTypeMembers(typeName);
 		URI projectURI = getProjectURI();
 		List<IFilter<PropertyElement>> propertyFilters = CollectionsUtil.newList(isNotConstructorFilter,
 				isVisibleFilter);
@@ -893,6 +928,7 @@ public class JSContentAssistProcessor extends CommonContentAssistProcessor
 				addKeywords(result, offset);
 				addGlobals(result, offset);
 				addSymbolsInScope(result, offset);
+				addCamelCaseTypes(result, document);
 				break;
 
 			case IN_OBJECT_LITERAL_PROPERTY:
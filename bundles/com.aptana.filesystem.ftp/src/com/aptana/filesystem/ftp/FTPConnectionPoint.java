@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -10,14 +10,19 @@
 
 package com.aptana.filesystem.ftp;
 
+import java.text.MessageFormat;
+
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
 
 import com.aptana.core.epl.IMemento;
 import com.aptana.core.io.vfs.IConnectionFileManager;
+import com.aptana.filesystem.ftp.internal.FTPClientPool;
 import com.aptana.filesystem.ftp.internal.FTPConnectionFileManager;
 import com.aptana.ide.core.io.ConnectionContext;
 import com.aptana.ide.core.io.ConnectionPoint;
@@ -39,6 +44,8 @@ public class FTPConnectionPoint extends ConnectionPoint implements IBaseFTPConne
 	private static final String ELEMENT_TRANSFER_TYPE = "transferType"; //$NON-NLS-1$
 	private static final String ELEMENT_ENCODING = "encoding"; //$NON-NLS-1$
 	private static final String ELEMENT_TIMEZONE = "timezone"; //$NON-NLS-1$
+	private static final String ELEMENT_MIN_SESSIONS = "minSessions"; //$NON-NLS-1$
+	private static final String ELEMENT_MAX_SESSIONS = "maxSessions"; //$NON-NLS-1$
 
 	private String host;
 	private int port = IFTPConstants.FTP_PORT_DEFAULT;
@@ -49,6 +56,8 @@ public class FTPConnectionPoint extends ConnectionPoint implements IBaseFTPConne
 	private String transferType = IFTPConstants.TRANSFER_TYPE_AUTO;
 	private String encoding = IFTPConstants.ENCODING_DEFAULT;
 	private String timezone = null;
+	private int minSessions = FTPClientPool.DEFAULT_MIN_SESSIONS;
+	private int maxSessions = FTPClientPool.DEFAULT_MAX_SESSIONS;
 
 	private IFTPConnectionFileManager connectionFileManager;
 
@@ -118,6 +127,39 @@ public class FTPConnectionPoint extends ConnectionPoint implements IBaseFTPConne
 		{
 			timezone = child.getTextData();
 		}
+		child = memento.getChild(ELEMENT_MIN_SESSIONS);
+		if (child != null)
+		{
+			minSessions = parseSessions(child, FTPClientPool.DEFAULT_MIN_SESSIONS);
+		}
+		child = memento.getChild(ELEMENT_MAX_SESSIONS);
+		if (child != null)
+		{
+			maxSessions = parseSessions(child, FTPClientPool.DEFAULT_MAX_SESSIONS);
+		}
+	}
+
+	/**
+	 * Reads a session limit from the memento, falling back to the default when it isn't a number.
+	 * 
+	 * @param child
+	 * @param defaultValue
+	 * @return
+	 */
+	private static int parseSessions(IMemento child, int defaultValue)
+	{
+		String text = child.getTextData();
+		try
+		{
+			return Integer.parseInt(text);
+		}
+		catch (NumberFormatException e)
+		{
+			FTPPlugin.log(new Status(IStatus.WARNING, FTPPlugin.PLUGIN_ID, MessageFormat.format(
+					"Invalid {0} ''{1}'' for FTP connection, using {2} instead", //$NON-NLS-1$
+					child.getType(), text, defaultValue), e));
+			return defaultValue;
+		}
 	}
 
 	/*
@@ -154,6 +196,14 @@ public class FTPConnectionPoint extends ConnectionPoint implements IBaseFTPConne
 		{
 			memento.createChild(ELEMENT_TIMEZONE).putTextData(timezone);
 		}
+		if (minSessions != FTPClientPool.DEFAULT_MIN_SESSIONS)
+		{
+			memento.createChild(ELEMENT_MIN_SESSIONS).putTextData(Integer.toString(minSessions));
+		}
+		if (maxSessions != FTPClientPool.DEFAULT_MAX_SESSIONS)
+		{
+			memento.createChild(ELEMENT_MAX_SESSIONS).putTextData(Integer.toString(maxSessions));
+		}
 	}
 
 	/*
@@ -332,6 +382,44 @@ public class FTPConnectionPoint extends ConnectionPoint implements IBaseFTPConne
 		resetConnectionFileManager();
 	}
 
+	/**
+	 * @return the number of idle transfer sessions kept open
+	 */
+	public int getMinSessions()
+	{
+		return minSessions;
+	}
+
+	/**
+	 * @param minSessions
+	 *            the number of idle transfer sessions to keep open
+	 */
+	public void setMinSessions(int minSessions)
+	{
+		this.minSessions = minSessions;
+		notifyChanged();
+		resetConnectionFileManager();
+	}
+
+	/**
+	 * @return the maximum number of transfer sessions open at once, besides the control connection
+	 */
+	public int getMaxSessions()
+	{
+		return maxSessions;
+	}
+
+	/**
+	 * @param maxSessions
+	 *            the maximum number of transfer sessions to open at once, besides the control connection
+	 */
+	public void setMaxSessions(int maxSessions)
+	{
+		this.maxSessions = maxSessions;
+		notifyChanged();
+		resetConnectionFileManager();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.ide.core.io.ConnectionPoint#connect(boolean, org.eclipse.core.runtime.IProgressMonitor)
@@ -428,6 +516,10 @@ public class FTPConnectionPoint extends ConnectionPoint implements IBaseFTPConne
 			}
 			connectionFileManager
 					.init(host, port, path, login, password, passiveMode, transferType, encoding, timezone);
+			if (connectionFileManager instanceof FTPConnectionFileManager)
+			{
+				((FTPConnectionFileManager) connectionFileManager).setPoolLimits(minSessions, maxSessions);
+			}
 		}
 		return connectionFileManager;
 	}
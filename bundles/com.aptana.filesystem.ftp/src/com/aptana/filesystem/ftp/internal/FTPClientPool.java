@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -8,6 +8,10 @@
 
 package com.aptana.filesystem.ftp.internal;
 
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import org.eclipse.core.runtime.Platform;
 
 import com.aptana.core.util.KeepAliveObjectPool;
@@ -16,16 +20,38 @@ import com.aptana.filesystem.ftp.preferences.FTPPreferenceInitializer;
 import com.aptana.filesystem.ftp.preferences.IFTPPreferenceConstants;
 import com.enterprisedt.net.ftp.FTPClient;
 import com.enterprisedt.net.ftp.FTPClientInterface;
-import com.enterprisedt.net.ftp.FTPTransferType;
 
+/**
+ * The sessions used for transfers, on top of the control connection of a {@link FTPConnectionFileManager}. At most
+ * {@link #getMaxSize()} sessions are open at once; the idle ones are kept alive with NOOPs, and the minimum number of
+ * them is kept open past the keep-alive time so that the next transfers don't have to log in again.
+ */
 public final class FTPClientPool extends KeepAliveObjectPool<FTPClientInterface> {
 
+	/**
+	 * Many servers limit the number of connections from a single address to 4 or 5, and the control connection is one
+	 * of them.
+	 */
+	public static final int DEFAULT_MAX_SESSIONS = 3;
+	public static final int DEFAULT_MIN_SESSIONS = 1;
+
+	/**
+	 * Sessions checked in more recently than this are handed out without a NOOP, as the reaper checks the idle ones
+	 * regularly anyway
+	 */
+	private static final long VALIDATE_IDLE_TIME = 5000;
+
 	private IPoolConnectionManager manager;
+	private final Map<FTPClientInterface, Boolean> loggedIn = new WeakHashMap<FTPClientInterface, Boolean>();
+	private int authenticating;
+	private long logins;
+	private long reconnects;
 
 	public FTPClientPool(IPoolConnectionManager manager) {
 		super(Platform.getPreferencesService().getInt(FTPPlugin.PLUGIN_ID, IFTPPreferenceConstants.KEEP_ALIVE_TIME,
 				FTPPreferenceInitializer.DEFAULT_KEEP_ALIVE_MINUTES, null) * 60 * 1000);
 		this.manager = manager;
+		setLimits(DEFAULT_MIN_SESSIONS, DEFAULT_MAX_SESSIONS);
 		start();
 	}
 
@@ -55,7 +81,6 @@ public final class FTPClientPool extends KeepAliveObjectPool<FTPClientInterface>
 		if (o instanceof FTPClient) {
 			try {
 				((FTPClient) o).noOperation();
-				((FTPClient) o).setType(FTPTransferType.BINARY);
 			} catch (Exception e) {
 				// ignore
 				return false;
@@ -63,4 +88,50 @@ public final class FTPClientPool extends KeepAliveObjectPool<FTPClientInterface>
 		}
 		return true;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.util.KeepAliveObjectPool#shouldValidate(java.lang.Object, long)
+	 */
+	@Override
+	protected boolean shouldValidate(FTPClientInterface o, long idleTime) {
+		// disconnected sessions are simply logged in again
+		return idleTime >= VALIDATE_IDLE_TIME && o.connected();
+	}
+
+	/**
+	 * Records that a session of the pool is logging in
+	 * 
+	 * @param ftpClient
+	 */
+	public synchronized void loginStarted(FTPClientInterface ftpClient) {
+		authenticating++;
+		if (loggedIn.containsKey(ftpClient)) {
+			reconnects++;
+		} else {
+			logins++;
+		}
+	}
+
+	/**
+	 * Records that a session of the pool is done logging in, successfully or not
+	 * 
+	 * @param ftpClient
+	 */
+	public synchronized void loginDone(FTPClientInterface ftpClient) {
+		authenticating--;
+		loggedIn.put(ftpClient, Boolean.TRUE);
+	}
+
+	/**
+	 * Returns a one line summary of the counters of the pool
+	 * 
+	 * @return
+	 */
+	public synchronized String getSummary() {
+		Statistics statistics = getStatistics();
+		return MessageFormat.format(Messages.FTPClientPool_Summary, new Object[] { statistics.getBusy(),
+				authenticating, statistics.getIdle(), statistics.getCheckOuts(), statistics.getWaits(),
+				statistics.getWaitTime(), statistics.getTimeouts(), logins, reconnects });
+	}
 }
@@ -46,8 +46,10 @@ import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.Status;
 
 import com.aptana.core.io.vfs.ExtendedFileInfo;
+import com.aptana.core.io.vfs.IConcurrentConnectionFileManager;
 import com.aptana.core.io.vfs.IExtendedFileStore;
 import com.aptana.core.util.ExpiringMap;
+import com.aptana.core.util.KeepAliveObjectPool;
 import com.aptana.filesystem.ftp.FTPPlugin;
 import com.aptana.filesystem.ftp.IFTPConnectionFileManager;
 import com.aptana.filesystem.ftp.IFTPConstants;
@@ -76,7 +78,7 @@ import com.enterprisedt.net.ftp.pro.ProFTPClient;
  * @author Max Stepanov
  */
 public class FTPConnectionFileManager extends BaseFTPConnectionFileManager implements IFTPConnectionFileManager,
-		IPoolConnectionManager
+		IPoolConnectionManager, IConcurrentConnectionFileManager
 {
 
 	private static final String TMP_TIMEZONE_CHECK = "_tmp_tz_check"; //$NON-NLS-1$
@@ -136,6 +138,40 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConcurrentConnectionFileManager#getMaxConcurrentTransfers()
+	 */
+	public int getMaxConcurrentTransfers()
+	{
+		// each transfer checks out its own client from the pool, on top of the control connection
+		return pool.getMaxSize();
+	}
+
+	/**
+	 * Sets how many transfer sessions are kept open while idle, and how many can be open at once
+	 * 
+	 * @param minSessions
+	 * @param maxSessions
+	 */
+	public void setPoolLimits(int minSessions, int maxSessions)
+	{
+		if (pool != null)
+		{
+			pool.setLimits(minSessions, maxSessions);
+		}
+	}
+
+	/**
+	 * Returns the counters of the transfer sessions
+	 * 
+	 * @return
+	 */
+	public KeepAliveObjectPool.Statistics getPoolStatistics()
+	{
+		return pool.getStatistics();
+	}
+
 	protected static void initFTPClient(FTPClient ftpClient, boolean passive, String encoding) throws IOException,
 			FTPException
 	{
@@ -185,6 +221,61 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		monitor.worked(1);
 	}
 
+	/**
+	 * Checks out a client from the pool for a transfer, waiting for one if they are all busy
+	 * 
+	 * @return the client
+	 * @throws CoreException
+	 *             if no client was checked in in time
+	 */
+	private FTPClient checkOutFTPClient() throws CoreException
+	{
+		FTPClient client = (FTPClient) pool.checkOut();
+		if (client == null)
+		{
+			throw new CoreException(new Status(IStatus.ERROR, FTPPlugin.PLUGIN_ID,
+					Messages.FTPConnectionFileManager_no_free_session));
+		}
+		return client;
+	}
+
+	/**
+	 * Logs a pooled client in if it isn't yet, and sets its transfer type. The type is only sent again when it
+	 * changed, as a client kept alive by the pool is still set to the type of its last transfer.
+	 * 
+	 * @param client
+	 * @param monitor
+	 * @throws IOException
+	 * @throws FTPException
+	 */
+	private void prepareFTPClient(FTPClient client, IProgressMonitor monitor) throws IOException, FTPException
+	{
+		FTPTransferType type = IFTPConstants.TRANSFER_TYPE_ASCII.equals(transferType) ? FTPTransferType.ASCII
+				: FTPTransferType.BINARY;
+		if (!client.connected())
+		{
+			pool.loginStarted(client);
+			try
+			{
+				initAndAuthFTPClient(client, monitor);
+			}
+			finally
+			{
+				pool.loginDone(client);
+			}
+			Policy.checkCanceled(monitor);
+			setMessageLogger(client, messageLogWriter);
+			client.setType(type);
+			return;
+		}
+		Policy.checkCanceled(monitor);
+		setMessageLogger(client, messageLogWriter);
+		if (!type.equals(client.getType()))
+		{
+			client.setType(type);
+		}
+	}
+
 	protected static void setMessageLogger(FTPClient ftpClient, final PrintWriter writer)
 	{
 		FTPMessageListener listener = null;
@@ -599,6 +690,11 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		finally
 		{
 			cwd = null;
+			if (messageLogWriter != null)
+			{
+				messageLogWriter.println(pool.getSummary());
+				messageLogWriter.flush();
+			}
 			pool.dispose();
 			cleanup();
 			monitor.done();
@@ -684,7 +780,7 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		clearCacheAbsolute(basePath.append(path));
 	}
 
-	private void clearCacheAbsolute(IPath path)
+	private synchronized void clearCacheAbsolute(IPath path)
 	{
 		int segments = path.segmentCount();
 		for (IPath p : new ArrayList<IPath>(ftpFileCache.keySet()))
@@ -1017,14 +1113,10 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 	protected InputStream readFile(IPath path, IProgressMonitor monitor) throws CoreException, FileNotFoundException
 	{
 		monitor.beginTask(Messages.FTPConnectionFileManager_initiating_download, 4);
-		FTPClient downloadFtpClient = (FTPClient) pool.checkOut();
+		FTPClient downloadFtpClient = checkOutFTPClient();
 		try
 		{
-			initAndAuthFTPClient(downloadFtpClient, monitor);
-			Policy.checkCanceled(monitor);
-			setMessageLogger(downloadFtpClient, messageLogWriter);
-			downloadFtpClient.setType(IFTPConstants.TRANSFER_TYPE_ASCII.equals(transferType) ? FTPTransferType.ASCII
-					: FTPTransferType.BINARY);
+			prepareFTPClient(downloadFtpClient, monitor);
 			try
 			{
 				downloadFtpClient.chdir(path.removeLastSegments(1).toPortableString());
@@ -1077,14 +1169,10 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 			throws CoreException, FileNotFoundException
 	{
 		monitor.beginTask(Messages.FTPConnectionFileManager_initiating_file_upload, 4);
-		FTPClient uploadFtpClient = (FTPClient) pool.checkOut();
+		FTPClient uploadFtpClient = checkOutFTPClient();
 		try
 		{
-			initAndAuthFTPClient(uploadFtpClient, monitor);
-			Policy.checkCanceled(monitor);
-			setMessageLogger(uploadFtpClient, messageLogWriter);
-			uploadFtpClient.setType(IFTPConstants.TRANSFER_TYPE_ASCII.equals(transferType) ? FTPTransferType.ASCII
-					: FTPTransferType.BINARY);
+			prepareFTPClient(uploadFtpClient, monitor);
 			IPath dirPath = path.removeLastSegments(1);
 			try
 			{
@@ -1431,6 +1519,62 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.BaseConnectionFileManager#fetchCRC32(org.eclipse.core.runtime.IPath,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected long fetchCRC32(IPath path, IProgressMonitor monitor) throws CoreException
+	{
+		if (!serverSupportsFeature("XCRC")) { //$NON-NLS-1$
+			return -1;
+		}
+		try
+		{
+			changeCurrentDir(path.removeLastSegments(1));
+			Policy.checkCanceled(monitor);
+			FTPReply reply = ftpClient.sendCommand("XCRC " + path.lastSegment()); //$NON-NLS-1$
+			if (!"250".equals(reply.getReplyCode())) { //$NON-NLS-1$
+				return -1;
+			}
+			return parseCRC32Reply(reply.getReplyText());
+		}
+		catch (OperationCanceledException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			// falls back to reading the file
+			return -1;
+		}
+	}
+
+	/**
+	 * Parses the text of a reply to XCRC. Its last word is the checksum in hex, which some servers prefix with 0x.
+	 * 
+	 * @param text
+	 * @return the CRC32, or -1 if the text doesn't end with one
+	 */
+	static long parseCRC32Reply(String text)
+	{
+		String value = text.trim();
+		value = value.substring(value.lastIndexOf(' ') + 1);
+		if (value.startsWith("0x") || value.startsWith("0X")) { //$NON-NLS-1$ //$NON-NLS-2$
+			value = value.substring(2);
+		}
+		try
+		{
+			long crc = Long.parseLong(value, 16);
+			return (crc >= 0 && crc <= 0xFFFFFFFFL) ? crc : -1;
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.ide.core.ftp.BaseFTPConnectionFileManager#changeFilePermissions(org.eclipse.core.runtime.IPath,
@@ -18,6 +18,8 @@ import org.eclipse.osgi.util.NLS;
 	public static String BaseFTPConnectionFileManager_ErrorDetectOwnerGroup;
 
 	public static String BaseFTPConnectionFileManager_GetheringServerDetails;
+
+	public static String FTPClientPool_Summary;
 	public static String FTPConnectionFileManager_already_initialized;
 	public static String FTPConnectionFileManager_authenticating;
 	public static String FTPConnectionFileManager_closing_connection;
@@ -47,6 +49,7 @@ import org.eclipse.osgi.util.NLS;
 	public static String FTPConnectionFileManager_not_initialized;
 	public static String FTPConnectionFileManager_opening_file_write_failed;
 	public static String FTPConnectionFileManager_opening_file_read_failed;
+	public static String FTPConnectionFileManager_no_free_session;
 	public static String FTPConnectionFileManager_RemoteFolderNotFound;
 	public static String FTPConnectionFileManager_renaming_failed;
 	public static String FTPConnectionFileManager_server_tz_check;
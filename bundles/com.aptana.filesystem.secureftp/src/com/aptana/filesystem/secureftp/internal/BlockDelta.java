@@ -0,0 +1,343 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.secureftp.internal;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The difference between two versions of a file, computed the way rsync does: the previous version is split into
+ * blocks, each with a weak rolling checksum and a strong MD5 digest, and the new version is scanned for those blocks
+ * at every offset. The result is a list of operations that rebuild the new version from the blocks of the previous
+ * one and the bytes of the new one that aren't in any block (the literals).
+ */
+class BlockDelta
+{
+	private static final int MIN_BLOCK_SIZE = 2048;
+	private static final int MAX_BLOCK_SIZE = 65536;
+
+	/**
+	 * One step of the reconstruction: either a range of the previous version, or a range of the new one that has to be
+	 * sent
+	 */
+	static class Operation
+	{
+		final boolean copy;
+		final int offset;
+		int length;
+
+		Operation(boolean copy, int offset, int length)
+		{
+			this.copy = copy;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * Returns whether the range comes from the previous version
+		 * 
+		 * @return
+		 */
+		boolean isCopy()
+		{
+			return copy;
+		}
+
+		/**
+		 * Returns the offset of the range, in the previous version for copies and in the new version for literals
+		 * 
+		 * @return
+		 */
+		int getOffset()
+		{
+			return offset;
+		}
+
+		int getLength()
+		{
+			return length;
+		}
+	}
+
+	private final int previousLength;
+	private final int length;
+	private final List<Operation> operations = new ArrayList<Operation>();
+	private int literalLength;
+
+	private BlockDelta(int previousLength, int length)
+	{
+		this.previousLength = previousLength;
+		this.length = length;
+	}
+
+	/**
+	 * Returns the block size used for a previous version of the given length: about its square root, which balances
+	 * the number of signatures against the amount of data resent around each change
+	 * 
+	 * @param length
+	 * @return
+	 */
+	static int getBlockSize(int length)
+	{
+		return Math.min(MAX_BLOCK_SIZE, Math.max(MIN_BLOCK_SIZE, (int) Math.sqrt(length)));
+	}
+
+	/**
+	 * Computes the delta between two versions of a file
+	 * 
+	 * @param previous
+	 *            The previous version
+	 * @param current
+	 *            The new version
+	 * @return
+	 */
+	static BlockDelta compute(byte[] previous, byte[] current)
+	{
+		return compute(previous, current, getBlockSize(previous.length));
+	}
+
+	/**
+	 * Computes the delta between two versions of a file, using blocks of the given size
+	 * 
+	 * @param previous
+	 * @param current
+	 * @param blockSize
+	 * @return
+	 */
+	static BlockDelta compute(byte[] previous, byte[] current, int blockSize)
+	{
+		BlockDelta delta = new BlockDelta(previous.length, current.length);
+		MessageDigest md5 = getMD5();
+		Map<Integer, List<Integer>> blocks = getSignatures(previous, blockSize);
+		Map<Integer, byte[]> digests = new HashMap<Integer, byte[]>();
+
+		int literalStart = 0;
+		int offset = 0;
+		int weak = (current.length >= blockSize) ? checksum(current, 0, blockSize) : 0;
+		while (offset + blockSize <= current.length)
+		{
+			int match = -1;
+			List<Integer> candidates = blocks.get(weak);
+			if (candidates != null)
+			{
+				md5.update(current, offset, blockSize);
+				byte[] digest = md5.digest();
+				for (int block : candidates)
+				{
+					if (Arrays.equals(digest, getDigest(digests, md5, previous, block, blockSize)))
+					{
+						match = block;
+						break;
+					}
+				}
+			}
+			if (match >= 0)
+			{
+				delta.addLiteral(literalStart, offset - literalStart);
+				delta.addCopy(match * blockSize, blockSize);
+				offset += blockSize;
+				literalStart = offset;
+				if (offset + blockSize <= current.length)
+				{
+					weak = checksum(current, offset, blockSize);
+				}
+			}
+			else
+			{
+				if (offset + blockSize < current.length)
+				{
+					weak = roll(weak, current[offset], current[offset + blockSize], blockSize);
+				}
+				offset++;
+			}
+		}
+
+		// the last block of the previous version is usually shorter than the others, and is looked for right after
+		// the last match (data appended) and at the end (data changed before it)
+		int tail = previous.length % blockSize;
+		if (tail > 0)
+		{
+			md5.update(previous, previous.length - tail, tail);
+			byte[] tailDigest = md5.digest();
+			int[] tailOffsets = { literalStart, current.length - tail };
+			for (int tailOffset : tailOffsets)
+			{
+				if (tailOffset >= literalStart && tailOffset + tail <= current.length)
+				{
+					md5.update(current, tailOffset, tail);
+					if (Arrays.equals(tailDigest, md5.digest()))
+					{
+						delta.addLiteral(literalStart, tailOffset - literalStart);
+						delta.addCopy(previous.length - tail, tail);
+						literalStart = tailOffset + tail;
+						break;
+					}
+				}
+			}
+		}
+		delta.addLiteral(literalStart, current.length - literalStart);
+		return delta;
+	}
+
+	private static Map<Integer, List<Integer>> getSignatures(byte[] previous, int blockSize)
+	{
+		Map<Integer, List<Integer>> blocks = new HashMap<Integer, List<Integer>>();
+		int count = previous.length / blockSize;
+		for (int i = 0; i < count; i++)
+		{
+			Integer weak = checksum(previous, i * blockSize, blockSize);
+			List<Integer> list = blocks.get(weak);
+			if (list == null)
+			{
+				list = new ArrayList<Integer>(1);
+				blocks.put(weak, list);
+			}
+			list.add(i);
+		}
+		return blocks;
+	}
+
+	/**
+	 * Strong digests of the previous version are only computed for the blocks whose weak checksum matched
+	 */
+	private static byte[] getDigest(Map<Integer, byte[]> digests, MessageDigest md5, byte[] previous, int block,
+			int blockSize)
+	{
+		byte[] digest = digests.get(block);
+		if (digest == null)
+		{
+			md5.update(previous, block * blockSize, blockSize);
+			digest = md5.digest();
+			digests.put(block, digest);
+		}
+		return digest;
+	}
+
+	private static MessageDigest getMD5()
+	{
+		try
+		{
+			return MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * The weak checksum of rsync: two 16-bit sums, the second of which weights each byte by its distance to the end
+	 * of the block
+	 */
+	static int checksum(byte[] data, int offset, int length)
+	{
+		int a = 0;
+		int b = 0;
+		for (int i = 0; i < length; i++)
+		{
+			int value = data[offset + i] & 0xff;
+			a += value;
+			b += (length - i) * value;
+		}
+		return ((b & 0xffff) << 16) | (a & 0xffff);
+	}
+
+	/**
+	 * Moves the weak checksum of a block one byte forward
+	 */
+	static int roll(int checksum, byte out, byte in, int length)
+	{
+		int a = checksum & 0xffff;
+		int b = checksum >>> 16;
+		a = (a - (out & 0xff) + (in & 0xff)) & 0xffff;
+		b = (b - length * (out & 0xff) + a) & 0xffff;
+		return (b << 16) | a;
+	}
+
+	private void addCopy(int offset, int length)
+	{
+		Operation last = operations.isEmpty() ? null : operations.get(operations.size() - 1);
+		if (last != null && last.copy && last.offset + last.length == offset)
+		{
+			last.length += length;
+			return;
+		}
+		operations.add(new Operation(true, offset, length));
+	}
+
+	private void addLiteral(int offset, int length)
+	{
+		if (length > 0)
+		{
+			operations.add(new Operation(false, offset, length));
+			literalLength += length;
+		}
+	}
+
+	/**
+	 * Returns the operations that rebuild the new version, in order
+	 * 
+	 * @return
+	 */
+	List<Operation> getOperations()
+	{
+		return Collections.unmodifiableList(operations);
+	}
+
+	/**
+	 * Returns the number of bytes of the new version that aren't in the previous one
+	 * 
+	 * @return
+	 */
+	int getLiteralLength()
+	{
+		return literalLength;
+	}
+
+	/**
+	 * Returns the length of the new version
+	 * 
+	 * @return
+	 */
+	int getLength()
+	{
+		return length;
+	}
+
+	/**
+	 * Returns whether the new version is the previous one with data appended to it
+	 * 
+	 * @return
+	 */
+	boolean isAppend()
+	{
+		if (previousLength == 0 || operations.isEmpty())
+		{
+			return false;
+		}
+		Operation first = operations.get(0);
+		if (!first.copy || first.offset != 0 || first.length != previousLength)
+		{
+			return false;
+		}
+		for (int i = 1; i < operations.size(); i++)
+		{
+			if (operations.get(i).copy)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.secureftp.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import com.aptana.core.util.StringUtil;
+
+/**
+ * Keeps a local copy of the files last uploaded to a server, so that the next upload of a file can send only what
+ * changed since. A copy is only used while the file on the server still has the length and modification time it had
+ * right after the upload.
+ */
+class DeltaBaseCache
+{
+	private static final String CACHE_DIR = "delta"; //$NON-NLS-1$
+	private static final long MAX_CACHE_SIZE = 256 * 1024 * 1024;
+
+	private static DeltaBaseCache instance;
+
+	private final File dir;
+
+	/**
+	 * Returns the cache shared by all connections, in the state location of the plugin
+	 * 
+	 * @return
+	 */
+	static synchronized DeltaBaseCache getDefault()
+	{
+		if (instance == null)
+		{
+			instance = new DeltaBaseCache(SecureFTPPlugin.getDefault().getStateLocation().append(CACHE_DIR).toFile());
+		}
+		return instance;
+	}
+
+	/**
+	 * DeltaBaseCache
+	 * 
+	 * @param dir
+	 *            The directory holding the copies
+	 */
+	DeltaBaseCache(File dir)
+	{
+		this.dir = dir;
+	}
+
+	/**
+	 * Returns whether there is a copy of a file, current or not
+	 * 
+	 * @param key
+	 * @return
+	 */
+	synchronized boolean contains(String key)
+	{
+		return getFile(key).isFile();
+	}
+
+	/**
+	 * Returns the copy of a file, if the file on the server is still the one that was uploaded
+	 * 
+	 * @param key
+	 *            Identifies the server and the path of the file
+	 * @param length
+	 *            The current length of the file on the server
+	 * @param lastModified
+	 *            The current modification time of the file on the server
+	 * @return the contents, or null
+	 */
+	synchronized byte[] get(String key, long length, long lastModified)
+	{
+		File file = getFile(key);
+		if (file.length() != length + 8)
+		{
+			return null;
+		}
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (toSeconds(in.readLong()) != toSeconds(lastModified))
+			{
+				return null;
+			}
+			byte[] content = new byte[(int) length];
+			in.readFully(content);
+			return content;
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		finally
+		{
+			close(in);
+		}
+	}
+
+	/**
+	 * Remembers the contents of a file that was just uploaded
+	 * 
+	 * @param key
+	 * @param content
+	 * @param lastModified
+	 *            The modification time of the file on the server
+	 */
+	synchronized void put(String key, byte[] content, long lastModified)
+	{
+		if (!dir.exists() && !dir.mkdirs())
+		{
+			return;
+		}
+		File file = getFile(key);
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeLong(lastModified);
+			out.write(content);
+			out.close();
+			out = null;
+		}
+		catch (IOException e)
+		{
+			SecureFTPPlugin.log(new Status(IStatus.WARNING, SecureFTPPlugin.PLUGIN_ID, e.getMessage(), e));
+			file.delete();
+		}
+		finally
+		{
+			close(out);
+		}
+		trim();
+	}
+
+	/**
+	 * Records the new modification time of a file, e.g. once it was set to that of the local file
+	 * 
+	 * @param key
+	 * @param lastModified
+	 */
+	synchronized void setLastModified(String key, long lastModified)
+	{
+		File file = getFile(key);
+		if (!file.isFile())
+		{
+			return;
+		}
+		RandomAccessFile raf = null;
+		try
+		{
+			raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+			raf.writeLong(lastModified);
+		}
+		catch (IOException e)
+		{
+			file.delete();
+		}
+		finally
+		{
+			close(raf);
+		}
+	}
+
+	/**
+	 * Forgets the copy of a file
+	 * 
+	 * @param key
+	 */
+	synchronized void remove(String key)
+	{
+		getFile(key).delete();
+	}
+
+	/**
+	 * Deletes the least recently uploaded copies once the cache grows too large
+	 */
+	private void trim()
+	{
+		File[] files = dir.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		long size = 0;
+		for (File file : files)
+		{
+			size += file.length();
+		}
+		if (size <= MAX_CACHE_SIZE)
+		{
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>()
+		{
+			public int compare(File f1, File f2)
+			{
+				long m1 = f1.lastModified();
+				long m2 = f2.lastModified();
+				return (m1 < m2) ? -1 : ((m1 > m2) ? 1 : 0);
+			}
+		});
+		for (File file : files)
+		{
+			if (size <= MAX_CACHE_SIZE)
+			{
+				break;
+			}
+			size -= file.length();
+			file.delete();
+		}
+	}
+
+	private File getFile(String key)
+	{
+		return new File(dir, StringUtil.md5(key));
+	}
+
+	/**
+	 * SFTP servers only keep modification times to the second
+	 */
+	private static long toSeconds(long time)
+	{
+		return time / 1000;
+	}
+
+	private static void close(Closeable stream)
+	{
+		if (stream != null)
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+				// ignores the exception
+			}
+		}
+	}
+}
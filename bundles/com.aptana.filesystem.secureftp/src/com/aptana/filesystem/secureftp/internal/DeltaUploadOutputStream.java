@@ -0,0 +1,150 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.secureftp.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Buffers the new version of a file and, on close, sends only its differences from the previous version when the
+ * server can assemble them. Anything else is uploaded whole: new files, files too large to buffer, deltas that don't
+ * save enough and deltas the server can't assemble. Files whose previous version isn't known are streamed to the
+ * server right away, and only kept to serve as the previous version of the next upload.
+ */
+class DeltaUploadOutputStream extends OutputStream
+{
+	/**
+	 * Files below this size are always uploaded whole
+	 */
+	static final int MIN_DELTA_SIZE = 64 * 1024;
+
+	/**
+	 * Files above this size are uploaded whole, as they are streamed instead of buffered
+	 */
+	static final int MAX_DELTA_SIZE = 16 * 1024 * 1024;
+
+	private final IDeltaTarget target;
+	private final byte[] previous;
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private OutputStream upload;
+	private boolean closed;
+
+	/**
+	 * DeltaUploadOutputStream
+	 * 
+	 * @param target
+	 * @param previous
+	 *            The version of the file currently on the server, or null if it isn't known
+	 * @throws IOException
+	 */
+	DeltaUploadOutputStream(IDeltaTarget target, byte[] previous) throws IOException
+	{
+		this.target = target;
+		this.previous = previous;
+		if (previous == null)
+		{
+			upload = target.openUpload();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.OutputStream#write(int)
+	 */
+	@Override
+	public void write(int b) throws IOException
+	{
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.OutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		if (buffer != null && buffer.size() + len > MAX_DELTA_SIZE)
+		{
+			if (upload == null)
+			{
+				upload = target.openUpload();
+				buffer.writeTo(upload);
+			}
+			buffer = null;
+		}
+		if (upload != null)
+		{
+			upload.write(b, off, len);
+		}
+		if (buffer != null)
+		{
+			buffer.write(b, off, len);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.OutputStream#close()
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		if (upload != null)
+		{
+			upload.close();
+			if (buffer != null)
+			{
+				target.uploaded(buffer.toByteArray());
+			}
+			return;
+		}
+		byte[] content = buffer.toByteArray();
+		buffer = null;
+		if (!assemble(content))
+		{
+			OutputStream out = target.openUpload();
+			out.write(content);
+			out.close();
+		}
+		target.uploaded(content);
+	}
+
+	private boolean assemble(byte[] content)
+	{
+		if (previous == null || content.length < MIN_DELTA_SIZE)
+		{
+			return false;
+		}
+		BlockDelta delta = BlockDelta.compute(previous, content);
+		// not worth the round trips of the assembly
+		if (delta.getLiteralLength() > content.length / 2)
+		{
+			return false;
+		}
+		try
+		{
+			return target.assemble(delta, content);
+		}
+		catch (IOException e)
+		{
+			SecureFTPPlugin.log(new Status(IStatus.WARNING, SecureFTPPlugin.PLUGIN_ID,
+					Messages.DeltaUploadOutputStream_AssemblyFailed, e));
+			return false;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.secureftp.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The server end of a {@link DeltaUploadOutputStream}: the file being uploaded on a given server.
+ */
+interface IDeltaTarget
+{
+
+	/**
+	 * Opens a regular upload of the whole file
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public OutputStream openUpload() throws IOException;
+
+	/**
+	 * Rebuilds the file on the server from its previous version and the literals of the delta, in a temporary file
+	 * which replaces the file once complete.
+	 * 
+	 * @param delta
+	 *            The delta from the previous version of the file
+	 * @param content
+	 *            The new version of the file
+	 * @return false if the server can't assemble this delta, in which case the file was left untouched
+	 * @throws IOException
+	 */
+	public boolean assemble(BlockDelta delta, byte[] content) throws IOException;
+
+	/**
+	 * Called once the new version of the file is on the server, whichever way it got there
+	 * 
+	 * @param content
+	 */
+	public void uploaded(byte[] content);
+}
@@ -13,6 +13,7 @@ import org.eclipse.osgi.util.NLS;
 
 	private static final String BUNDLE_NAME = "com.aptana.filesystem.secureftp.internal.messages"; //$NON-NLS-1$
 
+	public static String DeltaUploadOutputStream_AssemblyFailed;
 	public static String FTPSConnectionFileManager_Authenticating;
 	public static String FTPSConnectionFileManager_Connecting;
 	public static String FTPSConnectionFileManager_ConnectionHasBeenInitiated;
@@ -895,6 +895,7 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 			try
 			{
 				ftpClient.delete(path.lastSegment());
+				DeltaBaseCache.getDefault().remove(getDeltaKey(path));
 			}
 			catch (FTPException e)
 			{
@@ -941,6 +942,8 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 			try
 			{
 				ftpClient.rename(sourcePath.toPortableString(), destinationPath.toPortableString());
+				DeltaBaseCache.getDefault().remove(getDeltaKey(sourcePath));
+				DeltaBaseCache.getDefault().remove(getDeltaKey(destinationPath));
 			}
 			catch (FTPException e)
 			{
@@ -1132,16 +1135,13 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 			changeCurrentDir(path.removeLastSegments(1));
 			monitor.worked(1);
 			Policy.checkCanceled(monitor);
-			return new SFTPFileUploadOutputStream(ftpClient, new SSHFTPOutputStream(ftpClient, useTemporary ? path
-					.removeLastSegments(1).append(generateTempFileName(path.lastSegment())).toPortableString()
-					: path.toPortableString()), useTemporary ? path.toPortableString() : null, new Date(), permissions,
-					new Runnable()
-					{
-						public void run()
-						{
-							clearCacheAbsolute(path);
-						}
-					});
+			Date modificationTime = new Date();
+			if (useDeltaUpload())
+			{
+				return new DeltaUploadOutputStream(createDeltaTarget(path, useTemporary, permissions,
+						modificationTime), getPreviousVersion(path));
+			}
+			return openUploadStream(path, useTemporary, permissions, modificationTime);
 		}
 		catch (Exception e)
 		{
@@ -1162,6 +1162,91 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		}
 	}
 
+	private OutputStream openUploadStream(final IPath path, boolean useTemporary, long permissions,
+			Date modificationTime) throws FTPException, IOException
+	{
+		return new SFTPFileUploadOutputStream(ftpClient, new SSHFTPOutputStream(ftpClient, useTemporary ? path
+				.removeLastSegments(1).append(generateTempFileName(path.lastSegment())).toPortableString() : path
+				.toPortableString()), useTemporary ? path.toPortableString() : null, modificationTime, permissions,
+				new Runnable()
+				{
+					public void run()
+					{
+						clearCacheAbsolute(path);
+					}
+				});
+	}
+
+	private IDeltaTarget createDeltaTarget(final IPath path, final boolean useTemporary, final long permissions,
+			final Date modificationTime)
+	{
+		return new SFTPDeltaTarget(ftpClient, DeltaBaseCache.getDefault(), getDeltaKey(path), path, permissions,
+				modificationTime)
+		{
+			public OutputStream openUpload() throws IOException
+			{
+				try
+				{
+					return openUploadStream(path, useTemporary, permissions, modificationTime);
+				}
+				catch (FTPException e)
+				{
+					IOException io = new IOException(e.getMessage());
+					io.initCause(e);
+					throw io;
+				}
+			}
+
+			@Override
+			protected void changed()
+			{
+				clearCacheAbsolute(path);
+			}
+		};
+	}
+
+	/**
+	 * Delta uploads are off unless turned on in the connection context: SFTP can only assemble files that grew, so
+	 * most uploads would pay for the buffering and the extra round trips without sending less.
+	 * 
+	 * @return
+	 */
+	private boolean useDeltaUpload()
+	{
+		ConnectionContext context = CoreIOPlugin.getConnectionContext(this);
+		return context != null && context.getBoolean(ConnectionContext.USE_DELTA_UPLOAD);
+	}
+
+	private String getDeltaKey(IPath path)
+	{
+		return login + '@' + host + ':' + port + path.toPortableString();
+	}
+
+	/**
+	 * Returns the local copy of the version of a file that's on the server, if there is one
+	 * 
+	 * @param path
+	 * @return the contents, or null
+	 */
+	private byte[] getPreviousVersion(IPath path)
+	{
+		DeltaBaseCache cache = DeltaBaseCache.getDefault();
+		String key = getDeltaKey(path);
+		if (!cache.contains(key))
+		{
+			return null;
+		}
+		try
+		{
+			String filename = path.toPortableString();
+			return cache.get(key, ftpClient.size(filename), ftpClient.modtime(filename).getTime());
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.filesystem.ftp.BaseFTPConnectionFileManager#setModificationTime(org.eclipse.core.runtime.IPath,
@@ -1179,6 +1264,7 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 			try
 			{
 				ftpClient.setModTime(path.lastSegment(), new Date(modificationTime));
+				DeltaBaseCache.getDefault().setLastModified(getDeltaKey(path), modificationTime);
 			}
 			catch (FTPException e)
 			{
@@ -1355,7 +1441,7 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		}
 	}
 
-	private static String generateTempFileName(String base)
+	static String generateTempFileName(String base)
 	{
 		StringBuilder sb = new StringBuilder();
 		sb.append(base).append(TMP_UPLOAD_SUFFIX);
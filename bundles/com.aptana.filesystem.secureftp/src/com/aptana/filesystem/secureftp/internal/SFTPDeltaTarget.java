@@ -0,0 +1,151 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.secureftp.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import com.enterprisedt.net.ftp.FTPException;
+import com.enterprisedt.net.ftp.ssh.SSHFTPClient;
+import com.enterprisedt.net.j2ssh.sftp.SshFxpStatus;
+
+/**
+ * A file on a SFTP server, which can be rebuilt from its previous version when it only grew. SFTP has no way to copy
+ * data between files on the server, so other changes are uploaded whole.
+ */
+abstract class SFTPDeltaTarget implements IDeltaTarget
+{
+	private final SSHFTPClient ftpClient;
+	private final DeltaBaseCache cache;
+	private final String key;
+	private final IPath path;
+	private final long permissions;
+	private final Date modificationTime;
+
+	/**
+	 * SFTPDeltaTarget
+	 *
+	 * @param ftpClient
+	 *            A client whose current directory is the parent of the file
+	 * @param cache
+	 *            The cache keeping the previous versions of the files
+	 * @param key
+	 *            The key of the file in the cache
+	 * @param path
+	 * @param permissions
+	 * @param modificationTime
+	 */
+	SFTPDeltaTarget(SSHFTPClient ftpClient, DeltaBaseCache cache, String key, IPath path, long permissions,
+			Date modificationTime)
+	{
+		this.ftpClient = ftpClient;
+		this.cache = cache;
+		this.key = key;
+		this.path = path;
+		this.permissions = permissions;
+		this.modificationTime = modificationTime;
+	}
+
+	/**
+	 * Called once the file has been changed on the server, or an attempt to change it failed
+	 */
+	protected abstract void changed();
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.filesystem.secureftp.internal.IDeltaTarget#assemble(com.aptana.filesystem.secureftp.internal.
+	 * BlockDelta, byte[])
+	 */
+	public boolean assemble(BlockDelta delta, byte[] content) throws IOException
+	{
+		if (!delta.isAppend())
+		{
+			return false;
+		}
+		String filename = path.toPortableString();
+		String tempFilename = path.removeLastSegments(1)
+				.append(SFTPConnectionFileManager.generateTempFileName(path.lastSegment())).toPortableString();
+		int offset = content.length - delta.getLiteralLength();
+		try
+		{
+			// moves the previous version aside, so the file is replaced all at once
+			ftpClient.rename(filename, tempFilename);
+			boolean completed = false;
+			try
+			{
+				ftpClient.put(new ByteArrayInputStream(content, offset, content.length - offset), tempFilename, true);
+				ftpClient.rename(tempFilename, filename);
+				completed = true;
+			}
+			finally
+			{
+				if (!completed)
+				{
+					// the temporary file is the user's file, which may now have part of the new bytes appended; it's
+					// put back so the full upload that follows the failure overwrites it
+					try
+					{
+						ftpClient.rename(tempFilename, filename);
+					}
+					catch (Exception e)
+					{
+						SecureFTPPlugin.log(new Status(IStatus.ERROR, SecureFTPPlugin.PLUGIN_ID,
+								Messages.SFTPFileUploadOutputStream_ErrorUpload, e));
+					}
+				}
+			}
+			try
+			{
+				ftpClient.setModTime(filename, modificationTime);
+				if (permissions > 0)
+				{
+					ftpClient.changeMode((int) (permissions & 0777), filename);
+				}
+			}
+			catch (FTPException e)
+			{
+				if (e.getReplyCode() != SshFxpStatus.STATUS_FX_PERMISSION_DENIED)
+				{
+					throw e;
+				}
+			}
+		}
+		catch (FTPException e)
+		{
+			IOException io = new IOException(e.getMessage());
+			io.initCause(e);
+			throw io;
+		}
+		finally
+		{
+			changed();
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.filesystem.secureftp.internal.IDeltaTarget#uploaded(byte[])
+	 */
+	public void uploaded(byte[] content)
+	{
+		if (content.length >= DeltaUploadOutputStream.MIN_DELTA_SIZE)
+		{
+			cache.put(key, content, modificationTime.getTime());
+		}
+		else
+		{
+			cache.remove(key);
+		}
+	}
+}
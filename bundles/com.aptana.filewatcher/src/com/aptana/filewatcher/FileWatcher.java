@@ -15,6 +15,7 @@ import org.eclipse.core.runtime.Platform;
 import org.osgi.framework.Bundle;
 
 import com.aptana.filewatcher.poller.PollingNotifier;
+import com.aptana.filewatcher.watchservice.WatchServiceNotifier;
 
 public class FileWatcher
 {
@@ -26,29 +27,28 @@ public class FileWatcher
 	{
 		if (_instance == null)
 		{
-			String className = null;
 			if (Platform.OS_LINUX.equals(Platform.getOS()))
 			{
-				className = "net.contentobjects.jnotify.linux.JNotifyAdapterLinux"; //$NON-NLS-1$
-			}
-			else if (Platform.OS_WIN32.equals(Platform.getOS()))
-			{
-				className = "net.contentobjects.jnotify.win32.JNotifyAdapterWin32"; //$NON-NLS-1$
-			}
-			else if (Platform.OS_MACOSX.equals(Platform.getOS()))
-			{
-				className = "net.contentobjects.jnotify.macosx.JNotifyAdapterMacOSX"; //$NON-NLS-1$
+				// the JDK watch service is backed by inotify on Linux, the native library is only a fallback
+				_instance = createWatchServiceNotifier();
+				if (_instance == null)
+				{
+					_instance = loadNativeNotifier("net.contentobjects.jnotify.linux.JNotifyAdapterLinux"); //$NON-NLS-1$
+				}
 			}
-			if (className != null)
+			else
 			{
-				try
+				if (Platform.OS_WIN32.equals(Platform.getOS()))
+				{
+					_instance = loadNativeNotifier("net.contentobjects.jnotify.win32.JNotifyAdapterWin32"); //$NON-NLS-1$
+				}
+				else if (Platform.OS_MACOSX.equals(Platform.getOS()))
 				{
-					Bundle b = FileWatcherPlugin.getDefault().getBundle();
-					_instance = (IJNotify) b.loadClass(className).newInstance();
+					_instance = loadNativeNotifier("net.contentobjects.jnotify.macosx.JNotifyAdapterMacOSX"); //$NON-NLS-1$
 				}
-				catch (Throwable e)
+				if (_instance == null)
 				{
-					FileWatcherPlugin.log(e);
+					_instance = createWatchServiceNotifier();
 				}
 			}
 			if (_instance == null)
@@ -59,6 +59,46 @@ public class FileWatcher
 		return _instance;
 	}
 
+	private static IJNotify loadNativeNotifier(String className)
+	{
+		try
+		{
+			Bundle b = FileWatcherPlugin.getDefault().getBundle();
+			return (IJNotify) b.loadClass(className).newInstance();
+		}
+		catch (Throwable e)
+		{
+			FileWatcherPlugin.log(e);
+		}
+		return null;
+	}
+
+	private static IJNotify createWatchServiceNotifier()
+	{
+		try
+		{
+			return new WatchServiceNotifier();
+		}
+		catch (Throwable e)
+		{
+			FileWatcherPlugin.log(e);
+		}
+		return null;
+	}
+
+	/**
+	 * Stop watching. Only the watch service implementation holds a thread and OS resources that outlive its watches, the
+	 * native ones release theirs as the watches are removed.
+	 */
+	static synchronized void shutdown()
+	{
+		if (_instance instanceof WatchServiceNotifier)
+		{
+			((WatchServiceNotifier) _instance).shutdown();
+		}
+		_instance = null;
+	}
+
 	public static int addWatch(String path, int mask, boolean watchSubtree, final JNotifyListener listener)
 			throws JNotifyException
 	{
@@ -0,0 +1,70 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher.watchservice;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+
+import net.contentobjects.jnotify.JNotifyException;
+
+/**
+ * A {@link JNotifyException} raised when a directory can't be registered with the {@link java.nio.file.WatchService}.
+ */
+public class WatchServiceException extends JNotifyException
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The message the JDK uses on Linux when fs.inotify.max_user_watches is exhausted
+	 */
+	private static final String WATCH_LIMIT_MESSAGE = "User limit of inotify watches reached"; //$NON-NLS-1$
+
+	public WatchServiceException(String s, int errorCode)
+	{
+		super(s, errorCode);
+	}
+
+	/**
+	 * Wrap the exception raised while registering the specified directory
+	 * 
+	 * @param path
+	 * @param e
+	 * @return
+	 */
+	static WatchServiceException create(String path, IOException e)
+	{
+		int errorCode;
+
+		if (e instanceof NoSuchFileException)
+		{
+			errorCode = ERROR_NO_SUCH_FILE_OR_DIRECTORY;
+		}
+		else if (e instanceof AccessDeniedException)
+		{
+			errorCode = ERROR_PERMISSION_DENIED;
+		}
+		else if (WATCH_LIMIT_MESSAGE.equals(e.getMessage()))
+		{
+			errorCode = ERROR_WATCH_LIMIT_REACHED;
+		}
+		else
+		{
+			errorCode = ERROR_UNSPECIFIED;
+		}
+
+		WatchServiceException result = new WatchServiceException(path + ": " + e.getMessage(), errorCode); //$NON-NLS-1$
+		result.initCause(e);
+		return result;
+	}
+
+	public int getErrorCode()
+	{
+		return _systemErrorCode;
+	}
+}
@@ -0,0 +1,771 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher.watchservice;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.contentobjects.jnotify.IJNotify;
+import net.contentobjects.jnotify.JNotifyException;
+import net.contentobjects.jnotify.JNotifyListener;
+
+import com.aptana.filewatcher.FileWatcherPlugin;
+
+/**
+ * An implementation built on the JDK {@link WatchService} (inotify on Linux), so neither the native JNotify library nor
+ * polling is needed. The root of a watch is registered right away; its subdirectories are registered in batches on the
+ * watcher thread, and directories created later are registered as they show up. Events are coalesced per file and
+ * delivered on the watcher thread once no new ones have arrived for {@link #DEBOUNCE_DELAY} ms.
+ * <p>
+ * The number of registered directories and pending events are both capped, so memory use doesn't grow with the size of
+ * the watched trees. The WatchService doesn't report renames, so a rename is delivered as a deletion and a creation.
+ * <p>
+ * The WatchService is closed and the watcher thread exits once the last watch is removed, or on {@link #shutdown()}. A
+ * new service and thread are started for the next watch.
+ */
+public class WatchServiceNotifier implements IJNotify
+{
+	/**
+	 * Events are delivered once no new ones have arrived for this many ms...
+	 */
+	private static final long DEBOUNCE_DELAY = 100;
+
+	/**
+	 * ...or this many ms after the first pending event, so a steady stream of changes can't hold them back forever.
+	 */
+	private static final long MAX_DELAY = 1000;
+
+	/**
+	 * How long the watcher thread waits for events when idle before checking for directories to register (ms)
+	 */
+	private static final long IDLE_TIMEOUT = 500;
+
+	/**
+	 * Events are delivered right away once this many are pending
+	 */
+	private static final int MAX_PENDING_EVENTS = 4096;
+
+	/**
+	 * The number of directories registered by the watcher thread before it checks for events again
+	 */
+	private static final int REGISTRATION_BATCH_SIZE = 256;
+
+	/**
+	 * The maximum number of directories registered across all watches. Each costs an inotify watch on Linux, which are
+	 * limited by fs.inotify.max_user_watches.
+	 */
+	private static final int MAX_WATCHED_DIRECTORIES = Integer.getInteger(
+			"com.aptana.filewatcher.maxDirectories", 16384); //$NON-NLS-1$
+
+	private static class Watch
+	{
+		private final int id;
+		private final String path;
+		private final Path root;
+		private final int mask;
+		private final boolean watchSubtree;
+		private final JNotifyListener listener;
+		private final Set<Path> directories = new HashSet<Path>();
+
+		private Watch(int id, String path, Path root, int mask, boolean watchSubtree, JNotifyListener listener)
+		{
+			this.id = id;
+			this.path = path;
+			this.root = root;
+			this.mask = mask;
+			this.watchSubtree = watchSubtree;
+			this.listener = listener;
+		}
+	}
+
+	/**
+	 * A directory waiting to be registered on behalf of a watch
+	 */
+	private static class PendingDirectory
+	{
+		private final Watch watch;
+		private final Path directory;
+
+		/**
+		 * Whether to report the existing contents as created, since they may have been created before the directory
+		 * was registered
+		 */
+		private final boolean reportContents;
+
+		private PendingDirectory(Watch watch, Path directory, boolean reportContents)
+		{
+			this.watch = watch;
+			this.directory = directory;
+			this.reportContents = reportContents;
+		}
+	}
+
+	/**
+	 * Identifies the pending event for a file of a watch, so events for the same file can be coalesced
+	 */
+	private static class EventKey
+	{
+		private final Watch watch;
+		private final String name;
+
+		private EventKey(Watch watch, String name)
+		{
+			this.watch = watch;
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof EventKey))
+			{
+				return false;
+			}
+
+			EventKey other = (EventKey) obj;
+
+			return watch == other.watch && name.equals(other.name);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * watch.id + name.hashCode();
+		}
+	}
+
+	/**
+	 * Guards all of the fields below
+	 */
+	private final Object fLock = new Object();
+	private WatchService fWatchService;
+	private final Map<Integer, Watch> fWatches = new HashMap<Integer, Watch>();
+	private final Map<Path, WatchKey> fKeys = new HashMap<Path, WatchKey>();
+	private final Map<WatchKey, Path> fDirectories = new HashMap<WatchKey, Path>();
+	private final LinkedList<PendingDirectory> fPendingDirectories = new LinkedList<PendingDirectory>();
+	private final LinkedHashMap<EventKey, Integer> fPendingEvents = new LinkedHashMap<EventKey, Integer>();
+	private long fFirstEventTime;
+	private long fLastEventTime;
+	private boolean fLimitReported;
+	private int fNextId;
+	private Thread fThread;
+
+	/**
+	 * WatchServiceNotifier
+	 * 
+	 * @throws IOException
+	 *             if the platform has no watch service
+	 */
+	public WatchServiceNotifier() throws IOException
+	{
+		fWatchService = FileSystems.getDefault().newWatchService();
+	}
+
+	public int addWatch(String path, int mask, boolean watchSubtree, boolean recursive, JNotifyListener listener)
+			throws JNotifyException
+	{
+		if (listener == null)
+		{
+			throw new IllegalArgumentException("Null listener"); //$NON-NLS-1$
+		}
+
+		Watch watch;
+
+		synchronized (fLock)
+		{
+			if (fWatchService == null)
+			{
+				try
+				{
+					fWatchService = FileSystems.getDefault().newWatchService();
+				}
+				catch (IOException e)
+				{
+					throw WatchServiceException.create(path, e);
+				}
+			}
+
+			watch = new Watch(fNextId++, path, Paths.get(path).toAbsolutePath(), mask, watchSubtree, listener);
+			fWatches.put(watch.id, watch);
+		}
+
+		try
+		{
+			register(watch, watch.root);
+		}
+		catch (IOException e)
+		{
+			synchronized (fLock)
+			{
+				fWatches.remove(watch.id);
+			}
+			throw WatchServiceException.create(path, e);
+		}
+
+		synchronized (fLock)
+		{
+			if (watchSubtree)
+			{
+				// the root is already registered, this just queues up its subdirectories
+				fPendingDirectories.add(new PendingDirectory(watch, watch.root, false));
+			}
+
+			if (fThread == null && fWatchService != null)
+			{
+				final WatchService watchService = fWatchService;
+
+				fThread = new Thread(new Runnable()
+				{
+					public void run()
+					{
+						runWatcher(watchService);
+					}
+				}, "File Watcher"); //$NON-NLS-1$
+				fThread.setDaemon(true);
+				fThread.start();
+			}
+		}
+
+		return watch.id;
+	}
+
+	public boolean removeWatch(int wd) throws JNotifyException
+	{
+		synchronized (fLock)
+		{
+			Watch watch = fWatches.remove(wd);
+
+			if (watch == null)
+			{
+				return false;
+			}
+
+			for (Path directory : watch.directories)
+			{
+				if (getWatches(directory).isEmpty())
+				{
+					WatchKey key = fKeys.remove(directory);
+
+					if (key != null)
+					{
+						fDirectories.remove(key);
+						key.cancel();
+					}
+				}
+			}
+
+			Iterator<EventKey> events = fPendingEvents.keySet().iterator();
+
+			while (events.hasNext())
+			{
+				if (events.next().watch == watch)
+				{
+					events.remove();
+				}
+			}
+
+			if (fWatches.isEmpty())
+			{
+				close();
+			}
+
+			// any directories still queued for the watch are skipped when they come up
+			return true;
+		}
+	}
+
+	/**
+	 * Remove all watches, close the WatchService and let the watcher thread exit
+	 */
+	public void shutdown()
+	{
+		synchronized (fLock)
+		{
+			fWatches.clear();
+			close();
+		}
+	}
+
+	/**
+	 * Returns the current watcher thread, if any. Used by the tests.
+	 * 
+	 * @return
+	 */
+	Thread getThread()
+	{
+		synchronized (fLock)
+		{
+			return fThread;
+		}
+	}
+
+	/**
+	 * Drop all registrations and pending work and close the WatchService, which makes the watcher thread exit. Must be
+	 * called with fLock held.
+	 */
+	private void close()
+	{
+		fKeys.clear();
+		fDirectories.clear();
+		fPendingDirectories.clear();
+		fPendingEvents.clear();
+
+		if (fWatchService != null)
+		{
+			try
+			{
+				// cancels the keys and wakes up the watcher thread
+				fWatchService.close();
+			}
+			catch (IOException e)
+			{
+				FileWatcherPlugin.log(e);
+			}
+			fWatchService = null;
+		}
+
+		fThread = null;
+	}
+
+	/**
+	 * Queue an event, coalescing it with the one already pending for the same file. Must be called with fLock held.
+	 * 
+	 * @param watch
+	 * @param file
+	 * @param type
+	 */
+	private void addEvent(Watch watch, Path file, int type)
+	{
+		EventKey key = new EventKey(watch, watch.root.relativize(file).toString());
+		Integer previous = fPendingEvents.get(key);
+		long now = System.currentTimeMillis();
+
+		if (fPendingEvents.isEmpty())
+		{
+			fFirstEventTime = now;
+		}
+
+		fLastEventTime = now;
+
+		if (previous == null)
+		{
+			fPendingEvents.put(key, type);
+		}
+		else if (previous == FILE_CREATED)
+		{
+			// a file that came and went within the delay is never reported
+			if (type == FILE_DELETED)
+			{
+				fPendingEvents.remove(key);
+			}
+		}
+		else if (previous == FILE_DELETED && type == FILE_CREATED)
+		{
+			fPendingEvents.put(key, FILE_MODIFIED);
+		}
+		else
+		{
+			fPendingEvents.put(key, type);
+		}
+	}
+
+	/**
+	 * Deliver the pending events if the debounce delay has passed or too many are pending
+	 */
+	private void deliverEventsIfDue()
+	{
+		List<Map.Entry<EventKey, Integer>> events;
+
+		synchronized (fLock)
+		{
+			if (fPendingEvents.isEmpty() || getDelay() > 0)
+			{
+				return;
+			}
+
+			events = new ArrayList<Map.Entry<EventKey, Integer>>(fPendingEvents.entrySet());
+			fPendingEvents.clear();
+		}
+
+		for (Map.Entry<EventKey, Integer> event : events)
+		{
+			Watch watch = event.getKey().watch;
+			String name = event.getKey().name;
+			int type = event.getValue();
+
+			if ((watch.mask & type) == 0)
+			{
+				continue;
+			}
+
+			try
+			{
+				switch (type)
+				{
+					case FILE_CREATED:
+						watch.listener.fileCreated(watch.id, watch.path, name);
+						break;
+
+					case FILE_DELETED:
+						watch.listener.fileDeleted(watch.id, watch.path, name);
+						break;
+
+					default:
+						watch.listener.fileModified(watch.id, watch.path, name);
+						break;
+				}
+			}
+			catch (Throwable e)
+			{
+				FileWatcherPlugin.log(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of ms until the pending events are due. Must be called with fLock held.
+	 * 
+	 * @return
+	 */
+	private long getDelay()
+	{
+		if (fPendingEvents.size() >= MAX_PENDING_EVENTS)
+		{
+			return 0;
+		}
+
+		long due = Math.min(fLastEventTime + DEBOUNCE_DELAY, fFirstEventTime + MAX_DELAY);
+
+		return Math.max(0, due - System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the watches that have registered the specified directory. Must be called with fLock held.
+	 * 
+	 * @param directory
+	 * @return
+	 */
+	private List<Watch> getWatches(Path directory)
+	{
+		List<Watch> result = null;
+
+		for (Watch watch : fWatches.values())
+		{
+			if (watch.directories.contains(directory))
+			{
+				if (result == null)
+				{
+					result = new ArrayList<Watch>(1);
+				}
+				result.add(watch);
+			}
+		}
+
+		if (result == null)
+		{
+			return Collections.emptyList();
+		}
+		return result;
+	}
+
+	/**
+	 * The body of the watcher thread, which runs until the WatchService is closed
+	 * 
+	 * @param watchService
+	 */
+	private void runWatcher(WatchService watchService)
+	{
+		while (true)
+		{
+			registerPendingDirectories();
+
+			long timeout;
+
+			synchronized (fLock)
+			{
+				if (!fPendingDirectories.isEmpty())
+				{
+					timeout = 0;
+				}
+				else if (!fPendingEvents.isEmpty())
+				{
+					timeout = Math.max(1, getDelay());
+				}
+				else
+				{
+					timeout = IDLE_TIMEOUT;
+				}
+			}
+
+			try
+			{
+				WatchKey key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+
+				while (key != null)
+				{
+					processEvents(key);
+					deliverEventsIfDue();
+					key = watchService.poll();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+			catch (ClosedWatchServiceException e)
+			{
+				break;
+			}
+
+			deliverEventsIfDue();
+		}
+	}
+
+	/**
+	 * Turn the events of a key into pending events and register the directories created under watched subtrees
+	 * 
+	 * @param key
+	 */
+	private void processEvents(WatchKey key)
+	{
+		List<WatchEvent<?>> events = key.pollEvents();
+
+		synchronized (fLock)
+		{
+			Path directory = fDirectories.get(key);
+
+			if (directory == null)
+			{
+				// no longer watched
+				key.cancel();
+				return;
+			}
+
+			List<Watch> watches = getWatches(directory);
+
+			for (WatchEvent<?> event : events)
+			{
+				WatchEvent.Kind<?> kind = event.kind();
+
+				if (kind == OVERFLOW)
+				{
+					// events were dropped by the OS, there's nothing specific left to report
+					continue;
+				}
+
+				Path file = directory.resolve((Path) event.context());
+				int type;
+
+				if (kind == ENTRY_CREATE)
+				{
+					type = FILE_CREATED;
+				}
+				else if (kind == ENTRY_DELETE)
+				{
+					type = FILE_DELETED;
+				}
+				else
+				{
+					type = FILE_MODIFIED;
+				}
+
+				boolean newDirectory = type == FILE_CREATED && Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS);
+
+				for (Watch watch : watches)
+				{
+					addEvent(watch, file, type);
+
+					if (newDirectory && watch.watchSubtree)
+					{
+						queueDirectory(new PendingDirectory(watch, file, true));
+					}
+				}
+			}
+
+			if (!key.reset())
+			{
+				// the directory is gone
+				fDirectories.remove(key);
+				fKeys.remove(directory);
+
+				for (Watch watch : watches)
+				{
+					watch.directories.remove(directory);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queue a directory for registration, unless that would exceed the limit. Must be called with fLock held.
+	 * 
+	 * @param directory
+	 */
+	private void queueDirectory(PendingDirectory directory)
+	{
+		if (fKeys.size() + fPendingDirectories.size() < MAX_WATCHED_DIRECTORIES)
+		{
+			fPendingDirectories.add(directory);
+		}
+		else
+		{
+			reportLimit();
+		}
+	}
+
+	/**
+	 * Register the specified directory on behalf of the watch
+	 * 
+	 * @param watch
+	 * @param directory
+	 * @return false if the watch was removed or the limit was reached
+	 * @throws IOException
+	 */
+	private boolean register(Watch watch, Path directory) throws IOException
+	{
+		synchronized (fLock)
+		{
+			if (!fWatches.containsKey(watch.id) || fWatchService == null)
+			{
+				return false;
+			}
+
+			WatchKey key = fKeys.get(directory);
+
+			if (key == null || !key.isValid())
+			{
+				if (fKeys.size() >= MAX_WATCHED_DIRECTORIES)
+				{
+					reportLimit();
+					return false;
+				}
+
+				if (key != null)
+				{
+					fDirectories.remove(key);
+				}
+
+				key = directory.register(fWatchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+				fKeys.put(directory, key);
+				fDirectories.put(key, directory);
+			}
+
+			watch.directories.add(directory);
+			return true;
+		}
+	}
+
+	/**
+	 * Register a batch of the queued directories and queue up their subdirectories
+	 */
+	private void registerPendingDirectories()
+	{
+		for (int i = 0; i < REGISTRATION_BATCH_SIZE; i++)
+		{
+			PendingDirectory pending;
+
+			synchronized (fLock)
+			{
+				pending = fPendingDirectories.poll();
+			}
+
+			if (pending == null)
+			{
+				return;
+			}
+
+			DirectoryStream<Path> stream = null;
+
+			try
+			{
+				if (!register(pending.watch, pending.directory))
+				{
+					continue;
+				}
+
+				stream = Files.newDirectoryStream(pending.directory);
+
+				for (Path child : stream)
+				{
+					boolean isDirectory = Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS);
+
+					synchronized (fLock)
+					{
+						if (pending.reportContents)
+						{
+							addEvent(pending.watch, child, FILE_CREATED);
+						}
+
+						if (isDirectory)
+						{
+							queueDirectory(new PendingDirectory(pending.watch, child, pending.reportContents));
+						}
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				// the directory went away or can't be read, its deletion is reported by its parent
+			}
+			finally
+			{
+				if (stream != null)
+				{
+					try
+					{
+						stream.close();
+					}
+					catch (IOException e)
+					{
+						// ignore
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Log that the directory limit was reached, once. Must be called with fLock held.
+	 */
+	private void reportLimit()
+	{
+		if (!fLimitReported)
+		{
+			fLimitReported = true;
+			FileWatcherPlugin.log(MessageFormat.format(
+					"Watching at most {0} directories, changes to further directories will not be reported", //$NON-NLS-1$
+					MAX_WATCHED_DIRECTORIES), null);
+		}
+	}
+}
@@ -7,10 +7,13 @@
  */
 package com.aptana.git.core.model;
 
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -45,6 +48,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.IJobManager;
 import org.eclipse.core.runtime.jobs.Job;
+import org.osgi.framework.Version;
 
 import com.aptana.core.IFilter;
 import com.aptana.core.IMap;
@@ -53,6 +57,7 @@ import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.InputStreamGobbler;
 import com.aptana.core.util.StringUtil;
 import com.aptana.git.core.GitPlugin;
 import com.aptana.git.core.IDebugScopes;
@@ -69,6 +74,22 @@ public class GitIndex
 
 	private static final String NULL_DELIMITER = "\0"; //$NON-NLS-1$
 
+	/**
+	 * The first version of git with <code>git status --porcelain=v2</code>
+	 */
+	private static final Version PORCELAIN_V2_VERSION = new Version(2, 11, 0);
+
+	/**
+	 * The maximum number of paths whose state we remember to skip refreshes of unchanged files.
+	 */
+	private static final int MAX_REFRESH_STAMPS = 10000;
+
+	/**
+	 * Files modified less than this many ms ago are always refreshed, since further changes may not alter their
+	 * modification time.
+	 */
+	private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+
 	/**
 	 * File extensions we check against and use to assume if a file may be binary (to not show a diff/content in various
 	 * UI views)
@@ -98,6 +119,18 @@ public class GitIndex
 	 */
 	private GitIndexRefreshJob refreshJob;
 
+	/**
+	 * Whether git supports <code>git status --porcelain=v2</code>, determined on first refresh.
+	 */
+	private Boolean porcelainV2;
+
+	/**
+	 * The modification time and size of the index at the last refresh, and of the paths refreshed since then, used to
+	 * skip refreshes that can't change anything.
+	 */
+	private long[] lastIndexStamp;
+	private final Map<String, long[]> refreshStamps = new HashMap<String, long[]>();
+
 	GitIndex(GitRepository repository)
 	{
 		Assert.isNotNull(repository, "GitIndex requires a repository"); //$NON-NLS-1$
@@ -153,26 +186,14 @@ public class GitIndex
 		{
 			return Status.CANCEL_STATUS;
 		}
-		this.notify = notify;
-
-		// If we don't run this, we end up showing files as unstaged when they're no longer modified!
-		IStatus result;
-		synchronized (this)
-		{
-			repository.forceWrite(); // Do we only want to try the lock if we're in UI thread?
-			result = GitExecutable.instance().runInBackground(repository.workingDirectory(), "update-index", "-q", //$NON-NLS-1$ //$NON-NLS-2$
-					"--unmerged", "--ignore-missing", "--refresh"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			repository.exitWriteProcess();
-		}
-		if (result == null) // couldn't even execute!
-		{
-			return new Status(IStatus.ERROR, GitPlugin.getPluginId(), "Failed to execute git update-index"); //$NON-NLS-1$
-		}
-		if (!result.isOK())
+		// stamp the files before git looks at them, so changes made while it runs are picked up next time
+		Map<String, long[]> pathStamps = stampPaths(filePaths);
+		if (isUnchangedSinceLastRefresh(pathStamps))
 		{
-			IdeLog.logWarning(GitPlugin.getDefault(), "Unable to run update-index: " + result.getMessage()); //$NON-NLS-1$
-			return result;
+			// Neither the index nor the files have changed, so git would report the same thing again
+			return Status.OK_STATUS;
 		}
+		this.notify = notify;
 
 		final Set<String> portablePathStrings = new HashSet<String>(CollectionsUtil.map(filePaths,
 				new IMap<IPath, String>()
@@ -183,28 +204,140 @@ public class GitIndex
 					}
 				}));
 
+		MultiStatus errors = new MultiStatus(GitPlugin.PLUGIN_ID, 1,
+				"Errors occurred while grabbing changed file listings", null); //$NON-NLS-1$
+		Map<IPath, ChangedFile> newChangedFiles;
+		if (supportsPorcelainV2())
+		{
+			newChangedFiles = readStatus(portablePathStrings, errors);
+			if (newChangedFiles == null)
+			{
+				forgetRefreshStamps();
+				return errors;
+			}
+		}
+		else
+		{
+			// If we don't run this, we end up showing files as unstaged when they're no longer modified!
+			IStatus result;
+			synchronized (this)
+			{
+				repository.forceWrite(); // Do we only want to try the lock if we're in UI thread?
+				result = GitExecutable.instance().runInBackground(repository.workingDirectory(), "update-index", "-q", //$NON-NLS-1$ //$NON-NLS-2$
+						"--unmerged", "--ignore-missing", "--refresh"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				repository.exitWriteProcess();
+			}
+			if (result == null) // couldn't even execute!
+			{
+				forgetRefreshStamps();
+				return new Status(IStatus.ERROR, GitPlugin.getPluginId(), "Failed to execute git update-index"); //$NON-NLS-1$
+			}
+			if (!result.isOK())
+			{
+				IdeLog.logWarning(GitPlugin.getDefault(), "Unable to run update-index: " + result.getMessage()); //$NON-NLS-1$
+				forgetRefreshStamps();
+				return result;
+			}
+
+			// Last chance to cancel...
+			if (monitor != null && monitor.isCanceled())
+			{
+				forgetRefreshStamps();
+				return Status.CANCEL_STATUS;
+			}
+
+			newChangedFiles = readChangedFiles(portablePathStrings, monitor, errors);
+			if (newChangedFiles == null)
+			{
+				forgetRefreshStamps();
+				return Status.CANCEL_STATUS;
+			}
+		}
+
+		// Copy the last full list of changed files we built up on refresh. Used to pass along the delta
+		// FIXME I think the values here may have already changed! I saw a file that had staged changes but no unstaged
+		// prior to commit
+		// but here it showed true for both (which should have only gotten modified by a pre-commit hook)
+		Collection<ChangedFile> preRefresh;
+		synchronized (this.changedFilesLock)
+		{
+			// Make a copy of the changed file listing, pre-refresh
+			if (this.changedFiles != null)
+			{
+				preRefresh = new ArrayList<ChangedFile>(this.changedFiles.size());
+				for (ChangedFile file : this.changedFiles)
+				{
+					preRefresh.add(file.clone());
+				}
+			}
+			else
+			{
+				preRefresh = new ArrayList<ChangedFile>(0);
+			}
+
+			// Now wipe any existing ChangedFile entries for any of the filePaths and add the ones we generated in
+			// dictionary
+			if (CollectionsUtil.isEmpty(filePaths))
+			{
+				this.changedFiles = new ArrayList<ChangedFile>();
+			}
+			else
+			{
+				this.changedFiles = CollectionsUtil.filter(this.changedFiles, new IFilter<ChangedFile>()
+				{
+					public boolean include(ChangedFile item)
+					{
+						return !portablePathStrings.contains(item.getRelativePath().toPortableString());
+					}
+				});
+			}
+			if (!CollectionsUtil.isEmpty(newChangedFiles))
+			{
+				this.changedFiles.addAll(newChangedFiles.values());
+			}
+		}
+
+		// Don't hold onto temp list in memory!
+		newChangedFiles = null;
+
+		postIndexChange(preRefresh, this.changedFiles);
+		sub.done();
+		if (!errors.isOK())
+		{
+			forgetRefreshStamps();
+			return errors;
+		}
+		recordRefreshStamps(pathStamps);
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Lists the changed files by running diff-index, diff-files and ls-files in parallel and merging their output. Used
+	 * with versions of git that don't support <code>git status --porcelain=v2</code>.
+	 * 
+	 * @param portablePathStrings
+	 * @param monitor
+	 * @param errors
+	 *            collects the errors of the individual listings
+	 * @return the changed files, or null if the index has been disposed
+	 */
+	private Map<IPath, ChangedFile> readChangedFiles(Set<String> portablePathStrings, IProgressMonitor monitor,
+			MultiStatus errors)
+	{
 		Set<Callable<Map<IPath, ChangedFile>>> jobs = new HashSet<Callable<Map<IPath, ChangedFile>>>(3);
 		jobs.add(new UntrackedFilesRefreshJob(this, portablePathStrings));
 		jobs.add(new UnstagedFilesRefreshJob(this, portablePathStrings));
 		jobs.add(new StagedFilesRefreshJob(this, portablePathStrings));
 
-		// Last chance to cancel...
-		if (monitor != null && monitor.isCanceled())
-		{
-			return Status.CANCEL_STATUS;
-		}
-
 		// Now create a new temporary list so we can build it up...
 		Map<IPath, ChangedFile> newChangedFiles = new HashMap<IPath, ChangedFile>();
 
 		// Schedule all the jobs
-		MultiStatus errors = new MultiStatus(GitPlugin.PLUGIN_ID, 1,
-				"Errors occurred while grabbing changed file listings", null); //$NON-NLS-1$
 		try
 		{
 			if (es.isShutdown())
 			{
-				return Status.CANCEL_STATUS;
+				return null;
 			}
 			List<Future<Map<IPath, ChangedFile>>> futures = es.invokeAll(jobs);
 
@@ -270,60 +403,204 @@ public class GitIndex
 		{
 			IdeLog.logWarning(GitPlugin.getDefault(), e);
 		}
+		return newChangedFiles;
+	}
 
-		// Copy the last full list of changed files we built up on refresh. Used to pass along the delta
-		// FIXME I think the values here may have already changed! I saw a file that had staged changes but no unstaged
-		// prior to commit
-		// but here it showed true for both (which should have only gotten modified by a pre-commit hook)
-		Collection<ChangedFile> preRefresh;
-		synchronized (this.changedFilesLock)
+	/**
+	 * Lists the changed files with a single <code>git status --porcelain=v2</code>, parsing its output as it is
+	 * produced.
+	 * 
+	 * @param portablePathStrings
+	 * @param errors
+	 * @return the changed files, or null if git status failed
+	 */
+	private Map<IPath, ChangedFile> readStatus(Set<String> portablePathStrings, MultiStatus errors)
+	{
+		List<String> args = CollectionsUtil.newList("status", "--porcelain=v2", "-z", "--untracked-files=all"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		if (!CollectionsUtil.isEmpty(portablePathStrings))
 		{
-			// Make a copy of the changed file listing, pre-refresh
-			if (this.changedFiles != null)
+			args.add("--"); //$NON-NLS-1$
+			args.addAll(portablePathStrings);
+		}
+
+		// git status rewrites the index when it refreshes the stat info of the entries, just like update-index
+		synchronized (this)
+		{
+			repository.forceWrite();
+			Process p = null;
+			try
 			{
-				preRefresh = new ArrayList<ChangedFile>(this.changedFiles.size());
-				for (ChangedFile file : this.changedFiles)
+				p = repository.getGitExecutable().run(repository.workingDirectory(),
+						args.toArray(new String[args.size()]));
+				// drain stderr as we go, so git can't block on a full pipe while we read stdout
+				InputStreamGobbler stderr = new InputStreamGobbler(p.getErrorStream(), "\n", IOUtil.UTF_8); //$NON-NLS-1$
+				stderr.start();
+				Map<IPath, ChangedFile> result = new GitStatusParser(repository, new BufferedInputStream(
+						p.getInputStream())).parse();
+				int exitCode = p.waitFor();
+				stderr.join();
+				if (exitCode != 0)
 				{
-					preRefresh.add(file.clone());
+					errors.merge(new Status(IStatus.ERROR, GitPlugin.getPluginId(), exitCode, stderr.getResult(), null));
+					return null;
 				}
+				return result;
 			}
-			else
+			catch (Exception e)
 			{
-				preRefresh = new ArrayList<ChangedFile>(0);
+				errors.merge(new Status(IStatus.ERROR, GitPlugin.getPluginId(), e.getMessage(), e));
+				return null;
 			}
+			finally
+			{
+				if (p != null)
+				{
+					p.destroy();
+				}
+				repository.exitWriteProcess();
+			}
+		}
+	}
 
-			// Now wipe any existing ChangedFile entries for any of the filePaths and add the ones we generated in
-			// dictionary
-			if (CollectionsUtil.isEmpty(filePaths))
+	/**
+	 * Returns whether the git executable supports <code>git status --porcelain=v2</code>, which lists staged, unstaged
+	 * and untracked files in one go.
+	 * 
+	 * @return
+	 */
+	private synchronized boolean supportsPorcelainV2()
+	{
+		if (porcelainV2 == null)
+		{
+			porcelainV2 = repository.getGitExecutable().version().compareTo(PORCELAIN_V2_VERSION) >= 0;
+		}
+		return porcelainV2;
+	}
+
+	/**
+	 * Returns the current state of the specified paths, keyed by their portable string.
+	 * 
+	 * @param filePaths
+	 * @return the stamps, or null for a full refresh
+	 */
+	private Map<String, long[]> stampPaths(Collection<IPath> filePaths)
+	{
+		if (CollectionsUtil.isEmpty(filePaths))
+		{
+			return null;
+		}
+		Map<String, long[]> stamps = new HashMap<String, long[]>(filePaths.size());
+		IPath workingDirectory = workingDirectory();
+		for (IPath path : filePaths)
+		{
+			stamps.put(path.toPortableString(), stamp(workingDirectory.append(path).toFile()));
+		}
+		return stamps;
+	}
+
+	/**
+	 * Returns true if the index hasn't changed since the last refresh and none of the specified paths have changed since
+	 * they were last refreshed. Full refreshes (no paths) are never considered unchanged, as any file could have
+	 * changed.
+	 * 
+	 * @param pathStamps
+	 *            the current state of the paths to refresh
+	 * @return
+	 */
+	private boolean isUnchangedSinceLastRefresh(Map<String, long[]> pathStamps)
+	{
+		if (pathStamps == null)
+		{
+			return false;
+		}
+		synchronized (changedFilesLock)
+		{
+			if (changedFiles == null)
 			{
-				this.changedFiles = new ArrayList<ChangedFile>();
+				return false;
 			}
-			else
+		}
+
+		long[] indexStamp = stamp(repository.gitFile(GitRepository.INDEX));
+		synchronized (refreshStamps)
+		{
+			if (!isSameStamp(indexStamp, lastIndexStamp))
 			{
-				this.changedFiles = CollectionsUtil.filter(this.changedFiles, new IFilter<ChangedFile>()
+				return false;
+			}
+			for (Map.Entry<String, long[]> entry : pathStamps.entrySet())
+			{
+				if (!isSameStamp(entry.getValue(), refreshStamps.get(entry.getKey())))
 				{
-					public boolean include(ChangedFile item)
-					{
-						return !portablePathStrings.contains(item.getRelativePath().toPortableString());
-					}
-				});
+					return false;
+				}
 			}
-			if (!CollectionsUtil.isEmpty(newChangedFiles))
+			return true;
+		}
+	}
+
+	/**
+	 * Records the state of the index and paths after a successful refresh, for the next check. The index is stamped
+	 * now, since the refresh itself may have rewritten it; the paths are stamped before git ran.
+	 * 
+	 * @param pathStamps
+	 *            the state of the refreshed paths before the refresh, or null for a full refresh
+	 */
+	private void recordRefreshStamps(Map<String, long[]> pathStamps)
+	{
+		long[] indexStamp = stamp(repository.gitFile(GitRepository.INDEX));
+		synchronized (refreshStamps)
+		{
+			if (!isSameStamp(indexStamp, lastIndexStamp))
 			{
-				this.changedFiles.addAll(newChangedFiles.values());
+				refreshStamps.clear();
+				lastIndexStamp = indexStamp;
+			}
+			if (pathStamps != null)
+			{
+				refreshStamps.putAll(pathStamps);
+			}
+			if (refreshStamps.size() > MAX_REFRESH_STAMPS)
+			{
+				// Keep memory bounded, we'll just refresh those paths again next time
+				refreshStamps.clear();
 			}
 		}
+	}
 
-		// Don't hold onto temp list in memory!
-		newChangedFiles = null;
+	/**
+	 * Forget the recorded state of the index and paths, so the next refresh runs. Used when a refresh fails.
+	 */
+	private void forgetRefreshStamps()
+	{
+		synchronized (refreshStamps)
+		{
+			refreshStamps.clear();
+			lastIndexStamp = null;
+		}
+	}
 
-		postIndexChange(preRefresh, this.changedFiles);
-		sub.done();
-		if (!errors.isOK())
+	/**
+	 * Returns the modification time and size of a file, or null if it was modified so recently that a later change
+	 * might not alter its modification time (file systems may only have a 1 or 2 second resolution).
+	 * 
+	 * @param file
+	 * @return
+	 */
+	private static long[] stamp(File file)
+	{
+		// both are 0 if the file doesn't exist
+		long lastModified = file.lastModified();
+		if (System.currentTimeMillis() - lastModified < MODIFICATION_TIME_RESOLUTION)
 		{
-			return errors;
+			return null;
 		}
-		return Status.OK_STATUS;
+		return new long[] { lastModified, file.length() };
+	}
+
+	private static boolean isSameStamp(long[] stamp, long[] other)
+	{
+		return stamp != null && Arrays.equals(stamp, other);
 	}
 
 	private void postIndexChange(Collection<ChangedFile> preChangeFiles, Collection<ChangedFile> postChangeFiles)
@@ -34,6 +34,11 @@ class GitIndexRefreshJob extends Job
 	 */
 	private static final long UPDATE_DELAY = 200;
 
+	/**
+	 * Once more paths than this are waiting to be refreshed, we refresh everything instead.
+	 */
+	private static final int MAX_PATH_REQUESTS = 250;
+
 	/**
 	 * List of refresh requests. This basically just serves to queue up all requests.
 	 */
@@ -136,10 +141,14 @@ class GitIndexRefreshJob extends Job
 		{
 			return;
 		}
-		// TODO If the requests grow large enough, just flip the refreshAll flag?
 		synchronized (fRequests)
 		{
 			fRequests.addAll(paths);
+			if (fRequests.size() > MAX_PATH_REQUESTS)
+			{
+				// A single unrestricted status is cheaper than passing this many paths (and avoids command line limits)
+				refreshAll.set(true);
+			}
 		}
 		schedule(UPDATE_DELAY);
 	}
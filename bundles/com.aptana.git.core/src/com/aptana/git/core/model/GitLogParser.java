@@ -0,0 +1,375 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.git.core.GitPlugin;
+import com.aptana.git.core.IDebugScopes;
+
+/**
+ * Reads the output of <code>git log -z</code> using {@link #FORMAT} (or {@link #LEGACY_FORMAT} for gits older than
+ * 1.7.3) one commit at a time. Fields are read straight from the bytes of the stream into a single reused buffer, and
+ * the author names and emails are shared between all the commits read by the same parser, since a long history has
+ * only a handful of distinct authors.
+ */
+class GitLogParser
+{
+	/**
+	 * The pretty formats we know how to read. The sign (%m) is appended when the rev specifier uses --left-right.
+	 */
+	static final String FORMAT = "%H\01%e\01%an\01%ae\01%B\01%P\01%at"; //$NON-NLS-1$
+	static final String LEGACY_FORMAT = "%H\01%e\01%an\01%ae\01%s\01%b\01%P\01%at"; //$NON-NLS-1$
+	static final String SIGN_FORMAT = "\01%m"; //$NON-NLS-1$
+
+	private static final int FIELD_SEPARATOR = 1;
+	private static final int RECORD_SEPARATOR = 0;
+	private static final int END_OF_STREAM = -1;
+
+	/**
+	 * Length of a SHA plus the space separating it from the next parent
+	 */
+	private static final int PARENT_LENGTH = 41;
+
+	/**
+	 * Once this many distinct authors and emails have been seen we stop remembering new ones.
+	 */
+	private static final int MAX_INTERNED_STRINGS = 10000;
+
+	private final GitRepository repository;
+	private final InputStream stream;
+	private final boolean raw;
+	private final boolean showSign;
+	private final Map<String, String> strings;
+
+	private byte[] buffer = new byte[1024];
+	private int length;
+	private int terminator;
+
+	/**
+	 * GitLogParser
+	 * 
+	 * @param repository
+	 *            The repository the commits belong to
+	 * @param stream
+	 *            The output of git log. Reads are single bytes, so callers should buffer process streams.
+	 * @param raw
+	 *            Whether the output was produced with {@link #FORMAT} rather than {@link #LEGACY_FORMAT}
+	 * @param showSign
+	 *            Whether the output includes the left/right sign of each commit
+	 */
+	GitLogParser(GitRepository repository, InputStream stream, boolean raw, boolean showSign)
+	{
+		this(repository, stream, raw, showSign, new HashMap<String, String>());
+	}
+
+	/**
+	 * GitLogParser
+	 * 
+	 * @param repository
+	 * @param stream
+	 * @param raw
+	 * @param showSign
+	 * @param strings
+	 *            The author names and emails already seen, to share them with another parser
+	 */
+	GitLogParser(GitRepository repository, InputStream stream, boolean raw, boolean showSign,
+			Map<String, String> strings)
+	{
+		this.repository = repository;
+		this.stream = stream;
+		this.raw = raw;
+		this.showSign = showSign;
+		this.strings = strings;
+	}
+
+	/**
+	 * Returns the pretty format argument matching the way the parser reads the output
+	 * 
+	 * @param raw
+	 * @param showSign
+	 * @return
+	 */
+	static String formatArgument(boolean raw, boolean showSign)
+	{
+		String format = raw ? FORMAT : LEGACY_FORMAT;
+		if (showSign)
+		{
+			format += SIGN_FORMAT;
+		}
+		return "--pretty=format:" + format; //$NON-NLS-1$
+	}
+
+	/**
+	 * Read the next commit
+	 * 
+	 * @return the commit, or null at the end of the stream
+	 * @throws IOException
+	 */
+	GitCommit next() throws IOException
+	{
+		while (true)
+		{
+			if (!readField(FIELD_SEPARATOR) && length == 0)
+			{
+				return null;
+			}
+			if (terminator != FIELD_SEPARATOR)
+			{
+				malformed();
+				continue;
+			}
+
+			GitCommit commit = readCommit(ascii());
+			if (commit != null)
+			{
+				return commit;
+			}
+		}
+	}
+
+	/**
+	 * Read the remaining fields of a commit
+	 * 
+	 * @param sha
+	 * @return the commit, or null if the record is malformed
+	 * @throws IOException
+	 */
+	private GitCommit readCommit(String sha) throws IOException
+	{
+		if (!readField(FIELD_SEPARATOR) || terminator != FIELD_SEPARATOR)
+		{
+			return malformed();
+		}
+		String encoding = (length == 0) ? IOUtil.UTF_8 : ascii();
+
+		String[] fields = new String[raw ? 3 : 4];
+		for (int i = 0; i < fields.length; i++)
+		{
+			if (!readField(FIELD_SEPARATOR) || terminator != FIELD_SEPARATOR)
+			{
+				return malformed();
+			}
+			fields[i] = decode(encoding);
+		}
+
+		if (!readField(FIELD_SEPARATOR) || terminator != FIELD_SEPARATOR)
+		{
+			return malformed();
+		}
+		List<String> parents = parents();
+
+		readField(showSign ? FIELD_SEPARATOR : RECORD_SEPARATOR);
+		if (showSign && terminator != FIELD_SEPARATOR)
+		{
+			return malformed();
+		}
+		long time = timestamp();
+
+		if (showSign)
+		{
+			readField(RECORD_SEPARATOR);
+			char sign = (length == 1) ? (char) buffer[0] : 0;
+			if (sign != '>' && sign != '<' && sign != '^' && sign != '-')
+			{
+				IdeLog.logError(GitPlugin.getDefault(), "Error loading commits: sign not correct", IDebugScopes.DEBUG); //$NON-NLS-1$
+			}
+		}
+
+		if (parents == null || time == -1)
+		{
+			// already logged
+			return null;
+		}
+
+		GitCommit commit = new GitCommit(repository, sha);
+		if (!parents.isEmpty())
+		{
+			commit.setParents(parents);
+		}
+		if (raw)
+		{
+			commit.setSubject(firstLine(fields[2]));
+			commit.setComment(fields[2]);
+		}
+		else
+		{
+			commit.setSubject(fields[2]);
+			commit.setComment(fields[3]);
+		}
+		commit.setAuthor(intern(fields[0]));
+		commit.setAuthorEmail(intern(fields[1]));
+		commit.setTimestamp(time);
+		return commit;
+	}
+
+	/**
+	 * Log and skip the remainder of a record that doesn't match the format
+	 * 
+	 * @return null
+	 * @throws IOException
+	 */
+	private GitCommit malformed() throws IOException
+	{
+		IdeLog.logError(GitPlugin.getDefault(), MessageFormat.format("Unexpected git log record: {0}", ascii()), //$NON-NLS-1$
+				IDebugScopes.DEBUG);
+		while (terminator != RECORD_SEPARATOR && terminator != END_OF_STREAM)
+		{
+			readField(RECORD_SEPARATOR);
+		}
+		return null;
+	}
+
+	/**
+	 * Read up to the next terminator (or the end of a record) into the buffer
+	 * 
+	 * @param c
+	 *            The terminator
+	 * @return false if the end of the stream was reached
+	 * @throws IOException
+	 */
+	private boolean readField(int c) throws IOException
+	{
+		length = 0;
+		while (true)
+		{
+			int b = stream.read();
+			if (b == c || b == RECORD_SEPARATOR || b == END_OF_STREAM)
+			{
+				terminator = b;
+				return b != END_OF_STREAM;
+			}
+			if (length == buffer.length)
+			{
+				byte[] grown = new byte[buffer.length * 2];
+				System.arraycopy(buffer, 0, grown, 0, length);
+				buffer = grown;
+			}
+			buffer[length++] = (byte) b;
+		}
+	}
+
+	private String ascii()
+	{
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++)
+		{
+			chars[i] = (char) (buffer[i] & 0xff);
+		}
+		return new String(chars);
+	}
+
+	private String decode(String encoding)
+	{
+		if (length == 0)
+		{
+			return StringUtil.EMPTY;
+		}
+		try
+		{
+			return new String(buffer, 0, length, encoding);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			return new String(buffer, 0, length);
+		}
+	}
+
+	private String intern(String value)
+	{
+		String existing = strings.get(value);
+		if (existing != null)
+		{
+			return existing;
+		}
+		if (strings.size() < MAX_INTERNED_STRINGS)
+		{
+			strings.put(value, value);
+		}
+		return value;
+	}
+
+	private String firstLine(String body)
+	{
+		for (int i = 0; i < body.length(); i++)
+		{
+			char c = body.charAt(i);
+			if (c == '\n' || c == '\r')
+			{
+				return body.substring(0, i);
+			}
+		}
+		return body;
+	}
+
+	/**
+	 * Split the space separated parent SHAs in the buffer
+	 * 
+	 * @return the parents, or null if they're malformed
+	 */
+	private List<String> parents()
+	{
+		if (length == 0)
+		{
+			return new ArrayList<String>(0);
+		}
+		if ((length + 1) % PARENT_LENGTH != 0)
+		{
+			IdeLog.logError(GitPlugin.getDefault(), MessageFormat.format("invalid parents: {0}", length), //$NON-NLS-1$
+					IDebugScopes.DEBUG);
+			return null;
+		}
+		String parentString = ascii();
+		int nParents = (length + 1) / PARENT_LENGTH;
+		List<String> parents = new ArrayList<String>(nParents);
+		for (int parentIndex = 0; parentIndex < nParents; ++parentIndex)
+		{
+			int stringIndex = parentIndex * PARENT_LENGTH;
+			parents.add(parentString.substring(stringIndex, stringIndex + PARENT_LENGTH - 1));
+		}
+		return parents;
+	}
+
+	/**
+	 * Parse the seconds since the epoch in the buffer
+	 * 
+	 * @return the time in ms, or -1 if it's malformed
+	 */
+	private long timestamp()
+	{
+		if (length == 0)
+		{
+			IdeLog.logError(GitPlugin.getDefault(), "Error loading commits: missing timestamp", IDebugScopes.DEBUG); //$NON-NLS-1$
+			return -1;
+		}
+		long seconds = 0;
+		for (int i = 0; i < length; i++)
+		{
+			int digit = buffer[i] - '0';
+			if (digit < 0 || digit > 9)
+			{
+				IdeLog.logError(GitPlugin.getDefault(),
+						MessageFormat.format("Error loading commits: invalid timestamp {0}", ascii()), IDebugScopes.DEBUG); //$NON-NLS-1$
+				return -1;
+			}
+			seconds = seconds * 10 + digit;
+		}
+		// HACK for some reason my times are 5 minutes off the console/GitX. Adjust 5 mins
+		return seconds * 1000 + (5 * 60 * 1000);
+	}
+}
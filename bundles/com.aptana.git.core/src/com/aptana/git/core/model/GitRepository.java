@@ -179,7 +179,7 @@ public class GitRepository
 	 * The most important file in git. This holds the current file state. When this changes, the state of files in the
 	 * repo has changed.
 	 */
-	private static final String INDEX = "index"; //$NON-NLS-1$
+	static final String INDEX = "index"; //$NON-NLS-1$
 
 	/**
 	 * File created prior to merges (which happen as part of pull, which is just fetch + merge).
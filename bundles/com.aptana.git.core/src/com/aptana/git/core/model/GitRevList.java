@@ -7,27 +7,21 @@
  */
 package com.aptana.git.core.model;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
-import org.osgi.framework.Version;
 
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
-import com.aptana.core.util.IOUtil;
-import com.aptana.core.util.StringUtil;
 import com.aptana.git.core.GitPlugin;
-import com.aptana.git.core.IDebugScopes;
 
 public class GitRevList
 {
@@ -36,6 +30,16 @@ public class GitRevList
 
 	private static final int NO_LIMIT = -1;
 
+	/**
+	 * Number of commits read between updates of {@link #getCommits()} while walking
+	 */
+	private static final int PAGE_SIZE = 1000;
+
+	/**
+	 * Directory under the plugin state location that walked pages are cached in
+	 */
+	private static final String HISTORY_CACHE = "history"; //$NON-NLS-1$
+
 	public GitRevList(GitRepository repo)
 	{
 		repository = repo;
@@ -70,204 +74,68 @@ public class GitRevList
 		SubMonitor subMonitor = SubMonitor.convert(monitor, units);
 		long start = System.currentTimeMillis();
 		List<GitCommit> revisions = new ArrayList<GitCommit>();
-		GitExecutable gitExe = GitExecutable.instance();
-		Version v = gitExe.version();
-		// Git format doesn't support %B until 1.7.3+
-		boolean useRaw = false;
-		if (v.compareTo(Version.parseVersion("1.7.3")) >= 0) //$NON-NLS-1$
-		{
-			useRaw = true;
-		}
-		// @formatter:off
-		List<String> arguments = CollectionsUtil.newList(
-			"log", //$NON-NLS-1$
-			"-z", //$NON-NLS-1$
-			"--early-output", //$NON-NLS-1$
-			"--topo-order", //$NON-NLS-1$
-			"--children"); //$NON-NLS-1$
-		// @formatter:on
-		if (max > 0)
-		{
-			arguments.add("-" + max); // only last N revs //$NON-NLS-1$
-		}
-
-		String formatString;
-		if (useRaw)
-		{
-			formatString = "--pretty=format:%H\01%e\01%an\01%ae\01%B\01%P\01%at"; //$NON-NLS-1$
-		}
-		else
-		{
-			formatString = "--pretty=format:%H\01%e\01%an\01%ae\01%s\01%b\01%P\01%at"; //$NON-NLS-1$
-		}
-		boolean showSign = ((rev == null) ? false : rev.hasLeftRight());
-		if (showSign)
-		{
-			formatString += "\01%m"; //$NON-NLS-1$
-		}
-		arguments.add(formatString);
-
-		if (rev == null)
-		{
-			arguments.add(GitRepository.HEAD);
-		}
-		else
-		{
-			arguments.addAll(rev.parameters());
-		}
-
-		if (subMonitor.isCanceled())
-		{
-			return Status.CANCEL_STATUS;
-		}
-
-		if (!repository.enterRead())
-		{
-			// Bail early and report a failure to acquire the lock on the repo
-			return new Status(
-					IStatus.ERROR,
-					GitPlugin.getPluginId(),
-					"Failed to acquire read lock on the git repository. A long-running operation that writes to the repo is running (i.e. pull). Please ensure that has finished before trying again."); //$NON-NLS-1$
-		}
+		GitRevisionPager pager = new GitRevisionPager(repository, rev, PAGE_SIZE, max, cacheLocation());
 
 		try
 		{
-			// FIXME Move this into GitRepository, so we can set up lock/monitor on it!
-			Process p = gitExe.run(repository.workingDirectory(), arguments.toArray(new String[arguments.size()]));
-			InputStream stream = p.getInputStream();
-
-			int num = 0;
-			while (true)
+			while (pager.hasMore())
 			{
 				if (subMonitor.isCanceled())
 				{
 					return Status.CANCEL_STATUS;
 				}
 
-				String sha = getline(stream, '\1');
-				if (sha == null)
-				{
-					break;
-				}
-
-				// We reached the end of some temporary output. Show what we have
-				// until now, and then start again. The sha of the next thing is still
-				// in this buffer. So, we use a substring of current input.
-				if (sha.charAt(1) == 'i') // Matches 'Final output'
-				{
-					num = 0;
-					setCommits(revisions);
-					revisions = new ArrayList<GitCommit>();
-
-					// If the length is < 40, then there are no commits.. quit now
-					if (sha.length() < 40)
-					{
-						break;
-					}
-
-					int startIndex = sha.length() - 40;
-					sha = sha.substring(startIndex, startIndex + 40);
-				}
-
-				String encoding = getline(stream, '\1', IOUtil.UTF_8);
-				GitCommit newCommit = new GitCommit(repository, sha);
-
-				String author = getline(stream, '\1', encoding);
-				String authorEmail = getline(stream, '\1', encoding);
-
-				String subject;
-				String body;
-				if (useRaw)
-				{
-					body = getline(stream, '\1', encoding);
-					subject = StringUtil.LINE_SPLITTER.split(body)[0];
-				}
-				else
-				{
-					subject = getline(stream, '\1', encoding);
-					body = getline(stream, '\1', encoding);
-				}
-
-				String parentString = getline(stream, '\1');
-				if (parentString != null && parentString.length() != 0)
-				{
-					if (((parentString.length() + 1) % 41) != 0)
-					{
-						IdeLog.logError(GitPlugin.getDefault(),
-								MessageFormat.format("invalid parents: {0}", parentString.length()), IDebugScopes.DEBUG); //$NON-NLS-1$
-						continue;
-					}
-					int nParents = (parentString.length() + 1) / 41;
-					List<String> parents = new ArrayList<String>(nParents);
-					for (int parentIndex = 0; parentIndex < nParents; ++parentIndex)
-					{
-						int stringIndex = parentIndex * 41;
-						parents.add(parentString.substring(stringIndex, stringIndex + 40));
-					}
-
-					newCommit.setParents(parents);
-				}
-
-				long time = readLong(stream); // read 10 chars as a string and parse into a long
-
-				newCommit.setSubject(subject);
-				newCommit.setComment(body);
-				newCommit.setAuthor(author);
-				newCommit.setAuthorEmail(authorEmail);
-				newCommit.setTimestamp(time);
-
-				if (showSign)
-				{
-					stream.read(); // Remove separator
-					char c = (char) stream.read();
-					if (c != '>' && c != '<' && c != '^' && c != '-')
-					{
-						IdeLog.logError(GitPlugin.getDefault(),
-								"Error loading commits: sign not correct", IDebugScopes.DEBUG); //$NON-NLS-1$
-						// newCommit.setSign(c);
-					}
-
-				}
-
-				int read = stream.read();
-				if (read != 0 && read != -1)
-				{
-					IdeLog.logError(GitPlugin.getDefault(), "Error", IDebugScopes.DEBUG); //$NON-NLS-1$
-				}
-
-				revisions.add(newCommit);
-
-				subMonitor.worked(1);
-
-				if (read == -1)
-				{
-					break;
-				}
-
-				if (++num % 1000 == 0)
-				{
-					setCommits(revisions);
-				}
+				List<GitCommit> page = pager.nextPage(subMonitor.newChild(PAGE_SIZE));
+				revisions.addAll(page);
+				// Show what we have until now
+				setCommits(revisions);
+			}
+			if (subMonitor.isCanceled())
+			{
+				return Status.CANCEL_STATUS;
 			}
 
 			long duration = System.currentTimeMillis() - start;
-			logInfo(MessageFormat.format("Loaded {0} commits in {1} ms", num, duration)); //$NON-NLS-1$
+			logInfo(MessageFormat.format("Loaded {0} commits in {1} ms", revisions.size(), duration)); //$NON-NLS-1$
 			// Make sure the commits are stored before exiting.
 			setCommits(revisions, true);
-			p.waitFor();
 		}
-		catch (Exception e)
+		catch (CoreException e)
 		{
-			return new Status(IStatus.ERROR, GitPlugin.getPluginId(), e.getMessage(), e);
+			return e.getStatus();
 		}
 		finally
 		{
-			repository.exitRead();
+			pager.close();
 			subMonitor.done();
 		}
 		return Status.OK_STATUS;
 	}
 
+	/**
+	 * Returns a pager that walks the revision one page of commits at a time, in reverse chronological order, rather
+	 * than collecting all of them. Pages already walked for the same ref SHAs are read back from disk. The pager must be
+	 * closed if the caller stops before reaching the end.
+	 * 
+	 * @param rev
+	 * @param pageSize
+	 * @return
+	 */
+	public GitRevisionPager pages(GitRevSpecifier rev, int pageSize)
+	{
+		return new GitRevisionPager(repository, rev, pageSize, NO_LIMIT, cacheLocation());
+	}
+
+	private IPath cacheLocation()
+	{
+		GitPlugin plugin = GitPlugin.getDefault();
+		if (plugin == null)
+		{
+			return null;
+		}
+		return plugin.getStateLocation().append(HISTORY_CACHE);
+	}
+
 	private void logInfo(String string)
 	{
 		if (GitPlugin.getDefault() != null)
@@ -280,35 +148,6 @@ public class GitRevList
 		}
 	}
 
-	private long readLong(InputStream stream)
-	{
-		StringBuilder builder = new StringBuilder();
-		while (true)
-		{
-			try
-			{
-				int read = stream.read();
-				if (read == -1)
-				{
-					break;
-				}
-				builder.append((char) read);
-				if (builder.length() == 10)
-				{
-					break;
-				}
-			}
-			catch (IOException e)
-			{
-				break;
-			}
-		}
-		// Since we get time in seconds since epoch, not ms we need to multiply by 1000
-		long time = Long.parseLong(builder.toString()) * 1000;
-		// HACK for some reason my times are 5 minutes off the console/GitX. Adjust 5 mins
-		return time + (5 * 60 * 1000);
-	}
-
 	private void setCommits(List<GitCommit> revisions)
 	{
 		setCommits(revisions, false);
@@ -332,53 +171,6 @@ public class GitRevList
 		}
 	}
 
-	private String getline(InputStream stream, char c)
-	{
-		byte[] bytes = read(stream, c);
-		if (bytes == null || bytes.length == 0)
-		{
-			return null;
-		}
-		return new String(bytes);
-	}
-
-	private String getline(InputStream stream, char c, String encoding) throws UnsupportedEncodingException
-	{
-		if (encoding == null || encoding.length() == 0)
-		{
-			return getline(stream, c);
-		}
-		byte[] bytes = read(stream, c);
-		return new String(bytes, encoding);
-	}
-
-	private byte[] read(InputStream stream, char c)
-	{
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		while (true)
-		{
-			try
-			{
-				int read = stream.read();
-				if (read == -1)
-				{
-					break;
-				}
-				char readC = (char) read;
-				if (readC == c)
-				{
-					break;
-				}
-				out.write(read);
-			}
-			catch (IOException e)
-			{
-				break;
-			}
-		}
-		return out.toByteArray();
-	}
-
 	public List<GitCommit> getCommits()
 	{
 		return Collections.unmodifiableList(CollectionsUtil.getListValue(this.commits));
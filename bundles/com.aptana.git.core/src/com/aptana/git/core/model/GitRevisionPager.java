@@ -0,0 +1,530 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.osgi.framework.Version;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.FileUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.git.core.GitPlugin;
+import com.aptana.git.core.IDebugScopes;
+
+/**
+ * Walks the history of a rev specifier one page of commits at a time, in reverse chronological (topological) order.
+ * A single git log process is streamed for the whole walk, so only the commits of the requested pages are ever built.
+ * <p>
+ * When given a cache location, the raw git output of every page read is written under a directory named after the
+ * SHAs the specifier currently resolves to. Walking the same history again reads those pages back from disk and only
+ * starts git, skipping the cached commits, once it runs past them. Moving a ref changes its SHA and so starts a new
+ * cache.
+ * <p>
+ * The repository's read lock is held while the git process is running. Callers must {@link #close()} the pager if
+ * they stop before reaching the end, or {@link #pause()} it if more pages may be asked for later.
+ */
+public class GitRevisionPager
+{
+	/**
+	 * Number of histories kept in the cache location. The least recently walked are removed first.
+	 */
+	private static final int MAX_CACHED_HISTORIES = 16;
+
+	/**
+	 * Git format doesn't support %B until 1.7.3+
+	 */
+	private static final Version MIN_RAW_VERSION = Version.parseVersion("1.7.3"); //$NON-NLS-1$
+
+	private static final String PAGE_EXTENSION = ".page"; //$NON-NLS-1$
+	private static final String COMPLETE_MARKER = "complete"; //$NON-NLS-1$
+
+	private final GitRepository repository;
+	private final GitRevSpecifier rev;
+	private final int pageSize;
+	private final int limit;
+	private final boolean raw;
+	private final boolean showSign;
+	private final Map<String, String> strings = new HashMap<String, String>();
+
+	private File cacheDir;
+	private int pageIndex;
+	private int count;
+	private boolean done;
+
+	private Process process;
+	private RecordingInputStream stream;
+	private GitLogParser parser;
+	private boolean locked;
+
+	/**
+	 * GitRevisionPager
+	 * 
+	 * @param repository
+	 * @param rev
+	 *            The rev specifier to walk. null walks HEAD.
+	 * @param pageSize
+	 *            The number of commits in each page
+	 * @param limit
+	 *            The maximum number of commits to walk, -1 for no limit. Limited walks aren't cached.
+	 * @param cacheLocation
+	 *            The directory to cache pages in, or null to always run git
+	 */
+	GitRevisionPager(GitRepository repository, GitRevSpecifier rev, int pageSize, int limit, IPath cacheLocation)
+	{
+		this.repository = repository;
+		this.rev = rev;
+		this.pageSize = pageSize;
+		this.limit = limit;
+		this.raw = GitExecutable.instance().version().compareTo(MIN_RAW_VERSION) >= 0;
+		this.showSign = (rev != null) && rev.hasLeftRight();
+		if (cacheLocation != null && limit <= 0)
+		{
+			this.cacheDir = cacheDir(cacheLocation);
+		}
+	}
+
+	/**
+	 * Returns whether there may be more commits to read
+	 * 
+	 * @return
+	 */
+	public synchronized boolean hasMore()
+	{
+		return !done;
+	}
+
+	/**
+	 * Returns the number of commits read so far
+	 * 
+	 * @return
+	 */
+	public synchronized int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Read the next page of commits
+	 * 
+	 * @param monitor
+	 * @return the commits, empty once the end of the history is reached
+	 * @throws CoreException
+	 *             if the repository can't be locked or git fails. The pager is closed.
+	 */
+	public synchronized List<GitCommit> nextPage(IProgressMonitor monitor) throws CoreException
+	{
+		int size = (limit > 0) ? Math.min(pageSize, limit - count) : pageSize;
+		if (done || size <= 0)
+		{
+			close();
+			return new ArrayList<GitCommit>(0);
+		}
+
+		SubMonitor subMonitor = SubMonitor.convert(monitor, size);
+		try
+		{
+			List<GitCommit> page = readCachedPage();
+			if (page == null)
+			{
+				page = readPage(size, subMonitor);
+			}
+			count += page.size();
+			pageIndex++;
+			if (page.size() < size)
+			{
+				close();
+			}
+			return page;
+		}
+		catch (IOException e)
+		{
+			close();
+			throw new CoreException(new Status(IStatus.ERROR, GitPlugin.getPluginId(), e.getMessage(), e));
+		}
+		finally
+		{
+			subMonitor.done();
+		}
+	}
+
+	/**
+	 * Stop the git process, if running, and release the repository
+	 */
+	public synchronized void close()
+	{
+		done = true;
+		stopProcess();
+	}
+
+	/**
+	 * Stop the git process, if running, and release the repository without ending the walk. The next page is read from
+	 * the cache, or from a new git process that skips the commits read so far.
+	 */
+	public synchronized void pause()
+	{
+		stopProcess();
+	}
+
+	/**
+	 * Read the current page from the cache
+	 * 
+	 * @return the commits, or null if the page isn't cached
+	 * @throws IOException
+	 */
+	private List<GitCommit> readCachedPage() throws IOException
+	{
+		if (cacheDir == null || process != null)
+		{
+			return null;
+		}
+
+		File pageFile = pageFile(pageIndex);
+		if (!pageFile.isFile())
+		{
+			if (new File(cacheDir, COMPLETE_MARKER).isFile())
+			{
+				// the whole history has been read, and this is past its end
+				return new ArrayList<GitCommit>(0);
+			}
+			return null;
+		}
+
+		InputStream in = new BufferedInputStream(new FileInputStream(pageFile));
+		try
+		{
+			List<GitCommit> page = new ArrayList<GitCommit>(pageSize);
+			GitLogParser fileParser = new GitLogParser(repository, in, raw, showSign, strings);
+			GitCommit commit;
+			while ((commit = fileParser.next()) != null)
+			{
+				page.add(commit);
+			}
+			if (page.size() < pageSize && !new File(cacheDir, COMPLETE_MARKER).isFile())
+			{
+				// a partial page without the marker can't be trusted, read it from git again
+				return null;
+			}
+			return page;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Read the current page from git, starting the process if needed
+	 * 
+	 * @param size
+	 * @param monitor
+	 * @return
+	 * @throws IOException
+	 * @throws CoreException
+	 */
+	private List<GitCommit> readPage(int size, SubMonitor monitor) throws IOException, CoreException
+	{
+		if (process == null)
+		{
+			startProcess();
+		}
+
+		List<GitCommit> page = new ArrayList<GitCommit>(size);
+		stream.startRecording();
+		while (page.size() < size)
+		{
+			if (monitor.isCanceled())
+			{
+				// the page is incomplete, so don't cache it
+				close();
+				return page;
+			}
+			GitCommit commit = parser.next();
+			if (commit == null)
+			{
+				break;
+			}
+			page.add(commit);
+			monitor.worked(1);
+		}
+		byte[] bytes = stream.stopRecording();
+
+		boolean complete = page.size() < size;
+		if (complete)
+		{
+			waitForProcess();
+		}
+		if (cacheDir != null)
+		{
+			writeCachedPage(bytes, complete);
+		}
+		return page;
+	}
+
+	private void startProcess() throws CoreException
+	{
+		List<String> arguments = new ArrayList<String>();
+		arguments.add("log"); //$NON-NLS-1$
+		arguments.add("-z"); //$NON-NLS-1$
+		arguments.add("--topo-order"); //$NON-NLS-1$
+		arguments.add("--children"); //$NON-NLS-1$
+		if (limit > 0)
+		{
+			arguments.add("-" + (limit - count)); // only last N revs //$NON-NLS-1$
+		}
+		if (count > 0)
+		{
+			// resume after the cached pages
+			arguments.add("--skip=" + count); //$NON-NLS-1$
+		}
+		arguments.add(GitLogParser.formatArgument(raw, showSign));
+		if (rev == null)
+		{
+			arguments.add(GitRepository.HEAD);
+		}
+		else
+		{
+			arguments.addAll(rev.parameters());
+		}
+
+		if (!repository.enterRead())
+		{
+			// Bail early and report a failure to acquire the lock on the repo
+			throw new CoreException(
+					new Status(
+							IStatus.ERROR,
+							GitPlugin.getPluginId(),
+							"Failed to acquire read lock on the git repository. A long-running operation that writes to the repo is running (i.e. pull). Please ensure that has finished before trying again.")); //$NON-NLS-1$
+		}
+		locked = true;
+
+		try
+		{
+			// FIXME Move this into GitRepository, so we can set up lock/monitor on it!
+			process = GitExecutable.instance().run(repository.workingDirectory(),
+					arguments.toArray(new String[arguments.size()]));
+		}
+		catch (CoreException e)
+		{
+			stopProcess();
+			throw e;
+		}
+		stream = new RecordingInputStream(new BufferedInputStream(process.getInputStream()));
+		parser = new GitLogParser(repository, stream, raw, showSign, strings);
+	}
+
+	private void waitForProcess()
+	{
+		try
+		{
+			process.waitFor();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		stopProcess();
+	}
+
+	private void stopProcess()
+	{
+		if (process != null)
+		{
+			try
+			{
+				process.getInputStream().close();
+			}
+			catch (IOException e) // $codepro.audit.disable emptyCatchClause
+			{
+				// ignore
+			}
+			process.destroy();
+			process = null;
+			stream = null;
+			parser = null;
+		}
+		if (locked)
+		{
+			locked = false;
+			repository.exitRead();
+		}
+	}
+
+	/**
+	 * Returns the directory to cache the pages of this walk in
+	 * 
+	 * @param cacheLocation
+	 * @return the directory, or null if the specifier can't be resolved
+	 */
+	private File cacheDir(IPath cacheLocation)
+	{
+		List<String> parameters = (rev == null) ? Arrays.asList(GitRepository.HEAD) : rev.parameters();
+		List<String> arguments = new ArrayList<String>(parameters.size() + 1);
+		arguments.add("rev-parse"); //$NON-NLS-1$
+		arguments.addAll(parameters);
+		IStatus status = repository.execute(GitRepository.ReadWrite.READ,
+				arguments.toArray(new String[arguments.size()]));
+		if (status == null || !status.isOK())
+		{
+			return null;
+		}
+
+		// the SHAs the refs point to, along with anything else that changes the output
+		StringBuilder key = new StringBuilder();
+		key.append(repository.workingDirectory()).append('\n');
+		key.append(status.getMessage()).append('\n');
+		key.append(StringUtil.join(" ", parameters)).append('\n'); //$NON-NLS-1$
+		key.append(GitLogParser.formatArgument(raw, showSign)).append('\n');
+		key.append(pageSize);
+
+		File dir = cacheLocation.append(StringUtil.md5(key.toString())).toFile();
+		if (!dir.isDirectory())
+		{
+			if (!dir.mkdirs())
+			{
+				return null;
+			}
+			pruneCache(dir.getParentFile());
+		}
+		dir.setLastModified(System.currentTimeMillis());
+		return dir;
+	}
+
+	/**
+	 * Remove the least recently walked histories once there are too many
+	 * 
+	 * @param cacheLocation
+	 */
+	private void pruneCache(File cacheLocation)
+	{
+		File[] histories = cacheLocation.listFiles();
+		if (histories == null || histories.length <= MAX_CACHED_HISTORIES)
+		{
+			return;
+		}
+		Arrays.sort(histories, new Comparator<File>()
+		{
+			public int compare(File f1, File f2)
+			{
+				long diff = f1.lastModified() - f2.lastModified();
+				return (diff < 0) ? -1 : ((diff > 0) ? 1 : 0);
+			}
+		});
+		for (int i = 0; i < histories.length - MAX_CACHED_HISTORIES; i++)
+		{
+			FileUtil.deleteRecursively(histories[i]);
+		}
+	}
+
+	private File pageFile(int index)
+	{
+		return new File(cacheDir, index + PAGE_EXTENSION);
+	}
+
+	private void writeCachedPage(byte[] bytes, boolean complete)
+	{
+		// write to a temporary file, so an interrupted write never leaves a truncated page behind
+		File pageFile = pageFile(pageIndex);
+		File tmpFile = new File(cacheDir, pageIndex + PAGE_EXTENSION + ".tmp"); //$NON-NLS-1$
+		try
+		{
+			OutputStream out = new FileOutputStream(tmpFile);
+			try
+			{
+				out.write(bytes);
+			}
+			finally
+			{
+				out.close();
+			}
+			if (!tmpFile.renameTo(pageFile))
+			{
+				tmpFile.delete();
+				return;
+			}
+			if (complete)
+			{
+				new File(cacheDir, COMPLETE_MARKER).createNewFile();
+			}
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(GitPlugin.getDefault(),
+					MessageFormat.format("Failed to cache commit history in {0}", cacheDir), e, IDebugScopes.DEBUG); //$NON-NLS-1$
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * Keeps a copy of the bytes read while recording, so the raw output of a page can be cached as is
+	 */
+	private static class RecordingInputStream extends FilterInputStream
+	{
+		private ByteArrayOutputStream recording;
+
+		RecordingInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		void startRecording()
+		{
+			recording = new ByteArrayOutputStream();
+		}
+
+		byte[] stopRecording()
+		{
+			byte[] bytes = recording.toByteArray();
+			recording = null;
+			return bytes;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int b = super.read();
+			if (b != -1 && recording != null)
+			{
+				recording.write(b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			int read = super.read(b, off, len);
+			if (read > 0 && recording != null)
+			{
+				recording.write(b, off, read);
+			}
+			return read;
+		}
+	}
+}
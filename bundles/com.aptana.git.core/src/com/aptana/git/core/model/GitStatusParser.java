@@ -0,0 +1,294 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.IOUtil;
+import com.aptana.git.core.GitPlugin;
+import com.aptana.git.core.IDebugScopes;
+
+/**
+ * Reads the output of <code>git status --porcelain=v2 -z</code> straight into {@link ChangedFile}s, one NUL terminated
+ * record at a time, so the whole output is never held in memory. The resulting files match what the separate
+ * diff-index, diff-files and ls-files listings produced once merged: mode and SHA come from HEAD for files with staged
+ * changes and from the index otherwise.
+ */
+class GitStatusParser
+{
+	/**
+	 * Record types
+	 */
+	private static final char ORDINARY = '1';
+	private static final char RENAMED_OR_COPIED = '2';
+	private static final char UNMERGED = 'u';
+	private static final char UNTRACKED = '?';
+
+	/**
+	 * XY status codes
+	 */
+	private static final char UNMODIFIED = '.';
+	private static final char ADDED = 'A';
+	private static final char DELETED = 'D';
+	private static final char RENAMED = 'R';
+	private static final char COPIED = 'C';
+
+	private static final String NULL_MODE = "000000"; //$NON-NLS-1$
+	private static final String NULL_SHA = "0000000000000000000000000000000000000000"; //$NON-NLS-1$
+
+	/**
+	 * The number of space separated fields before the path in each record type
+	 */
+	private static final int ORDINARY_FIELDS = 8;
+	private static final int RENAMED_FIELDS = 9;
+	private static final int UNMERGED_FIELDS = 10;
+
+	private final GitRepository repository;
+	private final InputStream stream;
+	private byte[] buffer = new byte[256];
+
+	/**
+	 * GitStatusParser
+	 * 
+	 * @param repository
+	 *            The repository the changed files belong to
+	 * @param stream
+	 *            The output of git status
+	 */
+	GitStatusParser(GitRepository repository, InputStream stream)
+	{
+		this.repository = repository;
+		this.stream = stream;
+	}
+
+	/**
+	 * Read all of the records
+	 * 
+	 * @return the changed files keyed by their path relative to the working directory
+	 * @throws IOException
+	 */
+	Map<IPath, ChangedFile> parse() throws IOException
+	{
+		Map<IPath, ChangedFile> result = new HashMap<IPath, ChangedFile>();
+		String record;
+
+		while ((record = readRecord()) != null)
+		{
+			if (record.length() < 2)
+			{
+				continue;
+			}
+
+			switch (record.charAt(0))
+			{
+				case ORDINARY:
+					addTracked(result, record, ORDINARY_FIELDS);
+					break;
+
+				case RENAMED_OR_COPIED:
+					// the original path follows as a separate record
+					addRenamed(result, record, readRecord());
+					break;
+
+				case UNMERGED:
+					addUnmerged(result, record);
+					break;
+
+				case UNTRACKED:
+					IPath path = Path.fromPortableString(record.substring(2));
+					result.put(path, new ChangedFile(repository, path, ChangedFile.Status.NEW, null, null, false, true));
+					break;
+
+				default:
+					// headers and ignored files
+					break;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Add the changed files for a renamed or copied record. The new path is reported as added and, for a rename, the
+	 * original path as deleted, like diff-index without -M does.
+	 * 
+	 * @param result
+	 * @param record
+	 * @param originalPath
+	 */
+	private void addRenamed(Map<IPath, ChangedFile> result, String record, String originalPath)
+	{
+		String[] fields = addTracked(result, record, RENAMED_FIELDS);
+
+		if (fields != null && originalPath != null && fields[1].charAt(0) == RENAMED)
+		{
+			IPath path = Path.fromPortableString(originalPath);
+			result.put(path, new ChangedFile(repository, path, ChangedFile.Status.DELETED, fields[3], fields[6], true,
+					false));
+		}
+	}
+
+	/**
+	 * Add the changed file for an unmerged record, using "ours" (stage 2) for the mode and SHA
+	 * 
+	 * @param result
+	 * @param record
+	 */
+	private void addUnmerged(Map<IPath, ChangedFile> result, String record)
+	{
+		String[] fields = split(record, UNMERGED_FIELDS);
+
+		if (fields != null)
+		{
+			IPath path = Path.fromPortableString(fields[UNMERGED_FIELDS]);
+			result.put(path, new ChangedFile(repository, path, ChangedFile.Status.UNMERGED, fields[4], fields[8], true,
+					true));
+		}
+	}
+
+	/**
+	 * Add the changed file for an ordinary or renamed record
+	 * 
+	 * @param result
+	 * @param record
+	 * @param fieldCount
+	 * @return the fields of the record, or null if it is malformed
+	 */
+	private String[] addTracked(Map<IPath, ChangedFile> result, String record, int fieldCount)
+	{
+		String[] fields = split(record, fieldCount);
+
+		if (fields == null)
+		{
+			return null;
+		}
+
+		char indexStatus = fields[1].charAt(0);
+		char workTreeStatus = fields[1].charAt(1);
+		boolean staged = indexStatus != UNMODIFIED;
+		boolean unstaged = workTreeStatus != UNMODIFIED;
+		ChangedFile.Status status;
+
+		if (indexStatus == DELETED || workTreeStatus == DELETED)
+		{
+			status = ChangedFile.Status.DELETED;
+		}
+		else if (indexStatus == ADDED || indexStatus == RENAMED || indexStatus == COPIED)
+		{
+			status = ChangedFile.Status.NEW;
+		}
+		else
+		{
+			status = ChangedFile.Status.MODIFIED;
+		}
+
+		// HEAD mode and SHA for staged changes, index mode and SHA for unstaged only. A renamed or copied path isn't in
+		// HEAD, even though its record carries the mode and SHA of the original.
+		String mode;
+		String sha;
+
+		if (indexStatus == RENAMED || indexStatus == COPIED)
+		{
+			mode = NULL_MODE;
+			sha = NULL_SHA;
+		}
+		else
+		{
+			mode = staged ? fields[3] : fields[4];
+			sha = staged ? fields[6] : fields[7];
+		}
+
+		IPath path = Path.fromPortableString(fields[fieldCount]);
+		result.put(path, new ChangedFile(repository, path, status, mode, sha, staged, unstaged));
+		return fields;
+	}
+
+	/**
+	 * Split a record into its leading fields and the path, which may itself contain spaces
+	 * 
+	 * @param record
+	 * @param fieldCount
+	 *            The number of fields before the path
+	 * @return the fields followed by the path, or null if the record is malformed
+	 */
+	private String[] split(String record, int fieldCount)
+	{
+		String[] fields = new String[fieldCount + 1];
+		int start = 0;
+
+		for (int i = 0; i < fieldCount; i++)
+		{
+			int end = record.indexOf(' ', start);
+
+			if (end == -1)
+			{
+				IdeLog.logWarning(GitPlugin.getDefault(),
+						MessageFormat.format("Unexpected git status record: {0}", record), IDebugScopes.DEBUG); //$NON-NLS-1$
+				return null;
+			}
+
+			fields[i] = record.substring(start, end);
+			start = end + 1;
+		}
+
+		fields[fieldCount] = record.substring(start);
+
+		if (fields[1].length() != 2)
+		{
+			return null;
+		}
+		return fields;
+	}
+
+	/**
+	 * Read the next NUL terminated record
+	 * 
+	 * @return the record, or null at the end of the stream
+	 * @throws IOException
+	 */
+	private String readRecord() throws IOException
+	{
+		int length = 0;
+		int b;
+
+		while ((b = stream.read()) > 0)
+		{
+			if (length == buffer.length)
+			{
+				byte[] grown = new byte[buffer.length * 2];
+				System.arraycopy(buffer, 0, grown, 0, length);
+				buffer = grown;
+			}
+			buffer[length++] = (byte) b;
+		}
+
+		if (b == -1 && length == 0)
+		{
+			return null;
+		}
+
+		try
+		{
+			return new String(buffer, 0, length, IOUtil.UTF_8);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			// can't happen, UTF-8 is always supported
+			return new String(buffer, 0, length);
+		}
+	}
+}
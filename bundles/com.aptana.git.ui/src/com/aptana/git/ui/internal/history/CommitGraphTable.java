@@ -8,6 +8,7 @@
 package com.aptana.git.ui.internal.history;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -46,9 +47,16 @@ import com.aptana.git.core.model.GitRef;
 class CommitGraphTable extends TableViewer
 {
 
+	/**
+	 * How close to the end of the loaded commits a row may be shown before the next page is asked for
+	 */
+	private static final int LOAD_AHEAD = 100;
+
 	private BranchPainter renderer;
+	private GitGrapher grapher;
 	private Map<GitCommit, GraphCellInfo> decorations;
 	private List<GitCommit> commits;
+	private Runnable loadMore;
 
 	CommitGraphTable(Composite parent)
 	{
@@ -102,21 +110,54 @@ class CommitGraphTable extends TableViewer
 				TableItem item = (TableItem) event.item;
 				int index = table.indexOf(item);
 				item.setData(commits.get(index));
+				if (loadMore != null && index >= commits.size() - LOAD_AHEAD)
+				{
+					// ask only once, the next page brings its own
+					Runnable runnable = loadMore;
+					loadMore = null;
+					runnable.run();
+				}
 			}
 		});
 	}
 
-	void setCommits(final List<GitCommit> commits)
+	/**
+	 * Show the first page of a history
+	 * 
+	 * @param commits
+	 * @param loadMore
+	 *            Run when the user scrolls near the end of the commits, to load the next page. null if there are no
+	 *            more.
+	 */
+	void setCommits(final List<GitCommit> commits, Runnable loadMore)
 	{
-		this.commits = commits;
-		decorations = new GitGrapher().decorateCommits(commits);
-		setInput(commits);
+		this.commits = new ArrayList<GitCommit>(commits);
+		this.loadMore = loadMore;
+		grapher = new GitGrapher();
+		decorations = grapher.decorateCommits(commits);
+		setInput(this.commits);
 		if (!commits.isEmpty())
 		{
 			setSelection(new StructuredSelection(commits.get(0)));
 		}
 	}
 
+	/**
+	 * Append the next page of the history shown
+	 * 
+	 * @param page
+	 * @param loadMore
+	 *            Run when the user scrolls near the end of the commits, to load the next page. null if there are no
+	 *            more.
+	 */
+	void addCommits(List<GitCommit> page, Runnable loadMore)
+	{
+		commits.addAll(page);
+		decorations.putAll(grapher.decorateMoreCommits(page));
+		this.loadMore = loadMore;
+		refresh();
+	}
+
 	/**
 	 * Tell SWT that we'll be painting the first column.
 	 * 
@@ -47,6 +47,19 @@ class GitGrapher
 	Map<GitCommit, GraphCellInfo> decorateCommits(List<GitCommit> commits)
 	{
 		GitLane.resetColors();
+		return decorateMoreCommits(commits);
+	}
+
+	/**
+	 * Continues the graph with the commits that follow the ones already decorated, for a history that is loaded a page
+	 * at a time.
+	 * 
+	 * @param commits
+	 *            an in-order List of the GitCommits after the last one decorated.
+	 * @return
+	 */
+	Map<GitCommit, GraphCellInfo> decorateMoreCommits(List<GitCommit> commits)
+	{
 		Map<GitCommit, GraphCellInfo> decorations = new HashMap<GitCommit, GraphCellInfo>();
 		for (GitCommit commit : commits)
 		{
@@ -16,6 +16,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -60,6 +61,7 @@ import com.aptana.git.core.IDebugScopes;
 import com.aptana.git.core.model.GitCommit;
 import com.aptana.git.core.model.GitRepository;
 import com.aptana.git.core.model.GitRevList;
+import com.aptana.git.core.model.GitRevisionPager;
 import com.aptana.git.core.model.GitRevSpecifier;
 import com.aptana.git.core.model.IGitRepositoryManager;
 import com.aptana.git.ui.GitUIPlugin;
@@ -68,6 +70,11 @@ import com.aptana.ui.util.UIUtils;
 public class GitHistoryPage extends HistoryPage
 {
 
+	/**
+	 * Number of commits read from git at a time. Pages are only read once the user scrolls to them.
+	 */
+	private static final int PAGE_SIZE = 1000;
+
 	private static final String POPUP_MENU_ID = "com.aptana.git.ui.git_history"; //$NON-NLS-1$
 
 	private static final SimpleDateFormat TIMESTAMP_FORMAT = new SimpleDateFormat(Messages.GitHistoryPage_DateFormat);
@@ -79,6 +86,10 @@ public class GitHistoryPage extends HistoryPage
 	private Browser commentViewer;
 	private CommitFileDiffViewer fileViewer;
 	private String currentRef;
+	/**
+	 * The job that loaded the history shown. Pages read for any other are dropped. Only used on the UI thread.
+	 */
+	private Job historyJob;
 
 	@Override
 	public boolean inputSet()
@@ -147,29 +158,86 @@ public class GitHistoryPage extends HistoryPage
 				{
 					rev = new GitRevSpecifier(ref, "--", resourcePath.toOSString()); //$NON-NLS-1$
 				}
-				IStatus result = revList.walkRevisionListWithSpecifier(rev, subMonitor.newChild(95));
-				if (result != null && result.isOK())
+				return loadPage(this, revList.pages(rev, PAGE_SIZE), true, subMonitor.newChild(95));
+			}
+		};
+		job.setUser(true);
+		job.setPriority(Job.SHORT);
+		historyJob = job;
+		schedule(job);
+	}
+
+	/**
+	 * Read the next page of a history and show it, unless another history has been loaded since
+	 * 
+	 * @param owner
+	 *            the job that loaded the first page
+	 * @param pager
+	 * @param first
+	 *            whether this is the first page
+	 * @param monitor
+	 * @return
+	 */
+	private IStatus loadPage(final Job owner, final GitRevisionPager pager, final boolean first,
+			IProgressMonitor monitor)
+	{
+		final List<GitCommit> page;
+		try
+		{
+			page = pager.nextPage(monitor);
+		}
+		catch (CoreException e)
+		{
+			return e.getStatus();
+		}
+		finally
+		{
+			// Don't keep git running or the repository locked while waiting for the user to scroll
+			pager.pause();
+		}
+
+		final Runnable loadMore = !pager.hasMore() ? null : new Runnable()
+		{
+			public void run()
+			{
+				loadNextPage(owner, pager);
+			}
+		};
+		Display.getDefault().asyncExec(new Runnable()
+		{
+
+			public void run()
+			{
+				if (owner != historyJob || graph.getControl().isDisposed())
+				{
+					return;
+				}
+				if (!first)
+				{
+					graph.addCommits(page, loadMore);
+					return;
+				}
+				graph.setCommits(page, loadMore);
+				if (getControl() != null && !getControl().isDisposed())
 				{
-					final List<GitCommit> commits = revList.getCommits();
-					Display.getDefault().asyncExec(new Runnable()
-					{
-
-						public void run()
-						{
-							graph.setCommits(commits);
-							if (getControl() != null && !getControl().isDisposed())
-							{
-								getSite().getPage().activate((IWorkbenchPart) getHistoryView());
-								((IViewPart) getHistoryView()).getViewSite().getActionBars().updateActionBars();
-							}
-						}
-					});
+					getSite().getPage().activate((IWorkbenchPart) getHistoryView());
+					((IViewPart) getHistoryView()).getViewSite().getActionBars().updateActionBars();
 				}
-				subMonitor.done();
-				return result;
+			}
+		});
+		return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+	}
+
+	private void loadNextPage(final Job owner, final GitRevisionPager pager)
+	{
+		Job job = new Job(Messages.GitHistoryPage_GeneratingHistoryJob_title)
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				return loadPage(owner, pager, false, monitor);
 			}
 		};
-		job.setUser(true);
 		job.setPriority(Job.SHORT);
 		schedule(job);
 	}
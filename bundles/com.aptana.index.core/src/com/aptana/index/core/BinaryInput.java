@@ -0,0 +1,262 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads an encoding produced by {@link BinaryOutput}. The encoding is read in place from the source string, which is
+ * typically an index word, and strings in the string table are only created the first time they are referenced.
+ * 
+ * @see BinaryOutput
+ */
+public class BinaryInput
+{
+	private final String source;
+	private final int[] stringOffsets;
+	private final int[] stringLengths;
+	private final String[] strings;
+	private final int limit;
+	private int position;
+
+	/**
+	 * Determine if the source contains an encoding produced by {@link BinaryOutput} at the specified offset
+	 * 
+	 * @param source
+	 * @param offset
+	 * @return
+	 */
+	public static boolean isBinary(String source, int offset)
+	{
+		return source != null && 0 <= offset && offset < source.length()
+				&& source.charAt(offset) == BinaryOutput.MARKER;
+	}
+
+	/**
+	 * Create an input for the encoding that starts at the specified offset of the source string
+	 * 
+	 * @param source
+	 * @param offset
+	 */
+	public BinaryInput(String source, int offset)
+	{
+		if (!isBinary(source, offset))
+		{
+			throw new IllegalArgumentException(MessageFormat.format(
+					"No encoded value found at offset {0}", offset)); //$NON-NLS-1$
+		}
+
+		this.source = source;
+		this.limit = source.length();
+		this.position = offset + 1;
+
+		// record where each string in the table lives, but don't create them yet
+		int count = readInt();
+
+		this.stringOffsets = new int[count];
+		this.stringLengths = new int[count];
+		this.strings = new String[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			int length = readInt();
+
+			stringOffsets[i] = position;
+			stringLengths[i] = length;
+			position += length;
+		}
+	}
+
+	/**
+	 * Create an input for a section of the parent's encoding. The section shares the parent's string table.
+	 * 
+	 * @param parent
+	 * @param start
+	 * @param limit
+	 */
+	private BinaryInput(BinaryInput parent, int start, int limit)
+	{
+		this.source = parent.source;
+		this.stringOffsets = parent.stringOffsets;
+		this.stringLengths = parent.stringLengths;
+		this.strings = parent.strings;
+		this.position = start;
+		this.limit = limit;
+	}
+
+	/**
+	 * next
+	 * 
+	 * @return
+	 */
+	private char next()
+	{
+		if (position >= limit)
+		{
+			throw new IllegalStateException("Unexpected end of encoded value"); //$NON-NLS-1$
+		}
+
+		return source.charAt(position++);
+	}
+
+	/**
+	 * readBoolean
+	 * 
+	 * @return
+	 */
+	public boolean readBoolean()
+	{
+		return readInt() != 0;
+	}
+
+	/**
+	 * readInt
+	 * 
+	 * @return
+	 */
+	public int readInt()
+	{
+		int result = 0;
+		int shift = 0;
+		char c = next();
+
+		while ((c & BinaryOutput.CONTINUATION) != 0)
+		{
+			result |= (c & BinaryOutput.DIGIT_MASK) << shift;
+			shift += BinaryOutput.DIGIT_BITS;
+			c = next();
+		}
+
+		return result | ((c - 1) << shift);
+	}
+
+	/**
+	 * Read a list written by {@link BinaryOutput#writeList(java.util.Collection)}, creating a new instance of the
+	 * specified class for each item. Returns null for empty lists so callers can leave their lazily created
+	 * collections unallocated.
+	 * 
+	 * @param itemClass
+	 * @return
+	 */
+	public <T extends IBinaryConvertible> List<T> readList(Class<T> itemClass)
+	{
+		int size = readInt();
+
+		if (size == 0)
+		{
+			return null;
+		}
+
+		List<T> result = new ArrayList<T>(size);
+
+		for (int i = 0; i < size; i++)
+		{
+			T item;
+
+			try
+			{
+				item = itemClass.newInstance();
+			}
+			catch (InstantiationException e)
+			{
+				throw new IllegalStateException(e);
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new IllegalStateException(e);
+			}
+
+			item.fromBinary(this);
+			result.add(item);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Read a section written by {@link BinaryOutput#writeSection(BinaryOutput)}. This input skips past the section, and
+	 * the returned input can be used to decode it at a later time.
+	 * 
+	 * @return
+	 */
+	public BinaryInput readSection()
+	{
+		int length = readInt();
+		int start = position;
+
+		if (start + length > limit)
+		{
+			throw new IllegalStateException("Unexpected end of encoded value"); //$NON-NLS-1$
+		}
+
+		position += length;
+
+		return new BinaryInput(this, start, start + length);
+	}
+
+	/**
+	 * readString
+	 * 
+	 * @return
+	 */
+	public String readString()
+	{
+		int reference = readInt();
+
+		if (reference == 0)
+		{
+			return null;
+		}
+
+		int index = reference - 1;
+
+		if (index >= strings.length)
+		{
+			throw new IllegalStateException(MessageFormat.format("Invalid string reference {0}", reference)); //$NON-NLS-1$
+		}
+
+		String result = strings[index];
+
+		if (result == null)
+		{
+			int start = stringOffsets[index];
+
+			result = source.substring(start, start + stringLengths[index]);
+			strings[index] = result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Read a list of strings written by {@link BinaryOutput#writeStrings(java.util.Collection)}. Returns null for empty
+	 * lists so callers can leave their lazily created collections unallocated.
+	 * 
+	 * @return
+	 */
+	public List<String> readStrings()
+	{
+		int size = readInt();
+
+		if (size == 0)
+		{
+			return null;
+		}
+
+		List<String> result = new ArrayList<String>(size);
+
+		for (int i = 0; i < size; i++)
+		{
+			result.add(readString());
+		}
+
+		return result;
+	}
+}
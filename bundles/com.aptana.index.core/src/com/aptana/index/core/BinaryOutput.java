@@ -0,0 +1,234 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a compact, string-based encoding of an index element. Every string written is stored once in a table at the
+ * head of the encoding and referenced by its position in the table. Integers are stored as variable length sequences
+ * of characters, 10 bits per character, so every character is at most \u07FF and takes at most two bytes in the UTF-8
+ * form the index is written in; values below 127 take a single byte. The encoding never contains a NUL character, so
+ * it can be used as a column of an index word.
+ * 
+ * <pre>
+ * encoding := MARKER stringCount (length char*)* body
+ * </pre>
+ * 
+ * @see BinaryInput
+ */
+public class BinaryOutput
+{
+	/**
+	 * The first character of every encoding. Older index entries were JSON, which always starts with '{'
+	 */
+	public static final char MARKER = '\u0001';
+
+	static final int DIGIT_BITS = 10;
+	static final int DIGIT_MASK = (1 << DIGIT_BITS) - 1;
+	static final char CONTINUATION = '\u0400';
+
+	private final Map<String, Integer> stringIndexes;
+	private final List<String> strings;
+	private final StringBuilder body;
+
+	/**
+	 * BinaryOutput
+	 */
+	public BinaryOutput()
+	{
+		this(new HashMap<String, Integer>(), new ArrayList<String>());
+	}
+
+	/**
+	 * BinaryOutput
+	 * 
+	 * @param stringIndexes
+	 * @param strings
+	 */
+	private BinaryOutput(Map<String, Integer> stringIndexes, List<String> strings)
+	{
+		this.stringIndexes = stringIndexes;
+		this.strings = strings;
+		this.body = new StringBuilder();
+	}
+
+	/**
+	 * Append a non-negative integer to the specified buffer. The final character holds the highest bits plus one, which
+	 * is below {@link #CONTINUATION}, and every other character has the {@link #CONTINUATION} bit set, so no character
+	 * is ever 0 or above \u07FF.
+	 * 
+	 * @param buffer
+	 * @param value
+	 */
+	private static void appendInt(StringBuilder buffer, int value)
+	{
+		if (value < 0)
+		{
+			throw new IllegalArgumentException("Only non-negative values can be encoded: " + value); //$NON-NLS-1$
+		}
+
+		int remaining = value;
+
+		while (remaining >= DIGIT_MASK)
+		{
+			buffer.append((char) (CONTINUATION | (remaining & DIGIT_MASK)));
+			remaining >>>= DIGIT_BITS;
+		}
+
+		buffer.append((char) (remaining + 1));
+	}
+
+	/**
+	 * Create an output for a section of this encoding. The section shares this output's string table. Its content is
+	 * added to this output by {@link #writeSection(BinaryOutput)}.
+	 * 
+	 * @return
+	 */
+	public BinaryOutput createSection()
+	{
+		return new BinaryOutput(stringIndexes, strings);
+	}
+
+	/**
+	 * writeBoolean
+	 * 
+	 * @param value
+	 */
+	public void writeBoolean(boolean value)
+	{
+		appendInt(body, value ? 1 : 0);
+	}
+
+	/**
+	 * writeInt
+	 * 
+	 * @param value
+	 *            A non-negative integer
+	 */
+	public void writeInt(int value)
+	{
+		appendInt(body, value);
+	}
+
+	/**
+	 * Write the size of the list followed by each of its items
+	 * 
+	 * @param items
+	 */
+	public void writeList(Collection<? extends IBinaryConvertible> items)
+	{
+		if (items == null)
+		{
+			appendInt(body, 0);
+		}
+		else
+		{
+			appendInt(body, items.size());
+
+			for (IBinaryConvertible item : items)
+			{
+				item.toBinary(this);
+			}
+		}
+	}
+
+	/**
+	 * Write a section created by {@link #createSection()}. The section is prefixed with its length so readers can skip
+	 * over it and decode it later.
+	 * 
+	 * @param section
+	 */
+	public void writeSection(BinaryOutput section)
+	{
+		appendInt(body, section.body.length());
+		body.append(section.body);
+	}
+
+	/**
+	 * Write a reference to the specified string, adding it to the string table if it hasn't been written before. Null
+	 * values are preserved.
+	 * 
+	 * @param value
+	 */
+	public void writeString(String value)
+	{
+		if (value == null)
+		{
+			appendInt(body, 0);
+		}
+		else
+		{
+			Integer index = stringIndexes.get(value);
+
+			if (index == null)
+			{
+				index = strings.size();
+				strings.add(value);
+				stringIndexes.put(value, index);
+			}
+
+			appendInt(body, index + 1);
+		}
+	}
+
+	/**
+	 * Write the size of the collection followed by each of its strings
+	 * 
+	 * @param values
+	 */
+	public void writeStrings(Collection<String> values)
+	{
+		if (values == null)
+		{
+			appendInt(body, 0);
+		}
+		else
+		{
+			appendInt(body, values.size());
+
+			for (String value : values)
+			{
+				writeString(value);
+			}
+		}
+	}
+
+	/**
+	 * Returns the complete encoding: the marker, the string table and the body
+	 */
+	@Override
+	public String toString()
+	{
+		int length = 1 + body.length();
+
+		for (String value : strings)
+		{
+			length += value.length() + 1;
+		}
+
+		StringBuilder result = new StringBuilder(length + 8);
+
+		result.append(MARKER);
+		appendInt(result, strings.size());
+
+		for (String value : strings)
+		{
+			appendInt(result, value.length());
+			result.append(value);
+		}
+
+		result.append(body);
+
+		return result.toString();
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+/**
+ * Implemented by index elements that can write themselves to, and read themselves from, the compact encoding produced
+ * by {@link BinaryOutput}. Implementations must have a public no-argument constructor so they can be created by
+ * {@link BinaryInput#readList(Class)}.
+ */
+public interface IBinaryConvertible
+{
+	/**
+	 * Write this element's fields to the specified output
+	 * 
+	 * @param out
+	 */
+	void toBinary(BinaryOutput out);
+
+	/**
+	 * Read this element's fields from the specified input, in the same order they were written by
+	 * {@link #toBinary(BinaryOutput)}
+	 * 
+	 * @param in
+	 */
+	void fromBinary(BinaryInput in);
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the Eclipse Public License (EPL).
  * Please see the license-epl.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -12,11 +12,12 @@ import java.io.IOException;
 import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
@@ -32,8 +33,10 @@ import com.aptana.internal.index.core.MemoryIndex;
 public class Index
 {
 	private static final int MATCH_RULE_INDEX_MASK = SearchPattern.EXACT_MATCH | SearchPattern.PREFIX_MATCH
-			| SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE | SearchPattern.REGEX_MATCH;
-	private static final Map<String, Pattern> PATTERNS = new HashMap<String, Pattern>();
+			| SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE | SearchPattern.REGEX_MATCH
+			| SearchPattern.CAMEL_CASE_MATCH;
+	// Compiled patterns, keyed by match rule and pattern. Queries run concurrently under the read lock.
+	private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<String, Pattern>();
 	// Separator to use after the container path
 	public static final char DEFAULT_SEPARATOR = '/';
 
@@ -191,10 +194,10 @@ public class Index
 				return patternLength == wordLength && pattern.equalsIgnoreCase(word);
 
 			case SearchPattern.PREFIX_MATCH:
-				return patternLength <= wordLength && word.toLowerCase().startsWith(pattern.toLowerCase());
+				return patternLength <= wordLength && word.regionMatches(true, 0, pattern, 0, patternLength);
 
 			case SearchPattern.PATTERN_MATCH:
-				return patternMatch(pattern.toLowerCase(), word.toLowerCase());
+				return patternMatch(pattern, word, false);
 
 			case SearchPattern.REGEX_MATCH:
 				return regexPatternMatch(pattern, word, false);
@@ -206,15 +209,140 @@ public class Index
 				return patternLength <= wordLength && word.startsWith(pattern);
 
 			case SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE:
-				return patternMatch(pattern, word);
+				return patternMatch(pattern, word, true);
 
 			case SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE:
 				return regexPatternMatch(pattern, word, true);
+
+			case SearchPattern.CAMEL_CASE_MATCH:
+			case SearchPattern.CAMEL_CASE_MATCH | SearchPattern.CASE_SENSITIVE:
+				return camelCaseMatch(pattern, word);
 		}
 
 		return false;
 	}
 
+	/**
+	 * camelCaseMatch
+	 * 
+	 * @param pattern
+	 * @param word
+	 * @return
+	 * @see SearchPattern#CAMEL_CASE_MATCH
+	 */
+	private static boolean camelCaseMatch(String pattern, String word)
+	{
+		int patternLength = pattern.length();
+		int wordLength = word.length();
+		int partStart = 0;
+		int hump = 0;
+
+		while (partStart < patternLength)
+		{
+			int partEnd = partStart + 1;
+
+			while (partEnd < patternLength && !Character.isUpperCase(pattern.charAt(partEnd)))
+			{
+				partEnd++;
+			}
+
+			if (partStart == 0 && partEnd == patternLength)
+			{
+				// a single part is a plain prefix
+				return patternLength <= wordLength && word.regionMatches(true, 0, pattern, 0, patternLength);
+			}
+
+			int partLength = partEnd - partStart;
+
+			if (hump >= wordLength || !word.regionMatches(true, hump, pattern, partStart, partLength))
+			{
+				return false;
+			}
+
+			// the part must not run into the next hump
+			int nextHump = nextHumpStart(word, hump);
+
+			if (hump + partLength > nextHump)
+			{
+				return false;
+			}
+
+			hump = nextHump;
+			partStart = partEnd;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Computes the lower cased first character of each hump of a word, or of each part of a camel case pattern. Words
+	 * whose initials start with a pattern's initials are the only candidates for a {@link SearchPattern#CAMEL_CASE_MATCH}
+	 * 
+	 * @param word
+	 * @param isPattern
+	 * @return
+	 */
+	public static String getCamelCaseInitials(String word, boolean isPattern)
+	{
+		int length = word.length();
+		StringBuilder initials = new StringBuilder();
+
+		for (int i = 0; i < length;)
+		{
+			initials.append(Character.toLowerCase(word.charAt(i)));
+
+			if (isPattern)
+			{
+				i++;
+
+				while (i < length && !Character.isUpperCase(word.charAt(i)))
+				{
+					i++;
+				}
+			}
+			else
+			{
+				i = nextHumpStart(word, i);
+			}
+		}
+
+		return initials.toString();
+	}
+
+	/**
+	 * Returns the index where the hump after the one starting at <code>start</code> begins, or the length of the word
+	 * if it is the last one.
+	 * 
+	 * @param word
+	 * @param start
+	 * @return
+	 */
+	private static int nextHumpStart(String word, int start)
+	{
+		int length = word.length();
+
+		for (int i = start + 1; i < length; i++)
+		{
+			char c = word.charAt(i);
+			char previous = word.charAt(i - 1);
+
+			if (Character.isUpperCase(c))
+			{
+				// the last upper case letter of an acronym starts the next hump, as in "XMLHttpRequest"
+				if (!Character.isUpperCase(previous) || (i + 1 < length && Character.isLowerCase(word.charAt(i + 1))))
+				{
+					return i;
+				}
+			}
+			else if (isWordChar(c) && !isWordChar(previous))
+			{
+				return i;
+			}
+		}
+
+		return length;
+	}
+
 	/**
 	 * isWordChar
 	 * 
@@ -231,9 +359,10 @@ public class Index
 	 * 
 	 * @param pattern
 	 * @param word
+	 * @param caseSensitive
 	 * @return
 	 */
-	private static boolean patternMatch(String pattern, String word)
+	private static boolean patternMatch(String pattern, String word, boolean caseSensitive)
 	{
 		if (pattern.equals("*")) //$NON-NLS-1$
 		{
@@ -241,7 +370,9 @@ public class Index
 		}
 
 		// see if we've cached a regex for this pattern already
-		Pattern p = PATTERNS.get(pattern);
+		String key = (caseSensitive ? SearchPattern.PATTERN_MATCH | SearchPattern.CASE_SENSITIVE
+				: SearchPattern.PATTERN_MATCH) + ":" + pattern; //$NON-NLS-1$
+		Pattern p = PATTERNS.get(key);
 
 		// nope, so try and create one
 		if (p == null)
@@ -263,9 +394,11 @@ public class Index
 
 			String regex = buffer.toString();
 
-			p = Pattern.compile(regex);
+			// compile case insensitive patterns once instead of lower casing every word we test
+			p = caseSensitive ? Pattern.compile(regex) : Pattern.compile(regex, Pattern.CASE_INSENSITIVE
+					| Pattern.UNICODE_CASE);
 
-			PATTERNS.put(pattern, p);
+			PATTERNS.put(key, p);
 		}
 
 		return (p != null) ? p.matcher(word).find() : false;
@@ -280,7 +413,9 @@ public class Index
 	 */
 	private static boolean regexPatternMatch(String regex, String word, boolean caseSensitive)
 	{
-		Pattern pattern = PATTERNS.get(regex);
+		String key = (caseSensitive ? SearchPattern.REGEX_MATCH | SearchPattern.CASE_SENSITIVE
+				: SearchPattern.REGEX_MATCH) + ":" + regex; //$NON-NLS-1$
+		Pattern pattern = PATTERNS.get(key);
 
 		if (pattern == null)
 		{
@@ -290,7 +425,7 @@ public class Index
 				pattern = (caseSensitive) ? Pattern.compile(regex) : Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
 
 				// cache for later
-				PATTERNS.put(regex, pattern);
+				PATTERNS.put(key, pattern);
 			}
 			catch (PatternSyntaxException e)
 			{
@@ -305,6 +440,12 @@ public class Index
 	ReadWriteLock monitor;
 	private URI containerURI;
 
+	/**
+	 * Advanced whenever entries are added, removed, or merged to disk, so results cached from queries against this
+	 * index can be told apart from current ones.
+	 */
+	private final AtomicLong modificationStamp = new AtomicLong();
+
 	/**
 	 * Index
 	 * 
@@ -352,6 +493,7 @@ public class Index
 		try
 		{
 			this.memoryIndex.addEntry(category, key, containerRelativeURI.toString());
+			this.modificationStamp.incrementAndGet();
 		}
 		finally
 		{
@@ -369,12 +511,22 @@ public class Index
 			logTrace(MessageFormat.format("Deleting index ''{0}''", this)); //$NON-NLS-1$
 		}
 
-		// TODO Enter write?
+		// closing unmaps the file, which must not happen while a query reads from the mapping
+		this.enterWrite();
 
-		File indexFile = this.getIndexFile();
-		if (indexFile != null && indexFile.exists())
+		try
 		{
-			indexFile.delete();
+			File indexFile = this.getIndexFile();
+			if (indexFile != null && indexFile.exists())
+			{
+				// release the mapping so the file can be deleted
+				this.diskIndex.close();
+				indexFile.delete();
+			}
+		}
+		finally
+		{
+			this.exitWrite();
 		}
 	}
 
@@ -487,6 +639,17 @@ public class Index
 		return this.diskIndex == null ? null : this.diskIndex.indexFile;
 	}
 
+	/**
+	 * Returns a stamp that changes whenever the contents of this index do. Results of queries run while the stamp kept
+	 * the same value are still current.
+	 * 
+	 * @return
+	 */
+	public long getModificationStamp()
+	{
+		return this.modificationStamp.get();
+	}
+
 	/**
 	 * @deprecated
 	 * @return
@@ -626,6 +789,7 @@ public class Index
 		try
 		{
 			this.memoryIndex.remove(documentName);
+			this.modificationStamp.incrementAndGet();
 		}
 		finally
 		{
@@ -645,6 +809,7 @@ public class Index
 		{
 			this.memoryIndex.removeCategories(categoryNames);
 			this.diskIndex = this.diskIndex.removeCategories(categoryNames, this.memoryIndex);
+			this.modificationStamp.incrementAndGet();
 		}
 		catch (IOException e)
 		{
@@ -697,6 +862,7 @@ public class Index
 			int numberOfChanges = this.memoryIndex.numberOfChanges();
 			this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
 			this.memoryIndex = new MemoryIndex();
+			this.modificationStamp.incrementAndGet();
 
 			if (numberOfChanges > 1000)
 			{
@@ -737,8 +903,19 @@ public class Index
 	 */
 	public void reset() throws IOException
 	{
-		this.memoryIndex = new MemoryIndex();
-		this.diskIndex = new DiskIndex(this.diskIndex.indexFile.getCanonicalPath());
-		this.diskIndex.initialize(false/* do not reuse the index file */);
+		this.enterWrite();
+
+		try
+		{
+			this.memoryIndex = new MemoryIndex();
+			this.diskIndex.close();
+			this.diskIndex = new DiskIndex(this.diskIndex.indexFile.getCanonicalPath());
+			this.diskIndex.initialize(false/* do not reuse the index file */);
+			this.modificationStamp.incrementAndGet();
+		}
+		finally
+		{
+			this.exitWrite();
+		}
 	}
 }
@@ -174,17 +174,96 @@ public abstract class IndexReader
 		if (item != null && element != null && 0 <= columnIndex)
 		{
 			String key = item.getWord();
-			String[] columns = this.getDelimiterPattern().split(key);
+			int start = this.getColumnOffset(key, columnIndex);
 
-			if (columnIndex < columns.length)
+			if (start != -1)
 			{
-				this.populateElement(element, columns[columnIndex], item.getDocuments());
+				if (element instanceof IBinaryConvertible && BinaryInput.isBinary(key, start))
+				{
+					this.populateBinaryElement(element, key, start, item.getDocuments());
+				}
+				else
+				{
+					// older indexes store the element as JSON
+					int end = key.indexOf(this.getDelimiter(), start);
+
+					if (end == -1)
+					{
+						end = key.length();
+					}
+
+					if (start < end)
+					{
+						this.populateElement(element, key.substring(start, end), item.getDocuments());
+					}
+				}
 			}
 		}
 
 		return element;
 	}
 
+	/**
+	 * Find the offset of the specified column in an index word without splitting the word into columns. Returns -1 if
+	 * the word has fewer columns.
+	 * 
+	 * @param key
+	 * @param columnIndex
+	 * @return
+	 */
+	protected int getColumnOffset(String key, int columnIndex)
+	{
+		String delimiter = this.getDelimiter();
+		int offset = 0;
+
+		for (int i = 0; i < columnIndex; i++)
+		{
+			int index = key.indexOf(delimiter, offset);
+
+			if (index == -1)
+			{
+				return -1;
+			}
+
+			offset = index + delimiter.length();
+		}
+
+		return offset;
+	}
+
+	/**
+	 * populateBinaryElement
+	 * 
+	 * @param element
+	 * @param key
+	 * @param offset
+	 * @param documents
+	 */
+	private <T extends Convertible & IndexDocument> void populateBinaryElement(T element, String key, int offset,
+			Set<String> documents)
+	{
+		try
+		{
+			((IBinaryConvertible) element).fromBinary(new BinaryInput(key, offset));
+
+			for (String document : documents)
+			{
+				element.addDocument(document);
+			}
+		}
+		catch (Throwable t)
+		{
+			// @formatter:off
+			String message = MessageFormat.format(
+				"An error occurred while decoding the following index entry\n{0}", //$NON-NLS-1$
+				key
+			);
+			// @formatter:on
+
+			IdeLog.logError(IndexPlugin.getDefault(), message, t);
+		}
+	}
+
 	/**
 	 * populateElement
 	 * 
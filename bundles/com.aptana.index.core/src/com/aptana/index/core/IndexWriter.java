@@ -25,13 +25,23 @@ public abstract class IndexWriter
 
 	/**
 	 * Convert the specified object into a string representation. This representation should be reversible to recreate
-	 * the original object
+	 * the original object. Objects that implement {@link IBinaryConvertible} use the compact encoding from
+	 * {@link BinaryOutput}, everything else is written as JSON.
 	 * 
 	 * @param object
 	 * @return
 	 */
 	protected String serialize(Object object)
 	{
+		if (object instanceof IBinaryConvertible)
+		{
+			BinaryOutput out = new BinaryOutput();
+
+			((IBinaryConvertible) object).toBinary(out);
+
+			return out.toString();
+		}
+
 		return JSON.toString(object);
 	}
 }
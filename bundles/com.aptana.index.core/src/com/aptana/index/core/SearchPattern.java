@@ -15,6 +15,15 @@ public abstract class SearchPattern
 	public static final int CASE_SENSITIVE = 0x0008;
 	public static final int REGEX_MATCH = 0x0010;
 
+	/**
+	 * Matches words by their "humps". The pattern is split before each upper case letter and each part must be a
+	 * case-insensitive prefix of the corresponding hump of the word, so "gEBI" matches "getElementById" and "NPE" matches
+	 * "NullPointerException". Humps start at upper case letters, except inside an acronym ("XHR" matches
+	 * "XMLHttpRequest"), and at letters or digits following any other character, like '_' or '.'. A pattern with a
+	 * single part behaves like a case-insensitive {@link #PREFIX_MATCH}.
+	 */
+	public static final int CAMEL_CASE_MATCH = 0x0080;
+
 	// TODO Can we make this a real class that holds two enum values?
 	// PatternType: PREFIX, PATTERN, EXACT, REGEX
 	// Case: SENSITIVE, INSENSITIVE
@@ -51,6 +51,11 @@ public class BuildContext
 	private IFile file;
 	protected Map<String, Collection<IProblem>> problems;
 	private ParseResult fParseResult;
+	/**
+	 * Whether {@link #fParseResult} came from parsing the contents with the default parse state, and can therefore be
+	 * shared by every call to {@link #getAST()}.
+	 */
+	private boolean fDefaultParseResult;
 
 	private String fContents;
 
@@ -90,9 +95,20 @@ public class BuildContext
 		return file.getLocationURI();
 	}
 
-	public IParseRootNode getAST() throws CoreException
+	/**
+	 * Returns the AST for the contents using the default parse state. The result is cached, so multiple build
+	 * participants operating on the same context only parse the file once. Use {@link #resetAST()} to force a re-parse.
+	 */
+	public synchronized IParseRootNode getAST() throws CoreException
 	{
-		return getAST(new ParseState(getContents())).getRootNode();
+		if (fParseResult != null && fDefaultParseResult)
+		{
+			return fParseResult.getRootNode();
+		}
+		ParseResult result = getAST(new ParseState(getContents()));
+		// a failed parse leaves no result to share, so the next call tries again
+		fDefaultParseResult = (fParseResult != null);
+		return result.getRootNode();
 	}
 
 	/**
@@ -108,6 +124,7 @@ public class BuildContext
 				// FIXME The parsers need to throw a specific SyntaxException or something for us to differentiate
 				// between those and IO errors!
 				WorkingParseResult working = new WorkingParseResult();
+				fDefaultParseResult = false;
 				fParseResult = parse(getContentType(), parseState, working);
 			}
 			catch (CoreException e)
@@ -143,6 +160,7 @@ public class BuildContext
 	public synchronized void resetAST()
 	{
 		fParseResult = null;
+		fDefaultParseResult = false;
 	}
 
 	public synchronized String getContents()
@@ -7,20 +7,24 @@
  */
 package com.aptana.internal.index.core;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UTFDataFormatException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -30,29 +34,58 @@ import java.util.Set;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.IDebugScopes;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexPlugin;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
 
 /**
- * Yuck this needs to be a random access file that stores the index of documents, category names, and the relationship
- * between them. We need to be careful to allow for quick access into the categories when reading, and to keep filesize
- * down if possible.
+ * A random access file that stores the index of documents, category names, and the relationship between them. The file
+ * is memory-mapped when it is read, so queries decode only the bytes they touch.
+ * <p>
+ * The words of each category are sorted (see {@link #WORD_ORDER}) and written in blocks of {@link #BLOCK_SIZE}
+ * entries. A category table is a sparse directory of block offsets, which lets exact and prefix queries binary-search
+ * to the first candidate block and scan forward in place, instead of reading the whole category into a map. A second,
+ * smaller dictionary of the same shape maps the camel case initials of each word (see
+ * {@link Index#getCamelCaseInitials(String, boolean)}) back to its entry, so that
+ * {@link SearchPattern#CAMEL_CASE_MATCH} queries only visit candidate words as well.
  * 
  * @author cwilliams
  */
 public class DiskIndex
 {
-	private static final String SIGNATURE = "INDEX VERSION 0.1"; //$NON-NLS-1$
+	private static final String SIGNATURE = "INDEX VERSION 0.3"; //$NON-NLS-1$
+	// hash ordered category tables
+	private static final String VERSION_0_1_SIGNATURE = "INDEX VERSION 0.1"; //$NON-NLS-1$
+	// sorted category tables without camel case initials
+	private static final String VERSION_0_2_SIGNATURE = "INDEX VERSION 0.2"; //$NON-NLS-1$
 	private static final int CHUNK_SIZE = 100;
+	private static final int BLOCK_SIZE = 32;
+	private static final int LARGE_ARRAY_SIZE = 256;
+	private static final int MAX_STRING_LENGTH = 65535;
 	private static final int RE_INDEXED = -1;
 	private static final int DELETED = -2;
 	private static final boolean DEBUG = true;
 
+	/**
+	 * The order words are written within a category table: case-insensitive first, then case-sensitive. Every word that
+	 * starts with a given prefix, ignoring case, ends up in one contiguous run, so both case-sensitive and
+	 * case-insensitive prefix queries can binary-search to the start of their matches.
+	 */
+	static final Comparator<String> WORD_ORDER = new Comparator<String>()
+	{
+		public int compare(String o1, String o2)
+		{
+			int result = compareIgnoreCase(o1, o2, Integer.MAX_VALUE);
+
+			return (result != 0) ? result : o1.compareTo(o2);
+		}
+	};
+
 	public File indexFile;
+	private MappedByteBuffer buffer;
 	private int headerInfoOffset;
-	private int streamRead;
 	private int numberOfChunks;
 	private int sizeOfLastChunk;
 	private int documentReferenceSize;
@@ -60,9 +93,7 @@ public class DiskIndex
 	private int[] chunkOffsets;
 	private int startOfCategoryTables;
 	private Map<String, Integer> categoryOffsets;
-	// Usually a map from string to map from string to list of integer. But may also be a single integer (to represent a
-	// pointer to long array)
-	// FIXME YUCK!! This "usually a list of integers, sometimes one integer that acts as a pointer" stuff is killing me!
+	// Only used while writing a new index: a map from category to a map from word to list of document numbers.
 	private Map<String, Map<String, Object>> categoryTables;
 
 	private int streamEnd;
@@ -89,6 +120,41 @@ public class DiskIndex
 		this.categoriesToDiscard = null;
 	}
 
+	/**
+	 * Compares the first <code>length</code> characters of two strings one character at a time, ignoring case. If one
+	 * string runs out first, the shorter one sorts first.
+	 * 
+	 * @param s1
+	 * @param s2
+	 * @param length
+	 * @return
+	 */
+	private static int compareIgnoreCase(String s1, String s2, int length)
+	{
+		int n1 = Math.min(s1.length(), length);
+		int n2 = Math.min(s2.length(), length);
+		int n = Math.min(n1, n2);
+
+		for (int i = 0; i < n; i++)
+		{
+			char c1 = s1.charAt(i);
+			char c2 = s2.charAt(i);
+
+			if (c1 != c2)
+			{
+				c1 = Character.toLowerCase(c1);
+				c2 = Character.toLowerCase(c2);
+
+				if (c1 != c2)
+				{
+					return c1 - c2;
+				}
+			}
+		}
+
+		return n1 - n2;
+	}
+
 	/**
 	 * addDocumentNames
 	 * 
@@ -154,13 +220,13 @@ public class DiskIndex
 	 * 
 	 * @param results
 	 * @param word
-	 * @param wordsToDocNumbers
+	 * @param docNumbers
 	 * @param memoryIndex
 	 * @return
 	 * @throws IOException
 	 */
 	private Map<String, QueryResult> addQueryResult(Map<String, QueryResult> results, String word,
-			Map<String, Object> wordsToDocNumbers, MemoryIndex memoryIndex) throws IOException
+			List<Integer> docNumbers, MemoryIndex memoryIndex) throws IOException
 	{
 		// must skip over documents which have been added/changed/deleted in the memory index
 		if (results == null)
@@ -178,10 +244,6 @@ public class DiskIndex
 				results.put(word, result);
 			}
 
-			result.addDocumentTable(wordsToDocNumbers);
-
-			List<Integer> docNumbers = readDocumentNumbers(wordsToDocNumbers.get(word));
-
 			for (Integer docNumber : docNumbers)
 			{
 				result.addDocumentName(readDocumentName(docNumber));
@@ -196,8 +258,6 @@ public class DiskIndex
 				result = new QueryResult(word, null);
 			}
 
-			List<Integer> docNumbers = readDocumentNumbers(wordsToDocNumbers.get(word));
-
 			for (Integer docNumber : docNumbers)
 			{
 				String docName = readDocumentName(docNumber);
@@ -252,86 +312,122 @@ public class DiskIndex
 			key = null;
 		}
 
-		if (key == null)
+		ByteBuffer data = getBuffer();
+
+		for (int i = 0, l = categories.length; i < l; i++)
 		{
-			for (int i = 0, l = categories.length; i < l; i++)
-			{
-				Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], true); // cache if key
-				// is null
-				// since its a definite
-				// match
-				if (wordsToDocNumbers != null)
-				{
-					if (results == null)
-					{
-						results = new HashMap<String, QueryResult>(wordsToDocNumbers.size());
-					}
+			Integer offset = this.categoryOffsets.get(categories[i]);
 
-					for (String word : wordsToDocNumbers.keySet())
-					{
-						if (word != null)
-						{
-							results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
-						}
-					}
-				}
+			if (offset == null)
+			{
+				continue;
 			}
 
-			if (results != null && this.cachedChunks == null)
+			Cursor table = new Cursor(data, offset);
+			int wordCount = table.readInt();
+			int blockCount = table.readInt();
+			int directory = table.position;
+
+			if (key == null)
 			{
-				cacheDocumentNames();
+				results = addMatches(results, data, directory, 0, blockCount, wordCount, null, matchRule, false,
+						memoryIndex);
+				continue;
 			}
-		}
-		else
-		{
+
 			switch (matchRule)
 			{
-				case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
-					for (int i = 0, l = categories.length; i < l; i++)
-					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
+				case SearchPattern.CAMEL_CASE_MATCH:
+				case SearchPattern.CAMEL_CASE_MATCH | SearchPattern.CASE_SENSITIVE:
+					String initials = Index.getCamelCaseInitials(key, true);
 
-						if (wordsToDocNumbers != null && wordsToDocNumbers.containsKey(key))
-						{
-							results = addQueryResult(results, key, wordsToDocNumbers, memoryIndex);
-						}
+					if (initials.length() > 1)
+					{
+						table.position = directory + blockCount * 4;
+						int humpCount = table.readInt();
+						int humpBlockCount = table.readInt();
+						int humpDirectory = table.position;
+						int firstHumpBlock = findFirstBlock(data, humpDirectory, humpBlockCount, initials);
+
+						results = addCamelCaseMatches(results, data, humpDirectory, firstHumpBlock, humpBlockCount,
+								humpCount, initials, key, memoryIndex);
+					}
+					else
+					{
+						// a single part is a case-insensitive prefix
+						int firstBlock = findFirstBlock(data, directory, blockCount, key);
+						results = addMatches(results, data, directory, firstBlock, blockCount, wordCount, key,
+								SearchPattern.PREFIX_MATCH, true, memoryIndex);
 					}
 					break;
 
+				case SearchPattern.EXACT_MATCH:
+				case SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE:
+				case SearchPattern.PREFIX_MATCH:
 				case SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE:
-					for (int i = 0, l = categories.length; i < l; i++)
-					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
-
-						if (wordsToDocNumbers != null)
-						{
-							for (String word : wordsToDocNumbers.keySet())
-							{
-								if (word != null && word.startsWith(key))
-								{
-									results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
-								}
-							}
-						}
-					}
+					// matches are contiguous in WORD_ORDER, so jump straight to the block where they begin
+					int firstBlock = findFirstBlock(data, directory, blockCount, key);
+					results = addMatches(results, data, directory, firstBlock, blockCount, wordCount, key, matchRule,
+							true, memoryIndex);
 					break;
 
 				default:
-					for (int i = 0, l = categories.length; i < l; i++)
-					{
-						Map<String, Object> wordsToDocNumbers = readCategoryTable(categories[i], false);
+					results = addMatches(results, data, directory, 0, blockCount, wordCount, key, matchRule, false,
+							memoryIndex);
+					break;
+			}
+		}
 
-						if (wordsToDocNumbers != null)
-						{
-							for (String word : wordsToDocNumbers.keySet())
-							{
-								if (word != null && Index.isMatch(key, word, matchRule))
-								{
-									results = addQueryResult(results, word, wordsToDocNumbers, memoryIndex);
-								}
-							}
-						}
+		return results;
+	}
+
+	/**
+	 * Walks the camel case initials of a category table starting at <code>firstHumpBlock</code>, adding the words whose
+	 * initials start with the pattern's initials and that match the pattern.
+	 * 
+	 * @param results
+	 * @param data
+	 * @param humpDirectory
+	 * @param firstHumpBlock
+	 * @param humpBlockCount
+	 * @param humpCount
+	 * @param initials
+	 * @param pattern
+	 * @param memoryIndex
+	 * @return
+	 * @throws IOException
+	 */
+	private Map<String, QueryResult> addCamelCaseMatches(Map<String, QueryResult> results, ByteBuffer data,
+			int humpDirectory, int firstHumpBlock, int humpBlockCount, int humpCount, String initials, String pattern,
+			MemoryIndex memoryIndex) throws IOException
+	{
+		int length = initials.length();
+
+		for (int block = firstHumpBlock; block < humpBlockCount; block++)
+		{
+			Cursor cursor = new Cursor(data, data.getInt(humpDirectory + block * 4));
+			int entries = Math.min(BLOCK_SIZE, humpCount - block * BLOCK_SIZE);
+
+			for (int i = 0; i < entries; i++)
+			{
+				int compare = compareIgnoreCase(cursor.readString(), initials, length);
+				int entryOffset = cursor.readInt();
+
+				if (compare > 0)
+				{
+					return results;
+				}
+
+				if (compare == 0)
+				{
+					Cursor entry = new Cursor(data, entryOffset);
+					String word = entry.readString();
+
+					if (Index.isMatch(pattern, word, SearchPattern.CAMEL_CASE_MATCH))
+					{
+						results = addQueryResult(results, word, entry.readDocumentNumbers(), memoryIndex);
 					}
+				}
 			}
 		}
 
@@ -339,41 +435,117 @@ public class DiskIndex
 	}
 
 	/**
-	 * cacheDocumentNames
+	 * Walks the blocks of a category table starting at <code>firstBlock</code>, adding each word that matches the key.
+	 * When <code>sorted</code> is true the walk stops at the first word that sorts beyond the key, otherwise every
+	 * remaining word is tested.
 	 * 
+	 * @param results
+	 * @param data
+	 * @param directory
+	 * @param firstBlock
+	 * @param blockCount
+	 * @param wordCount
+	 * @param key
+	 * @param matchRule
+	 * @param sorted
+	 * @param memoryIndex
+	 * @return
 	 * @throws IOException
 	 */
-	private void cacheDocumentNames() throws IOException
+	private Map<String, QueryResult> addMatches(Map<String, QueryResult> results, ByteBuffer data, int directory,
+			int firstBlock, int blockCount, int wordCount, String key, int matchRule, boolean sorted,
+			MemoryIndex memoryIndex) throws IOException
 	{
-		// will need all document names so get them now
-		this.cachedChunks = new String[this.numberOfChunks][];
-
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		boolean exact = (matchRule & SearchPattern.PREFIX_MATCH) == 0;
 
-		try
+		for (int block = firstBlock; block < blockCount; block++)
 		{
-			// if (this.numberOfChunks > 5)
-			// BUFFER_READ_SIZE <<= 1;
-			int offset = this.chunkOffsets[0];
-
-			skip(stream, offset);
+			Cursor cursor = new Cursor(data, data.getInt(directory + block * 4));
+			int entries = Math.min(BLOCK_SIZE, wordCount - block * BLOCK_SIZE);
 
-			for (int i = 0; i < this.numberOfChunks; i++)
+			for (int i = 0; i < entries; i++)
 			{
-				int size = i == this.numberOfChunks - 1 ? this.sizeOfLastChunk : CHUNK_SIZE;
+				String word = cursor.readString();
+
+				if (sorted)
+				{
+					int compare = compareIgnoreCase(word, key, exact ? Integer.MAX_VALUE : key.length());
+
+					if (compare > 0)
+					{
+						return results;
+					}
+
+					if (compare < 0)
+					{
+						cursor.skipDocumentNumbers();
+						continue;
+					}
+				}
 
-				readChunk(this.cachedChunks[i] = new String[size], stream, 0, size);
+				if (key == null || Index.isMatch(key, word, matchRule))
+				{
+					results = addQueryResult(results, word, cursor.readDocumentNumbers(), memoryIndex);
+				}
+				else
+				{
+					cursor.skipDocumentNumbers();
+				}
 			}
 		}
-		catch (IOException e)
+
+		return results;
+	}
+
+	/**
+	 * Binary searches the directory of a category table for the last block whose first word sorts before the key. Any
+	 * word equal to or starting with the key, ignoring case, can only appear in that block or the ones after it.
+	 * 
+	 * @param data
+	 * @param directory
+	 * @param blockCount
+	 * @param key
+	 * @return
+	 * @throws IOException
+	 */
+	private int findFirstBlock(ByteBuffer data, int directory, int blockCount, String key) throws IOException
+	{
+		int low = 0;
+		int high = blockCount - 1;
+		int result = 0;
+
+		while (low <= high)
 		{
-			this.cachedChunks = null;
-			throw e;
+			int mid = (low + high) >>> 1;
+			String firstWord = new Cursor(data, data.getInt(directory + mid * 4)).readString();
+
+			if (compareIgnoreCase(firstWord, key, Integer.MAX_VALUE) < 0)
+			{
+				result = mid;
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid - 1;
+			}
 		}
-		finally
+
+		return result;
+	}
+
+	/**
+	 * Releases the memory mapping of the index file. This must be called before the file is deleted or replaced, since
+	 * some platforms refuse to remove a file that is still mapped.
+	 */
+	public synchronized void close()
+	{
+		if (this.buffer != null)
 		{
-			stream.close();
+			unmap(this.buffer);
+			this.buffer = null;
 		}
+
+		this.cachedChunks = null;
 	}
 
 	/**
@@ -585,6 +757,34 @@ public class DiskIndex
 		}
 	}
 
+	/**
+	 * getBuffer
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private synchronized ByteBuffer getBuffer() throws IOException
+	{
+		if (this.buffer == null)
+		{
+			RandomAccessFile file = new RandomAccessFile(this.indexFile, "r"); //$NON-NLS-1$
+
+			try
+			{
+				FileChannel channel = file.getChannel();
+
+				// the mapping stays valid after the channel is closed
+				this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			finally
+			{
+				file.close();
+			}
+		}
+
+		return this.buffer;
+	}
+
 	/**
 	 * getCategories
 	 * 
@@ -638,36 +838,45 @@ public class DiskIndex
 			if (reuseExistingFile)
 			{
 				// read it in!
-				InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-
 				try
 				{
-					streamRead = 0;
+					Cursor cursor = new Cursor(getBuffer(), 0);
+					String signature = cursor.readString();
 
-					String signature = readString(stream);
+					if (VERSION_0_1_SIGNATURE.equals(signature) || VERSION_0_2_SIGNATURE.equals(signature))
+					{
+						readHeader(cursor);
+						migrate(signature);
+						return;
+					}
 
 					if (!signature.equals(SIGNATURE))
 					{
 						throw new IOException(Messages.DiskIndex_Wrong_Format);
 					}
 
-					this.headerInfoOffset = readStreamInt(stream);
-
-					if (this.headerInfoOffset > 0)
-					{ // file is empty if its not set
-						skip(stream, this.headerInfoOffset - this.streamRead); // assume that the header info offset is
-						// over
-						// current buffer end
-						readHeaderInfo(stream);
-					}
+					readHeader(cursor);
+				}
+				catch (BufferUnderflowException e)
+				{
+					close();
+					throw new IOException(Messages.DiskIndex_Wrong_Format);
+				}
+				catch (IndexOutOfBoundsException e)
+				{
+					close();
+					throw new IOException(Messages.DiskIndex_Wrong_Format);
 				}
-				finally
+				catch (IOException e)
 				{
-					stream.close();
+					close();
+					throw e;
 				}
 				return;
 			}
 
+			close();
+
 			if (!this.indexFile.delete())
 			{
 				if (DEBUG)
@@ -682,12 +891,12 @@ public class DiskIndex
 		// create a new empty one!
 		if (indexFile.createNewFile())
 		{
-			FileOutputStream stream = new FileOutputStream(this.indexFile, false);
+			OutputStream stream = new FileOutputStream(this.indexFile, false);
 
 			try
 			{
 				writeString(stream, SIGNATURE);
-				stream.write(-1);
+				writeStreamInt(stream, -1);
 			}
 			finally
 			{
@@ -792,7 +1001,7 @@ public class DiskIndex
 			wordsToDocs = new HashMap<String, Object>(3);
 		}
 
-		Map<String, Object> oldWordsToDocs = onDisk.readCategoryTable(categoryName, true);
+		Map<String, Object> oldWordsToDocs = onDisk.readCategoryTable(categoryName);
 
 		if (oldWordsToDocs != null)
 		{
@@ -846,8 +1055,6 @@ public class DiskIndex
 					list.addAll(mappedNumbers);
 				}
 			}
-
-			onDisk.categoryTables.put(categoryName, null); // flush cached table
 		}
 
 		writeCategoryTable(categoryName, wordsToDocs, stream);
@@ -881,14 +1088,13 @@ public class DiskIndex
 			}
 
 			// index is now empty since all the saved documents were removed
+			close();
 			DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath());
 			newDiskIndex.initialize(false);
 
 			return newDiskIndex;
 		}
 
-		this.streamEnd = 0;
-
 		DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath() + ".tmp"); //$NON-NLS-1$
 
 		try
@@ -917,8 +1123,6 @@ public class DiskIndex
 
 				indexedDocuments = null; // free up the space
 
-				// TODO Check list of categories we wanted removed and wipe them out of "categoryTables"?
-
 				// merge each category table with the new ones & write them out
 				if (previousLength == 0)
 				{
@@ -939,17 +1143,7 @@ public class DiskIndex
 			}
 
 			newDiskIndex.writeOffsetToHeader(offsetToHeader);
-
-			// rename file by deleting previous index file & renaming temp one
-			if (this.indexFile.exists() && !this.indexFile.delete())
-			{
-				throw new IOException("Failed to delete index file " + this.indexFile); //$NON-NLS-1$
-			}
-
-			if (!newDiskIndex.indexFile.renameTo(this.indexFile))
-			{
-				throw new IOException("Failed to rename index file " + this.indexFile); //$NON-NLS-1$
-			}
+			replaceWith(newDiskIndex);
 		}
 		catch (IOException e)
 		{
@@ -970,19 +1164,82 @@ public class DiskIndex
 	}
 
 	/**
-	 * read
+	 * Rewrites an index file from a previous format into the current one. Document numbers are unchanged since the
+	 * document name chunks are identical in all formats.
 	 * 
-	 * @param stream
-	 * @return
+	 * @param signature
+	 *            the signature of the file as it is now
 	 * @throws IOException
 	 */
-	private int read(InputStream stream) throws IOException
+	private void migrate(String signature) throws IOException
 	{
-		int val = stream.read();
+		IdeLog.logInfo(IndexPlugin.getDefault(),
+				MessageFormat.format("Migrating index file ''{0}'' to format ''{1}''", this.indexFile, SIGNATURE), //$NON-NLS-1$
+				IDebugScopes.INDEXER);
+
+		if (this.headerInfoOffset <= 0)
+		{
+			// empty legacy index, just start over
+			initialize(false);
+			return;
+		}
+
+		List<String> names = readAllDocumentNames();
+		DiskIndex newDiskIndex = new DiskIndex(this.indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+
+		try
+		{
+			newDiskIndex.initializeFrom(this, newDiskIndex.indexFile);
+			OutputStream stream = new BufferedOutputStream(new FileOutputStream(newDiskIndex.indexFile, false));
+			int offsetToHeader = -1;
+
+			try
+			{
+				newDiskIndex.writeDocumentNames(stream, names);
+
+				boolean hashOrdered = VERSION_0_1_SIGNATURE.equals(signature);
+
+				for (String categoryName : this.categoryOffsets.keySet())
+				{
+					Map<String, Object> table = hashOrdered ? readLegacyCategoryTable(categoryName)
+							: readCategoryTable(categoryName);
+
+					newDiskIndex.writeCategoryTable(categoryName, table, stream);
+				}
+
+				offsetToHeader = newDiskIndex.streamEnd;
+				newDiskIndex.writeHeaderInfo(stream);
+			}
+			finally
+			{
+				stream.close();
+			}
+
+			newDiskIndex.writeOffsetToHeader(offsetToHeader);
+			replaceWith(newDiskIndex);
+		}
+		catch (IOException e)
+		{
+			if (newDiskIndex.indexFile.exists() && !newDiskIndex.indexFile.delete())
+			{
+				if (DEBUG)
+				{
+					System.out.println("migrate - Failed to delete temp index " + newDiskIndex.indexFile); //$NON-NLS-1$
+				}
+			}
 
-		streamRead++;
+			throw e;
+		}
 
-		return val;
+		// take over the state of the rewritten file
+		this.headerInfoOffset = newDiskIndex.headerInfoOffset;
+		this.numberOfChunks = newDiskIndex.numberOfChunks;
+		this.sizeOfLastChunk = newDiskIndex.sizeOfLastChunk;
+		this.documentReferenceSize = newDiskIndex.documentReferenceSize;
+		this.chunkOffsets = newDiskIndex.chunkOffsets;
+		this.startOfCategoryTables = newDiskIndex.startOfCategoryTables;
+		this.categoryOffsets = newDiskIndex.categoryOffsets;
+		this.cachedChunks = null;
 	}
 
 	/**
@@ -998,41 +1255,28 @@ public class DiskIndex
 			return Collections.emptyList();
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
+		int lastIndex = this.numberOfChunks - 1;
+		String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
 
-		try
+		for (int i = 0; i < this.numberOfChunks; i++)
 		{
-			int offset = this.chunkOffsets[0];
-
-			skip(stream, offset);
-
-			int lastIndex = this.numberOfChunks - 1;
-
-			String[] docNames = new String[lastIndex * CHUNK_SIZE + sizeOfLastChunk];
-
-			for (int i = 0; i < this.numberOfChunks; i++)
-			{
-				readChunk(docNames, stream, i * CHUNK_SIZE, i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
-			}
+			String[] chunk = readChunk(i);
 
-			return Arrays.asList(docNames);
-		}
-		finally
-		{
-			stream.close();
+			System.arraycopy(chunk, 0, docNames, i * CHUNK_SIZE, chunk.length);
 		}
+
+		return Arrays.asList(docNames);
 	}
 
 	/**
-	 * readCategoryTable
+	 * Reads an entire category table into a map from word to list of document numbers. This is only needed when the
+	 * index is rewritten; queries read the mapped file in place.
 	 * 
 	 * @param categoryName
-	 * @param readDocNumbers
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized Map<String, Object> readCategoryTable(String categoryName, boolean readDocNumbers)
-			throws IOException
+	private Map<String, Object> readCategoryTable(String categoryName) throws IOException
 	{
 		// result will be null if categoryName is unknown
 		Integer offset = this.categoryOffsets.get(categoryName);
@@ -1042,212 +1286,88 @@ public class DiskIndex
 			return null;
 		}
 
-		if (this.categoryTables == null)
-		{
-			this.categoryTables = new HashMap<String, Map<String, Object>>(3);
-		}
-		else
+		ByteBuffer data = getBuffer();
+		Cursor table = new Cursor(data, offset);
+		int wordCount = table.readInt();
+		int blockCount = table.readInt();
+		Map<String, Object> categoryTable = new HashMap<String, Object>(wordCount);
+
+		for (int block = 0; block < blockCount; block++)
 		{
-			Map<String, Object> cachedTable = this.categoryTables.get(categoryName);
+			Cursor cursor = new Cursor(data, table.readInt());
+			int entries = Math.min(BLOCK_SIZE, wordCount - block * BLOCK_SIZE);
 
-			if (cachedTable != null)
+			for (int i = 0; i < entries; i++)
 			{
-				if (readDocNumbers)
-				{ // must cache remaining document number arrays
-					Map<String, Object> copy = new HashMap<String, Object>(cachedTable);
-
-					for (Map.Entry<String, Object> entry : cachedTable.entrySet())
-					{
-						Object arrayOffset = entry.getValue();
-
-						if (arrayOffset instanceof Integer)
-						{
-							copy.put(entry.getKey(), readDocumentNumbers(arrayOffset));
-						}
-					}
-
-					cachedTable = copy;
-				}
+				String word = cursor.readString();
 
-				return cachedTable;
+				categoryTable.put(word, cursor.readDocumentNumbers());
 			}
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-		Map<String, Object> categoryTable = null;
-		String[] matchingWords = null;
-		int count = 0;
-		int firstOffset = -1;
-
-		try
-		{
-			// skip to start of category
-			skip(stream, offset);
-
-			// Read the number of words in the category
-			int size = readStreamInt(stream);
-
-			try
-			{
-				if (size < 0)
-				{
-					// DEBUG
-					StringBuilder debug = new StringBuilder();
-					debug.append("-------------------- DEBUG --------------------\n"); //$NON-NLS-1$
-					debug.append("file = ").append(this.indexFile).append('\n'); //$NON-NLS-1$
-					debug.append("offset = ").append(offset).append('\n'); //$NON-NLS-1$
-					debug.append("size = ").append(size).append('\n'); //$NON-NLS-1$
-					debug.append("--------------------   END   --------------------\n"); //$NON-NLS-1$
-					System.err.print(debug.toString());
-					IdeLog.logError(
-							IndexPlugin.getDefault(),
-							MessageFormat.format(
-									"Size of category ''{0}'' negative:\n{1}", categoryName, debug.toString())); //$NON-NLS-1$
-					size = 0;
-				}
-
-				categoryTable = new HashMap<String, Object>(size);
-			}
-			catch (OutOfMemoryError oom)
-			{
-				// Here we hope that those string allocation will not throw another OutOfMemoryError...
-				// DEBUG
-				oom.printStackTrace();
-				String error = MessageFormat
-						.format("Index error in readCategoryTable. \nfile = {0} \noffset = {1} \n size = {2}", this.indexFile, offset, size); //$NON-NLS-1$
-				System.err.println("-------------------- DEBUG --------------------\n"); //$NON-NLS-1$
-				System.err.println(error);
-				System.err.println("--------------------   END   --------------------\n"); //$NON-NLS-1$
-				IdeLog.logError(IndexPlugin.getDefault(), error, oom);
-				throw oom;
-			}
-
-			int largeArraySize = 256;
-
-			for (int i = 0; i < size; i++)
-			{
-				String word = readString(stream);
-				int arrayOffset = readStreamInt(stream);
-
-				// if arrayOffset is:
-				// <= 0 then the array size == 1 with the value -> -arrayOffset
-				// > 1 & < 256 then the size of the array is > 1 & < 256, the document array follows immediately
-				// 256 if the array size >= 256 followed by another int which is the offset to the array (written prior
-				// to the table)
-				if (arrayOffset <= 0)
-				{
-					categoryTable.put(word, CollectionsUtil.newList(-arrayOffset)); // store 1 element array by negating
-					// documentNumber
-				}
-				else if (arrayOffset < largeArraySize)
-				{
-					categoryTable.put(word, readStreamDocumentArray(stream, arrayOffset)); // read in-lined array
-					// providing size
-				}
-				else
-				{
-					arrayOffset = readStreamInt(stream); // read actual offset
-
-					if (readDocNumbers)
-					{
-						if (matchingWords == null)
-						{
-							matchingWords = new String[size];
-						}
-
-						if (count == 0)
-						{
-							firstOffset = arrayOffset;
-						}
-
-						matchingWords[count++] = word;
-					}
-
-					categoryTable.put(word, new Integer(arrayOffset)); // offset to array in the file
-				}
-			}
-
-			this.categoryTables.put(categoryName, categoryTable);
-		}
-		catch (IOException ioe)
-		{
-			throw ioe;
-		}
-		finally
-		{
-			stream.close();
-		}
-
-		if (matchingWords != null && count > 0)
-		{
-			stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-			try
-			{
-				skip(stream, firstOffset);
-
-				for (int i = 0; i < count; i++)
-				{ // each array follows the previous one
-					categoryTable.put(matchingWords[i], readStreamDocumentArray(stream, readStreamInt(stream)));
-				}
-			}
-			catch (IOException ioe)
-			{
-				throw ioe;
-			}
-			finally
-			{
-				stream.close();
-			}
-		}
-
-		return categoryTable;
-	}
+		return categoryTable;
+	}
 
 	/**
 	 * readChunk
 	 * 
-	 * @param docNames
-	 * @param stream
-	 * @param index
-	 * @param size
+	 * @param chunkNumber
+	 * @return
 	 * @throws IOException
 	 */
-	private void readChunk(String[] docNames, InputStream stream, int index, int size) throws IOException
+	private synchronized String[] readChunk(int chunkNumber) throws IOException
 	{
-		String current = readString(stream);
+		if (this.cachedChunks == null)
+		{
+			this.cachedChunks = new String[this.numberOfChunks][];
+		}
 
-		docNames[index++] = current;
+		String[] chunk = this.cachedChunks[chunkNumber];
 
-		for (int i = 1; i < size; i++)
+		if (chunk == null)
 		{
-			int start = read(stream) & 0xFF;
-			int end = read(stream) & 0xFF;
-			String next = readString(stream);
+			boolean isLastChunk = chunkNumber == this.numberOfChunks - 1;
+			int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
+			Cursor cursor = new Cursor(getBuffer(), this.chunkOffsets[chunkNumber]);
+			String current = cursor.readString();
 
-			if (start > 0)
+			chunk = new String[numberOfNames];
+			chunk[0] = current;
+
+			for (int i = 1; i < numberOfNames; i++)
 			{
-				if (end > 0)
+				int start = cursor.readByte();
+				int end = cursor.readByte();
+				String next = cursor.readString();
+
+				if (start > 0)
 				{
-					int length = current.length();
+					if (end > 0)
+					{
+						int length = current.length();
 
-					next = current.substring(0, start) + next + current.substring(length - end, length);
+						next = current.substring(0, start) + next + current.substring(length - end, length);
+					}
+					else
+					{
+						next = current.substring(0, start) + next;
+					}
 				}
-				else
+				else if (end > 0)
 				{
-					next = current.substring(0, start) + next;
+					int length = current.length();
+
+					next = next + current.substring(length - end, length);
 				}
-			}
-			else if (end > 0)
-			{
-				int length = current.length();
 
-				next = next + current.substring(length - end, length);
+				chunk[i] = next;
+				current = next;
 			}
 
-			docNames[index++] = next;
-			current = next;
+			this.cachedChunks[chunkNumber] = chunk;
 		}
+
+		return chunk;
 	}
 
 	/**
@@ -1257,256 +1377,119 @@ public class DiskIndex
 	 * @return
 	 * @throws IOException
 	 */
-	private synchronized String readDocumentName(int docNumber) throws IOException
+	private String readDocumentName(int docNumber) throws IOException
 	{
-		if (this.cachedChunks == null)
-		{
-			this.cachedChunks = new String[this.numberOfChunks][];
-		}
-
 		int chunkNumber = docNumber / CHUNK_SIZE;
-		String[] chunk = this.cachedChunks[chunkNumber];
-
-		if (chunk == null)
-		{
-			boolean isLastChunk = chunkNumber == this.numberOfChunks - 1;
-			int start = this.chunkOffsets[chunkNumber];
-			int numberOfBytes = (isLastChunk ? this.startOfCategoryTables : this.chunkOffsets[chunkNumber + 1]) - start;
-
-			if (numberOfBytes < 0)
-			{
-				throw new IllegalArgumentException();
-			}
-
-			InputStream file = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-			try
-			{
-				skip(file, start);
-
-				int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
-
-				chunk = new String[numberOfNames];
-				readChunk(chunk, file, 0, numberOfNames);
-			}
-			catch (IOException ioe)
-			{
-				throw ioe;
-			}
-			finally
-			{
-				file.close();
-			}
-
-			this.cachedChunks[chunkNumber] = chunk;
-		}
 
-		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
+		return readChunk(chunkNumber)[docNumber - (chunkNumber * CHUNK_SIZE)];
 	}
 
 	/**
-	 * readDocumentNumbers
+	 * readHeader
 	 * 
-	 * @param arrayOffset
-	 * @return
+	 * @param cursor
 	 * @throws IOException
 	 */
-	private @SuppressWarnings("unchecked")
-	synchronized List<Integer> readDocumentNumbers(Object arrayOffset) throws IOException
+	private void readHeader(Cursor cursor) throws IOException
 	{
-		// arrayOffset is either a cached array of docNumbers or an Integer offset in the file
-		if (arrayOffset instanceof List<?>)
+		if (cursor.position + 4 > cursor.data.limit())
 		{
-			return (List<Integer>) arrayOffset;
+			// empty index files written by older releases end right after the signature
+			this.headerInfoOffset = -1;
+			return;
 		}
 
-		InputStream stream = new BufferedInputStream(new FileInputStream(this.indexFile));
-
-		try
-		{
-			int offset = ((Integer) arrayOffset).intValue();
-
-			skip(stream, offset);
+		this.headerInfoOffset = cursor.readInt();
 
-			return readStreamDocumentArray(stream, readStreamInt(stream));
-		}
-		finally
-		{
-			stream.close();
+		if (this.headerInfoOffset > 0)
+		{ // file is empty if its not set
+			cursor.position = this.headerInfoOffset;
+			readHeaderInfo(cursor);
 		}
 	}
 
 	/**
 	 * readHeaderInfo
 	 * 
-	 * @param stream
+	 * @param cursor
 	 * @throws IOException
 	 */
-	private void readHeaderInfo(InputStream stream) throws IOException
+	private void readHeaderInfo(Cursor cursor) throws IOException
 	{
 		// must be same order as writeHeaderInfo()
-		this.numberOfChunks = readStreamInt(stream);
+		this.numberOfChunks = cursor.readInt();
 		if (this.numberOfChunks < 0)
 		{
 			throw new IOException(MessageFormat.format("Corrupt index file, reported {0} chunks", numberOfChunks)); //$NON-NLS-1$
 		}
-		this.sizeOfLastChunk = read(stream) & 0xFF;
-		this.documentReferenceSize = read(stream) & 0xFF;
-		this.separator = (char) (read(stream) & 0xFF);
+		this.sizeOfLastChunk = cursor.readByte();
+		this.documentReferenceSize = cursor.readByte();
+		this.separator = (char) cursor.readByte();
 
 		this.chunkOffsets = new int[this.numberOfChunks];
 		for (int i = 0; i < this.numberOfChunks; i++)
 		{
-			this.chunkOffsets[i] = readStreamInt(stream);
+			this.chunkOffsets[i] = cursor.readInt();
 		}
 
-		this.startOfCategoryTables = readStreamInt(stream);
+		this.startOfCategoryTables = cursor.readInt();
 
 		// Build the table of categories to offsets where they start
-		int categoryCount = readStreamInt(stream);
+		int categoryCount = cursor.readInt();
 		this.categoryOffsets = new HashMap<String, Integer>(categoryCount);
 		for (int i = 0; i < categoryCount; i++)
 		{
-			String categoryName = readString(stream);
-			int offset = readStreamInt(stream);
+			String categoryName = cursor.readString();
+			int offset = cursor.readInt();
 			this.categoryOffsets.put(categoryName, offset); // cache offset to category table
 		}
-
-		this.categoryTables = new HashMap<String, Map<String, Object>>(3);
 	}
 
 	/**
-	 * readStreamDocumentArray
+	 * Reads a category table written in the "INDEX VERSION 0.1" format: a word count followed by word/document
+	 * reference pairs in hash order, with large document arrays written before the table.
 	 * 
-	 * @param stream
-	 * @param arraySize
+	 * @param categoryName
 	 * @return
 	 * @throws IOException
 	 */
-	private List<Integer> readStreamDocumentArray(InputStream stream, int arraySize) throws IOException
+	private Map<String, Object> readLegacyCategoryTable(String categoryName) throws IOException
 	{
-		if (arraySize == 0)
+		ByteBuffer data = getBuffer();
+		Cursor cursor = new Cursor(data, this.categoryOffsets.get(categoryName));
+		int size = cursor.readInt();
+
+		if (size < 0)
 		{
-			return Collections.emptyList();
+			IdeLog.logError(IndexPlugin.getDefault(), MessageFormat.format(
+					"Size of category ''{0}'' negative in legacy index file ''{1}''", categoryName, this.indexFile)); //$NON-NLS-1$
+			size = 0;
 		}
 
-		List<Integer> indexes = new ArrayList<Integer>();
+		Map<String, Object> categoryTable = new HashMap<String, Object>(size);
 
-		for (int i = 0; i < arraySize; i++)
+		for (int i = 0; i < size; i++)
 		{
-			int value = 0;
+			String word = cursor.readString();
+			int arrayOffset = cursor.readInt();
 
-			switch (this.documentReferenceSize)
+			if (arrayOffset <= 0)
 			{
-				case 1:
-					value = read(stream) & 0xFF;
-					break;
-
-				case 2:
-					value = (read(stream) & 0xFF) << 8;
-					value = value + (read(stream) & 0xFF);
-					break;
-
-				default:
-					value = readStreamInt(stream);
-					break;
+				categoryTable.put(word, CollectionsUtil.newList(-arrayOffset));
 			}
-
-			indexes.add(value);
-		}
-
-		return indexes;
-	}
-
-	/**
-	 * readStreamInt
-	 * 
-	 * @param stream
-	 * @return
-	 * @throws IOException
-	 */
-	private int readStreamInt(InputStream stream) throws IOException
-	{
-		int val = (read(stream) & 0xFF) << 24;
-
-		val += (read(stream) & 0xFF) << 16;
-		val += (read(stream) & 0xFF) << 8;
-
-		return val + (read(stream) & 0xFF);
-	}
-
-	/**
-	 * readString
-	 * 
-	 * @param stream
-	 * @return
-	 * @throws IOException
-	 */
-	private String readString(InputStream stream) throws IOException
-	{
-		int length = (read(stream) & 0xFF) << 8;
-		length += read(stream) & 0xFF;
-
-		// fill the chars from bytes buffer
-		char[] word = new char[length];
-		int i = 0;
-
-		while (i < length)
-		{
-			byte b = (byte) read(stream);
-
-			switch (b & 0xF0)
+			else if (arrayOffset < LARGE_ARRAY_SIZE)
 			{
-				case 0x00:
-				case 0x10:
-				case 0x20:
-				case 0x30:
-				case 0x40:
-				case 0x50:
-				case 0x60:
-				case 0x70:
-					word[i++] = (char) b;
-					break;
-
-				case 0xC0:
-				case 0xD0:
-					char next = (char) read(stream);
-
-					if ((next & 0xC0) != 0x80)
-					{
-						throw new UTFDataFormatException();
-					}
-
-					char ch = (char) ((b & 0x1F) << 6);
-
-					ch |= next & 0x3F;
-					word[i++] = ch;
-					break;
-
-				case 0xE0:
-					char first = (char) read(stream);
-					char second = (char) read(stream);
-
-					if ((first & second & 0xC0) != 0x80)
-					{
-						throw new UTFDataFormatException();
-					}
-
-					ch = (char) ((b & 0x0F) << 12);
-					ch |= ((first & 0x3F) << 6);
-					ch |= second & 0x3F;
-					word[i++] = ch;
-					break;
+				categoryTable.put(word, cursor.readDocumentArray(arrayOffset));
+			}
+			else
+			{
+				Cursor array = new Cursor(data, cursor.readInt());
 
-				default:
-					throw new UTFDataFormatException(
-							MessageFormat
-									.format("Unexpected byte value ''{0}'' at index {1}, reading string of length {2}. Possibly corrupt index file: ''{3}''", //$NON-NLS-1$
-											b, i, length, indexFile.getAbsolutePath()));
+				categoryTable.put(word, array.readDocumentArray(array.readInt()));
 			}
 		}
 
-		return new String(word);
+		return categoryTable;
 	}
 
 	/**
@@ -1522,13 +1505,6 @@ public class DiskIndex
 		// FIXME We need to wipe out the category from the file somehow! The problem is that we can drop a document/file
 		// fairly easily by setting it's mapping to null in memory index and merging, but the way the thing is set up we
 		// don't really have an easy way of wiping a category out from memory and disk right now.
-
-		// int offset = this.categoryOffsets.get(categoryName);
-		// // "Wipe out" from the category offset to next category offset. However we need to handle the "long arrays"
-		// written just before offsets!
-		// RandomAccessFile file = new RandomAccessFile(this.indexFile, "rw");
-		// file.seek(offset);
-
 		this.categoriesToDiscard = categoryNames;
 
 		DiskIndex newIndex = mergeWith(memoryIndex);
@@ -1539,42 +1515,66 @@ public class DiskIndex
 	}
 
 	/**
-	 * skip
+	 * Swaps the temporary file written for newDiskIndex into the place of this index's file.
 	 * 
-	 * @param stream
-	 * @param n
-	 * @return
+	 * @param newDiskIndex
 	 * @throws IOException
 	 */
-	private long skip(InputStream stream, long n) throws IOException
+	private void replaceWith(DiskIndex newDiskIndex) throws IOException
 	{
-		final long wantToSkip = n;
-		long actuallySkipped = 0;
+		// rename file by deleting previous index file & renaming temp one
+		close();
 
-		while (n > 0)
+		if (this.indexFile.exists() && !this.indexFile.delete())
 		{
-			long skipped = stream.skip(n);
+			throw new IOException("Failed to delete index file " + this.indexFile); //$NON-NLS-1$
+		}
 
-			actuallySkipped += skipped;
-			n = n - skipped;
+		if (!newDiskIndex.indexFile.renameTo(this.indexFile))
+		{
+			throw new IOException("Failed to rename index file " + this.indexFile); //$NON-NLS-1$
+		}
+	}
 
-			if (actuallySkipped == wantToSkip)
-			{
-				return actuallySkipped;
-			}
+	/**
+	 * Best effort attempt to release a mapping right away instead of waiting for the buffer to be garbage collected.
+	 * 
+	 * @param buffer
+	 */
+	private static void unmap(MappedByteBuffer buffer)
+	{
+		try
+		{
+			// Java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //$NON-NLS-1$
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		}
+		catch (Exception e)
+		{
+			// fall through to the pre Java 9 way
+		}
 
-			int read = stream.read();
+		try
+		{
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner"); //$NON-NLS-1$
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
 
-			if (read == -1)
+			if (cleaner != null)
 			{
-				return actuallySkipped;
+				Method clean = cleaner.getClass().getMethod("clean"); //$NON-NLS-1$
+				clean.setAccessible(true);
+				clean.invoke(cleaner);
 			}
-
-			n--;
-			actuallySkipped++;
 		}
-
-		return actuallySkipped;
+		catch (Exception e)
+		{
+			// the mapping will be released when the buffer is garbage collected
+		}
 	}
 
 	/**
@@ -1622,67 +1622,134 @@ public class DiskIndex
 		}
 
 		// the format of a category table is as follows:
-		// any document number arrays with >= 256 elements are written before the table (the offset to each array is
-		// remembered)
-		// then the number of word->int[] pairs in the table is written
-		// for each word -> int[] pair, the word is written followed by:
+		// any document number arrays with >= 256 elements are written first (the offset to each array is remembered)
+		// then the words, sorted by WORD_ORDER, in blocks of BLOCK_SIZE. For each word -> int[] pair, the word is
+		// written followed by:
 		// an int <= 0 if the array size == 1
 		// an int > 1 & < 256 for the size of the array if its > 1 & < 256, the document array follows immediately
 		// 256 if the array size >= 256 followed by another int which is the offset to the array (written prior to the
-		// table)
+		// blocks)
+		// then the camel case initials of each word with more than one hump, sorted, in blocks of BLOCK_SIZE. Each
+		// initials string is followed by the offset of its word's entry
+		// finally the table itself: the number of words, the number of blocks and the offset of each block, followed by
+		// the number of initials, the number of initials blocks and the offset of each of those
+
+		List<String> words = new ArrayList<String>(wordsToDocs.size());
+
+		for (String word : wordsToDocs.keySet())
+		{
+			if (word == null)
+			{
+				continue;
+			}
+
+			if (word.length() >= MAX_STRING_LENGTH)
+			{
+				// We may have run into the JS indexing issue: https://jira.appcelerator.org/browse/APSTUD-7366
+				// To limit the damage, we're going to effectively skip writing one entry into the index. This will
+				// break our knowledge of some property/type in JS but will allow indexing to continue.
+				IdeLog.logError(IndexPlugin.getDefault(), MessageFormat.format(
+						"Skipping a word of length {0} in category ''{1}'' of index file {2}", word.length(), //$NON-NLS-1$
+						categoryName, indexFile.getAbsolutePath()));
+				continue;
+			}
+
+			words.add(word);
+		}
+
+		Collections.sort(words, WORD_ORDER);
 
 		Map<String, Integer> longArrays = new HashMap<String, Integer>();
-		int largeArraySize = 256;
 
-		for (Map.Entry<String, Object> entry : wordsToDocs.entrySet())
+		for (String word : words)
 		{
-			List<Integer> docNumbers = (List<Integer>) entry.getValue();
+			List<Integer> docNumbers = (List<Integer>) wordsToDocs.get(word);
 
-			if (docNumbers.size() >= largeArraySize)
+			if (docNumbers.size() >= LARGE_ARRAY_SIZE)
 			{
-				longArrays.put(entry.getKey(), new Integer(this.streamEnd));
+				longArrays.put(word, new Integer(this.streamEnd));
 				writeDocumentNumbers(docNumbers, stream);
 			}
 		}
 
-		this.categoryOffsets.put(categoryName, this.streamEnd); // remember the offset to the start of the table
-		this.categoryTables.put(categoryName, null); // flush cached table
-		writeStreamInt(stream, wordsToDocs.size());
+		int wordCount = words.size();
+		int[] blockOffsets = new int[(wordCount + BLOCK_SIZE - 1) / BLOCK_SIZE];
+		List<InitialsEntry> humps = new ArrayList<InitialsEntry>();
 
-		for (Map.Entry<String, Object> entry : wordsToDocs.entrySet())
+		for (int i = 0; i < wordCount; i++)
 		{
-			try
+			if (i % BLOCK_SIZE == 0)
+			{
+				blockOffsets[i / BLOCK_SIZE] = this.streamEnd;
+			}
+
+			String word = words.get(i);
+			String initials = Index.getCamelCaseInitials(word, false);
+
+			if (initials.length() > 1)
+			{
+				humps.add(new InitialsEntry(initials, this.streamEnd));
+			}
+
+			writeString(stream, word);
+
+			Integer longArrayOffset = longArrays.get(word);
+
+			if (longArrayOffset != null)
+			{
+				writeStreamInt(stream, LARGE_ARRAY_SIZE); // mark to identify that an offset follows
+				writeStreamInt(stream, longArrayOffset.intValue()); // offset in the file of the array of document
+																	// numbers
+			}
+			else
 			{
-				writeString(stream, entry.getKey());
+				List<Integer> documentNumbers = (List<Integer>) wordsToDocs.get(word);
 
-				if (longArrays.containsKey(entry.getKey()))
+				if (documentNumbers.size() == 1)
 				{
-					writeStreamInt(stream, largeArraySize); // mark to identify that an offset follows
-					writeStreamInt(stream, longArrays.get(entry.getKey()).intValue()); // offset in the file of the
-																						// array of
-					// document numbers
+					writeStreamInt(stream, -documentNumbers.get(0));
 				}
 				else
 				{
-					List<Integer> documentNumbers = (List<Integer>) entry.getValue();
-
-					if (documentNumbers.size() == 1)
-					{
-						writeStreamInt(stream, -documentNumbers.get(0));
-					}
-					else
-					{
-						writeDocumentNumbers(documentNumbers, stream);
-					}
+					writeDocumentNumbers(documentNumbers, stream);
 				}
 			}
-			catch (IOException ioe)
+		}
+
+		// words are already in order, so a stable sort keeps words with the same initials in order as well
+		Collections.sort(humps);
+
+		int humpCount = humps.size();
+		int[] humpBlockOffsets = new int[(humpCount + BLOCK_SIZE - 1) / BLOCK_SIZE];
+
+		for (int i = 0; i < humpCount; i++)
+		{
+			if (i % BLOCK_SIZE == 0)
 			{
-				// We may have run into the JS indexing issue: https://jira.appcelerator.org/browse/APSTUD-7366
-				IdeLog.logError(IndexPlugin.getDefault(), ioe);
-				// To limit the damage, we're going to effectively skip writing one entry into the index. This will
-				// break our knowledge of some property/type in JS but will allow indexing to continue.
+				humpBlockOffsets[i / BLOCK_SIZE] = this.streamEnd;
 			}
+
+			InitialsEntry hump = humps.get(i);
+
+			writeString(stream, hump.initials);
+			writeStreamInt(stream, hump.entryOffset);
+		}
+
+		this.categoryOffsets.put(categoryName, this.streamEnd); // remember the offset to the start of the table
+		writeStreamInt(stream, wordCount);
+		writeStreamInt(stream, blockOffsets.length);
+
+		for (int blockOffset : blockOffsets)
+		{
+			writeStreamInt(stream, blockOffset);
+		}
+
+		writeStreamInt(stream, humpCount);
+		writeStreamInt(stream, humpBlockOffsets.length);
+
+		for (int humpBlockOffset : humpBlockOffsets)
+		{
+			writeStreamInt(stream, humpBlockOffset);
 		}
 	}
 
@@ -1822,8 +1889,6 @@ public class DiskIndex
 					break;
 			}
 		}
-
-		stream.flush();
 	}
 
 	/**
@@ -1901,7 +1966,6 @@ public class DiskIndex
 		stream.write((byte) (val >> 8));
 		stream.write((byte) val);
 		this.streamEnd += 4;
-		stream.flush();
 	}
 
 	/**
@@ -1917,7 +1981,7 @@ public class DiskIndex
 
 		// If this string is longer than we can store in 2 bytes (16 bits, which is 65535), we'll overflow/break!
 		int length = array.length;
-		if (length >= 65535)
+		if (length >= MAX_STRING_LENGTH)
 		{
 			throw new IOException(
 					MessageFormat
@@ -1929,7 +1993,6 @@ public class DiskIndex
 		stream.write((byte) (length & 0xFF)); // this will allow to read it faster
 		this.streamEnd += 2;
 
-		// we're assuming that very few char[] are so large that we need to flush the buffer more than once, if at all
 		for (char ch : array)
 		{
 			if ((ch & 0x007F) == ch)
@@ -1972,7 +2035,197 @@ public class DiskIndex
 				streamEnd++;
 			}
 		}
+	}
 
-		stream.flush();
+	/**
+	 * A read position within the mapped index file. All reads use absolute gets on the shared buffer, so any number of
+	 * cursors may be used concurrently by the threads holding the index's read lock.
+	 */
+	private class Cursor
+	{
+		private final ByteBuffer data;
+		private int position;
+
+		Cursor(ByteBuffer data, int position)
+		{
+			this.data = data;
+			this.position = position;
+		}
+
+		int readByte()
+		{
+			return data.get(position++) & 0xFF;
+		}
+
+		int readInt()
+		{
+			int value = data.getInt(position);
+
+			position += 4;
+
+			return value;
+		}
+
+		/**
+		 * Reads the document reference that follows a word in a category table.
+		 * 
+		 * @return
+		 */
+		List<Integer> readDocumentNumbers()
+		{
+			int arrayOffset = readInt();
+
+			if (arrayOffset <= 0)
+			{
+				return CollectionsUtil.newList(-arrayOffset); // 1 element array stored by negating documentNumber
+			}
+
+			if (arrayOffset < LARGE_ARRAY_SIZE)
+			{
+				return readDocumentArray(arrayOffset); // in-lined array
+			}
+
+			Cursor array = new Cursor(data, readInt());
+
+			return array.readDocumentArray(array.readInt());
+		}
+
+		/**
+		 * Skips over the document reference that follows a word in a category table.
+		 */
+		void skipDocumentNumbers()
+		{
+			int arrayOffset = readInt();
+
+			if (arrayOffset <= 0)
+			{
+				return;
+			}
+
+			if (arrayOffset < LARGE_ARRAY_SIZE)
+			{
+				position += arrayOffset * (documentReferenceSize > 2 ? 4 : documentReferenceSize);
+			}
+			else
+			{
+				position += 4;
+			}
+		}
+
+		List<Integer> readDocumentArray(int arraySize)
+		{
+			if (arraySize == 0)
+			{
+				return Collections.emptyList();
+			}
+
+			List<Integer> indexes = new ArrayList<Integer>(arraySize);
+
+			for (int i = 0; i < arraySize; i++)
+			{
+				int value;
+
+				switch (documentReferenceSize)
+				{
+					case 1:
+						value = readByte();
+						break;
+
+					case 2:
+						value = readByte() << 8;
+						value += readByte();
+						break;
+
+					default:
+						value = readInt();
+						break;
+				}
+
+				indexes.add(value);
+			}
+
+			return indexes;
+		}
+
+		String readString() throws UTFDataFormatException
+		{
+			int length = readByte() << 8;
+			length += readByte();
+
+			// fill the chars from bytes buffer
+			char[] word = new char[length];
+			int i = 0;
+
+			while (i < length)
+			{
+				int b = data.get(position++);
+
+				switch (b & 0xF0)
+				{
+					case 0x00:
+					case 0x10:
+					case 0x20:
+					case 0x30:
+					case 0x40:
+					case 0x50:
+					case 0x60:
+					case 0x70:
+						word[i++] = (char) b;
+						break;
+
+					case 0xC0:
+					case 0xD0:
+						int next = readByte();
+
+						if ((next & 0xC0) != 0x80)
+						{
+							throw new UTFDataFormatException();
+						}
+
+						word[i++] = (char) (((b & 0x1F) << 6) | (next & 0x3F));
+						break;
+
+					case 0xE0:
+						int first = readByte();
+						int second = readByte();
+
+						if ((first & second & 0xC0) != 0x80)
+						{
+							throw new UTFDataFormatException();
+						}
+
+						word[i++] = (char) (((b & 0x0F) << 12) | ((first & 0x3F) << 6) | (second & 0x3F));
+						break;
+
+					default:
+						throw new UTFDataFormatException(
+								MessageFormat
+										.format("Unexpected byte value ''{0}'' at index {1}, reading string of length {2}. Possibly corrupt index file: ''{3}''", //$NON-NLS-1$
+												b, i, length, indexFile.getAbsolutePath()));
+				}
+			}
+
+			return new String(word);
+		}
+	}
+
+	/**
+	 * The camel case initials of a word along with the offset of the word's entry in the category table.
+	 */
+	private static class InitialsEntry implements Comparable<InitialsEntry>
+	{
+		final String initials;
+		final int entryOffset;
+
+		InitialsEntry(String initials, int entryOffset)
+		{
+			this.initials = initials;
+			this.entryOffset = entryOffset;
+		}
+
+		public int compareTo(InitialsEntry o)
+		{
+			return WORD_ORDER.compare(initials, o.initials);
+		}
 	}
 }
@@ -42,7 +42,9 @@ public interface IJSIndexConstants
 	// 0.36 - Include Module definition mappings to autogenerated UUID type names holding the exported object, remove
 	// requires keys
 	// 0.37 - Retain internal flag and user agent listing when writing types to index
-	public static final double INDEX_VERSION = 0.37;
+	// 0.38 - Use a compact binary encoding instead of JSON for properties, functions and events
+	// 0.39 - Keep the characters of the binary encoding within two bytes of UTF-8
+	public static final double INDEX_VERSION = 0.39;
 
 	// for debugging, comment the line above, and uncomment the following
 	// public static final double INDEX_VERSION = new Random().nextDouble() * 1e6;
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -39,6 +39,7 @@ import com.aptana.js.core.model.FunctionElement;
 import com.aptana.js.core.model.PropertyElement;
 import com.aptana.js.core.model.TypeElement;
 import com.aptana.js.internal.core.index.JSIndexReader;
+import com.aptana.js.internal.core.index.TypeMemberCache;
 
 /**
  * This class is intended to silently query the types/functions/properties/events for a given project. It uses the
@@ -75,6 +76,11 @@ public class JSIndexQueryHelper
 	 */
 	private IProject project;
 
+	/**
+	 * The resolved types shared by every helper querying the same indices. Lazily looked up.
+	 */
+	private TypeMemberCache typeMemberCache;
+
 	/**
 	 * When we are operating on a given index. This should be called when we're running queries for an external lib,
 	 * contained in the index. This way it only queries that index and the JS Core.
@@ -177,12 +183,13 @@ public class JSIndexQueryHelper
 	}
 
 	/**
-	 * Gets all the members defined on Window or Global in the given Index.
+	 * Gets all the members defined on Window or Global in the given Index. The members are cached until one of the
+	 * indices changes, and are shared with other callers: they must not be modified.
 	 * 
 	 * @param index
 	 * @param fileName
 	 * @param project
-	 * @return
+	 * @return an unmodifiable collection
 	 */
 	public Collection<PropertyElement> getGlobals(String fileName)
 	{
@@ -192,7 +199,45 @@ public class JSIndexQueryHelper
 		{
 			types.add(0, JSTypeConstants.WINDOW_TYPE);
 		}
-		return getTypeMembers(types);
+		return getCachedTypeMembers(types);
+	}
+
+	/**
+	 * Gets all the functions and properties of the given type and its ancestors, in the order
+	 * {@link #getTypeMembers(List)} returns them for the type followed by {@link #getTypeAncestorNames(String)}. The
+	 * members are cached until one of the indices changes, and are shared with other callers: they must not be
+	 * modified.
+	 * 
+	 * @param typeName
+	 * @return an unmodifiable list
+	 */
+	public List<PropertyElement> getAllTypeMembers(String typeName)
+	{
+		List<String> types = getTypeAncestorNames(typeName);
+		types.add(0, typeName);
+		return getCachedTypeMembers(types);
+	}
+
+	private List<PropertyElement> getCachedTypeMembers(List<String> typeNames)
+	{
+		TypeMemberCache cache = getTypeMemberCache();
+		List<PropertyElement> members = cache.getMembers(typeNames);
+		if (members == null)
+		{
+			long[] stamps = cache.getStamps();
+			members = Collections.unmodifiableList(new ArrayList<PropertyElement>(getTypeMembers(typeNames)));
+			cache.putMembers(new ArrayList<String>(typeNames), stamps, members);
+		}
+		return members;
+	}
+
+	private synchronized TypeMemberCache getTypeMemberCache()
+	{
+		if (typeMemberCache == null)
+		{
+			typeMemberCache = TypeMemberCache.getCache(indices);
+		}
+		return typeMemberCache;
 	}
 
 	/**
@@ -222,6 +267,21 @@ public class JSIndexQueryHelper
 	 * @return
 	 */
 	public List<String> getTypeAncestorNames(String typeName)
+	{
+		TypeMemberCache cache = getTypeMemberCache();
+		List<String> ancestors = cache.getAncestors(typeName);
+		if (ancestors == null)
+		{
+			long[] stamps = cache.getStamps();
+			ancestors = Collections.unmodifiableList(findTypeAncestorNames(typeName));
+			cache.putAncestors(typeName, stamps, ancestors);
+		}
+
+		// callers are free to modify the list
+		return new ArrayList<String>(ancestors);
+	}
+
+	private List<String> findTypeAncestorNames(String typeName)
 	{
 		// Using linked hash set to preserve the order items were added to set
 		Set<String> types = new LinkedHashSet<String>();
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -61,6 +61,7 @@ import com.aptana.js.core.parsing.ast.JSReturnNode;
 import com.aptana.js.core.parsing.ast.JSStringNode;
 import com.aptana.js.core.parsing.ast.JSTreeWalker;
 import com.aptana.js.core.parsing.ast.JSTrueNode;
+import com.aptana.js.internal.core.inferencing.JSInferenceCache;
 import com.aptana.js.internal.core.inferencing.JSPropertyCollector;
 import com.aptana.js.internal.core.inferencing.JSSymbolTypeInferrer;
 import com.aptana.js.internal.core.parsing.sdoc.model.DocumentationBlock;
@@ -189,10 +190,7 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 	 */
 	protected void addTypes(IParseNode node)
 	{
-		if (node instanceof JSNode)
-		{
-			((JSNode) node).accept(this);
-		}
+		this.addTypes(this.getTypes(node));
 	}
 
 	/**
@@ -263,30 +261,67 @@ public class JSNodeTypeInferrer extends JSTreeWalker
 	}
 
 	/**
-	 * getTypes
+	 * getTypes. The types of a node are inferred once per scope, later calls return them from the
+	 * {@link JSScope#getInferenceCache() inference cache} of the scope tree.
 	 * 
 	 * @param node
-	 * @return
+	 * @return an unmodifiable list, whether or not the types came from the cache
 	 */
 	public List<String> getTypes(IParseNode node, JSScope scope)
 	{
 		if (node instanceof JSNode)
 		{
+			JSNode jsNode = (JSNode) node;
+			JSInferenceCache cache = (scope != null) ? scope.getInferenceCache() : null;
+
+			if (cache != null)
+			{
+				List<String> types = cache.getTypes(scope, jsNode);
+
+				if (types != null)
+				{
+					return types;
+				}
+			}
+
 			// create new nested walker
-			// FIXME How can we avoid total recursion here? can we re-use ourself somehow?
 			JSNodeTypeInferrer walker = new JSNodeTypeInferrer(scope, this._index, this._location, this._queryHelper,
 					_monitor.newChild(1));
+			int token = (cache != null) ? cache.enterNode() : 0;
+			List<String> types = null;
 
-			// collect types
-			walker.visit((JSNode) node);
+			try
+			{
+				// collect types
+				jsNode.accept(walker);
+				types = walker.getTypes();
+			}
+			finally
+			{
+				if (cache != null)
+				{
+					cache.exitNode(scope, jsNode, token, types);
+				}
+			}
 
-			// return collected types
-			return walker.getTypes();
+			// return collected types, read-only like the ones returned from the cache
+			return Collections.unmodifiableList(types);
 		}
 
 		return Collections.emptyList();
 	}
 
+	/**
+	 * Adds the types of the node, which are only inferred if they haven't been inferred in this scope before.
+	 * 
+	 * @see com.aptana.js.core.parsing.ast.JSTreeWalker#visit(com.aptana.js.core.parsing.ast.JSNode)
+	 */
+	@Override
+	public void visit(JSNode node)
+	{
+		this.addTypes(this.getTypes(node));
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.js.parsing.ast.JSTreeWalker#visit(com.aptana.editor.js.parsing.ast.JSArrayNode)
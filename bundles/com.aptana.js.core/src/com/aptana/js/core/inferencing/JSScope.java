@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.Set;
 
 import com.aptana.js.core.parsing.ast.JSNode;
+import com.aptana.js.internal.core.inferencing.JSInferenceCache;
 import com.aptana.parsing.lexer.IRange;
 import com.aptana.parsing.lexer.Range;
 
@@ -24,6 +25,11 @@ public class JSScope
 	private JSPropertyCollection object;
 	private IRange range;
 
+	/**
+	 * The types inferred for the nodes of this scope tree. Only set on the root scope, and lazily.
+	 */
+	private JSInferenceCache inferenceCache;
+
 	/**
 	 * JSScope
 	 */
@@ -41,6 +47,7 @@ public class JSScope
 	{
 		if (scope != null)
 		{
+			clearInferenceCache();
 			scope.setParent(this);
 
 			if (children == null)
@@ -62,6 +69,8 @@ public class JSScope
 	{
 		JSPropertyCollection property;
 
+		clearInferenceCache();
+
 		if (object.hasProperty(name))
 		{
 			property = object.getProperty(name);
@@ -93,6 +102,34 @@ public class JSScope
 		return result;
 	}
 
+	/**
+	 * Returns the cache of the types inferred for the nodes of this scope tree, shared by all of its scopes. The cache
+	 * is dropped whenever symbols or scopes are added to the tree.
+	 * 
+	 * @return
+	 */
+	public JSInferenceCache getInferenceCache()
+	{
+		JSScope root = getRoot();
+
+		if (root.inferenceCache == null)
+		{
+			root.inferenceCache = new JSInferenceCache();
+		}
+
+		return root.inferenceCache;
+	}
+
+	private void clearInferenceCache()
+	{
+		JSScope root = getRoot();
+
+		if (root.inferenceCache != null)
+		{
+			root.inferenceCache.clear();
+		}
+	}
+
 	/**
 	 * getLocalSymbol
 	 * 
@@ -144,6 +181,18 @@ public class JSScope
 		return (range != null) ? range : Range.EMPTY;
 	}
 
+	private JSScope getRoot()
+	{
+		JSScope root = this;
+
+		while (root.parent != null)
+		{
+			root = root.parent;
+		}
+
+		return root;
+	}
+
 	/**
 	 * getScopeAtOffset
 	 * 
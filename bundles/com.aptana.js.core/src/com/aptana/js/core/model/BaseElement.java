@@ -21,6 +21,9 @@ import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.SourcePrinter;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
+import com.aptana.index.core.IBinaryConvertible;
 import com.aptana.index.core.IndexDocument;
 import com.aptana.index.core.IndexUtil;
 import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
@@ -45,6 +48,12 @@ public abstract class BaseElement implements Convertible, IndexDocument
 	private List<String> _documents;
 	private boolean _deprecated;
 
+	/**
+	 * When read from an index, the encoded documentation details of this element (description, since list, examples,
+	 * etc.). These are only decoded when first accessed. See {@link #loadDetails()}
+	 */
+	private volatile BinaryInput _details;
+
 	/**
 	 * addDocument
 	 * 
@@ -72,6 +81,8 @@ public abstract class BaseElement implements Convertible, IndexDocument
 	{
 		if (since != null)
 		{
+			this.loadDetails();
+
 			if (this._sinceList == null)
 			{
 				this._sinceList = new ArrayList<SinceElement>();
@@ -187,6 +198,96 @@ public abstract class BaseElement implements Convertible, IndexDocument
 		}
 	}
 
+	/**
+	 * Read an element written by {@link #toBinary(BinaryOutput)}. Only the subclasses whose fields are all written by
+	 * {@link #writeBinary(BinaryOutput)} and {@link #writeDetails(BinaryOutput)} declare {@link IBinaryConvertible}.
+	 * 
+	 * @param in
+	 */
+	public void fromBinary(BinaryInput in)
+	{
+		this.readBinary(in);
+
+		// the details section is skipped over for now and decoded on first access
+		this._details = in.readSection();
+	}
+
+	/**
+	 * Decode the pending documentation details, if any. Accessors of fields written by
+	 * {@link #writeDetails(BinaryOutput)} must call this before touching those fields.
+	 */
+	protected void loadDetails()
+	{
+		if (this._details != null)
+		{
+			synchronized (this)
+			{
+				BinaryInput details = this._details;
+
+				if (details != null)
+				{
+					this._details = null;
+					this.readDetails(details);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the fields written by {@link #writeBinary(BinaryOutput)}. Subclasses that override this must call super
+	 * first.
+	 * 
+	 * @param in
+	 */
+	protected void readBinary(BinaryInput in)
+	{
+		this.setName(in.readString());
+		this.setIsDeprecated(in.readBoolean());
+
+		if (in.readBoolean())
+		{
+			this._userAgents = ALL_USER_AGENTS;
+		}
+		else
+		{
+			int count = in.readInt();
+
+			if (count > 0)
+			{
+				this._userAgents = new HashSet<UserAgentElement>(count);
+
+				for (int i = 0; i < count; i++)
+				{
+					// @formatter:off
+					this._userAgents.add(UserAgentElement.createUserAgentElement(
+						in.readString(),
+						in.readString(),
+						in.readString(),
+						in.readString(),
+						in.readString()
+					));
+					// @formatter:on
+				}
+			}
+			else
+			{
+				this._userAgents = null;
+			}
+		}
+	}
+
+	/**
+	 * Read the fields written by {@link #writeDetails(BinaryOutput)}. Subclasses that override this must call super
+	 * first.
+	 * 
+	 * @param in
+	 */
+	protected void readDetails(BinaryInput in)
+	{
+		this._description = in.readString();
+		this._sinceList = in.readList(SinceElement.class);
+	}
+
 	/**
 	 * isDeprecated
 	 * 
@@ -214,6 +315,8 @@ public abstract class BaseElement implements Convertible, IndexDocument
 	 */
 	public String getDescription()
 	{
+		this.loadDetails();
+
 		return StringUtil.getStringValue(this._description);
 	}
 
@@ -244,6 +347,8 @@ public abstract class BaseElement implements Convertible, IndexDocument
 	 */
 	public List<SinceElement> getSinceList()
 	{
+		this.loadDetails();
+
 		return CollectionsUtil.getListValue(this._sinceList);
 	}
 
@@ -309,6 +414,7 @@ public abstract class BaseElement implements Convertible, IndexDocument
 	 */
 	public void setDescription(String description)
 	{
+		this.loadDetails();
 		this._description = description;
 	}
 
@@ -389,6 +495,61 @@ public abstract class BaseElement implements Convertible, IndexDocument
 		}
 	}
 
+	/**
+	 * Write this element in the compact encoding read by {@link #fromBinary(BinaryInput)}.
+	 * 
+	 * @param out
+	 */
+	public void toBinary(BinaryOutput out)
+	{
+		this.writeBinary(out);
+
+		BinaryOutput details = out.createSection();
+		this.writeDetails(details);
+		out.writeSection(details);
+	}
+
+	/**
+	 * Write the fields needed to list and filter this element, for example in content assist. Subclasses that override
+	 * this must call super first.
+	 * 
+	 * @param out
+	 */
+	protected void writeBinary(BinaryOutput out)
+	{
+		out.writeString(this.getName());
+		out.writeBoolean(this.isDeprecated());
+		out.writeBoolean(this.hasAllUserAgents());
+
+		if (!this.hasAllUserAgents())
+		{
+			List<UserAgentElement> userAgents = this.getUserAgents();
+
+			out.writeInt(userAgents.size());
+
+			for (UserAgentElement userAgent : userAgents)
+			{
+				out.writeString(userAgent.getPlatform());
+				out.writeString(userAgent.getVersion());
+				out.writeString(userAgent.getOS());
+				out.writeString(userAgent.getOSVersion());
+				out.writeString(userAgent.getDescription());
+			}
+		}
+	}
+
+	/**
+	 * Write the documentation details of this element. These are decoded lazily when read back from an index.
+	 * Subclasses that override this must call super first.
+	 * 
+	 * @param out
+	 */
+	protected void writeDetails(BinaryOutput out)
+	{
+		out.writeString(this.getDescription());
+		out.writeList(this.getSinceList());
+	}
+
 	/**
 	 * toSource
 	 * 
@@ -14,13 +14,16 @@ import java.util.Map;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.SourcePrinter;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
+import com.aptana.index.core.IBinaryConvertible;
 import com.aptana.index.core.IndexUtil;
 import com.aptana.jetty.util.epl.ajax.JSON.Output;
 
 /**
  * EventElement
  */
-public class EventElement extends BaseElement
+public class EventElement extends BaseElement implements IBinaryConvertible
 {
 	private static final String OWNING_TYPE_PROPERTY = "owningType"; //$NON-NLS-1$
 	private static final String PROPERTIES_PROPERTY = "properties"; //$NON-NLS-1$
@@ -111,6 +114,32 @@ public class EventElement extends BaseElement
 		this._owningType = type;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.BaseElement#readBinary(com.aptana.index.core.BinaryInput)
+	 */
+	@Override
+	protected void readBinary(BinaryInput in)
+	{
+		super.readBinary(in);
+
+		this._owningType = in.readString();
+		this._properties = in.readList(EventPropertyElement.class);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.BaseElement#writeBinary(com.aptana.index.core.BinaryOutput)
+	 */
+	@Override
+	protected void writeBinary(BinaryOutput out)
+	{
+		super.writeBinary(out);
+
+		out.writeString(this.getOwningType());
+		out.writeList(this.getProperties());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.js.contentassist.model.BaseElement#toJSON(com.aptana.jetty.util.epl.ajax.JSON.Output)
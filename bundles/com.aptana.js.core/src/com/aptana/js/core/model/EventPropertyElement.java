@@ -13,13 +13,16 @@ import java.util.Map;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.SourcePrinter;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
+import com.aptana.index.core.IBinaryConvertible;
 import com.aptana.index.core.IndexUtil;
 import com.aptana.jetty.util.epl.ajax.JSON.Output;
 
 /**
  * EventProperty
  */
-public class EventPropertyElement extends BaseElement implements IHasPredefinedValues
+public class EventPropertyElement extends BaseElement implements IHasPredefinedValues, IBinaryConvertible
 {
 
 	private static final String TYPE_PROPERTY = "type"; //$NON-NLS-1$
@@ -75,6 +78,32 @@ public class EventPropertyElement extends BaseElement implements IHasPredefinedV
 		this._type = type;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.BaseElement#readBinary(com.aptana.index.core.BinaryInput)
+	 */
+	@Override
+	protected void readBinary(BinaryInput in)
+	{
+		super.readBinary(in);
+
+		this._type = in.readString();
+		this._constants = in.readStrings();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.BaseElement#writeBinary(com.aptana.index.core.BinaryOutput)
+	 */
+	@Override
+	protected void writeBinary(BinaryOutput out)
+	{
+		super.writeBinary(out);
+
+		out.writeString(this.getType());
+		out.writeStrings(this.getConstants());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.js.contentassist.model.BaseElement#toJSON(com.aptana.jetty.util.epl.ajax.JSON.Output)
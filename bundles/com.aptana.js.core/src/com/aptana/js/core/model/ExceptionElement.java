@@ -13,8 +13,11 @@ import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
 import com.aptana.jetty.util.epl.ajax.JSON.Output;
 
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
+import com.aptana.index.core.IBinaryConvertible;
 
-public class ExceptionElement implements Convertible
+public class ExceptionElement implements Convertible, IBinaryConvertible
 {
 	private static final String DESCRIPTION_PROPERTY = "description"; //$NON-NLS-1$
 	private static final String TYPE_PROPERTY = "type"; //$NON-NLS-1$
@@ -29,6 +32,16 @@ public class ExceptionElement implements Convertible
 	{
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IBinaryConvertible#fromBinary(com.aptana.index.core.BinaryInput)
+	 */
+	public void fromBinary(BinaryInput in)
+	{
+		this._type = in.readString();
+		this._description = in.readString();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.jetty.util.epl.ajax.JSON.Convertible#fromJSON(java.util.Map)
@@ -74,6 +87,16 @@ public class ExceptionElement implements Convertible
 		this._type = type;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IBinaryConvertible#toBinary(com.aptana.index.core.BinaryOutput)
+	 */
+	public void toBinary(BinaryOutput out)
+	{
+		out.writeString(this.getType());
+		out.writeString(this.getDescription());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.jetty.util.epl.ajax.JSON.Convertible#toJSON(com.aptana.jetty.util.epl.ajax.JSON.Output)
@@ -16,6 +16,8 @@ import com.aptana.core.IMap;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.SourcePrinter;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
 import com.aptana.index.core.IndexUtil;
 import com.aptana.jetty.util.epl.ajax.JSON.Output;
 import com.aptana.js.core.JSTypeConstants;
@@ -72,6 +74,8 @@ public class FunctionElement extends PropertyElement
 	{
 		if (exception != null)
 		{
+			this.loadDetails();
+
 			if (this._exceptions == null)
 			{
 				this._exceptions = new ArrayList<ExceptionElement>();
@@ -108,6 +112,8 @@ public class FunctionElement extends PropertyElement
 	{
 		if (reference != null && reference.length() > 0)
 		{
+			this.loadDetails();
+
 			if (this._references == null)
 			{
 				this._references = new ArrayList<String>();
@@ -187,6 +193,8 @@ public class FunctionElement extends PropertyElement
 	 */
 	public List<ExceptionElement> getExceptions()
 	{
+		this.loadDetails();
+
 		return CollectionsUtil.getListValue(this._exceptions);
 	}
 
@@ -255,6 +263,8 @@ public class FunctionElement extends PropertyElement
 	 */
 	public List<String> getReferences()
 	{
+		this.loadDetails();
+
 		return CollectionsUtil.getListValue(this._references);
 	}
 
@@ -291,7 +301,7 @@ public class FunctionElement extends PropertyElement
 	 */
 	public boolean hasExceptions()
 	{
-		return !CollectionsUtil.isEmpty(_exceptions);
+		return !CollectionsUtil.isEmpty(getExceptions());
 	}
 
 	/**
@@ -344,6 +354,62 @@ public class FunctionElement extends PropertyElement
 		this._isMethod = value;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.PropertyElement#readBinary(com.aptana.index.core.BinaryInput)
+	 */
+	@Override
+	protected void readBinary(BinaryInput in)
+	{
+		super.readBinary(in);
+
+		this._isConstructor = in.readBoolean();
+		this._isMethod = in.readBoolean();
+		this._parameters = in.readList(ParameterElement.class);
+		this._returnTypes = in.readList(ReturnTypeElement.class);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.PropertyElement#readDetails(com.aptana.index.core.BinaryInput)
+	 */
+	@Override
+	protected void readDetails(BinaryInput in)
+	{
+		super.readDetails(in);
+
+		this._exceptions = in.readList(ExceptionElement.class);
+		this._references = in.readStrings();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.PropertyElement#writeBinary(com.aptana.index.core.BinaryOutput)
+	 */
+	@Override
+	protected void writeBinary(BinaryOutput out)
+	{
+		super.writeBinary(out);
+
+		out.writeBoolean(this.isConstructor());
+		out.writeBoolean(this.isMethod());
+		out.writeList(this.getParameters());
+		out.writeList(this.getReturnTypes());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.PropertyElement#writeDetails(com.aptana.index.core.BinaryOutput)
+	 */
+	@Override
+	protected void writeDetails(BinaryOutput out)
+	{
+		super.writeDetails(out);
+
+		out.writeList(this.getExceptions());
+		out.writeStrings(this.getReferences());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.js.contentassist.model.PropertyElement#toJSON(com.aptana.jetty.util.epl.ajax.JSON.Output)
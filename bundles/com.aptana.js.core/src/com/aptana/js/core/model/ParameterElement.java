@@ -13,11 +13,14 @@ import java.util.Map;
 
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
+import com.aptana.index.core.IBinaryConvertible;
 import com.aptana.index.core.IndexUtil;
 import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
 import com.aptana.jetty.util.epl.ajax.JSON.Output;
 
-public class ParameterElement implements Convertible, IHasPredefinedValues
+public class ParameterElement implements Convertible, IBinaryConvertible, IHasPredefinedValues
 {
 	/**
 	 * JSCA Uses "type" holding one String, we used "types" holding a list/array of Strings
@@ -59,6 +62,19 @@ public class ParameterElement implements Convertible, IHasPredefinedValues
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IBinaryConvertible#fromBinary(com.aptana.index.core.BinaryInput)
+	 */
+	public void fromBinary(BinaryInput in)
+	{
+		this._name = in.readString();
+		this._usage = in.readString();
+		this._description = in.readString();
+		this._types = in.readStrings();
+		this._constants = in.readStrings();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.jetty.util.epl.ajax.JSON.Convertible#fromJSON(java.util.Map)
@@ -155,6 +171,19 @@ public class ParameterElement implements Convertible, IHasPredefinedValues
 		this._usage = usage;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IBinaryConvertible#toBinary(com.aptana.index.core.BinaryOutput)
+	 */
+	public void toBinary(BinaryOutput out)
+	{
+		out.writeString(this.getName());
+		out.writeString(this.getUsage());
+		out.writeString(this.getDescription());
+		out.writeStrings(this.getTypes());
+		out.writeStrings(this.getConstants());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.jetty.util.epl.ajax.JSON.Convertible#toJSON(com.aptana.jetty.util.epl.ajax.JSON.Output)
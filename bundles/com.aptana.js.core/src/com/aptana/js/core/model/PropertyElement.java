@@ -16,11 +16,14 @@ import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.ObjectUtil;
 import com.aptana.core.util.SourcePrinter;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
+import com.aptana.index.core.IBinaryConvertible;
 import com.aptana.index.core.IndexUtil;
 import com.aptana.jetty.util.epl.ajax.JSON.Output;
 import com.aptana.js.core.JSTypeConstants;
 
-public class PropertyElement extends BaseElement implements IHasPredefinedValues
+public class PropertyElement extends BaseElement implements IHasPredefinedValues, IBinaryConvertible
 {
 
 	private static final String EXAMPLES_PROPERTY = "examples"; //$NON-NLS-1$
@@ -71,6 +74,8 @@ public class PropertyElement extends BaseElement implements IHasPredefinedValues
 	{
 		if (example != null && example.length() > 0)
 		{
+			this.loadDetails();
+
 			if (this._examples == null)
 			{
 				this._examples = new ArrayList<String>();
@@ -176,6 +181,8 @@ public class PropertyElement extends BaseElement implements IHasPredefinedValues
 	 */
 	public List<String> getExamples()
 	{
+		this.loadDetails();
+
 		return CollectionsUtil.getListValue(this._examples);
 	}
 
@@ -295,6 +302,64 @@ public class PropertyElement extends BaseElement implements IHasPredefinedValues
 		this._owningType = type;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.BaseElement#readBinary(com.aptana.index.core.BinaryInput)
+	 */
+	@Override
+	protected void readBinary(BinaryInput in)
+	{
+		super.readBinary(in);
+
+		this._owningType = in.readString();
+		this._isClassProperty = in.readBoolean();
+		this._isInstanceProperty = in.readBoolean();
+		this._isInternal = in.readBoolean();
+		this._types = in.readList(ReturnTypeElement.class);
+		this._constants = in.readStrings();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.BaseElement#readDetails(com.aptana.index.core.BinaryInput)
+	 */
+	@Override
+	protected void readDetails(BinaryInput in)
+	{
+		super.readDetails(in);
+
+		this._examples = in.readStrings();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.BaseElement#writeBinary(com.aptana.index.core.BinaryOutput)
+	 */
+	@Override
+	protected void writeBinary(BinaryOutput out)
+	{
+		super.writeBinary(out);
+
+		out.writeString(this.getOwningType());
+		out.writeBoolean(this.isClassProperty());
+		out.writeBoolean(this.isInstanceProperty());
+		out.writeBoolean(this.isInternal());
+		out.writeList(this.getTypes());
+		out.writeStrings(this.getConstants());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.js.core.model.BaseElement#writeDetails(com.aptana.index.core.BinaryOutput)
+	 */
+	@Override
+	protected void writeDetails(BinaryOutput out)
+	{
+		super.writeDetails(out);
+
+		out.writeStrings(this.getExamples());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.editor.js.contentassist.model.BaseElement#toJSON(com.aptana.jetty.util.epl.ajax.JSON.Output)
@@ -12,11 +12,14 @@ import java.util.Map;
 
 import com.aptana.core.util.ObjectUtil;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
+import com.aptana.index.core.IBinaryConvertible;
 import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
 import com.aptana.jetty.util.epl.ajax.JSON.Output;
 import com.aptana.js.core.inferencing.JSTypeUtil;
 
-public class ReturnTypeElement implements Convertible
+public class ReturnTypeElement implements Convertible, IBinaryConvertible
 {
 	private static final String DESCRIPTION_PROPERTY = "description"; //$NON-NLS-1$
 	private static final String TYPE_PROPERTY = "type"; //$NON-NLS-1$
@@ -55,6 +58,17 @@ public class ReturnTypeElement implements Convertible
 		return result;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IBinaryConvertible#fromBinary(com.aptana.index.core.BinaryInput)
+	 */
+	public void fromBinary(BinaryInput in)
+	{
+		// the type name was validated when it was written
+		this._type = in.readString();
+		this._description = in.readString();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.jetty.util.epl.ajax.JSON.Convertible#fromJSON(java.util.Map)
@@ -123,6 +137,16 @@ public class ReturnTypeElement implements Convertible
 		this._type = JSTypeUtil.validateTypeName(type);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IBinaryConvertible#toBinary(com.aptana.index.core.BinaryOutput)
+	 */
+	public void toBinary(BinaryOutput out)
+	{
+		out.writeString(this.getType());
+		out.writeString(this.getDescription());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.jetty.util.epl.ajax.JSON.Convertible#toJSON(com.aptana.jetty.util.epl.ajax.JSON.Output)
@@ -13,8 +13,11 @@ import com.aptana.jetty.util.epl.ajax.JSON.Convertible;
 import com.aptana.jetty.util.epl.ajax.JSON.Output;
 
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
+import com.aptana.index.core.IBinaryConvertible;
 
-public class SinceElement implements Convertible
+public class SinceElement implements Convertible, IBinaryConvertible
 {
 	private static final String VERSION_PROPERTY = "version"; //$NON-NLS-1$
 	private static final String NAME_PROPERTY = "name"; //$NON-NLS-1$
@@ -29,6 +32,16 @@ public class SinceElement implements Convertible
 	{
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IBinaryConvertible#fromBinary(com.aptana.index.core.BinaryInput)
+	 */
+	public void fromBinary(BinaryInput in)
+	{
+		this._name = in.readString();
+		this._version = in.readString();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.jetty.util.epl.ajax.JSON.Convertible#fromJSON(java.util.Map)
@@ -80,6 +93,16 @@ public class SinceElement implements Convertible
 		this._version = version;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IBinaryConvertible#toBinary(com.aptana.index.core.BinaryOutput)
+	 */
+	public void toBinary(BinaryOutput out)
+	{
+		out.writeString(this.getName());
+		out.writeString(this.getVersion());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.jetty.util.epl.ajax.JSON.Convertible#toJSON(com.aptana.jetty.util.epl.ajax.JSON.Output)
@@ -44,6 +44,17 @@ public class GraalJSParser extends AbstractParser
 			filename = DEFAULT_FILENAME;
 		}
 
+		if (parseState instanceof JSIncrementalParseState)
+		{
+			// try to re-parse only the edited statement of the previous tree
+			JSParseRootNode ast = new JSIncrementalReparser(this).reparse((JSIncrementalParseState) parseState);
+			if (ast != null)
+			{
+				working.setParseResult(ast);
+				return;
+			}
+		}
+
 		try
 		{
 			FunctionNode graalAST = parse(filename, 0, source, working);
@@ -79,6 +90,30 @@ public class GraalJSParser extends AbstractParser
 
 	}
 
+	/**
+	 * Parse a single statement on its own, with zero-based offsets. Used to re-parse the statement enclosing an edit.
+	 * 
+	 * @param source
+	 * @return the root node or null if the statement could not be parsed without errors
+	 */
+	JSParseRootNode parseStatement(String source)
+	{
+		WorkingParseResult working = new WorkingParseResult();
+		FunctionNode graalAST = parse(DEFAULT_FILENAME, 0, source, working);
+		if (graalAST == null || !working.getErrors().isEmpty())
+		{
+			return null;
+		}
+
+		JSParseRootNode ast = (JSParseRootNode) convertAST(source, graalAST);
+		if (ast != null)
+		{
+			ast.setCommentNodes(fParser.getCommentNodes());
+			ast.setLocation(0, source.length() - 1);
+		}
+		return ast;
+	}
+
 	private IParseError handleError(Exception e)
 	{
 		// print the stack traces to a string!
@@ -0,0 +1,144 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+
+/**
+ * A parse state that describes a single edit made to a source that has already been parsed. The JS parser uses it to
+ * re-parse only the statement enclosing the edit and splice the result into the previous tree, copying only what
+ * changes. The offsets, children and parent links of the previous tree are never modified, but it shares its unchanged
+ * subtrees with the new one. If the edit can't be handled incrementally, the full source is parsed.
+ * <p>
+ * The cache key is the same as a plain {@link ParseState} for the source, so results are shared with full parses.
+ */
+public class JSIncrementalParseState extends ParseState
+{
+	private ParseResult fPreviousResult;
+	private final int fEditOffset;
+	private final int fRemovedLength;
+	private final int fInsertedLength;
+
+	/**
+	 * Create a parse state for the specified source, computing the edit by comparing it with the previously parsed
+	 * source. Everything between the first and last differing characters is considered changed.
+	 * 
+	 * @param source
+	 *            The current source
+	 * @param previousSource
+	 *            The source that was parsed to produce the previous result
+	 * @param previousResult
+	 *            The result of parsing the previous source
+	 */
+	public JSIncrementalParseState(String source, String previousSource, ParseResult previousResult)
+	{
+		super(source);
+
+		String current = getSource();
+		int prefix = 0;
+		int suffix = 0;
+
+		if (previousSource != null)
+		{
+			int limit = Math.min(current.length(), previousSource.length());
+
+			while (prefix < limit && current.charAt(prefix) == previousSource.charAt(prefix))
+			{
+				prefix++;
+			}
+
+			limit -= prefix;
+
+			while (suffix < limit
+					&& current.charAt(current.length() - 1 - suffix) == previousSource.charAt(previousSource.length()
+							- 1 - suffix))
+			{
+				suffix++;
+			}
+		}
+
+		fPreviousResult = (previousSource != null) ? previousResult : null;
+		fEditOffset = prefix;
+		fRemovedLength = (previousSource != null) ? previousSource.length() - prefix - suffix : 0;
+		fInsertedLength = current.length() - prefix - suffix;
+	}
+
+	/**
+	 * Create a parse state for the specified source, which is the result of replacing removedLength characters at
+	 * offset in the previously parsed source with insertedLength characters.
+	 * 
+	 * @param source
+	 * @param previousResult
+	 * @param offset
+	 * @param removedLength
+	 * @param insertedLength
+	 */
+	public JSIncrementalParseState(String source, ParseResult previousResult, int offset, int removedLength,
+			int insertedLength)
+	{
+		super(source);
+
+		fPreviousResult = previousResult;
+		fEditOffset = offset;
+		fRemovedLength = removedLength;
+		fInsertedLength = insertedLength;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ParseState#clearEditState()
+	 */
+	@Override
+	public void clearEditState()
+	{
+		super.clearEditState();
+
+		fPreviousResult = null;
+	}
+
+	/**
+	 * Returns the offset of the edit in the previous source
+	 * 
+	 * @return
+	 */
+	public int getEditOffset()
+	{
+		return fEditOffset;
+	}
+
+	/**
+	 * Returns the number of characters inserted at the edit offset
+	 * 
+	 * @return
+	 */
+	public int getInsertedLength()
+	{
+		return fInsertedLength;
+	}
+
+	/**
+	 * Returns the result of parsing the source before the edit, or null if there is none
+	 * 
+	 * @return
+	 */
+	public ParseResult getPreviousResult()
+	{
+		return fPreviousResult;
+	}
+
+	/**
+	 * Returns the number of characters removed at the edit offset
+	 * 
+	 * @return
+	 */
+	public int getRemovedLength()
+	{
+		return fRemovedLength;
+	}
+}
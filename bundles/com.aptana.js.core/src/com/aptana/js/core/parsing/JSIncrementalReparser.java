@@ -0,0 +1,339 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aptana.js.core.parsing.ast.JSParseRootNode;
+import com.aptana.js.core.parsing.ast.JSStatementsNode;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.ParseNode;
+import com.aptana.parsing.util.ParseUtil;
+
+/**
+ * Re-parses only the innermost statement enclosing an edit and splices the new subtree into the previous tree. Only
+ * the spine from the root to the re-parsed statement is copied. The subtrees before the edit are shared with the
+ * previous tree, as are the ones after it when the edit doesn't change the length of the source; otherwise those are
+ * copied so their offsets can be shifted. The previous tree is left intact, parent links included: the new spine gets
+ * its own copy of each shared child, and only the descendants of those copies are shared. Walking up from a shared
+ * descendant therefore leads to the identical node of the previous tree rather than to its copy. A statement is only
+ * re-parsed on its own when the edit lies strictly inside it and it ends with an explicit ';' or '}', so the edit
+ * can't change where it ends. Whenever a statement can't be re-parsed cleanly on its own, the enclosing statement is
+ * tried, and null is returned once the statements get too large to be worth it, so the caller can fall back to a full
+ * parse.
+ */
+class JSIncrementalReparser
+{
+	/**
+	 * Statements larger than this fraction of the source are not re-parsed incrementally, as a full parse would cost
+	 * about the same.
+	 */
+	private static final double MAXIMUM_REPARSE_RATIO = 0.5;
+
+	private final GraalJSParser fParser;
+
+	/**
+	 * JSIncrementalReparser
+	 * 
+	 * @param parser
+	 *            The parser used to parse individual statements
+	 */
+	JSIncrementalReparser(GraalJSParser parser)
+	{
+		fParser = parser;
+	}
+
+	/**
+	 * Try to produce the tree for the source of the specified parse state from its previous result
+	 * 
+	 * @param parseState
+	 * @return the new tree or null if the edit can't be handled incrementally
+	 */
+	JSParseRootNode reparse(JSIncrementalParseState parseState)
+	{
+		ParseResult previousResult = parseState.getPreviousResult();
+
+		// only clean trees can be patched, otherwise errors for the rest of the source would be lost
+		if (previousResult == null || !(previousResult.getRootNode() instanceof JSParseRootNode)
+				|| !previousResult.getErrors().isEmpty() || parseState.getStartingOffset() != 0)
+		{
+			return null;
+		}
+
+		JSParseRootNode previous = (JSParseRootNode) previousResult.getRootNode();
+		String source = parseState.getSource();
+		int offset = parseState.getEditOffset();
+		int removedLength = parseState.getRemovedLength();
+		int delta = parseState.getInsertedLength() - removedLength;
+
+		if (previous.getStartingOffset() != 0 || previous.getEndingOffset() + 1 + delta != source.length()
+				|| offset < 0 || removedLength < 0)
+		{
+			return null;
+		}
+
+		List<int[]> candidates = getEnclosingStatements(previous, offset, offset + removedLength);
+
+		// try the innermost statement first
+		for (int i = candidates.size() - 1; i >= 0; i--)
+		{
+			int[] path = candidates.get(i);
+			IParseNode statement = getNode(previous, path);
+			int start = statement.getStartingOffset();
+			int end = statement.getEndingOffset() + delta;
+			int length = end - start + 1;
+
+			if (length > source.length() * MAXIMUM_REPARSE_RATIO)
+			{
+				break;
+			}
+
+			char last = source.charAt(end);
+
+			if (last != ';' && last != '}')
+			{
+				// without an explicit terminator, the statement may merge with the one that follows
+				continue;
+			}
+
+			JSParseRootNode snippet = fParser.parseStatement(source.substring(start, end + 1));
+
+			if (snippet == null || snippet.getChildCount() != 1)
+			{
+				continue;
+			}
+
+			IParseNode replacement = snippet.getChild(0);
+
+			if (replacement.getNodeType() != statement.getNodeType() || replacement.getStartingOffset() != 0
+					|| replacement.getEndingOffset() != length - 1)
+			{
+				continue;
+			}
+
+			return splice(previous, path, replacement, snippet.getCommentNodes(), delta, source.length());
+		}
+
+		return null;
+	}
+
+	/**
+	 * Return the paths, as child indexes from the root, of the statements that strictly enclose the specified range,
+	 * outermost first. Only members of a statement list (the root, a block or a function body) are considered.
+	 * 
+	 * @param root
+	 * @param editStart
+	 * @param editEnd
+	 *            exclusive
+	 * @return
+	 */
+	private List<int[]> getEnclosingStatements(JSParseRootNode root, int editStart, int editEnd)
+	{
+		List<int[]> result = new ArrayList<int[]>();
+		List<Integer> path = new ArrayList<Integer>();
+		IParseNode node = root;
+		boolean found = true;
+
+		while (found)
+		{
+			found = false;
+
+			for (int i = 0; i < node.getChildCount(); i++)
+			{
+				IParseNode child = node.getChild(i);
+
+				// the first and last characters of the child must be untouched
+				if (child.getStartingOffset() < editStart && editEnd <= child.getEndingOffset())
+				{
+					path.add(i);
+
+					if (node instanceof JSParseRootNode || node instanceof JSStatementsNode)
+					{
+						int[] statementPath = new int[path.size()];
+
+						for (int j = 0; j < statementPath.length; j++)
+						{
+							statementPath[j] = path.get(j);
+						}
+
+						result.add(statementPath);
+					}
+
+					node = child;
+					found = true;
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * getNode
+	 * 
+	 * @param root
+	 * @param path
+	 * @return
+	 */
+	private IParseNode getNode(IParseNode root, int[] path)
+	{
+		IParseNode node = root;
+
+		for (int index : path)
+		{
+			node = node.getChild(index);
+		}
+
+		return node;
+	}
+
+	/**
+	 * Merge the comments of the previous tree with those of the re-parsed statement
+	 * 
+	 * @param comments
+	 *            the comments of the previous tree
+	 * @param statementComments
+	 *            the comments of the re-parsed statement, already at their final offsets
+	 * @param start
+	 * @param previousEnd
+	 * @param delta
+	 * @return
+	 */
+	private IParseNode[] mergeComments(IParseNode[] comments, IParseNode[] statementComments, int start,
+			int previousEnd, int delta)
+	{
+		List<IParseNode> result = new ArrayList<IParseNode>(comments.length + statementComments.length);
+		int i = 0;
+
+		while (i < comments.length && comments[i].getEndingOffset() < start)
+		{
+			result.add(comments[i++]);
+		}
+
+		for (IParseNode comment : statementComments)
+		{
+			result.add(comment);
+		}
+
+		for (; i < comments.length; i++)
+		{
+			IParseNode comment = comments[i];
+
+			if (comment.getStartingOffset() > previousEnd)
+			{
+				result.add(shiftedCopy(comment, delta));
+			}
+		}
+
+		return result.toArray(new IParseNode[result.size()]);
+	}
+
+	/**
+	 * Returns the node at its offset in the new source: the node itself if the edit doesn't move it, otherwise a copy
+	 * 
+	 * @param node
+	 * @param delta
+	 * @return
+	 */
+	private IParseNode shiftedCopy(IParseNode node, int delta)
+	{
+		if (delta == 0 || !(node instanceof ParseNode))
+		{
+			return node;
+		}
+
+		ParseNode result = ((ParseNode) node).copy();
+
+		ParseUtil.addOffset(result, delta);
+
+		return result;
+	}
+
+	/**
+	 * Create the new tree by copying the spine of the previous one down to the re-parsed statement
+	 * 
+	 * @param previous
+	 * @param path
+	 * @param replacement
+	 * @param statementComments
+	 * @param delta
+	 * @param length
+	 * @return
+	 */
+	private JSParseRootNode splice(JSParseRootNode previous, int[] path, IParseNode replacement,
+			IParseNode[] statementComments, int delta, int length)
+	{
+		IParseNode statement = getNode(previous, path);
+		int start = statement.getStartingOffset();
+		int previousEnd = statement.getEndingOffset();
+
+		ParseUtil.addOffset(replacement, start);
+
+		for (IParseNode comment : statementComments)
+		{
+			ParseUtil.addOffset(comment, start);
+		}
+
+		JSParseRootNode result = (JSParseRootNode) previous.copyNode();
+		IParseNode original = previous;
+		ParseNode copy = result;
+
+		for (int depth = 0; depth < path.length; depth++)
+		{
+			IParseNode[] children = new IParseNode[original.getChildCount()];
+
+			for (int i = 0; i < children.length; i++)
+			{
+				IParseNode child = original.getChild(i);
+
+				if (i == path[depth])
+				{
+					if (depth == path.length - 1)
+					{
+						child = replacement;
+					}
+					else
+					{
+						// ancestors of the statement grow by delta
+						ParseNode ancestor = ((ParseNode) child).copyNode();
+
+						ancestor.setLocation(child.getStartingOffset(), child.getEndingOffset() + delta);
+						child = ancestor;
+					}
+				}
+				else
+				{
+					if (child.getStartingOffset() > previousEnd)
+					{
+						child = shiftedCopy(child, delta);
+					}
+					if (child == original.getChild(i) && child instanceof ParseNode)
+					{
+						// setChildren() re-parents the children, so give the new spine its own copy of each shared one
+						child = ((ParseNode) child).copyNode();
+					}
+				}
+
+				children[i] = child;
+			}
+
+			copy.setChildren(children);
+
+			original = original.getChild(path[depth]);
+			copy = (ParseNode) children[path[depth]];
+		}
+
+		result.setLocation(0, length - 1);
+		result.setCommentNodes(mergeComments(previous.getCommentNodes(), statementComments, start, previousEnd, delta));
+
+		return result;
+	}
+}
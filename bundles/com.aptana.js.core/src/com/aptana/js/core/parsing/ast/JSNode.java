@@ -186,6 +186,16 @@ public class JSNode extends ParseNode
 		return result;
 	}
 
+	/**
+	 * Returns whether documentation is attached to this node, without computing it
+	 *
+	 * @return
+	 */
+	boolean hasDocumentation()
+	{
+		return fDoc != null;
+	}
+
 	/**
 	 * getDocumentation: lazily computes the documentation from the attached node if it's still not computed.
 	 * 
@@ -370,6 +380,15 @@ public class JSNode extends ParseNode
 		fHash = -1;
 	}
 
+	@Override
+	public JSNode copyNode()
+	{
+		JSNode result = (JSNode) super.copyNode();
+		// the copy's children may be changed independently, so don't carry over the memoized hash
+		result.fHash = -1;
+		return result;
+	}
+
 	@Override
 	public void setChildren(IParseNode[] children)
 	{
@@ -0,0 +1,980 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing.ast;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import beaver.Symbol;
+
+import com.aptana.core.build.IProblem.Severity;
+import com.aptana.core.util.IOUtil;
+import com.aptana.js.core.JSLanguageConstants;
+import com.aptana.parsing.IParseResultSerializer;
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+import com.aptana.parsing.ast.ParseError;
+
+/**
+ * Writes JS parse results to the persistent parse cache and reads them back. Each node is written as a tag for its
+ * class, its range, node type and semicolon flag, its children, then the tokens and flags the class keeps. Nodes are
+ * rebuilt with the same constructors the parser uses, so they compute the same node types; a tree that can't be
+ * rebuilt exactly (an unknown node class, documentation attached to a node) isn't written at all.
+ */
+public class JSParseResultSerializer implements IParseResultSerializer
+{
+	/**
+	 * Bumped whenever the format changes, so older entries are read as misses.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	// @formatter:off
+	private static final byte ARGUMENTS = 0;
+	private static final byte ARRAY = 1;
+	private static final byte ARROW_FUNCTION = 2;
+	private static final byte ASSIGNMENT = 3;
+	private static final byte BINARY_ARITHMETIC = 4;
+	private static final byte BINARY_BOOLEAN = 5;
+	private static final byte BREAK = 6;
+	private static final byte CASE = 7;
+	private static final byte CATCH = 8;
+	private static final byte CLASS = 9;
+	private static final byte COMMA = 10;
+	private static final byte COMMENT = 11;
+	private static final byte COMPUTED_PROPERTY = 12;
+	private static final byte CONDITIONAL = 13;
+	private static final byte CONSTRUCT = 14;
+	private static final byte CONTINUE = 15;
+	private static final byte DECLARATION = 16;
+	private static final byte DEFAULT = 17;
+	private static final byte DESTRUCTURING = 18;
+	private static final byte DO = 19;
+	private static final byte ELEMENTS = 20;
+	private static final byte ELISION = 21;
+	private static final byte EMPTY = 22;
+	private static final byte ERROR = 23;
+	private static final byte EXPORT = 24;
+	private static final byte EXPORT_SPECIFIER = 25;
+	private static final byte FALSE = 26;
+	private static final byte FINALLY = 27;
+	private static final byte FOR = 28;
+	private static final byte FOR_IN = 29;
+	private static final byte FOR_OF = 30;
+	private static final byte FUNCTION = 31;
+	private static final byte GENERATOR_FUNCTION = 32;
+	private static final byte GET_ELEMENT = 33;
+	private static final byte GET_PROPERTY = 34;
+	private static final byte GETTER = 35;
+	private static final byte GROUP = 36;
+	private static final byte IDENTIFIER = 37;
+	private static final byte IF = 38;
+	private static final byte IMPORT = 39;
+	private static final byte IMPORT_SPECIFIER = 40;
+	private static final byte INITIALIZER = 41;
+	private static final byte INVOKE = 42;
+	private static final byte LABELLED = 43;
+	private static final byte NAME_VALUE_PAIR = 44;
+	private static final byte NAMED_IMPORTS = 45;
+	private static final byte NULL = 46;
+	private static final byte NUMBER = 47;
+	private static final byte OBJECT = 48;
+	private static final byte PARAMETERS = 49;
+	private static final byte POST_UNARY = 50;
+	private static final byte PRE_UNARY = 51;
+	private static final byte REGEX = 52;
+	private static final byte REST_ELEMENT = 53;
+	private static final byte RETURN = 54;
+	private static final byte SETTER = 55;
+	private static final byte SPREAD_ELEMENT = 56;
+	private static final byte STATEMENTS = 57;
+	private static final byte STRING = 58;
+	private static final byte SWITCH = 59;
+	private static final byte THIS = 60;
+	private static final byte THROW = 61;
+	private static final byte TRUE = 62;
+	private static final byte TRY = 63;
+	private static final byte VAR = 64;
+	private static final byte WHILE = 65;
+	private static final byte WITH = 66;
+	private static final byte YIELD = 67;
+
+	/**
+	 * The node classes, indexed by their tag
+	 */
+	private static final Class<?>[] NODE_CLASSES = new Class<?>[] {
+		JSArgumentsNode.class,
+		JSArrayNode.class,
+		JSArrowFunctionNode.class,
+		JSAssignmentNode.class,
+		JSBinaryArithmeticOperatorNode.class,
+		JSBinaryBooleanOperatorNode.class,
+		JSBreakNode.class,
+		JSCaseNode.class,
+		JSCatchNode.class,
+		JSClassNode.class,
+		JSCommaNode.class,
+		JSCommentNode.class,
+		JSComputedPropertyNameNode.class,
+		JSConditionalNode.class,
+		JSConstructNode.class,
+		JSContinueNode.class,
+		JSDeclarationNode.class,
+		JSDefaultNode.class,
+		JSDestructuringNode.class,
+		JSDoNode.class,
+		JSElementsNode.class,
+		JSElisionNode.class,
+		JSEmptyNode.class,
+		JSErrorNode.class,
+		JSExportNode.class,
+		JSExportSpecifierNode.class,
+		JSFalseNode.class,
+		JSFinallyNode.class,
+		JSForNode.class,
+		JSForInNode.class,
+		JSForOfNode.class,
+		JSFunctionNode.class,
+		JSGeneratorFunctionNode.class,
+		JSGetElementNode.class,
+		JSGetPropertyNode.class,
+		JSGetterNode.class,
+		JSGroupNode.class,
+		JSIdentifierNode.class,
+		JSIfNode.class,
+		JSImportNode.class,
+		JSImportSpecifierNode.class,
+		JSInitializerNode.class,
+		JSInvokeNode.class,
+		JSLabelledNode.class,
+		JSNameValuePairNode.class,
+		JSNamedImportsNode.class,
+		JSNullNode.class,
+		JSNumberNode.class,
+		JSObjectNode.class,
+		JSParametersNode.class,
+		JSPostUnaryOperatorNode.class,
+		JSPreUnaryOperatorNode.class,
+		JSRegexNode.class,
+		JSRestElementNode.class,
+		JSReturnNode.class,
+		JSSetterNode.class,
+		JSSpreadElementNode.class,
+		JSStatementsNode.class,
+		JSStringNode.class,
+		JSSwitchNode.class,
+		JSThisNode.class,
+		JSThrowNode.class,
+		JSTrueNode.class,
+		JSTryNode.class,
+		JSVarNode.class,
+		JSWhileNode.class,
+		JSWithNode.class,
+		JSYieldNode.class
+	};
+	// @formatter:on
+
+	private static final Map<Class<?>, Byte> TAGS;
+
+	static
+	{
+		TAGS = new HashMap<Class<?>, Byte>(NODE_CLASSES.length * 2);
+
+		for (int i = 0; i < NODE_CLASSES.length; i++)
+		{
+			TAGS.put(NODE_CLASSES[i], (byte) i);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IParseResultSerializer#read(com.aptana.parsing.IParseState, java.io.DataInput)
+	 */
+	public ParseResult read(IParseState parseState, DataInput in) throws IOException
+	{
+		if (in.readInt() != FORMAT_VERSION)
+		{
+			return null;
+		}
+
+		try
+		{
+			JSParseRootNode root = new JSParseRootNode();
+			int start = in.readInt();
+			int end = in.readInt();
+			IParseNode[] children = readNodes(in);
+			IParseNode[] comments = readNodes(in);
+
+			root.setChildren(children);
+			root.setLocation(start, end);
+			root.setCommentNodes(comments);
+
+			int errorCount = in.readInt();
+			List<IParseError> errors = new ArrayList<IParseError>(errorCount);
+
+			for (int i = 0; i < errorCount; i++)
+			{
+				String language = readString(in);
+				int offset = in.readInt();
+				int length = in.readInt();
+				int line = in.readInt();
+				String message = readString(in);
+				ParseError error = new ParseError(language, offset, length, message, Severity.create(in.readInt()));
+
+				error.setLineNumber(line);
+				errors.add(error);
+			}
+
+			return new ParseResult(root, errors);
+		}
+		catch (RuntimeException e)
+		{
+			// the constructors of the nodes reject what the parser would never have produced
+			IOException io = new IOException(e.getMessage());
+			io.initCause(e);
+			throw io;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.IParseResultSerializer#write(com.aptana.parsing.ParseResult, java.io.DataOutput)
+	 */
+	public void write(ParseResult result, DataOutput out) throws IOException
+	{
+		IParseRootNode root = result.getRootNode();
+
+		if (root == null || root.getClass() != JSParseRootNode.class)
+		{
+			throw new IOException("Not a JS parse result: " + root); //$NON-NLS-1$
+		}
+
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(root.getStartingOffset());
+		out.writeInt(root.getEndingOffset());
+		writeNodes(root.getChildren(), out);
+		writeNodes(root.getCommentNodes(), out);
+
+		List<IParseError> errors = result.getErrors();
+
+		out.writeInt(errors.size());
+
+		for (IParseError error : errors)
+		{
+			writeString(error.getLangauge(), out);
+			out.writeInt(error.getOffset());
+			out.writeInt(error.getLength());
+			out.writeInt(error.getLineNumber());
+			writeString(error.getMessage(), out);
+			out.writeInt(error.getSeverity().intValue());
+		}
+	}
+
+	/**
+	 * Returns the only child the constructor of a node needs
+	 *
+	 * @param children
+	 * @return
+	 * @throws IOException
+	 */
+	private JSNode first(IParseNode[] children) throws IOException
+	{
+		if (children.length == 0)
+		{
+			throw new IOException("Missing child node"); //$NON-NLS-1$
+		}
+
+		return (JSNode) children[0];
+	}
+
+	/**
+	 * readNode
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private JSNode readNode(DataInput in) throws IOException
+	{
+		byte tag = in.readByte();
+		int start = in.readInt();
+		int end = in.readInt();
+		short type = in.readShort();
+		boolean semicolonIncluded = in.readBoolean();
+		IParseNode[] children = readNodes(in);
+		JSNode node;
+
+		switch (tag)
+		{
+			case ARGUMENTS:
+				node = new JSArgumentsNode(start, end);
+				break;
+
+			case ARRAY:
+				node = new JSArrayNode(readSymbol(in), readSymbol(in));
+				break;
+
+			case ARROW_FUNCTION:
+				node = readStatic(new JSArrowFunctionNode(start, end), in);
+				break;
+
+			case ASSIGNMENT:
+				node = new JSAssignmentNode(start, end, readSymbol(in));
+				break;
+
+			case BINARY_ARITHMETIC:
+				node = new JSBinaryArithmeticOperatorNode(start, end, readSymbol(in));
+				break;
+
+			case BINARY_BOOLEAN:
+				node = new JSBinaryBooleanOperatorNode(start, end, readSymbol(in));
+				break;
+
+			case BREAK:
+				node = new JSBreakNode(start, end, readSymbol(in));
+				break;
+
+			case CASE:
+				node = new JSCaseNode(start, end, readSymbol(in));
+				break;
+
+			case CATCH:
+				node = new JSCatchNode(start, end, readSymbol(in), readSymbol(in));
+				break;
+
+			case CLASS:
+				node = new JSClassNode(in.readBoolean(), in.readBoolean());
+				break;
+
+			case COMMA:
+				node = new JSCommaNode(start, end, null);
+				break;
+
+			case COMMENT:
+				node = new JSCommentNode(type, start, end);
+				break;
+
+			case COMPUTED_PROPERTY:
+				node = new JSComputedPropertyNameNode();
+				break;
+
+			case CONDITIONAL:
+				node = new JSConditionalNode(start, end, readSymbol(in), readSymbol(in));
+				break;
+
+			case CONSTRUCT:
+				node = new JSConstructNode(start, end);
+				break;
+
+			case CONTINUE:
+				node = new JSContinueNode(start, end, readSymbol(in));
+				break;
+
+			case DECLARATION:
+				node = new JSDeclarationNode(start, end, readSymbol(in));
+				break;
+
+			case DEFAULT:
+				node = new JSDefaultNode(start, end, readSymbol(in));
+				break;
+
+			case DESTRUCTURING:
+				node = new JSDestructuringNode();
+				break;
+
+			case DO:
+				node = new JSDoNode(start, end, readSymbol(in), readSymbol(in));
+				break;
+
+			case ELEMENTS:
+				node = new JSElementsNode();
+				break;
+
+			case ELISION:
+				node = new JSElisionNode();
+				break;
+
+			case EMPTY:
+				node = new JSEmptyNode(start);
+				break;
+
+			case ERROR:
+				node = new JSErrorNode();
+				break;
+
+			case EXPORT:
+				node = new JSExportNode(in.readBoolean(), (Symbol) null, readString(in));
+				break;
+
+			case EXPORT_SPECIFIER:
+				node = new JSExportSpecifierNode();
+				break;
+
+			case FALSE:
+				node = new JSFalseNode();
+				break;
+
+			case FINALLY:
+				node = new JSFinallyNode(start, end, first(children));
+				break;
+
+			case FOR:
+				node = new JSForNode(start, end, readSymbol(in), readSymbol(in), readSymbol(in), readSymbol(in));
+				break;
+
+			case FOR_IN:
+				node = new JSForInNode(start, end, readSymbol(in), readSymbol(in), readSymbol(in));
+				break;
+
+			case FOR_OF:
+				node = new JSForOfNode(start, end, readSymbol(in), readSymbol(in));
+				break;
+
+			case FUNCTION:
+				node = readStatic(new JSFunctionNode(start, end), in);
+				break;
+
+			case GENERATOR_FUNCTION:
+				node = readStatic(new JSGeneratorFunctionNode(start, end), in);
+				break;
+
+			case GET_ELEMENT:
+				node = new JSGetElementNode(start, end, readSymbol(in), readSymbol(in));
+				break;
+
+			case GET_PROPERTY:
+				node = new JSGetPropertyNode(start, end, readSymbol(in));
+				break;
+
+			case GETTER:
+				node = new JSGetterNode(start, end, in.readBoolean());
+				break;
+
+			case GROUP:
+				node = new JSGroupNode(readSymbol(in), readSymbol(in));
+				break;
+
+			case IDENTIFIER:
+				node = new JSIdentifierNode(new Symbol(readString(in)));
+				break;
+
+			case IF:
+				node = new JSIfNode(start, end, readSymbol(in), readSymbol(in));
+				break;
+
+			case IMPORT:
+				node = new JSImportNode(readString(in));
+				break;
+
+			case IMPORT_SPECIFIER:
+				node = new JSImportSpecifierNode(in.readBoolean() ? new Symbol(JSLanguageConstants.STAR) : null);
+				break;
+
+			case INITIALIZER:
+				node = new JSInitializerNode(readSymbol(in), first(children));
+				break;
+
+			case INVOKE:
+				node = new JSInvokeNode(start, end);
+				break;
+
+			case LABELLED:
+				node = new JSLabelledNode(first(children), readSymbol(in));
+				break;
+
+			case NAME_VALUE_PAIR:
+				node = new JSNameValuePairNode(start, end, readSymbol(in));
+				break;
+
+			case NAMED_IMPORTS:
+				node = new JSNamedImportsNode();
+				break;
+
+			case NULL:
+				node = new JSNullNode(new Symbol(readString(in)));
+				break;
+
+			case NUMBER:
+				node = new JSNumberNode(readString(in));
+				break;
+
+			case OBJECT:
+				node = new JSObjectNode(readSymbol(in), readSymbol(in));
+				break;
+
+			case PARAMETERS:
+				node = new JSParametersNode(start, end);
+				break;
+
+			case POST_UNARY:
+				node = new JSPostUnaryOperatorNode(start, end, readSymbol(in));
+				break;
+
+			case PRE_UNARY:
+				node = new JSPreUnaryOperatorNode(start, end, readSymbol(in));
+				break;
+
+			case REGEX:
+				node = new JSRegexNode(readString(in));
+				break;
+
+			case REST_ELEMENT:
+				node = new JSRestElementNode(readSymbol(in));
+				break;
+
+			case RETURN:
+				node = new JSReturnNode(start, end);
+				break;
+
+			case SETTER:
+				node = new JSSetterNode(start, end);
+				break;
+
+			case SPREAD_ELEMENT:
+				node = new JSSpreadElementNode(start, end, readSymbol(in));
+				break;
+
+			case STATEMENTS:
+				node = new JSStatementsNode(start, end);
+				break;
+
+			case STRING:
+				node = new JSStringNode(readString(in));
+				break;
+
+			case SWITCH:
+				node = new JSSwitchNode(start, end, readSymbol(in), readSymbol(in), readSymbol(in), readSymbol(in));
+				break;
+
+			case THIS:
+				node = new JSThisNode();
+				break;
+
+			case THROW:
+				node = new JSThrowNode(start, end);
+				break;
+
+			case TRUE:
+				node = new JSTrueNode();
+				break;
+
+			case TRY:
+				node = new JSTryNode(start, end);
+				break;
+
+			case VAR:
+				node = new JSVarNode(start, end, readSymbol(in));
+				break;
+
+			case WHILE:
+				node = new JSWhileNode(start, end, readSymbol(in), readSymbol(in));
+				break;
+
+			case WITH:
+				node = new JSWithNode(start, end, readSymbol(in), readSymbol(in));
+				break;
+
+			case YIELD:
+				if (in.readBoolean())
+				{
+					node = new JSYieldNode((Symbol) null, (Symbol) null, first(children));
+				}
+				else
+				{
+					node = new JSYieldNode(start, end, null);
+				}
+				break;
+
+			default:
+				throw new IOException("Unknown node tag: " + tag); //$NON-NLS-1$
+		}
+
+		if (node.getNodeType() != type)
+		{
+			throw new IOException("Node type mismatch: " + node.getNodeType() + " <> " + type); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+
+		node.setSemicolonIncluded(semicolonIncluded);
+		node.setLocation(start, end);
+		node.setChildren(children);
+
+		return node;
+	}
+
+	/**
+	 * readNodes
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private IParseNode[] readNodes(DataInput in) throws IOException
+	{
+		int count = in.readInt();
+		IParseNode[] nodes = new IParseNode[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			nodes[i] = readNode(in);
+		}
+
+		return nodes;
+	}
+
+	/**
+	 * readStatic
+	 *
+	 * @param function
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private JSFunctionNode readStatic(JSFunctionNode function, DataInput in) throws IOException
+	{
+		if (in.readBoolean())
+		{
+			function.setStatic();
+		}
+
+		return function;
+	}
+
+	/**
+	 * readString
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private String readString(DataInput in) throws IOException
+	{
+		int length = in.readInt();
+
+		if (length < 0)
+		{
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+
+		in.readFully(bytes);
+
+		return new String(bytes, IOUtil.UTF_8);
+	}
+
+	/**
+	 * readSymbol
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private Symbol readSymbol(DataInput in) throws IOException
+	{
+		if (!in.readBoolean())
+		{
+			return null;
+		}
+
+		short id = in.readShort();
+		int start = in.readInt();
+		int end = in.readInt();
+
+		return new Symbol(id, start, end, readString(in));
+	}
+
+	/**
+	 * writeNode
+	 *
+	 * @param child
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeNode(IParseNode child, DataOutput out) throws IOException
+	{
+		Byte tag = (child == null) ? null : TAGS.get(child.getClass());
+
+		if (tag == null)
+		{
+			throw new IOException("Can't persist node: " + child); //$NON-NLS-1$
+		}
+
+		JSNode node = (JSNode) child;
+
+		if (node.hasDocumentation())
+		{
+			throw new IOException("Can't persist documentation of node: " + node); //$NON-NLS-1$
+		}
+
+		out.writeByte(tag);
+		out.writeInt(node.getStart());
+		out.writeInt(node.getEnd());
+		out.writeShort(node.getNodeType());
+		out.writeBoolean(node.getSemicolonIncluded());
+		writeNodes(node.getChildren(), out);
+
+		switch (tag)
+		{
+			case ARRAY:
+				writeSymbol(((JSArrayNode) node).getLeftBracket(), out);
+				writeSymbol(((JSArrayNode) node).getRightBracket(), out);
+				break;
+
+			case ARROW_FUNCTION:
+			case FUNCTION:
+			case GENERATOR_FUNCTION:
+				out.writeBoolean(((JSFunctionNode) node).isStatic());
+				break;
+
+			case ASSIGNMENT:
+				writeSymbol(((JSAssignmentNode) node).getOperator(), out);
+				break;
+
+			case BINARY_ARITHMETIC:
+			case BINARY_BOOLEAN:
+			case GET_PROPERTY:
+				writeSymbol(((JSBinaryOperatorNode) node).getOperator(), out);
+				break;
+
+			case BREAK:
+			case CONTINUE:
+				writeSymbol(((JSLabelStatementNode) node).getLabel(), out);
+				break;
+
+			case CASE:
+				writeSymbol(((JSCaseNode) node).getColon(), out);
+				break;
+
+			case CATCH:
+				writeSymbol(((JSCatchNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSCatchNode) node).getRightParenthesis(), out);
+				break;
+
+			case CLASS:
+				out.writeBoolean(((JSClassNode) node).hasName());
+				out.writeBoolean(((JSClassNode) node).hasSuperClass());
+				break;
+
+			case CONDITIONAL:
+				writeSymbol(((JSConditionalNode) node).getQuestionMark(), out);
+				writeSymbol(((JSConditionalNode) node).getColon(), out);
+				break;
+
+			case DECLARATION:
+				writeSymbol(((JSDeclarationNode) node).getEqualSign(), out);
+				break;
+
+			case DEFAULT:
+				writeSymbol(((JSDefaultNode) node).getColon(), out);
+				break;
+
+			case DO:
+				writeSymbol(((JSDoNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSDoNode) node).getRightParenthesis(), out);
+				break;
+
+			case EXPORT:
+				out.writeBoolean(((JSExportNode) node).isDefault());
+				writeString(((JSExportNode) node).getFrom(), out);
+				break;
+
+			case FOR:
+				writeSymbol(((JSForNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSForNode) node).getSemicolon1(), out);
+				writeSymbol(((JSForNode) node).getSemicolon2(), out);
+				writeSymbol(((JSForNode) node).getRightParenthesis(), out);
+				break;
+
+			case FOR_IN:
+				writeSymbol(((JSForInNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSForInNode) node).getIn(), out);
+				writeSymbol(((JSForInNode) node).getRightParenthesis(), out);
+				break;
+
+			case FOR_OF:
+				writeSymbol(((JSForOfNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSForOfNode) node).getRightParenthesis(), out);
+				break;
+
+			case GET_ELEMENT:
+				writeSymbol(((JSGetElementNode) node).getLeftBracket(), out);
+				writeSymbol(((JSGetElementNode) node).getRightBracket(), out);
+				break;
+
+			case GETTER:
+				out.writeBoolean(((JSGetterNode) node).isStatic());
+				break;
+
+			case GROUP:
+				writeSymbol(((JSGroupNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSGroupNode) node).getRightParenthesis(), out);
+				break;
+
+			case IDENTIFIER:
+			case NULL:
+			case NUMBER:
+			case REGEX:
+			case STRING:
+				writeString(node.getText(), out);
+				break;
+
+			case IF:
+				writeSymbol(((JSIfNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSIfNode) node).getRightParenthesis(), out);
+				break;
+
+			case IMPORT:
+				writeString(((JSImportNode) node).getFrom(), out);
+				break;
+
+			case IMPORT_SPECIFIER:
+				out.writeBoolean(((JSImportSpecifierNode) node).isWildcard());
+				break;
+
+			case INITIALIZER:
+				writeSymbol(((JSInitializerNode) node).getEquals(), out);
+				break;
+
+			case LABELLED:
+				writeSymbol(((JSLabelledNode) node).getColon(), out);
+				break;
+
+			case NAME_VALUE_PAIR:
+				writeSymbol(((JSNameValuePairNode) node).getColon(), out);
+				break;
+
+			case OBJECT:
+				writeSymbol(((JSObjectNode) node).getLeftBrace(), out);
+				writeSymbol(((JSObjectNode) node).getRightBrace(), out);
+				break;
+
+			case POST_UNARY:
+				writeSymbol(((JSPostUnaryOperatorNode) node).getOperator(), out);
+				break;
+
+			case PRE_UNARY:
+				writeSymbol(((JSPreUnaryOperatorNode) node).getOperator(), out);
+				break;
+
+			case REST_ELEMENT:
+				writeSymbol(((JSRestElementNode) node).getEllipsis(), out);
+				break;
+
+			case SPREAD_ELEMENT:
+				writeSymbol(((JSSpreadElementNode) node).getEllipsis(), out);
+				break;
+
+			case SWITCH:
+				writeSymbol(((JSSwitchNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSSwitchNode) node).getRightParenthesis(), out);
+				writeSymbol(((JSSwitchNode) node).getLeftBrace(), out);
+				writeSymbol(((JSSwitchNode) node).getRightBrace(), out);
+				break;
+
+			case VAR:
+				writeSymbol(((JSVarNode) node).getVar(), out);
+				break;
+
+			case WHILE:
+				writeSymbol(((JSWhileNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSWhileNode) node).getRightParenthesis(), out);
+				break;
+
+			case WITH:
+				writeSymbol(((JSWithNode) node).getLeftParenthesis(), out);
+				writeSymbol(((JSWithNode) node).getRightParenthesis(), out);
+				break;
+
+			case YIELD:
+				out.writeBoolean(((JSYieldNode) node).hasStar());
+				break;
+
+			default:
+				// only the common fields
+				break;
+		}
+	}
+
+	/**
+	 * writeNodes
+	 *
+	 * @param nodes
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeNodes(IParseNode[] nodes, DataOutput out) throws IOException
+	{
+		if (nodes == null)
+		{
+			out.writeInt(0);
+			return;
+		}
+
+		out.writeInt(nodes.length);
+
+		for (IParseNode node : nodes)
+		{
+			writeNode(node, out);
+		}
+	}
+
+	/**
+	 * Writes a string, which unlike {@link DataOutput#writeUTF(String)} may be null or longer than 64k
+	 *
+	 * @param value
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeString(String value, DataOutput out) throws IOException
+	{
+		if (value == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(IOUtil.UTF_8);
+
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * writeSymbol
+	 *
+	 * @param symbol
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writeSymbol(Symbol symbol, DataOutput out) throws IOException
+	{
+		out.writeBoolean(symbol != null);
+
+		if (symbol == null)
+		{
+			return;
+		}
+
+		if (symbol.value != null && !(symbol.value instanceof String))
+		{
+			throw new IOException("Can't persist token: " + symbol.value); //$NON-NLS-1$
+		}
+
+		out.writeShort(symbol.getId());
+		out.writeInt(symbol.getStart());
+		out.writeInt(symbol.getEnd());
+		writeString((String) symbol.value, out);
+	}
+}
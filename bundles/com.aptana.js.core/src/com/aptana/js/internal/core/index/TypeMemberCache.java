@@ -0,0 +1,168 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.index;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.index.core.Index;
+import com.aptana.js.core.model.PropertyElement;
+
+/**
+ * Caches the members and ancestors of types resolved against one ordered list of indices, i.e. one project and its
+ * build path. Every entry records the modification stamps the indices had before its value was queried, and is
+ * dropped as soon as one of them changes.
+ */
+public class TypeMemberCache
+{
+	private static final int MAX_CACHES = 8;
+	private static final int MAX_ENTRIES = 256;
+
+	/**
+	 * The caches of the index lists queried most recently. Lists of indices compare by the identity of their indices,
+	 * so an index that's been removed and recreated doesn't hit the cache of the old one.
+	 */
+	private static final Map<List<Index>, TypeMemberCache> CACHES = new LinkedHashMap<List<Index>, TypeMemberCache>(
+			16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Index>, TypeMemberCache> eldest)
+		{
+			return size() > MAX_CACHES;
+		}
+	};
+
+	/**
+	 * A cached value and the stamps of the indices it was queried from
+	 */
+	private static class Entry<T>
+	{
+		final long[] stamps;
+		final T value;
+
+		Entry(long[] stamps, T value)
+		{
+			this.stamps = stamps;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Returns the cache for the specified indices
+	 * 
+	 * @param indices
+	 * @return
+	 */
+	public static TypeMemberCache getCache(List<Index> indices)
+	{
+		synchronized (CACHES)
+		{
+			TypeMemberCache cache = CACHES.get(indices);
+			if (cache == null)
+			{
+				cache = new TypeMemberCache(indices);
+				CACHES.put(indices, cache);
+			}
+			return cache;
+		}
+	}
+
+	private final List<Index> indices;
+	private final Map<List<String>, Entry<List<PropertyElement>>> members;
+	private final Map<String, Entry<List<String>>> ancestors;
+
+	private TypeMemberCache(List<Index> indices)
+	{
+		this.indices = indices;
+		this.members = newLRUMap();
+		this.ancestors = newLRUMap();
+	}
+
+	private static <K, V> Map<K, V> newLRUMap()
+	{
+		return new LinkedHashMap<K, V>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+			{
+				return size() > MAX_ENTRIES;
+			}
+		};
+	}
+
+	/**
+	 * Returns the current modification stamps of the indices. Take them before running the queries whose results are
+	 * to be cached, so a change made while querying invalidates the results.
+	 * 
+	 * @return
+	 */
+	public long[] getStamps()
+	{
+		long[] stamps = new long[indices.size()];
+		for (int i = 0; i < stamps.length; i++)
+		{
+			stamps[i] = indices.get(i).getModificationStamp();
+		}
+		return stamps;
+	}
+
+	/**
+	 * Returns the cached members of the specified types, or null if they haven't been cached since the indices last
+	 * changed.
+	 * 
+	 * @param typeNames
+	 * @return an unmodifiable list
+	 */
+	public synchronized List<PropertyElement> getMembers(List<String> typeNames)
+	{
+		return getValue(members, typeNames);
+	}
+
+	public synchronized void putMembers(List<String> typeNames, long[] stamps, List<PropertyElement> value)
+	{
+		members.put(typeNames, new Entry<List<PropertyElement>>(stamps, value));
+	}
+
+	/**
+	 * Returns the cached ancestors of the specified type, or null if they haven't been cached since the indices last
+	 * changed.
+	 * 
+	 * @param typeName
+	 * @return an unmodifiable list
+	 */
+	public synchronized List<String> getAncestors(String typeName)
+	{
+		return getValue(ancestors, typeName);
+	}
+
+	public synchronized void putAncestors(String typeName, long[] stamps, List<String> value)
+	{
+		ancestors.put(typeName, new Entry<List<String>>(stamps, value));
+	}
+
+	private <K, V> V getValue(Map<K, Entry<V>> map, K key)
+	{
+		Entry<V> entry = map.get(key);
+		if (entry == null)
+		{
+			return null;
+		}
+		if (!Arrays.equals(entry.stamps, getStamps()))
+		{
+			map.remove(key);
+			return null;
+		}
+		return entry.value;
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.inferencing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aptana.js.core.inferencing.JSPropertyCollection;
+import com.aptana.js.core.inferencing.JSScope;
+import com.aptana.js.core.parsing.ast.JSNode;
+
+/**
+ * Memoizes the types inferred for the nodes of one AST, keyed by the identity of the node and of the scope it was
+ * inferred in. The cache hangs off the root {@link JSScope} built for the AST, so it goes away with the AST and its
+ * scopes; like them, it's meant to be used by one thread at a time.<br>
+ * Inferring a symbol temporarily gives it placeholder types so that recursive references to it terminate. Types
+ * inferred while one of those placeholders was read depend on where the inference started, so they're not cached:
+ * every node whose inference began after the symbol's and was still running when the placeholder was read is left
+ * out.
+ */
+public class JSInferenceCache
+{
+	private final Map<JSScope, Map<JSNode, List<String>>> types;
+
+	/**
+	 * The symbols being inferred, mapped to the number of nodes being inferred when the symbol's inference began
+	 */
+	private final Map<JSPropertyCollection, Integer> activeSymbols;
+
+	/**
+	 * The number of nodes being inferred
+	 */
+	private int depth;
+
+	/**
+	 * The depth from which the nodes being inferred read a placeholder, or {@link Integer#MAX_VALUE}
+	 */
+	private int uncacheableDepth = Integer.MAX_VALUE;
+
+	public JSInferenceCache()
+	{
+		types = new IdentityHashMap<JSScope, Map<JSNode, List<String>>>();
+		activeSymbols = new IdentityHashMap<JSPropertyCollection, Integer>();
+	}
+
+	/**
+	 * Returns the types inferred for a node in a scope
+	 * 
+	 * @param scope
+	 * @param node
+	 * @return an unmodifiable list, or null if the node hasn't been inferred in the scope
+	 */
+	public List<String> getTypes(JSScope scope, JSNode node)
+	{
+		Map<JSNode, List<String>> nodeTypes = types.get(scope);
+
+		return (nodeTypes == null) ? null : nodeTypes.get(node);
+	}
+
+	/**
+	 * Marks the start of the inference of a node. Every call must be paired with one of
+	 * {@link #exitNode(JSScope, JSNode, int, List)}, even if the inference fails.
+	 * 
+	 * @return the token to pass to {@link #exitNode(JSScope, JSNode, int, List)}
+	 */
+	public int enterNode()
+	{
+		return depth++;
+	}
+
+	/**
+	 * Marks the end of the inference of a node, and caches its types if they don't depend on placeholders
+	 * 
+	 * @param scope
+	 * @param node
+	 * @param token
+	 *            The value returned by the matching {@link #enterNode()}
+	 * @param nodeTypes
+	 *            The inferred types, or null if the inference failed
+	 */
+	public void exitNode(JSScope scope, JSNode node, int token, List<String> nodeTypes)
+	{
+		depth = token;
+
+		if (nodeTypes != null && token < uncacheableDepth)
+		{
+			Map<JSNode, List<String>> scopeTypes = types.get(scope);
+
+			if (scopeTypes == null)
+			{
+				scopeTypes = new IdentityHashMap<JSNode, List<String>>();
+				types.put(scope, scopeTypes);
+			}
+
+			scopeTypes.put(node, Collections.unmodifiableList(new ArrayList<String>(nodeTypes)));
+		}
+
+		if (uncacheableDepth >= depth)
+		{
+			uncacheableDepth = Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Marks the start of the inference of a symbol, during which it has placeholder types
+	 * 
+	 * @param symbol
+	 */
+	public void enterSymbol(JSPropertyCollection symbol)
+	{
+		if (!activeSymbols.containsKey(symbol))
+		{
+			activeSymbols.put(symbol, depth);
+		}
+	}
+
+	/**
+	 * Marks the end of the inference of a symbol
+	 * 
+	 * @param symbol
+	 */
+	public void exitSymbol(JSPropertyCollection symbol)
+	{
+		activeSymbols.remove(symbol);
+	}
+
+	/**
+	 * Records that the types of a symbol were read, which makes the nodes being inferred uncacheable if they're
+	 * placeholders
+	 * 
+	 * @param symbol
+	 */
+	public void readSymbol(JSPropertyCollection symbol)
+	{
+		Integer symbolDepth = activeSymbols.get(symbol);
+
+		if (symbolDepth != null && symbolDepth < uncacheableDepth)
+		{
+			uncacheableDepth = symbolDepth;
+		}
+	}
+
+	/**
+	 * Drops all cached types, e.g. once the scopes have changed
+	 */
+	public void clear()
+	{
+		types.clear();
+	}
+}
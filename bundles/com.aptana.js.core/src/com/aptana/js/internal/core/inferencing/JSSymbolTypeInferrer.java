@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -346,7 +346,11 @@ public class JSSymbolTypeInferrer
 
 			if (property.hasTypes())
 			{
-				// used cached types
+				// used cached types, which are placeholders if we're inferring this property already
+				if (activeScope != null)
+				{
+					activeScope.getInferenceCache().readSymbol(property);
+				}
 				types.addAll(property.getTypes());
 			}
 			else
@@ -602,9 +606,25 @@ public class JSSymbolTypeInferrer
 				else
 				{
 					JSNodeTypeInferrer inferrer = getNodeInferrer(sub);
+					JSInferenceCache cache = (activeScope != null) ? activeScope.getInferenceCache() : null;
+					// give the property a placeholder type, so references to it from its own value terminate
 					property.addType(isFunction ? JSTypeConstants.FUNCTION_TYPE : NO_TYPE);
-					inferrer.visit(value);
-					property.clearTypes();
+					if (cache != null)
+					{
+						cache.enterSymbol(property);
+					}
+					try
+					{
+						inferrer.visit(value);
+					}
+					finally
+					{
+						if (cache != null)
+						{
+							cache.exitSymbol(property);
+						}
+						property.clearTypes();
+					}
 					types.addAll(inferrer.getTypes());
 				}
 			}
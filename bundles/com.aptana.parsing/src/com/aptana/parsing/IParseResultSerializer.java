@@ -0,0 +1,40 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts the result of a parse to and from a stream so it can be kept in the {@link PersistentParseCache}. Parsers
+ * opt into the persistent cache by contributing a serializer in the "serializer" attribute of the
+ * com.aptana.parsing.parser extension point.
+ */
+public interface IParseResultSerializer
+{
+	/**
+	 * Read a parse result previously written by {@link #write(ParseResult, DataOutput)}
+	 * 
+	 * @param parseState
+	 *            The parse state the result is being read for. Its source is the source that was parsed
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public ParseResult read(IParseState parseState, DataInput in) throws IOException;
+
+	/**
+	 * Write the specified parse result, including its root node and errors
+	 * 
+	 * @param result
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(ParseResult result, DataOutput out) throws IOException;
+}
@@ -0,0 +1,21 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+public interface IPreferenceConstants
+{
+	/**
+	 * Whether parse results should also be cached on disk so they survive a restart.
+	 */
+	public static final String PERSISTENT_PARSE_CACHE = "PERSISTENT_PARSE_CACHE"; //$NON-NLS-1$
+
+	/**
+	 * The maximum size of the persistent parse cache, in megabytes.
+	 */
+	public static final String PERSISTENT_PARSE_CACHE_SIZE = "PERSISTENT_PARSE_CACHE_SIZE"; //$NON-NLS-1$
+}
@@ -7,31 +7,39 @@
  */
 package com.aptana.parsing;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.content.IContentType;
 import org.eclipse.core.runtime.content.IContentTypeManager;
+import org.eclipse.core.runtime.preferences.IPreferencesService;
 
+import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.IConfigurationElementProcessor;
 import com.aptana.internal.parsing.ParserPool;
 
-public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
+public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider, PersistentParseCache.ISerializerProvider
 {
 	// extension point constants
 	private static final String PARSER_ID = "parser"; //$NON-NLS-1$
 	private static final String ELEMENT_PARSER = "parser"; //$NON-NLS-1$
 	private static final String ATTR_CONTENT_TYPE = "content-type"; //$NON-NLS-1$
+	private static final String ATTR_SERIALIZER = "serializer"; //$NON-NLS-1$
+
+	private static final String PERSISTENT_CACHE_DIRECTORY = "parseCache"; //$NON-NLS-1$
 
 	private static ParserPoolFactory INSTANCE;
 	private Map<String, IConfigurationElement> parsers;
 	private Map<String, IParserPool> pools;
+	private Map<String, IParseResultSerializer> serializers;
 	private final ParsingEngine fParsingEngine;
 
 	/**
@@ -89,6 +97,35 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 	private ParserPoolFactory()
 	{
 		fParsingEngine = new ParsingEngine(this);
+		fParsingEngine.setPersistentCache(createPersistentCache());
+	}
+
+	/**
+	 * Create the persistent parse cache if it has been enabled in the preferences
+	 * 
+	 * @return the cache or null if it's disabled
+	 */
+	private PersistentParseCache createPersistentCache()
+	{
+		ParsingPlugin plugin = ParsingPlugin.getDefault();
+
+		if (plugin == null)
+		{
+			return null;
+		}
+
+		IPreferencesService prefs = Platform.getPreferencesService();
+
+		if (!prefs.getBoolean(ParsingPlugin.PLUGIN_ID, IPreferenceConstants.PERSISTENT_PARSE_CACHE, false, null))
+		{
+			return null;
+		}
+
+		int megabytes = prefs.getInt(ParsingPlugin.PLUGIN_ID, IPreferenceConstants.PERSISTENT_PARSE_CACHE_SIZE, 64,
+				null);
+		File directory = plugin.getStateLocation().append(PERSISTENT_CACHE_DIRECTORY).toFile();
+
+		return new PersistentParseCache(directory, megabytes * 1024L * 1024L, this);
 	}
 
 	/**
@@ -96,6 +133,14 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 	 */
 	synchronized void dispose()
 	{
+		PersistentParseCache persistentCache = fParsingEngine.getPersistentCache();
+
+		if (persistentCache != null)
+		{
+			// don't lose the results that weren't written yet
+			persistentCache.flush();
+		}
+
 		fParsingEngine.dispose();
 
 		if (pools != null)
@@ -115,6 +160,12 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 			parsers.clear();
 			parsers = null;
 		}
+
+		if (serializers != null)
+		{
+			serializers.clear();
+			serializers = null;
+		}
 	}
 
 	/**
@@ -173,6 +224,57 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 		return result;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.PersistentParseCache.ISerializerProvider#getSerializer(java.lang.String)
+	 */
+	public synchronized IParseResultSerializer getSerializer(String contentTypeId)
+	{
+		if (serializers == null)
+		{
+			serializers = new HashMap<String, IParseResultSerializer>();
+		}
+
+		// a null value records that the parser for the content type doesn't provide a serializer
+		if (serializers.containsKey(contentTypeId))
+		{
+			return serializers.get(contentTypeId);
+		}
+
+		if (parsers == null)
+		{
+			parsers = getParsers();
+		}
+
+		IContentType contentType = Platform.getContentTypeManager().getContentType(contentTypeId);
+		IConfigurationElement parserExtension = parsers.get(contentTypeId);
+
+		// use the same parser lookup as getParserPool, walking up the base content types
+		while (parserExtension == null && contentType != null)
+		{
+			parserExtension = parsers.get(contentType.getId());
+			contentType = contentType.getBaseType();
+		}
+
+		IParseResultSerializer result = null;
+
+		if (parserExtension != null && parserExtension.getAttribute(ATTR_SERIALIZER) != null)
+		{
+			try
+			{
+				result = (IParseResultSerializer) parserExtension.createExecutableExtension(ATTR_SERIALIZER);
+			}
+			catch (CoreException e)
+			{
+				IdeLog.logError(ParsingPlugin.getDefault(), e);
+			}
+		}
+
+		serializers.put(contentTypeId, result);
+
+		return result;
+	}
+
 	/**
 	 * parse
 	 * 
@@ -237,5 +339,12 @@ public class ParserPoolFactory implements ParsingEngine.IParserPoolProvider
 	public void clearCache()
 	{
 		fParsingEngine.clearCache();
+
+		PersistentParseCache persistentCache = fParsingEngine.getPersistentCache();
+
+		if (persistentCache != null)
+		{
+			persistentCache.clear();
+		}
 	}
 }
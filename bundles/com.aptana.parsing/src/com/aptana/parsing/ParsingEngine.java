@@ -129,10 +129,45 @@ public class ParsingEngine
 	}
 
 	/**
-	 * A parse cache. Keyed by combo of content type and source hash, holds IParseRootNode result. Retains most recently
-	 * used ASTs.
+	 * One stripe of the parse cache. Keys are spread over the segments so that lookups for unrelated sources don't
+	 * contend on a single lock.
 	 */
-	private LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> fParseCache;
+	private static class CacheSegment
+	{
+		/**
+		 * Any access to fCache should have this lock in place.
+		 */
+		private final Object fLock = new Object();
+
+		/**
+		 * Keyed by combo of content type and source hash, holds IParseRootNode result. Retains most recently used ASTs.
+		 */
+		private LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> fCache;
+
+		private CacheSegment(int cacheSize)
+		{
+			fCache = new LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue>(cacheSize);
+		}
+	}
+
+	/**
+	 * The parse cache, striped by the hash of the key. Null once disposed.
+	 */
+	private volatile CacheSegment[] fSegments;
+
+	/**
+	 * Hold sources too large to be kept as strong references in one of the regular segments, so that a big file (such
+	 * as jquery) isn't pushed to the soft cache just because the cache is striped. These share another cache size worth
+	 * of strong references, so the engine holds at most twice the cache size. They are striped by the hash of the key
+	 * as well so large sources don't all contend on one lock, but only as far as each segment still has room for
+	 * {@link #MINIMUM_LARGE_SEGMENT_SIZE} chars. Null if there's a single segment.
+	 */
+	private volatile CacheSegment[] fLargeSegments;
+
+	/**
+	 * Sources longer than this go into fLargeSegments.
+	 */
+	private final int fLargeSourceThreshold;
 
 	/**
 	 * Object providing access to the pool provider.
@@ -140,9 +175,9 @@ public class ParsingEngine
 	private IParserPoolProvider fParserPoolProvider;
 
 	/**
-	 * Any access to the fParseCache should have this lock in place.
+	 * Optional second level cache that keeps parse results on disk. May be null.
 	 */
-	private final Object fParseCacheLock = new Object();
+	private volatile PersistentParseCache fPersistentCache;
 
 	/**
 	 * Default for fMinimunNumberOfCharsToEnterCache.
@@ -157,6 +192,17 @@ public class ParsingEngine
 	public static final int MAXIMUM_NUMBER_OF_CHARS_IN_STRONG_REFERENCES_CACHE = 400 * 1024; // a 400kb file (with
 																								// strong references)
 
+	/**
+	 * The number of chars each segment for large sources should at least hold, so a jquery-sized file stays a strong
+	 * reference. Large sources get fewer segments rather than smaller ones when the cache size is too small for that.
+	 */
+	public static final int MINIMUM_LARGE_SEGMENT_SIZE = 256 * 1024;
+
+	/**
+	 * The default number of segments in the parse cache. Must be a power of 2.
+	 */
+	public static final int DEFAULT_NUMBER_OF_CACHE_SEGMENTS = 8;
+
 	/**
 	 * If the parse would be too fast, don't even add it to the cache, as the cost of having it in the cache and having
 	 * many misses is higher than not having it at the cache in the first place.
@@ -174,7 +220,54 @@ public class ParsingEngine
 	 */
 	protected ParsingEngine(IParserPoolProvider parserPoolProvider, int cacheSize, int minCacheElementSize)
 	{
-		fParseCache = new LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue>(cacheSize);
+		this(parserPoolProvider, cacheSize, minCacheElementSize, DEFAULT_NUMBER_OF_CACHE_SEGMENTS);
+	}
+
+	/**
+	 * Create a cache striped over the given number of segments, each holding an equal share of the strong references.
+	 * Sources too large for a segment go to up to a quarter as many additional segments (at least 1), which share
+	 * another cacheSize chars of strong references.
+	 * 
+	 * @param cacheSize
+	 *            the maximum number of strong-references kept (in chars)
+	 * @param minCacheElementSize
+	 *            if an element does not have at least this size (in chars), it won't even enter the cache.
+	 * @param segmentCount
+	 *            the number of segments, rounded up to a power of 2.
+	 */
+	protected ParsingEngine(IParserPoolProvider parserPoolProvider, int cacheSize, int minCacheElementSize,
+			int segmentCount)
+	{
+		int count = 1;
+		while (count < segmentCount)
+		{
+			count <<= 1;
+		}
+
+		CacheSegment[] segments = new CacheSegment[count];
+		int segmentSize = (count == 1) ? cacheSize : Math.max(1, cacheSize / count);
+		for (int i = 0; i < count; i++)
+		{
+			segments[i] = new CacheSegment(segmentSize);
+		}
+
+		CacheSegment[] largeSegments = null;
+		if (count > 1)
+		{
+			// each holds a share of cacheSize, but not less than MINIMUM_LARGE_SEGMENT_SIZE (or all of it if smaller).
+			// Keep a power of 2 for getSegment().
+			int minimumSize = Math.max(1, Math.min(cacheSize, MINIMUM_LARGE_SEGMENT_SIZE));
+			int largeCount = Integer.highestOneBit(Math.max(1, Math.min(count / 4, cacheSize / minimumSize)));
+			largeSegments = new CacheSegment[largeCount];
+			for (int i = 0; i < largeCount; i++)
+			{
+				largeSegments[i] = new CacheSegment(Math.max(1, cacheSize / largeCount));
+			}
+		}
+
+		fSegments = segments;
+		fLargeSegments = largeSegments;
+		fLargeSourceThreshold = (count == 1) ? Integer.MAX_VALUE : segmentSize / 2;
 		fParserPoolProvider = parserPoolProvider;
 		fMinimumNumberOfCharsToEnterCache = minCacheElementSize;
 	}
@@ -187,7 +280,30 @@ public class ParsingEngine
 
 	public void dispose()
 	{
-		fParseCache = null;
+		fSegments = null;
+		fLargeSegments = null;
+		fPersistentCache = null;
+	}
+
+	/**
+	 * Returns the persistent cache consulted when a parse result isn't in memory, or null if there is none.
+	 * 
+	 * @return
+	 */
+	public PersistentParseCache getPersistentCache()
+	{
+		return fPersistentCache;
+	}
+
+	/**
+	 * Set the persistent cache consulted when a parse result isn't in memory. Results of sources that are large enough
+	 * to enter the in-memory cache are also written to it. Pass null to disable the persistent cache.
+	 * 
+	 * @param persistentCache
+	 */
+	public void setPersistentCache(PersistentParseCache persistentCache)
+	{
+		fPersistentCache = persistentCache;
 	}
 
 	/**
@@ -195,11 +311,45 @@ public class ParsingEngine
 	 */
 	public void clearCache()
 	{
-		if (fParseCache == null) // already disposed.
+		CacheSegment[] segments = fSegments;
+		if (segments == null) // already disposed.
 		{
 			return;
 		}
-		fParseCache.flush();
+		flush(segments);
+		flush(fLargeSegments);
+	}
+
+	private void flush(CacheSegment[] segments)
+	{
+		if (segments != null)
+		{
+			for (CacheSegment segment : segments)
+			{
+				synchronized (segment.fLock)
+				{
+					segment.fCache.flush();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the segment of the cache holding the given key or null if the engine has been disposed.
+	 */
+	private CacheSegment getSegment(IParseStateCacheKey key, int sourceLength)
+	{
+		CacheSegment[] segments = (sourceLength > fLargeSourceThreshold) ? fLargeSegments : fSegments;
+		if (segments == null)
+		{
+			return null;
+		}
+
+		// Spread the hash bits so keys that only differ in their high bits don't all land in the same segment.
+		int hash = key.hashCode();
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return segments[hash & (segments.length - 1)];
 	}
 
 	public ParseResult parse(String contentTypeId, IParseState parseState) throws Exception // $codepro.audit.disable
@@ -231,11 +381,12 @@ public class ParsingEngine
 
 			IParseStateCacheKey newParseStateKey = parseState.getCacheKey(contentTypeId);
 			CacheValue cacheValue = null;
-			LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> parseCache = fParseCache;
-			if (parseCache == null)
+			CacheSegment segment = getSegment(newParseStateKey, sourceLen);
+			if (segment == null)
 			{
 				return ParseResult.EMPTY; // already disposed.
 			}
+			LRUCacheWithSoftPrunedValues<IParseStateCacheKey, CacheValue> parseCache = segment.fCache;
 
 			boolean getResultFromCache = false;
 			boolean traceEnabled = plugin != null && IdeLog.isTraceEnabled(plugin, IDebugScopes.PARSING);
@@ -243,7 +394,7 @@ public class ParsingEngine
 			IParser parser = null;
 			try
 			{
-				synchronized (fParseCacheLock)
+				synchronized (segment.fLock)
 				{
 					cacheValue = parseCache.get(newParseStateKey);
 
@@ -351,7 +502,7 @@ public class ParsingEngine
 			}
 			else
 			{
-				ParseResult result = ParseResult.EMPTY;
+				ParseResult result = null;
 				try
 				{
 					try
@@ -365,14 +516,29 @@ public class ParsingEngine
 									IDebugScopes.PARSING);
 						}
 
-						result = parser.parse(parseState);
+						PersistentParseCache persistentCache = fPersistentCache;
+
+						if (persistentCache != null)
+						{
+							result = readPersistentCache(persistentCache, contentTypeId, newParseStateKey, parseState,
+									traceEnabled);
+						}
+
+						if (result == null)
+						{
+							result = parser.parse(parseState);
 
+							if (persistentCache != null)
+							{
+								persistentCache.put(contentTypeId, newParseStateKey, parseState, result);
+							}
+						}
 					}
 					finally
 					{
 						pool.checkIn(parser);
 					}
-					synchronized (fParseCacheLock)
+					synchronized (segment.fLock)
 					{
 						// Make a get just to update time stamp or change it from the soft map back into the main LRU.
 						// Done because we may have the situation where the a main parse has multiple sub-parses, and
@@ -382,8 +548,12 @@ public class ParsingEngine
 				}
 				finally
 				{
-					// Set the result even if this means setting null (otherwise it's possible that some listener
-					// deadlocks because of that).
+					// Set the result even if the parse failed (otherwise it's possible that some listener deadlocks
+					// because of that).
+					if (result == null)
+					{
+						result = ParseResult.EMPTY;
+					}
 					cacheValue.setResult(result);
 				}
 				return result;
@@ -397,6 +567,27 @@ public class ParsingEngine
 
 	}
 
+	/**
+	 * Look for a result in the persistent cache, tracing the outcome along with the cache's hit and miss counts.
+	 * 
+	 * @return the cached result or null if it wasn't found.
+	 */
+	private ParseResult readPersistentCache(PersistentParseCache persistentCache, String contentTypeId,
+			IParseStateCacheKey parseStateKey, IParseState parseState, boolean traceEnabled)
+	{
+		ParseResult result = persistentCache.get(contentTypeId, parseStateKey, parseState);
+
+		if (traceEnabled)
+		{
+			IdeLog.logTrace(ParsingPlugin.getDefault(), MessageFormat.format(
+					"Persistent parsing cache {0} for key {1} (hits: {2}, misses: {3})", //$NON-NLS-1$
+					(result != null) ? "hit" : "miss", parseStateKey, persistentCache.getHitCount(), //$NON-NLS-1$ //$NON-NLS-2$
+					persistentCache.getMissCount()), IDebugScopes.PARSING);
+		}
+
+		return result;
+	}
+
 	private ParseResult noCacheParse(String contentTypeId, IParseState parseState) throws Exception
 	{
 		IParserPool pool = null;
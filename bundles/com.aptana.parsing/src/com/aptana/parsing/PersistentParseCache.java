@@ -0,0 +1,649 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.EclipseUtil;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+
+/**
+ * A second level cache for the {@link ParsingEngine} that keeps serialized parse results on disk so they survive a
+ * restart. Entries are keyed by a digest of the content type, the parse state's cache key and the source itself, so a
+ * changed file can never be served a stale tree. When the total size of the entries exceeds the configured limit, the
+ * least recently used entries are deleted.
+ * <p>
+ * Entries are written by a background job so storing a result never delays the parse that produced it. Call
+ * {@link #flush()} to write the pending entries right away.
+ * 
+ * @see IParseResultSerializer
+ */
+public class PersistentParseCache
+{
+	public static interface ISerializerProvider
+	{
+		/**
+		 * Returns the serializer used for parse results of the specified content type or null if results of that type
+		 * can't be persisted
+		 * 
+		 * @param contentTypeId
+		 * @return
+		 */
+		IParseResultSerializer getSerializer(String contentTypeId);
+	}
+
+	private static final int MAGIC = 0x41505243; // "APRC"
+	private static final int VERSION = 1;
+	private static final String EXTENSION = ".ast"; //$NON-NLS-1$
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	/**
+	 * When the cache is over its limit, entries are evicted until it is back under this fraction of the limit, so we
+	 * don't scan the directory on every write
+	 */
+	private static final double EVICTION_TARGET = 0.75;
+
+	/**
+	 * The maximum number of results waiting to be written. Results stored while the writer is this far behind are
+	 * dropped rather than holding on to their trees.
+	 */
+	private static final int MAXIMUM_PENDING_WRITES = 32;
+
+	/**
+	 * A result waiting to be written
+	 */
+	private static class PendingWrite
+	{
+		final String keyString;
+		final String source;
+		final ParseResult result;
+		final IParseResultSerializer serializer;
+
+		PendingWrite(String keyString, String source, ParseResult result, IParseResultSerializer serializer)
+		{
+			this.keyString = keyString;
+			this.source = source;
+			this.result = result;
+			this.serializer = serializer;
+		}
+	}
+
+	private final File fDirectory;
+	private final long fMaximumSize;
+	private final ISerializerProvider fSerializerProvider;
+
+	/**
+	 * The total size of all entries, or -1 if the directory hasn't been scanned yet. Guarded by this.
+	 */
+	private long fTotalSize = -1;
+
+	private long fHits;
+	private long fMisses;
+	private long fWrites;
+	private long fEvictions;
+
+	/**
+	 * The results waiting to be written. Guarded by itself.
+	 */
+	private final LinkedList<PendingWrite> fPendingWrites = new LinkedList<PendingWrite>();
+
+	/**
+	 * Held while writing entries, so {@link #flush()} can wait for the write in progress. Acquired before this.
+	 */
+	private final Object fWriteLock = new Object();
+
+	private final Job fWriteJob;
+
+	/**
+	 * PersistentParseCache
+	 * 
+	 * @param directory
+	 *            The directory holding the cache entries. It is created if it doesn't exist
+	 * @param maximumSize
+	 *            The maximum number of bytes used by the entries
+	 * @param serializerProvider
+	 */
+	public PersistentParseCache(File directory, long maximumSize, ISerializerProvider serializerProvider)
+	{
+		fDirectory = directory;
+		fMaximumSize = maximumSize;
+		fSerializerProvider = serializerProvider;
+
+		fWriteJob = new Job("Writing persistent parse cache") //$NON-NLS-1$
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				writePending(monitor);
+
+				return (monitor.isCanceled()) ? Status.CANCEL_STATUS : Status.OK_STATUS;
+			}
+		};
+		EclipseUtil.setSystemForJob(fWriteJob);
+		fWriteJob.setPriority(Job.DECORATE);
+	}
+
+	/**
+	 * Remove all entries from the cache, including those that weren't written yet
+	 */
+	public void clear()
+	{
+		synchronized (fPendingWrites)
+		{
+			fPendingWrites.clear();
+		}
+
+		// wait for the entry being written, so it doesn't show up after the cache was cleared
+		synchronized (fWriteLock)
+		{
+			synchronized (this)
+			{
+				File[] files = fDirectory.listFiles();
+
+				if (files != null)
+				{
+					for (File file : files)
+					{
+						file.delete();
+					}
+				}
+
+				fTotalSize = 0;
+			}
+		}
+	}
+
+	/**
+	 * Write the entries that are waiting to be written, returning once they are all on disk
+	 */
+	public void flush()
+	{
+		writePending(new NullProgressMonitor());
+	}
+
+	/**
+	 * Return the cached parse result for the specified source or null if it isn't cached. Results are only returned if
+	 * a serializer exists for the content type.
+	 * 
+	 * @param contentTypeId
+	 * @param cacheKey
+	 * @param parseState
+	 * @return
+	 */
+	public ParseResult get(String contentTypeId, IParseStateCacheKey cacheKey, IParseState parseState)
+	{
+		IParseResultSerializer serializer = fSerializerProvider.getSerializer(contentTypeId);
+
+		if (serializer == null)
+		{
+			return null;
+		}
+
+		String source = parseState.getSource();
+		String keyString = getKeyString(contentTypeId, cacheKey);
+		File file = getFile(keyString, source);
+		ParseResult result = null;
+
+		if (file != null && file.isFile())
+		{
+			DataInputStream in = null;
+
+			try
+			{
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+				// guard against digest collisions by verifying the key and source length we stored
+				if (in.readInt() == MAGIC && in.readInt() == VERSION && keyString.equals(in.readUTF())
+						&& in.readInt() == source.length())
+				{
+					result = serializer.read(parseState, in);
+				}
+			}
+			catch (Exception e)
+			{
+				IdeLog.logWarning(ParsingPlugin.getDefault(),
+						MessageFormat.format("Unable to read cached parse result from {0}", file), e, //$NON-NLS-1$
+						IDebugScopes.PARSING);
+			}
+			finally
+			{
+				close(in);
+			}
+
+			if (result == null)
+			{
+				// corrupt or from an older format, get rid of it
+				remove(file);
+			}
+			else
+			{
+				// the modification time is used to determine which entries were least recently used
+				file.setLastModified(System.currentTimeMillis());
+			}
+		}
+
+		synchronized (this)
+		{
+			if (result == null)
+			{
+				fMisses++;
+			}
+			else
+			{
+				fHits++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Return the number of entries evicted to keep the cache under its size limit
+	 * 
+	 * @return
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return fEvictions;
+	}
+
+	/**
+	 * Return the number of successful calls to {@link #get(String, IParseStateCacheKey, IParseState)}
+	 * 
+	 * @return
+	 */
+	public synchronized long getHitCount()
+	{
+		return fHits;
+	}
+
+	/**
+	 * Return the number of calls to {@link #get(String, IParseStateCacheKey, IParseState)} that returned nothing
+	 * 
+	 * @return
+	 */
+	public synchronized long getMissCount()
+	{
+		return fMisses;
+	}
+
+	/**
+	 * Return the total size of the cache entries in bytes
+	 * 
+	 * @return
+	 */
+	public synchronized long getSize()
+	{
+		ensureSize();
+
+		return fTotalSize;
+	}
+
+	/**
+	 * Return the number of entries written to the cache
+	 * 
+	 * @return
+	 */
+	public synchronized long getWriteCount()
+	{
+		return fWrites;
+	}
+
+	/**
+	 * Store the result of parsing the specified source. Results are only stored if a serializer exists for the content
+	 * type. The result is written in the background, so it must not be modified afterwards.
+	 * 
+	 * @param contentTypeId
+	 * @param cacheKey
+	 * @param parseState
+	 * @param result
+	 */
+	public void put(String contentTypeId, IParseStateCacheKey cacheKey, IParseState parseState, ParseResult result)
+	{
+		if (result == null || result.getRootNode() == null)
+		{
+			return;
+		}
+
+		IParseResultSerializer serializer = fSerializerProvider.getSerializer(contentTypeId);
+
+		if (serializer == null)
+		{
+			return;
+		}
+
+		// grab the source now, the parse state lets go of it once the parse is done
+		PendingWrite write = new PendingWrite(getKeyString(contentTypeId, cacheKey), parseState.getSource(), result,
+				serializer);
+
+		synchronized (fPendingWrites)
+		{
+			if (fPendingWrites.size() >= MAXIMUM_PENDING_WRITES)
+			{
+				return;
+			}
+
+			fPendingWrites.add(write);
+		}
+
+		fWriteJob.schedule();
+	}
+
+	/**
+	 * Write the pending entries one at a time until there are none left or the monitor is canceled
+	 * 
+	 * @param monitor
+	 */
+	private void writePending(IProgressMonitor monitor)
+	{
+		synchronized (fWriteLock)
+		{
+			while (!monitor.isCanceled())
+			{
+				PendingWrite write;
+
+				synchronized (fPendingWrites)
+				{
+					write = fPendingWrites.poll();
+				}
+
+				if (write == null)
+				{
+					break;
+				}
+
+				write(write.keyString, write.source, write.result, write.serializer);
+			}
+		}
+	}
+
+	/**
+	 * Write a single entry. Must be called while holding the write lock.
+	 * 
+	 * @param keyString
+	 * @param source
+	 * @param result
+	 * @param serializer
+	 */
+	private void write(String keyString, String source, ParseResult result, IParseResultSerializer serializer)
+	{
+		File file = getFile(keyString, source);
+
+		if (file == null || (!fDirectory.isDirectory() && !fDirectory.mkdirs()))
+		{
+			return;
+		}
+
+		// write to a temporary file first so readers never see a partial entry
+		File tempFile = new File(fDirectory, file.getName() + TEMP_EXTENSION);
+		DataOutputStream out = null;
+		boolean success = false;
+
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(keyString);
+			out.writeInt(source.length());
+			serializer.write(result, out);
+			out.close();
+			out = null;
+
+			success = true;
+		}
+		catch (Exception e)
+		{
+			IdeLog.logWarning(ParsingPlugin.getDefault(),
+					MessageFormat.format("Unable to write cached parse result to {0}", file), e, //$NON-NLS-1$
+					IDebugScopes.PARSING);
+		}
+		finally
+		{
+			close(out);
+		}
+
+		if (success)
+		{
+			synchronized (this)
+			{
+				ensureSize();
+
+				long previousSize = file.length();
+
+				if (file.exists() && !file.delete())
+				{
+					success = false;
+				}
+				else if (tempFile.renameTo(file))
+				{
+					fTotalSize += file.length() - previousSize;
+					fWrites++;
+
+					if (fTotalSize > fMaximumSize)
+					{
+						evict();
+					}
+				}
+				else
+				{
+					fTotalSize -= previousSize;
+					success = false;
+				}
+			}
+		}
+
+		if (!success)
+		{
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * close
+	 * 
+	 * @param stream
+	 */
+	private void close(Closeable stream)
+	{
+		if (stream != null)
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e) // $codepro.audit.disable emptyCatchClause
+			{
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Compute the total size of the entries if it hasn't been computed yet. Must be called while holding this lock.
+	 */
+	private void ensureSize()
+	{
+		if (fTotalSize < 0)
+		{
+			long size = 0;
+			File[] files = getEntries();
+
+			for (File file : files)
+			{
+				size += file.length();
+			}
+
+			fTotalSize = size;
+		}
+	}
+
+	/**
+	 * Delete the least recently used entries until the cache is comfortably under its size limit. Must be called while
+	 * holding this lock.
+	 */
+	private void evict()
+	{
+		File[] files = getEntries();
+		final long[] lastModified = new long[files.length];
+		Integer[] order = new Integer[files.length];
+
+		// take a snapshot of the timestamps, as they may change while sorting
+		for (int i = 0; i < files.length; i++)
+		{
+			lastModified[i] = files[i].lastModified();
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer o1, Integer o2)
+			{
+				long t1 = lastModified[o1];
+				long t2 = lastModified[o2];
+
+				return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+			}
+		});
+
+		long target = (long) (fMaximumSize * EVICTION_TARGET);
+		long size = fTotalSize;
+
+		for (int i = 0; i < order.length && size > target; i++)
+		{
+			File file = files[order[i]];
+			long length = file.length();
+
+			if (file.delete())
+			{
+				size -= length;
+				fEvictions++;
+			}
+		}
+
+		fTotalSize = size;
+
+		IdeLog.logTrace(ParsingPlugin.getDefault(), MessageFormat.format(
+				"Evicted persistent parse cache entries, size is now {0} bytes", size), IDebugScopes.PARSING); //$NON-NLS-1$
+	}
+
+	/**
+	 * Return all the entries currently in the cache directory
+	 * 
+	 * @return
+	 */
+	private File[] getEntries()
+	{
+		File[] files = fDirectory.listFiles();
+
+		if (files == null)
+		{
+			return new File[0];
+		}
+
+		int count = 0;
+
+		for (File file : files)
+		{
+			if (file.getName().endsWith(EXTENSION))
+			{
+				files[count++] = file;
+			}
+		}
+
+		File[] result = new File[count];
+
+		System.arraycopy(files, 0, result, 0, count);
+
+		return result;
+	}
+
+	/**
+	 * Return the file holding the entry for the specified key and source
+	 * 
+	 * @param keyString
+	 * @param source
+	 * @return
+	 */
+	private File getFile(String keyString, String source)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+
+			digest.update(keyString.getBytes(IOUtil.UTF_8));
+			digest.update((byte) 0);
+			digest.update(source.getBytes(IOUtil.UTF_8));
+
+			String name = StringUtil.pad(new BigInteger(1, digest.digest()).toString(16), 40, '0');
+
+			return new File(fDirectory, name + EXTENSION);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			IdeLog.logError(ParsingPlugin.getDefault(), e);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(ParsingPlugin.getDefault(), e);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Return a string identifying the content type and cache key. Cache keys don't change between sessions for the
+	 * same source and parse options, so their string form can be persisted.
+	 * 
+	 * @param contentTypeId
+	 * @param cacheKey
+	 * @return
+	 */
+	private String getKeyString(String contentTypeId, IParseStateCacheKey cacheKey)
+	{
+		return contentTypeId + '|' + cacheKey;
+	}
+
+	/**
+	 * Delete a single entry, keeping the total size up to date
+	 * 
+	 * @param file
+	 */
+	private synchronized void remove(File file)
+	{
+		long length = file.length();
+
+		if (file.delete() && fTotalSize >= 0)
+		{
+			fTotalSize -= length;
+		}
+	}
+}
@@ -19,7 +19,7 @@ import com.aptana.parsing.lexer.Range;
 import beaver.spec.ast.Node;
 import beaver.spec.ast.TreeWalker;
 
-public abstract class ParseNode extends Node implements IParseNode
+public abstract class ParseNode extends Node implements IParseNode, Cloneable
 {
 	protected static final class NameNode implements INameNode
 	{
@@ -116,6 +116,65 @@ public abstract class ParseNode extends Node implements IParseNode
 		setLocation(getStart() + offset, getEnd() + offset);
 	}
 
+	/**
+	 * Create a copy of this node and all of its descendants. The copy has its own offsets, children and parent links,
+	 * so it can be modified without affecting this tree. Any other fields are shared with this node.
+	 * 
+	 * @return
+	 */
+	public ParseNode copy()
+	{
+		ParseNode result = copyNode();
+
+		for (int i = 0; i < fChildrenCount; i++)
+		{
+			IParseNode child = fChildren[i];
+
+			if (child instanceof ParseNode)
+			{
+				ParseNode childCopy = ((ParseNode) child).copy();
+
+				childCopy.fParent = result;
+				result.fChildren[i] = childCopy;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Create a copy of this node alone. The copy has its own offsets and children array but no parent, and its children
+	 * are the children of this node, whose parent is still this node. Any other fields are shared with this node.
+	 * 
+	 * @return
+	 */
+	public ParseNode copyNode()
+	{
+		ParseNode result;
+
+		try
+		{
+			result = (ParseNode) super.clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// can't happen, we're Cloneable
+			throw new IllegalStateException(e);
+		}
+
+		result.fParent = null;
+
+		if (fChildrenCount > 0)
+		{
+			IParseNode[] children = new IParseNode[fChildrenCount];
+
+			System.arraycopy(fChildren, 0, children, 0, fChildrenCount);
+			result.fChildren = children;
+		}
+
+		return result;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.parsing.lexer.IRange#contains(int)
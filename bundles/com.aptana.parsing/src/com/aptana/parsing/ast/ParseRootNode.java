@@ -87,6 +87,32 @@ public abstract class ParseRootNode extends ParseNode implements IParseRootNode
 		fComments = NO_CHILDREN;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.parsing.ast.ParseNode#copy()
+	 */
+	@Override
+	public ParseRootNode copy()
+	{
+		ParseRootNode result = (ParseRootNode) super.copy();
+
+		if (fComments != null && fComments.length > 0)
+		{
+			IParseNode[] comments = new IParseNode[fComments.length];
+
+			for (int i = 0; i < fComments.length; i++)
+			{
+				IParseNode comment = fComments[i];
+
+				comments[i] = (comment instanceof ParseNode) ? ((ParseNode) comment).copy() : comment;
+			}
+
+			result.fComments = comments;
+		}
+
+		return result;
+	}
+
 	public IParseNode[] getCommentNodes()
 	{
 		return fComments;
@@ -0,0 +1,31 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.preferences;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+
+import com.aptana.parsing.IPreferenceConstants;
+import com.aptana.parsing.ParsingPlugin;
+
+public class PreferenceInitializer extends AbstractPreferenceInitializer
+{
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer#initializeDefaultPreferences()
+	 */
+	@Override
+	public void initializeDefaultPreferences()
+	{
+		IEclipsePreferences prefs = DefaultScope.INSTANCE.getNode(ParsingPlugin.PLUGIN_ID);
+
+		prefs.putBoolean(IPreferenceConstants.PERSISTENT_PARSE_CACHE, false);
+		prefs.putInt(IPreferenceConstants.PERSISTENT_PARSE_CACHE_SIZE, 64);
+	}
+}
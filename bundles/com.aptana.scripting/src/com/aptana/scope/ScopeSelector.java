@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -156,6 +156,22 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 	 */
 	private static final SelectorNode NULL_SELECTOR = new SelectorNode();
 
+	/**
+	 * Cache used to hold the match results of a selector against a scope, keyed by both. Matching runs for every
+	 * element on each scope-based query of the bundle model, mostly against the few scopes the caret moves through.
+	 */
+	private static final LRUCache<String, List<Integer>> cacheMatch = new LRUCache<String, List<Integer>>(2000);
+
+	/**
+	 * Lock to access cacheMatch.
+	 */
+	private static final Object matchLock = new Object();
+
+	/**
+	 * Entry to signal a failed match in the cache.
+	 */
+	private static final List<Integer> NO_MATCH = Collections.emptyList();
+
 	/**
 	 * ScopeSelector
 	 * 
@@ -246,47 +262,82 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 	 * @see com.aptana.scope.IScopeSelector#matches(java.lang.String)
 	 */
 	public boolean matches(String scope)
+	{
+		if (this._root == null || scope == null)
+		{
+			matchResults = new ArrayList<Integer>();
+			return false;
+		}
+
+		String key = StringUtil.concat(toString(), "\0", scope); //$NON-NLS-1$
+		List<Integer> cached;
+
+		synchronized (matchLock)
+		{
+			cached = cacheMatch.get(key);
+		}
+
+		if (cached != null)
+		{
+			// compare() pads the results it is given, so never hand out the cached list itself
+			matchResults = new ArrayList<Integer>(cached);
+			return cached != NO_MATCH;
+		}
+
+		boolean result = match(scope);
+
+		synchronized (matchLock)
+		{
+			cacheMatch.put(key, result ? new ArrayList<Integer>(matchResults) : NO_MATCH);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Matches the selector tree against a scope, recording the match results
+	 * 
+	 * @param scope
+	 * @return
+	 */
+	private boolean match(String scope)
 	{
 		matchResults = new ArrayList<Integer>();
 		boolean result = false;
+		MatchContext context = new MatchContext(scope);
 
-		if (this._root != null && scope != null)
+		for (int i = 0; i < context.getLength(); i++)
 		{
-			MatchContext context = new MatchContext(scope);
+			// save current position so we can advance later
+			context.pushCurrentStep();
 
-			for (int i = 0; i < context.getLength(); i++)
+			// see if we match at this point within the context
+			if (this._root.matches(context))
 			{
-				// save current position so we can advance later
-				context.pushCurrentStep();
-
-				// see if we match at this point within the context
-				if (this._root.matches(context))
+				// Add match results. If more than one value, we need to replace existing zeros in our list...
+				Collection<Integer> tmpResults = this._root.getMatchResults();
+				int toRemove = tmpResults.size() - 1;
+				for (int x = 0; x < toRemove; x++)
 				{
-					// Add match results. If more than one value, we need to replace existing zeros in our list...
-					Collection<Integer> tmpResults = this._root.getMatchResults();
-					int toRemove = tmpResults.size() - 1;
-					for (int x = 0; x < toRemove; x++)
-					{
-						matchResults.remove(0);
-					}
-					matchResults.addAll(0, tmpResults);
-
-					// Fill with preceding zeros.
-					while (matchResults.size() < context.getLength())
-					{
-						matchResults.add(0, 0);
-					}
+					matchResults.remove(0);
+				}
+				matchResults.addAll(0, tmpResults);
 
-					// we matched, so report success and stop looking for a match
-					result = true;
-					break;
+				// Fill with preceding zeros.
+				while (matchResults.size() < context.getLength())
+				{
+					matchResults.add(0, 0);
 				}
-				matchResults.add(0, 0); // Add a non-match
 
-				// restore position where we started and move forward one
-				context.popCurrentStep();
-				context.backup();
+				// we matched, so report success and stop looking for a match
+				result = true;
+				break;
 			}
+			matchResults.add(0, 0); // Add a non-match
+
+			// restore position where we started and move forward one
+			context.popCurrentStep();
+			context.backup();
 		}
 
 		return result;
@@ -315,6 +366,17 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		return result;
 	}
 
+	/**
+	 * Forgets the match results cached for all selectors
+	 */
+	public static void clearMatchCache()
+	{
+		synchronized (matchLock)
+		{
+			cacheMatch.flush();
+		}
+	}
+
 	private static ISelectorNode parse(String selector)
 	{
 		ScopeParser parser = new ScopeParser();
@@ -0,0 +1,1352 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.jruby.Ruby;
+import org.jruby.RubyRegexp;
+import org.jruby.util.RegexpOptions;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.ObjectUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.scope.ScopeSelector;
+import com.aptana.scripting.ScriptingActivator;
+import com.aptana.scripting.ScriptingEngine;
+
+/**
+ * Keeps a binary copy of the model each bundle directory produced the last time its scripts were run, so that the
+ * bundle can be restored at startup without starting JRuby. A cache is only used while none of the bundle's scripts,
+ * libraries and locale files changed, which is checked through their timestamps first and their digests when a timestamp
+ * differs.<br>
+ * Ruby blocks can't be written out; commands and environments that have one are restored without it, and their script
+ * is run again the first time the block is needed. The regular expressions of folding and indentation markers are
+ * kept as source and compiled on first use.
+ */
+class BundleCacher
+{
+	private static final int MAGIC = 0x41425543; // "ABUC"
+	private static final int VERSION = 2;
+
+	/**
+	 * Files modified this close to the moment the cache was written may have changed again without their timestamp
+	 * changing, as file systems don't record timestamps any finer than this
+	 */
+	private static final long TIMESTAMP_RESOLUTION = 2000;
+
+	private static final String CACHE_DIRECTORY = "bundle_cache"; //$NON-NLS-1$
+	private static final String CACHE_FILE_EXTENSION = ".bin"; //$NON-NLS-1$
+	private static final String DIGEST_ALGORITHM = "MD5"; //$NON-NLS-1$
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+	private static final String RUBY_FILE_EXTENSION = ".rb"; //$NON-NLS-1$
+
+	// element kinds
+	private static final byte COMMAND = 1;
+	private static final byte SNIPPET = 2;
+	private static final byte CONTENT_ASSIST = 3;
+	private static final byte TEMPLATE = 4;
+	private static final byte ENVIRONMENT = 5;
+	private static final byte MENU = 6;
+	private static final byte SMART_TYPING_PAIRS = 7;
+	private static final byte BUILD_PATH = 8;
+	private static final byte SNIPPET_CATEGORY = 9;
+	private static final byte PROJECT_TEMPLATE = 10;
+	private static final byte PROJECT_SAMPLE = 11;
+
+	// property value kinds
+	private static final byte NULL_VALUE = 0;
+	private static final byte STRING_VALUE = 1;
+	private static final byte STRING_ARRAY_VALUE = 2;
+	private static final byte BOOLEAN_VALUE = 3;
+	private static final byte INTEGER_VALUE = 4;
+	private static final byte LONG_VALUE = 5;
+	private static final byte DOUBLE_VALUE = 6;
+
+	/**
+	 * Thrown when the model of a bundle holds something that can't be written to the cache
+	 */
+	private static class NotCacheableException extends Exception
+	{
+		private static final long serialVersionUID = 1L;
+
+		NotCacheableException(String message)
+		{
+			super(message);
+		}
+	}
+
+	/**
+	 * The source of a regular expression, compiled once it is first used
+	 */
+	static class RegexpSource
+	{
+		final String source;
+		final int options;
+
+		RegexpSource(String source, int options)
+		{
+			this.source = source;
+			this.options = options;
+		}
+	}
+
+	/**
+	 * The folding and indentation markers of a cached bundle, by scope
+	 */
+	static class DeferredMarkers
+	{
+		final Map<String, RegexpSource> foldingStart = new LinkedHashMap<String, RegexpSource>();
+		final Map<String, RegexpSource> foldingStop = new LinkedHashMap<String, RegexpSource>();
+		final Map<String, RegexpSource> increaseIndent = new LinkedHashMap<String, RegexpSource>();
+		final Map<String, RegexpSource> decreaseIndent = new LinkedHashMap<String, RegexpSource>();
+
+		boolean isEmpty()
+		{
+			return foldingStart.isEmpty() && foldingStop.isEmpty() && increaseIndent.isEmpty()
+					&& decreaseIndent.isEmpty();
+		}
+	}
+
+	private final BundleManager manager;
+	private final File cacheDirectory;
+
+	/**
+	 * BundleCacher
+	 * 
+	 * @param manager
+	 *            The bundle manager that runs the scripts of the bundles
+	 * @param cacheDirectory
+	 *            The directory to keep the cache files in
+	 */
+	BundleCacher(BundleManager manager, File cacheDirectory)
+	{
+		this.manager = manager;
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Returns the default location of the cache files, or null when the scripting plug-in isn't running
+	 * 
+	 * @return
+	 */
+	static File getDefaultCacheDirectory()
+	{
+		ScriptingActivator plugin = ScriptingActivator.getDefault();
+
+		if (plugin == null)
+		{
+			return null;
+		}
+		try
+		{
+			return plugin.getStateLocation().append(CACHE_DIRECTORY).toFile();
+		}
+		catch (IllegalStateException e)
+		{
+			// no instance location
+			return null;
+		}
+	}
+
+	/**
+	 * Compiles the regular expressions of a set of markers
+	 * 
+	 * @param sources
+	 * @return
+	 */
+	static Map<ScopeSelector, RubyRegexp> compile(Map<String, RegexpSource> sources)
+	{
+		if (sources.isEmpty())
+		{
+			return null;
+		}
+
+		Ruby runtime = ScriptingEngine.getInstance().getScriptingContainer().getProvider().getRuntime();
+		Map<ScopeSelector, RubyRegexp> result = new HashMap<ScopeSelector, RubyRegexp>(sources.size());
+
+		for (Map.Entry<String, RegexpSource> entry : sources.entrySet())
+		{
+			RegexpSource regexp = entry.getValue();
+
+			result.put(new ScopeSelector(entry.getKey()), RubyRegexp.newRegexp(runtime, regexp.source,
+					RegexpOptions.fromEmbeddedOptions(regexp.options)));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Runs the script that defined an element restored from the cache again, and returns the element that now stands
+	 * for it. The script runs in a job, which the caller waits for. Only when the caller holds the lock of the runtime
+	 * already, e.g. while running a command, does the script run on the current thread, as the job couldn't take the
+	 * lock before the caller lets go of it.
+	 * 
+	 * @param element
+	 *            An element whose Ruby block wasn't restored
+	 * @return The matching element defined by the script, or null if the script no longer defines it
+	 */
+	static AbstractBundleElement resolve(final AbstractBundleElement element)
+	{
+		final Ruby runtime = BundleManager.getInstance().getScriptingEngine().getInitializedScriptingContainer()
+				.getProvider().getRuntime();
+
+		if (Thread.holdsLock(runtime))
+		{
+			return runDeferredScript(element);
+		}
+
+		final AbstractBundleElement[] result = new AbstractBundleElement[1];
+		Job job = new Job("Load deferred script: " + element.getPath()) //$NON-NLS-1$
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				// concurrent requests for elements of the same script wait here, and then find the script has run
+				synchronized (runtime)
+				{
+					result[0] = runDeferredScript(element);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.setPriority(Job.INTERACTIVE);
+		job.schedule();
+
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				job.join();
+				break;
+			}
+			catch (InterruptedException e)
+			{
+				// the block is needed right now, so wait for it and pass the interrupt on afterwards
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		return result[0];
+	}
+
+	/**
+	 * Runs the script that defined an element, unless it already ran since the element was restored. Must be called
+	 * with the lock of the runtime held.
+	 */
+	private static AbstractBundleElement runDeferredScript(AbstractBundleElement element)
+	{
+		AbstractBundleElement result = findReplacement(element);
+
+		if (result == null)
+		{
+			BundleManager manager = BundleManager.getInstance();
+			File script = new File(element.getPath());
+
+			manager.showBundleLoadInfo("Loading deferred script: " + script); //$NON-NLS-1$
+
+			manager.unloadScript(script, false);
+			manager.getScriptingEngine().runScript(script.getAbsolutePath(),
+					manager.getBundleLoadPaths(manager.getBundleDirectory(script)), RunType.CURRENT_THREAD, false);
+			manager.fireScriptReloadedEvent(script);
+
+			result = findReplacement(element);
+		}
+
+		return result;
+	}
+
+	private static AbstractBundleElement findReplacement(AbstractBundleElement element)
+	{
+		for (AbstractElement candidate : AbstractElement.getElementsByPath(element.getPath()))
+		{
+			if (candidate != element && candidate.getClass() == element.getClass())
+			{
+				AbstractBundleElement bundleElement = (AbstractBundleElement) candidate;
+
+				if (isDeferred(bundleElement))
+				{
+					continue;
+				}
+				// environments have random names, so they are told apart by scope
+				if (element instanceof EnvironmentElement ? ObjectUtil.areEqual(element.getScope(),
+						bundleElement.getScope()) : ObjectUtil.areEqual(element.getDisplayName(),
+						bundleElement.getDisplayName()))
+				{
+					return bundleElement;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean isDeferred(AbstractBundleElement element)
+	{
+		if (element instanceof CommandElement)
+		{
+			return ((CommandElement) element).hasDeferredInvokeBlock();
+		}
+		if (element instanceof EnvironmentElement)
+		{
+			return ((EnvironmentElement) element).hasDeferredInvokeBlock();
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the model of the bundle in the specified directory to its cache file. Bundles whose model can't be
+	 * written, e.g. because a script stored a Ruby object in a property, are not cached.
+	 * 
+	 * @param bundleDirectory
+	 * @param monitor
+	 * @return true if the cache was written
+	 */
+	boolean cache(File bundleDirectory, IProgressMonitor monitor)
+	{
+		if (cacheDirectory == null)
+		{
+			return false;
+		}
+
+		List<BundleElement> bundles = manager.getBundlesFromPath(bundleDirectory);
+
+		if (bundles.size() != 1)
+		{
+			return false;
+		}
+
+		List<File> files = getFiles(bundleDirectory);
+		SubMonitor sub = SubMonitor.convert(monitor, files.size() + 1);
+		File cacheFile = getCacheFile(bundleDirectory);
+		File tempFile = new File(cacheFile.getPath() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out = null;
+		boolean written = false;
+
+		try
+		{
+			if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs())
+			{
+				return false;
+			}
+
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			writeHeader(out, bundleDirectory);
+
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(files.size());
+			for (File file : files)
+			{
+				out.writeUTF(getRelativePath(bundleDirectory, file));
+				out.writeLong(file.length());
+				out.writeLong(file.lastModified());
+				writeBytes(out, digest(file));
+				sub.worked(1);
+			}
+
+			writeBundle(out, bundles.get(0), bundleDirectory);
+			out.close();
+			out = null;
+
+			if (cacheFile.exists() && !cacheFile.delete())
+			{
+				return false;
+			}
+			written = tempFile.renameTo(cacheFile);
+			sub.worked(1);
+		}
+		catch (NotCacheableException e)
+		{
+			manager.showBundleLoadInfo(MessageFormat.format("Not caching bundle at {0}: {1}", bundleDirectory, //$NON-NLS-1$
+					e.getMessage()));
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(ScriptingActivator.getDefault(),
+					MessageFormat.format(Messages.BundleCacher_SerializationExceptionDeletingCacheFile, cacheFile), e);
+		}
+		finally
+		{
+			if (out != null)
+			{
+				try
+				{
+					out.close();
+				}
+				catch (IOException e)
+				{
+					// ignore
+				}
+			}
+			if (!written)
+			{
+				tempFile.delete();
+			}
+			sub.done();
+		}
+
+		return written;
+	}
+
+	/**
+	 * Restores the bundle in the specified directory from its cache file, if the file is still current. The bundle is
+	 * not added to the bundle manager.
+	 * 
+	 * @param bundleDirectory
+	 * @param monitor
+	 * @return The restored bundle or null if it has to be loaded from its scripts
+	 */
+	BundleElement load(File bundleDirectory, IProgressMonitor monitor)
+	{
+		if (cacheDirectory == null)
+		{
+			return null;
+		}
+
+		File cacheFile = getCacheFile(bundleDirectory);
+
+		if (!cacheFile.isFile())
+		{
+			return null;
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor,
+				MessageFormat.format(Messages.BundleCacher_LoadCacheTaskName, bundleDirectory), 2);
+		List<AbstractElement> created = new ArrayList<AbstractElement>();
+		DataInputStream in = null;
+		BundleElement result = null;
+
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+
+			if (readHeader(in, bundleDirectory) && isCurrent(in, bundleDirectory, sub.newChild(1)))
+			{
+				result = readBundle(in, created);
+			}
+			sub.worked(1);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(ScriptingActivator.getDefault(),
+					MessageFormat.format(Messages.BundleCacher_LoadingCacheError, bundleDirectory), e);
+		}
+		catch (RuntimeException e)
+		{
+			IdeLog.logWarning(ScriptingActivator.getDefault(),
+					MessageFormat.format(Messages.BundleCacher_LoadingCacheError, bundleDirectory), e);
+		}
+		finally
+		{
+			if (in != null)
+			{
+				try
+				{
+					in.close();
+				}
+				catch (IOException e)
+				{
+					// ignore
+				}
+			}
+			sub.done();
+		}
+
+		if (result == null)
+		{
+			// forget whatever was read before the cache turned out unusable
+			for (AbstractElement element : created)
+			{
+				AbstractElement.unregisterElement(element);
+			}
+			cacheFile.delete();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Deletes the cache file of the bundle in the specified directory
+	 * 
+	 * @param bundleDirectory
+	 */
+	void delete(File bundleDirectory)
+	{
+		if (cacheDirectory != null)
+		{
+			getCacheFile(bundleDirectory).delete();
+		}
+	}
+
+	private File getCacheFile(File bundleDirectory)
+	{
+		return new File(cacheDirectory, StringUtil.md5(bundleDirectory.getAbsolutePath()) + CACHE_FILE_EXTENSION);
+	}
+
+	/**
+	 * Returns the files the model of a bundle is built from, in a stable order. Along with the scripts and locale
+	 * files, these are the Ruby files in the bundle's lib directory, which its scripts may require.
+	 */
+	private List<File> getFiles(File bundleDirectory)
+	{
+		List<File> result = new ArrayList<File>(manager.getBundleScripts(bundleDirectory));
+		List<File> libraries = new ArrayList<File>();
+		List<File> locales = new ArrayList<File>(manager.localizationFiles(bundleDirectory));
+
+		addLibraries(new File(BundleUtils.getBundleLibDirectory(bundleDirectory)), libraries);
+		Collections.sort(libraries);
+		result.addAll(libraries);
+		Collections.sort(locales);
+		result.addAll(locales);
+
+		return result;
+	}
+
+	/**
+	 * Adds the Ruby files in a directory and its sub-directories
+	 */
+	private static void addLibraries(File directory, List<File> libraries)
+	{
+		File[] files = directory.listFiles(new FileFilter()
+		{
+			public boolean accept(File pathname)
+			{
+				return pathname.isDirectory()
+						|| (pathname.isFile() && pathname.getName().toLowerCase().endsWith(RUBY_FILE_EXTENSION));
+			}
+		});
+
+		if (files == null)
+		{
+			return;
+		}
+		for (File file : files)
+		{
+			if (file.isDirectory())
+			{
+				addLibraries(file, libraries);
+			}
+			else
+			{
+				libraries.add(file);
+			}
+		}
+	}
+
+	private static String getRelativePath(File bundleDirectory, File file)
+	{
+		IPath path = Path.fromOSString(file.getAbsolutePath()).makeRelativeTo(
+				Path.fromOSString(bundleDirectory.getAbsolutePath()));
+
+		return path.toPortableString();
+	}
+
+	private static byte[] digest(File file) throws IOException
+	{
+		MessageDigest digest;
+
+		try
+		{
+			digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IOException(e.getMessage());
+		}
+
+		InputStream in = new FileInputStream(file);
+
+		try
+		{
+			byte[] buffer = new byte[8192];
+			int count;
+
+			while ((count = in.read(buffer)) != -1)
+			{
+				digest.update(buffer, 0, count);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+
+		return digest.digest();
+	}
+
+	/**
+	 * Returns the version of the Ruby framework that built the model. Caches written by another version are ignored,
+	 * as the framework may build a different model from the same scripts.
+	 */
+	private static String getFrameworkVersion()
+	{
+		ScriptingActivator plugin = ScriptingActivator.getDefault();
+
+		return (plugin != null) ? plugin.getBundle().getVersion().toString() : StringUtil.EMPTY;
+	}
+
+	private void writeHeader(DataOutputStream out, File bundleDirectory) throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(getFrameworkVersion());
+		out.writeUTF(Locale.getDefault().toString());
+		out.writeUTF(bundleDirectory.getAbsolutePath());
+	}
+
+	private boolean readHeader(DataInputStream in, File bundleDirectory) throws IOException
+	{
+		return in.readInt() == MAGIC && in.readInt() == VERSION && in.readUTF().equals(getFrameworkVersion())
+				&& in.readUTF().equals(Locale.getDefault().toString())
+				&& in.readUTF().equals(bundleDirectory.getAbsolutePath());
+	}
+
+	/**
+	 * Checks that the files recorded in the cache are the files of the bundle, and that none of them changed
+	 */
+	private boolean isCurrent(DataInputStream in, File bundleDirectory, IProgressMonitor monitor) throws IOException
+	{
+		List<File> files = getFiles(bundleDirectory);
+		long cacheTime = in.readLong();
+		int count = in.readInt();
+
+		if (count != files.size())
+		{
+			manager.showBundleLoadInfo(MessageFormat.format(
+					"Files were added to or removed from {0}, invalidating cache", bundleDirectory)); //$NON-NLS-1$
+			return false;
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor, count);
+
+		for (File file : files)
+		{
+			String relativePath = in.readUTF();
+			long length = in.readLong();
+			long lastModified = in.readLong();
+			byte[] digest = readBytes(in);
+
+			sub.subTask(MessageFormat.format(Messages.BundleCacher_ComparingTimestampSubTaskName, file));
+
+			if (!relativePath.equals(getRelativePath(bundleDirectory, file)))
+			{
+				manager.showBundleLoadInfo(MessageFormat.format(Messages.BundleCacher_FileReferencedInCacheMissingMsg,
+						relativePath, bundleDirectory));
+				return false;
+			}
+			// a timestamp may change without the content changing, e.g. after a checkout, so compare the digests then. Do
+			// the same for files modified right before the cache was written, which may have changed again since.
+			boolean verify = file.lastModified() != lastModified || cacheTime - lastModified < TIMESTAMP_RESOLUTION;
+			if (file.length() != length || (verify && !Arrays.equals(digest, digest(file))))
+			{
+				manager.showBundleLoadInfo(MessageFormat.format(Messages.BundleCacher_OutOfDateCacheMsg, file));
+				return false;
+			}
+			sub.worked(1);
+		}
+
+		return true;
+	}
+
+	private void writeBundle(DataOutputStream out, BundleElement bundle, File bundleDirectory) throws IOException,
+			NotCacheableException
+	{
+		writeString(out, bundle.getPath());
+		writeString(out, bundle.getDisplayName());
+		writeString(out, bundle.getAuthor());
+		writeString(out, bundle.getCopyright());
+		writeString(out, bundle.getDescription());
+		writeString(out, bundle.getLicense());
+		writeString(out, bundle.getLicenseUrl());
+		writeString(out, bundle.getRepository());
+		writeStrings(out, bundle.getFileTypes());
+		writeStringMap(out, bundle.getFileTypeRegistry());
+		writeMarkers(out, bundle.getFoldingStartMarkers());
+		writeMarkers(out, bundle.getFoldingStopMarkers());
+		writeMarkers(out, bundle.getIncreaseIndentMarkers());
+		writeMarkers(out, bundle.getDecreaseIndentMarkers());
+		writeProperties(out, bundle);
+
+		String directory = bundleDirectory.getAbsolutePath();
+		List<AbstractBundleElement> children = bundle.getChildren();
+
+		out.writeInt(children.size());
+		for (AbstractBundleElement child : children)
+		{
+			if (child.getPath() == null || !child.getPath().startsWith(directory))
+			{
+				throw new NotCacheableException("element defined outside of the bundle: " + child.getPath()); //$NON-NLS-1$
+			}
+			writeElement(out, child);
+		}
+	}
+
+	private BundleElement readBundle(DataInputStream in, List<AbstractElement> created) throws IOException
+	{
+		BundleElement bundle = new BundleElement(readString(in));
+		created.add(bundle);
+
+		bundle.setDisplayName(readString(in));
+		bundle.setAuthor(readString(in));
+		bundle.setCopyright(readString(in));
+		bundle.setDescription(readString(in));
+		bundle.setLicense(readString(in));
+		bundle.setLicenseUrl(readString(in));
+		bundle.setRepository(readString(in));
+
+		List<String> fileTypes = readStrings(in);
+		if (fileTypes != null && !fileTypes.isEmpty())
+		{
+			bundle.setFileTypes(fileTypes);
+		}
+
+		Map<String, String> fileTypeRegistry = readStringMap(in);
+		if (!fileTypeRegistry.isEmpty())
+		{
+			bundle.setFileTypeRegistry(fileTypeRegistry);
+		}
+
+		DeferredMarkers markers = new DeferredMarkers();
+		readMarkers(in, markers.foldingStart);
+		readMarkers(in, markers.foldingStop);
+		readMarkers(in, markers.increaseIndent);
+		readMarkers(in, markers.decreaseIndent);
+		if (!markers.isEmpty())
+		{
+			bundle.setDeferredMarkers(markers);
+		}
+
+		readProperties(in, bundle);
+
+		int count = in.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			bundle.addChild(readElement(in, created));
+		}
+
+		return bundle;
+	}
+
+	private void writeElement(DataOutputStream out, AbstractBundleElement element) throws IOException,
+			NotCacheableException
+	{
+		Class<?> type = element.getClass();
+
+		if (type == CommandElement.class)
+		{
+			out.writeByte(COMMAND);
+		}
+		else if (type == SnippetElement.class)
+		{
+			out.writeByte(SNIPPET);
+		}
+		else if (type == ContentAssistElement.class)
+		{
+			out.writeByte(CONTENT_ASSIST);
+		}
+		else if (type == TemplateElement.class)
+		{
+			out.writeByte(TEMPLATE);
+		}
+		else if (type == EnvironmentElement.class)
+		{
+			out.writeByte(ENVIRONMENT);
+		}
+		else if (type == MenuElement.class)
+		{
+			out.writeByte(MENU);
+		}
+		else if (type == SmartTypingPairsElement.class)
+		{
+			out.writeByte(SMART_TYPING_PAIRS);
+		}
+		else if (type == BuildPathElement.class)
+		{
+			out.writeByte(BUILD_PATH);
+		}
+		else if (type == SnippetCategoryElement.class)
+		{
+			out.writeByte(SNIPPET_CATEGORY);
+		}
+		else if (type == ProjectTemplateElement.class)
+		{
+			out.writeByte(PROJECT_TEMPLATE);
+		}
+		else if (type == ProjectSampleElement.class)
+		{
+			out.writeByte(PROJECT_SAMPLE);
+		}
+		else
+		{
+			throw new NotCacheableException("unknown element type " + type.getName()); //$NON-NLS-1$
+		}
+
+		writeString(out, element.getPath());
+		writeString(out, element.getDisplayName());
+		writeString(out, element.getScope());
+		writeProperties(out, element);
+
+		if (element instanceof CommandElement)
+		{
+			writeCommand(out, (CommandElement) element);
+		}
+
+		if (element instanceof SnippetElement)
+		{
+			SnippetElement snippet = (SnippetElement) element;
+
+			writeString(out, snippet.getExpansion());
+			writeString(out, snippet.getCategory());
+			writeStrings(out, snippet.getTags());
+			writeString(out, snippet.getIconPath());
+			writeString(out, snippet.getDescription());
+		}
+		else if (element instanceof TemplateElement)
+		{
+			writeString(out, ((TemplateElement) element).getFiletype());
+		}
+		else if (element instanceof EnvironmentElement)
+		{
+			out.writeBoolean(((EnvironmentElement) element).hasInvokeBlock());
+		}
+		else if (element instanceof MenuElement)
+		{
+			MenuElement menu = (MenuElement) element;
+			List<MenuElement> children = menu.getChildren();
+
+			writeString(out, menu.getCommandName());
+			out.writeInt(children.size());
+			for (MenuElement child : children)
+			{
+				writeElement(out, child);
+			}
+		}
+		else if (element instanceof SmartTypingPairsElement)
+		{
+			List<Character> pairs = ((SmartTypingPairsElement) element).getPairs();
+
+			out.writeInt((pairs != null) ? pairs.size() : -1);
+			if (pairs != null)
+			{
+				for (Character pair : pairs)
+				{
+					out.writeChar(pair);
+				}
+			}
+		}
+		else if (element instanceof BuildPathElement)
+		{
+			writeString(out, ((BuildPathElement) element).getBuildPath());
+		}
+		else if (element instanceof SnippetCategoryElement)
+		{
+			writeString(out, ((SnippetCategoryElement) element).getIconPath());
+		}
+		else if (element instanceof ProjectTemplateElement)
+		{
+			ProjectTemplateElement template = (ProjectTemplateElement) element;
+
+			writeString(out, template.getType().name());
+			writeString(out, template.getLocation());
+			writeString(out, template.getDescription());
+			writeString(out, template.getId());
+			writeString(out, template.getIcon());
+			out.writeInt(template.getPriority());
+			writeStrings(out, template.getTags());
+		}
+		else if (element instanceof ProjectSampleElement)
+		{
+			ProjectSampleElement sample = (ProjectSampleElement) element;
+
+			if (sample.getDestinationPath() != null)
+			{
+				throw new NotCacheableException("sample with a destination path"); //$NON-NLS-1$
+			}
+			writeString(out, sample.getId());
+			writeString(out, sample.getCategory());
+			writeString(out, sample.getLocation());
+			writeString(out, sample.getDescription());
+			String[] natures = sample.getNatures();
+			writeStrings(out, (natures != null) ? Arrays.asList(natures) : null);
+			writeStringMap(out, sample.getIcon());
+		}
+	}
+
+	private AbstractBundleElement readElement(DataInputStream in, List<AbstractElement> created) throws IOException
+	{
+		byte type = in.readByte();
+		String path = readString(in);
+		AbstractBundleElement element;
+
+		switch (type)
+		{
+			case COMMAND:
+				element = new CommandElement(path);
+				break;
+			case SNIPPET:
+				element = new SnippetElement(path);
+				break;
+			case CONTENT_ASSIST:
+				element = new ContentAssistElement(path);
+				break;
+			case TEMPLATE:
+				element = new TemplateElement(path);
+				break;
+			case ENVIRONMENT:
+				element = new EnvironmentElement(path);
+				break;
+			case MENU:
+				element = new MenuElement(path);
+				break;
+			case SMART_TYPING_PAIRS:
+				element = new SmartTypingPairsElement(path);
+				break;
+			case BUILD_PATH:
+				element = new BuildPathElement(path);
+				break;
+			case SNIPPET_CATEGORY:
+				element = new SnippetCategoryElement(path);
+				break;
+			case PROJECT_TEMPLATE:
+				element = new ProjectTemplateElement(path);
+				break;
+			case PROJECT_SAMPLE:
+				element = new ProjectSampleElement(path);
+				break;
+			default:
+				throw new IOException("Unknown element type " + type); //$NON-NLS-1$
+		}
+		created.add(element);
+
+		element.setDisplayName(readString(in));
+		element.setScope(readString(in));
+		readProperties(in, element);
+
+		if (element instanceof CommandElement)
+		{
+			readCommand(in, (CommandElement) element);
+		}
+
+		if (element instanceof SnippetElement)
+		{
+			SnippetElement snippet = (SnippetElement) element;
+
+			snippet.setExpansion(readString(in));
+			snippet.setCategory(readString(in));
+			snippet.setTags(readStrings(in));
+			snippet.setIconPath(readString(in));
+			snippet.setDescription(readString(in));
+		}
+		else if (element instanceof TemplateElement)
+		{
+			((TemplateElement) element).setFiletype(readString(in));
+		}
+		else if (element instanceof EnvironmentElement)
+		{
+			if (in.readBoolean())
+			{
+				((EnvironmentElement) element).setDeferredInvokeBlock();
+			}
+		}
+		else if (element instanceof MenuElement)
+		{
+			MenuElement menu = (MenuElement) element;
+
+			menu.setCommandName(readString(in));
+			int count = in.readInt();
+			for (int i = 0; i < count; i++)
+			{
+				menu.addMenu((MenuElement) readElement(in, created));
+			}
+		}
+		else if (element instanceof SmartTypingPairsElement)
+		{
+			int count = in.readInt();
+
+			if (count >= 0)
+			{
+				List<Character> pairs = new ArrayList<Character>(count);
+				for (int i = 0; i < count; i++)
+				{
+					pairs.add(in.readChar());
+				}
+				((SmartTypingPairsElement) element).setPairs(pairs);
+			}
+		}
+		else if (element instanceof BuildPathElement)
+		{
+			((BuildPathElement) element).setBuildPath(readString(in));
+		}
+		else if (element instanceof SnippetCategoryElement)
+		{
+			((SnippetCategoryElement) element).setIconPath(readString(in));
+		}
+		else if (element instanceof ProjectTemplateElement)
+		{
+			ProjectTemplateElement template = (ProjectTemplateElement) element;
+
+			template.setType(readString(in));
+			template.setLocation(readString(in));
+			template.setDescription(readString(in));
+			template.setId(readString(in));
+			template.setIcon(readString(in));
+			template.setPriority(in.readInt());
+			template.setTags(readStrings(in));
+		}
+		else if (element instanceof ProjectSampleElement)
+		{
+			ProjectSampleElement sample = (ProjectSampleElement) element;
+
+			sample.setId(readString(in));
+			sample.setCategory(readString(in));
+			sample.setLocation(readString(in));
+			sample.setDescription(readString(in));
+			List<String> natures = readStrings(in);
+			if (natures != null)
+			{
+				sample.setNatures(natures.toArray(new String[natures.size()]));
+			}
+			sample.setIcon(readStringMap(in));
+		}
+
+		return element;
+	}
+
+	private void writeCommand(DataOutputStream out, CommandElement command) throws IOException
+	{
+		// invocations
+		Map<Platform, String> invokes = command.getInvokes();
+		out.writeInt(invokes.size());
+		for (Map.Entry<Platform, String> entry : invokes.entrySet())
+		{
+			out.writeUTF(entry.getKey().getName());
+			writeString(out, entry.getValue());
+		}
+
+		Set<Platform> blocks = command.getInvokeBlockPlatforms();
+		out.writeInt(blocks.size());
+		for (Platform platform : blocks)
+		{
+			out.writeUTF(platform.getName());
+		}
+
+		// key bindings
+		Map<Platform, List<String>> keyBindings = command.getKeyBindingMap();
+		out.writeInt((keyBindings != null) ? keyBindings.size() : 0);
+		if (keyBindings != null)
+		{
+			for (Map.Entry<Platform, List<String>> entry : keyBindings.entrySet())
+			{
+				out.writeUTF(entry.getKey().getName());
+				writeStrings(out, entry.getValue());
+			}
+		}
+
+		writeStrings(out, command.getInput());
+		writeString(out, command.getInputPath());
+		writeString(out, command.getOutputType());
+		writeString(out, command.getOutputPath());
+		out.writeBoolean(command.isAsync());
+		writeString(out, command.getRunType());
+		writeString(out, command.getWorkingDirectoryType().getName());
+		IPath workingDirectory = command.getWorkingDirectoryPath();
+		writeString(out, (workingDirectory != null) ? workingDirectory.toPortableString() : null);
+	}
+
+	private void readCommand(DataInputStream in, CommandElement command) throws IOException
+	{
+		int count = in.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			String platform = in.readUTF();
+			command.setInvoke(platform, readString(in));
+		}
+
+		count = in.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			command.setDeferredInvokeBlock(in.readUTF());
+		}
+
+		count = in.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			String platform = in.readUTF();
+			List<String> keyBindings = readStrings(in);
+			command.setKeyBindings(platform, keyBindings.toArray(new String[keyBindings.size()]));
+		}
+
+		List<String> input = readStrings(in);
+		if (input != null)
+		{
+			command.setInput(input);
+		}
+		command.setInputPath(readString(in));
+		command.setOutputType(readString(in));
+		command.setOutputPath(readString(in));
+		command.setAsync(in.readBoolean());
+		command.setRunType(readString(in));
+		command.setWorkingDirectoryType(readString(in));
+		String workingDirectory = readString(in);
+		if (workingDirectory != null)
+		{
+			command.setWorkingDirectoryPath(Path.fromPortableString(workingDirectory));
+		}
+	}
+
+	private void writeMarkers(DataOutputStream out, Map<ScopeSelector, RubyRegexp> markers) throws IOException
+	{
+		out.writeInt(markers.size());
+		for (Map.Entry<ScopeSelector, RubyRegexp> entry : markers.entrySet())
+		{
+			RubyRegexp regexp = entry.getValue();
+
+			writeString(out, entry.getKey().toString());
+			writeString(out, regexp.source().toString());
+			out.writeInt(regexp.getOptions().toEmbeddedOptions());
+		}
+	}
+
+	private void readMarkers(DataInputStream in, Map<String, RegexpSource> markers) throws IOException
+	{
+		int count = in.readInt();
+		for (int i = 0; i < count; i++)
+		{
+			String scope = readString(in);
+			String source = readString(in);
+
+			markers.put(scope, new RegexpSource(source, in.readInt()));
+		}
+	}
+
+	private void writeProperties(DataOutputStream out, AbstractElement element) throws IOException,
+			NotCacheableException
+	{
+		Map<String, Object> properties = element.getCustomProperties();
+
+		out.writeInt((properties != null) ? properties.size() : -1);
+		if (properties != null)
+		{
+			for (Map.Entry<String, Object> entry : properties.entrySet())
+			{
+				writeString(out, entry.getKey());
+				writeValue(out, entry.getValue());
+			}
+		}
+	}
+
+	private void readProperties(DataInputStream in, AbstractElement element) throws IOException
+	{
+		int count = in.readInt();
+		if (count >= 0)
+		{
+			Map<String, Object> properties = new HashMap<String, Object>(count);
+			for (int i = 0; i < count; i++)
+			{
+				String key = readString(in);
+				properties.put(key, readValue(in));
+			}
+			element.setCustomProperties(properties);
+		}
+	}
+
+	private void writeValue(DataOutputStream out, Object value) throws IOException, NotCacheableException
+	{
+		if (value == null)
+		{
+			out.writeByte(NULL_VALUE);
+		}
+		else if (value instanceof String)
+		{
+			out.writeByte(STRING_VALUE);
+			writeString(out, (String) value);
+		}
+		else if (value instanceof String[])
+		{
+			out.writeByte(STRING_ARRAY_VALUE);
+			writeStrings(out, Arrays.asList((String[]) value));
+		}
+		else if (value instanceof Boolean)
+		{
+			out.writeByte(BOOLEAN_VALUE);
+			out.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof Integer)
+		{
+			out.writeByte(INTEGER_VALUE);
+			out.writeInt((Integer) value);
+		}
+		else if (value instanceof Long)
+		{
+			out.writeByte(LONG_VALUE);
+			out.writeLong((Long) value);
+		}
+		else if (value instanceof Double)
+		{
+			out.writeByte(DOUBLE_VALUE);
+			out.writeDouble((Double) value);
+		}
+		else
+		{
+			throw new NotCacheableException("property of type " + value.getClass().getName()); //$NON-NLS-1$
+		}
+	}
+
+	private Object readValue(DataInputStream in) throws IOException
+	{
+		byte type = in.readByte();
+
+		switch (type)
+		{
+			case NULL_VALUE:
+				return null;
+			case STRING_VALUE:
+				return readString(in);
+			case STRING_ARRAY_VALUE:
+				List<String> values = readStrings(in);
+				return values.toArray(new String[values.size()]);
+			case BOOLEAN_VALUE:
+				return Boolean.valueOf(in.readBoolean());
+			case INTEGER_VALUE:
+				return Integer.valueOf(in.readInt());
+			case LONG_VALUE:
+				return Long.valueOf(in.readLong());
+			case DOUBLE_VALUE:
+				return Double.valueOf(in.readDouble());
+			default:
+				throw new IOException("Unknown property type " + type); //$NON-NLS-1$
+		}
+	}
+
+	private static void writeStringMap(DataOutputStream out, Map<String, String> map) throws IOException
+	{
+		out.writeInt(map.size());
+		for (Map.Entry<String, String> entry : map.entrySet())
+		{
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+
+	private static Map<String, String> readStringMap(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+		Map<String, String> result = new HashMap<String, String>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			String key = readString(in);
+			result.put(key, readString(in));
+		}
+
+		return result;
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> values) throws IOException
+	{
+		out.writeInt((values != null) ? values.size() : -1);
+		if (values != null)
+		{
+			for (String value : values)
+			{
+				writeString(out, value);
+			}
+		}
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException
+	{
+		int count = in.readInt();
+
+		if (count < 0)
+		{
+			return null;
+		}
+
+		List<String> result = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+		{
+			result.add(readString(in));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Writes a string that may be null or longer than {@link DataOutputStream#writeUTF(String)} allows
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		writeBytes(out, (value != null) ? value.getBytes(ENCODING) : null);
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		byte[] bytes = readBytes(in);
+
+		return (bytes != null) ? new String(bytes, ENCODING) : null;
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException
+	{
+		out.writeInt((bytes != null) ? bytes.length : -1);
+		if (bytes != null)
+		{
+			out.write(bytes);
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+
+		if (length < 0)
+		{
+			return null;
+		}
+
+		byte[] result = new byte[length];
+		in.readFully(result);
+
+		return result;
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -50,6 +50,8 @@ public class BundleElement extends AbstractElement
 	private Object increaseIndentMarkersLock = new Object();
 	private Object decreaseIndentMarkersLock = new Object();
 
+	private BundleCacher.DeferredMarkers _deferredMarkers;
+
 	/**
 	 * Bundle
 	 * 
@@ -341,6 +343,8 @@ public class BundleElement extends AbstractElement
 	 */
 	public Map<ScopeSelector, RubyRegexp> getDecreaseIndentMarkers()
 	{
+		this.resolveDeferredMarkers();
+
 		Map<ScopeSelector, RubyRegexp> result;
 
 		synchronized (decreaseIndentMarkersLock)
@@ -507,6 +511,8 @@ public class BundleElement extends AbstractElement
 	 */
 	public Map<ScopeSelector, RubyRegexp> getFoldingStartMarkers()
 	{
+		this.resolveDeferredMarkers();
+
 		Map<ScopeSelector, RubyRegexp> result;
 
 		synchronized (foldingStartMarkersLock)
@@ -544,6 +550,8 @@ public class BundleElement extends AbstractElement
 	 */
 	public Map<ScopeSelector, RubyRegexp> getFoldingStopMarkers()
 	{
+		this.resolveDeferredMarkers();
+
 		Map<ScopeSelector, RubyRegexp> result;
 
 		synchronized (foldingStopMarkersLock)
@@ -581,6 +589,8 @@ public class BundleElement extends AbstractElement
 	 */
 	public Map<ScopeSelector, RubyRegexp> getIncreaseIndentMarkers()
 	{
+		this.resolveDeferredMarkers();
+
 		Map<ScopeSelector, RubyRegexp> result;
 
 		synchronized (increaseIndentMarkersLock)
@@ -920,6 +930,8 @@ public class BundleElement extends AbstractElement
 	 */
 	public void setFoldingMarkers(String scope, RubyRegexp startRegexp, RubyRegexp endRegexp)
 	{
+		this.resolveDeferredMarkers();
+
 		if (!StringUtil.isEmpty(scope) && startRegexp != null && startRegexp.isNil() == false && endRegexp != null
 				&& endRegexp.isNil() == false)
 		{
@@ -956,6 +968,8 @@ public class BundleElement extends AbstractElement
 	 */
 	public void setIndentMarkers(String scope, RubyRegexp startRegexp, RubyRegexp endRegexp)
 	{
+		this.resolveDeferredMarkers();
+
 		if (!StringUtil.isEmpty(scope) && startRegexp != null && !startRegexp.isNil() && endRegexp != null
 				&& !endRegexp.isNil())
 		{
@@ -983,6 +997,35 @@ public class BundleElement extends AbstractElement
 		}
 	}
 
+	/**
+	 * Sets the folding and indentation markers of a bundle restored from the bundle cache. Their regular expressions
+	 * are compiled the first time any marker is asked for, which starts the Ruby runtime.
+	 * 
+	 * @param markers
+	 */
+	synchronized void setDeferredMarkers(BundleCacher.DeferredMarkers markers)
+	{
+		this._deferredMarkers = markers;
+	}
+
+	/**
+	 * Compiles the markers restored from the bundle cache, if there are any left
+	 */
+	private synchronized void resolveDeferredMarkers()
+	{
+		BundleCacher.DeferredMarkers markers = this._deferredMarkers;
+
+		if (markers != null)
+		{
+			this._deferredMarkers = null;
+
+			this.setFoldingStartMarkers(BundleCacher.compile(markers.foldingStart));
+			this.setFoldingStopMarkers(BundleCacher.compile(markers.foldingStop));
+			this.setIncreaseIndentMarkers(BundleCacher.compile(markers.increaseIndent));
+			this.setDecreaseIndentMarkers(BundleCacher.compile(markers.decreaseIndent));
+		}
+	}
+
 	/**
 	 * setLicense
 	 * 
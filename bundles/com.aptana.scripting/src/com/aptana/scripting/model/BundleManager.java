@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -92,11 +92,30 @@ public class BundleManager
 		public IStatus run(IProgressMonitor monitor)
 		{
 			List<File> bundleScripts = getBundleScripts(bundleDirectory);
-			SubMonitor sub = SubMonitor.convert(monitor, bundleScripts.size() + 1);
+			SubMonitor sub = SubMonitor.convert(monitor, bundleScripts.size() + 3);
 			try
 			{
 				if (bundleScripts.size() > 0)
 				{
+					if (useCache())
+					{
+						// a current cache restores the bundle without running any script
+						BundleElement bundle = getBundleCacher().load(bundleDirectory, sub.newChild(1));
+
+						if (bundle != null)
+						{
+							showBundleLoadInfo("loaded from cache: " + bundleDirectory); //$NON-NLS-1$
+							addBundle(bundle);
+
+							for (File script : bundleScripts)
+							{
+								fireScriptLoadedEvent(script);
+							}
+
+							return Status.OK_STATUS;
+						}
+					}
+
 					showBundleLoadInfo("cached failed, loading files directly: " + bundleDirectory); //$NON-NLS-1$
 
 					List<String> bundleLoadPaths = getBundleLoadPaths(bundleDirectory);
@@ -130,6 +149,11 @@ public class BundleManager
 							sub.worked(1);
 						}
 					}
+
+					if (useCache())
+					{
+						getBundleCacher().cache(bundleDirectory, sub.newChild(1));
+					}
 				}
 			}
 			finally
@@ -180,6 +204,48 @@ public class BundleManager
 		}
 	}
 
+	/**
+	 * Drops the scope indexes and the cached selector matches whenever scripts load or visibility changes
+	 */
+	private class ScopeIndexInvalidator implements BundleVisibilityListener, ElementVisibilityListener,
+			LoadCycleListener
+	{
+		public void bundlesBecameHidden(BundleEntry entry)
+		{
+			invalidateScopeIndexes();
+		}
+
+		public void bundlesBecameVisible(BundleEntry entry)
+		{
+			invalidateScopeIndexes();
+		}
+
+		public void elementBecameHidden(AbstractElement element)
+		{
+			invalidateScopeIndexes();
+		}
+
+		public void elementBecameVisible(AbstractElement element)
+		{
+			invalidateScopeIndexes();
+		}
+
+		public void scriptLoaded(File script)
+		{
+			invalidateScopeIndexes();
+		}
+
+		public void scriptReloaded(File script)
+		{
+			invalidateScopeIndexes();
+		}
+
+		public void scriptUnloaded(File script)
+		{
+			invalidateScopeIndexes();
+		}
+	}
+
 	// split patterns
 	private static final Pattern DOT_PATTERN = Pattern.compile("\\."); //$NON-NLS-1$
 	private static final Pattern STAR_PATTERN = Pattern.compile("\\*"); //$NON-NLS-1$
@@ -429,6 +495,14 @@ public class BundleManager
 	 */
 	private int fBundlesToLoadInParallel = -1;
 
+	private BundleCacher _bundleCacher;
+
+	// NOTE: these index the visible elements queried by scope on every keystroke, e.g. pairs and snippet triggers
+	private final ScopeIndex<CommandElement> _commandIndex;
+	private final ScopeIndex<ContentAssistElement> _contentAssistIndex;
+	private final ScopeIndex<SmartTypingPairsElement> _pairIndex;
+	private final ScopeIndex<SnippetElement> _snippetIndex;
+
 	/**
 	 * Create a new instance of BundleManager and initialize its internal structure. Note that this constructor is
 	 * private so it can only be instantiated within a static method in this class
@@ -446,6 +520,70 @@ public class BundleManager
 		this._bundleVisibilityListeners = new ArrayList<BundleVisibilityListener>();
 		this._elementVisibilityListeners = new ArrayList<ElementVisibilityListener>();
 		this._loadCycleListeners = new ArrayList<LoadCycleListener>();
+
+		this._commandIndex = new ScopeIndex<CommandElement>()
+		{
+			protected List<CommandElement> getElements()
+			{
+				List<CommandElement> result = new ArrayList<CommandElement>();
+
+				for (String name : getBundleNames())
+				{
+					result.addAll(getBundleCommands(name));
+				}
+
+				return result;
+			}
+		};
+		this._contentAssistIndex = new ScopeIndex<ContentAssistElement>()
+		{
+			protected List<ContentAssistElement> getElements()
+			{
+				List<ContentAssistElement> result = new ArrayList<ContentAssistElement>();
+
+				for (String name : getBundleNames())
+				{
+					result.addAll(getBundleContentAssists(name));
+				}
+
+				return result;
+			}
+		};
+		this._pairIndex = new ScopeIndex<SmartTypingPairsElement>()
+		{
+			protected List<SmartTypingPairsElement> getElements()
+			{
+				List<SmartTypingPairsElement> result = new ArrayList<SmartTypingPairsElement>();
+
+				for (String name : getBundleNames())
+				{
+					result.addAll(getBundlePairs(name));
+				}
+
+				return result;
+			}
+		};
+		this._snippetIndex = new ScopeIndex<SnippetElement>()
+		{
+			protected List<SnippetElement> getElements()
+			{
+				List<SnippetElement> result = new ArrayList<SnippetElement>();
+
+				for (String name : getBundleNames())
+				{
+					result.addAll(getBundleSnippets(name));
+				}
+
+				return result;
+			}
+		};
+
+		// any change to the visible elements drops the indexes
+		ScopeIndexInvalidator invalidator = new ScopeIndexInvalidator();
+
+		this._bundleVisibilityListeners.add(invalidator);
+		this._elementVisibilityListeners.add(invalidator);
+		this._loadCycleListeners.add(invalidator);
 	}
 
 	/**
@@ -490,6 +628,8 @@ public class BundleManager
 					entry.addBundle(bundle);
 				}
 			}
+
+			this.invalidateScopeIndexes();
 		}
 	}
 
@@ -963,6 +1103,43 @@ public class BundleManager
 		return result;
 	}
 
+	/**
+	 * Return all bundle elements contained within the specified directory, in the order they were added
+	 * 
+	 * @param bundleDirectory
+	 *            A bundle directory
+	 * @return A copy of the list of bundle elements, which may be empty
+	 */
+	List<BundleElement> getBundlesFromPath(File bundleDirectory)
+	{
+		synchronized (this._bundlesByPath)
+		{
+			List<BundleElement> bundles = this._bundlesByPath.get(bundleDirectory);
+
+			if (bundles == null)
+			{
+				return Collections.emptyList();
+			}
+
+			return new ArrayList<BundleElement>(bundles);
+		}
+	}
+
+	/**
+	 * Return the cache used to restore bundles without running their scripts
+	 * 
+	 * @return
+	 */
+	synchronized BundleCacher getBundleCacher()
+	{
+		if (this._bundleCacher == null)
+		{
+			this._bundleCacher = new BundleCacher(this, BundleCacher.getDefaultCacheDirectory());
+		}
+
+		return this._bundleCacher;
+	}
+
 	/**
 	 * Find the bundle element contained within the specified directory
 	 * 
@@ -1278,6 +1455,13 @@ public class BundleManager
 	 */
 	public List<CommandElement> getCommands(IModelFilter filter)
 	{
+		String[] scopes = ScopeIndex.getScopes(filter);
+
+		if (scopes != null)
+		{
+			return this._commandIndex.filter(scopes, filter);
+		}
+
 		List<CommandElement> result = new ArrayList<CommandElement>();
 
 		for (String name : this.getBundleNames())
@@ -1299,6 +1483,13 @@ public class BundleManager
 	 */
 	public List<ContentAssistElement> getContentAssists(IModelFilter filter)
 	{
+		String[] scopes = ScopeIndex.getScopes(filter);
+
+		if (scopes != null)
+		{
+			return this._contentAssistIndex.filter(scopes, filter);
+		}
+
 		List<ContentAssistElement> result = new ArrayList<ContentAssistElement>();
 
 		for (String name : this.getBundleNames())
@@ -1511,6 +1702,13 @@ public class BundleManager
 	 */
 	public List<SmartTypingPairsElement> getPairs(IModelFilter filter)
 	{
+		String[] scopes = ScopeIndex.getScopes(filter);
+
+		if (scopes != null)
+		{
+			return this._pairIndex.filter(scopes, filter);
+		}
+
 		List<SmartTypingPairsElement> result = new ArrayList<SmartTypingPairsElement>();
 
 		for (String name : this.getBundleNames())
@@ -1578,6 +1776,13 @@ public class BundleManager
 	 */
 	public List<SnippetElement> getSnippets(IModelFilter filter)
 	{
+		String[] scopes = ScopeIndex.getScopes(filter);
+
+		if (scopes != null)
+		{
+			return this._snippetIndex.filter(scopes, filter);
+		}
+
 		List<SnippetElement> result = new ArrayList<SnippetElement>();
 
 		for (String name : this.getBundleNames())
@@ -1735,6 +1940,20 @@ public class BundleManager
 		}
 	}
 
+	/**
+	 * Drop the indexes used by scope-based element queries, along with the selector matches they cached. Call this
+	 * whenever the visible elements may have changed
+	 */
+	void invalidateScopeIndexes()
+	{
+		this._commandIndex.invalidate();
+		this._contentAssistIndex.invalidate();
+		this._pairIndex.invalidate();
+		this._snippetIndex.invalidate();
+
+		ScopeSelector.clearMatchCache();
+	}
+
 	/**
 	 * Determine if the specified directory is in the user bundle path
 	 * 
@@ -2175,6 +2394,8 @@ public class BundleManager
 		{
 			this._entriesByName.clear();
 		}
+
+		this.invalidateScopeIndexes();
 	}
 
 	/**
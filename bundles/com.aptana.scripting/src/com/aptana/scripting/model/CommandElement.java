@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -11,9 +11,11 @@ import java.io.ByteArrayOutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
@@ -38,6 +40,8 @@ public class CommandElement extends AbstractBundleElement
 		String getInvoke();
 
 		RubyProc getInvokeBlock();
+
+		boolean hasInvokeBlock();
 	}
 
 	private static final class Invoke implements InvokeUnion
@@ -59,6 +63,11 @@ public class CommandElement extends AbstractBundleElement
 			return null;
 		}
 
+		public boolean hasInvokeBlock()
+		{
+			return false;
+		}
+
 		public String toString()
 		{
 			return "invoke= " + _invoke; //$NON-NLS-1$
@@ -84,6 +93,11 @@ public class CommandElement extends AbstractBundleElement
 			return this._invokeBlock;
 		}
 
+		public boolean hasInvokeBlock()
+		{
+			return this._invokeBlock != null;
+		}
+
 		public String toString()
 		{
 			return "invoke <block>"; //$NON-NLS-1$
@@ -102,12 +116,44 @@ public class CommandElement extends AbstractBundleElement
 			return null;
 		}
 
+		public boolean hasInvokeBlock()
+		{
+			return false;
+		}
+
 		public String toString()
 		{
 			return ""; //$NON-NLS-1$
 		}
 	};
 
+	/**
+	 * Stands for a block that wasn't restored from the bundle cache. The script defining the command is run again the
+	 * first time the block is needed.
+	 */
+	private static final InvokeUnion DEFERRED_INVOKE_BLOCK = new InvokeUnion()
+	{
+		public String getInvoke()
+		{
+			return null;
+		}
+
+		public RubyProc getInvokeBlock()
+		{
+			return null;
+		}
+
+		public boolean hasInvokeBlock()
+		{
+			return true;
+		}
+
+		public String toString()
+		{
+			return "invoke <deferred block>"; //$NON-NLS-1$
+		}
+	};
+
 	private static final InputType[] NO_TYPES = new InputType[0];
 	private static final String[] NO_KEY_BINDINGS = new String[0];
 	private static final String[] NO_TRIGGER_VALUES = new String[0];
@@ -186,8 +232,10 @@ public class CommandElement extends AbstractBundleElement
 			{
 				job = new CommandScriptRunner(this, context);
 			}
-			else if (this.isBlockCommand())
+			else if (this.isBlockCommand() && this.getInvokeBlock() != null)
 			{
+				// NOTE: getInvokeBlock() loads a block deferred by the bundle cache, and with it the runtime the
+				// runner locks on
 				// create output stream and attach to context
 				context.setOutputStream(new ByteArrayOutputStream());
 
@@ -370,7 +418,106 @@ public class CommandElement extends AbstractBundleElement
 	 */
 	public RubyProc getInvokeBlock()
 	{
-		return this.getInvokeUnion().getInvokeBlock();
+		InvokeUnion invokeUnion = this.getInvokeUnion();
+
+		if (invokeUnion == DEFERRED_INVOKE_BLOCK)
+		{
+			this.resolveDeferredInvokeBlock();
+			invokeUnion = this.getInvokeUnion();
+		}
+
+		return invokeUnion.getInvokeBlock();
+	}
+
+	/**
+	 * Returns the invocations of this command, by platform. Used by the bundle cache.
+	 * 
+	 * @return
+	 */
+	Map<Platform, String> getInvokes()
+	{
+		Map<Platform, String> result = new HashMap<Platform, String>();
+
+		if (this._invokeUnionMap != null)
+		{
+			for (Map.Entry<Platform, InvokeUnion> entry : this._invokeUnionMap.entrySet())
+			{
+				if (entry.getValue() instanceof Invoke)
+				{
+					result.put(entry.getKey(), entry.getValue().getInvoke());
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the platforms this command has an invoke block for. Used by the bundle cache.
+	 * 
+	 * @return
+	 */
+	Set<Platform> getInvokeBlockPlatforms()
+	{
+		Set<Platform> result = new HashSet<Platform>();
+
+		if (this._invokeUnionMap != null)
+		{
+			for (Map.Entry<Platform, InvokeUnion> entry : this._invokeUnionMap.entrySet())
+			{
+				if (entry.getValue().hasInvokeBlock())
+				{
+					result.add(entry.getKey());
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Determine if this command was restored from the bundle cache and its invoke block hasn't been loaded yet
+	 * 
+	 * @return
+	 */
+	boolean hasDeferredInvokeBlock()
+	{
+		return this._invokeUnionMap != null && this._invokeUnionMap.containsValue(DEFERRED_INVOKE_BLOCK);
+	}
+
+	/**
+	 * Marks this command as having an invoke block that has to be loaded from its script before it can run. Used by
+	 * the bundle cache.
+	 * 
+	 * @param OS
+	 */
+	void setDeferredInvokeBlock(String OS)
+	{
+		setInvokeUnion(OS, DEFERRED_INVOKE_BLOCK);
+	}
+
+	/**
+	 * Runs the script defining this command again to get the invoke blocks the bundle cache couldn't restore
+	 */
+	private void resolveDeferredInvokeBlock()
+	{
+		AbstractBundleElement replacement = BundleCacher.resolve(this);
+
+		if (replacement instanceof CommandElement)
+		{
+			CommandElement command = (CommandElement) replacement;
+
+			this._invokeUnionMap = command._invokeUnionMap;
+			this._runtime = command._runtime;
+		}
+		else if (this._invokeUnionMap != null)
+		{
+			// the script no longer defines this command, so give up on its blocks
+			Map<Platform, InvokeUnion> invokeUnionMap = new HashMap<Platform, InvokeUnion>(this._invokeUnionMap);
+
+			invokeUnionMap.values().remove(DEFERRED_INVOKE_BLOCK);
+			this._invokeUnionMap = invokeUnionMap;
+		}
 	}
 
 	/**
@@ -533,6 +680,17 @@ public class CommandElement extends AbstractBundleElement
 		}
 	}
 
+	/**
+	 * Returns the working directory path as it was set, without resolving the working directory type. Used by the
+	 * bundle cache.
+	 * 
+	 * @return
+	 */
+	IPath getWorkingDirectoryPath()
+	{
+		return this._workingDirectoryPath;
+	}
+
 	public WorkingDirectoryType getWorkingDirectoryType()
 	{
 		return this._workingDirectoryType;
@@ -555,7 +713,7 @@ public class CommandElement extends AbstractBundleElement
 	 */
 	public boolean isBlockCommand()
 	{
-		return (this.getInvokeUnion().getInvokeBlock() != null);
+		return this.getInvokeUnion().hasInvokeBlock();
 	}
 
 	/**
@@ -565,7 +723,7 @@ public class CommandElement extends AbstractBundleElement
 	 */
 	public boolean isExecutable()
 	{
-		return ((this.getInvoke() != null && this.getInvoke().length() > 0) || this.getInvokeBlock() != null);
+		return ((this.getInvoke() != null && this.getInvoke().length() > 0) || this.isBlockCommand());
 	}
 
 	/**
@@ -575,7 +733,7 @@ public class CommandElement extends AbstractBundleElement
 	 */
 	public boolean isShellCommand()
 	{
-		return (this.getInvokeBlock() == null && this.getInvoke() != null && this.getInvoke().length() > 0);
+		return (!this.isBlockCommand() && this.getInvoke() != null && this.getInvoke().length() > 0);
 	}
 
 	/**
@@ -668,10 +826,13 @@ public class CommandElement extends AbstractBundleElement
 		}
 
 		// output invoke block, if it is defined
-		if (includeBlocks && this.getInvokeBlock() != null)
+		if (includeBlocks && this.isBlockCommand())
 		{
-			// Spit out something repeatable, for now just block type
-			printer.printWithIndent("block: ").println(this.getInvokeBlock().getBlock().type.toString()); //$NON-NLS-1$
+			// Spit out something repeatable, for now just block type. Don't load a deferred block just to print it
+			RubyProc block = this.getInvokeUnion().getInvokeBlock();
+
+			printer.printWithIndent("block: ").println( //$NON-NLS-1$
+					(block != null) ? block.getBlock().type.toString() : "deferred"); //$NON-NLS-1$
 		}
 
 		// output key bindings, if it is defined
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -14,6 +14,7 @@ import com.aptana.core.util.SourcePrinter;
 public class EnvironmentElement extends AbstractBundleElement
 {
 	private RubyProc _invokeBlock;
+	private boolean _deferredInvokeBlock;
 
 	/**
 	 * EnvironmentElement
@@ -42,9 +43,50 @@ public class EnvironmentElement extends AbstractBundleElement
 	 */
 	public RubyProc getInvokeBlock()
 	{
+		if (_deferredInvokeBlock)
+		{
+			// restored from the bundle cache without its block, so run the defining script again
+			AbstractBundleElement replacement = BundleCacher.resolve(this);
+
+			if (replacement instanceof EnvironmentElement)
+			{
+				_invokeBlock = ((EnvironmentElement) replacement)._invokeBlock;
+			}
+			_deferredInvokeBlock = false;
+		}
+
 		return _invokeBlock;
 	}
 
+	/**
+	 * Determine if this environment has an invoke block, without loading a deferred one
+	 * 
+	 * @return
+	 */
+	boolean hasInvokeBlock()
+	{
+		return _invokeBlock != null || _deferredInvokeBlock;
+	}
+
+	/**
+	 * Determine if this environment was restored from the bundle cache and its invoke block hasn't been loaded yet
+	 * 
+	 * @return
+	 */
+	boolean hasDeferredInvokeBlock()
+	{
+		return _deferredInvokeBlock;
+	}
+
+	/**
+	 * Marks this environment as having an invoke block that has to be loaded from its script before it can be used.
+	 * Used by the bundle cache.
+	 */
+	void setDeferredInvokeBlock()
+	{
+		_deferredInvokeBlock = true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.scripting.model.AbstractElement#printBody(com.aptana.core.util.SourcePrinter)
@@ -57,10 +99,11 @@ public class EnvironmentElement extends AbstractBundleElement
 		printer.printWithIndent("scope: ").println(this.getScope()); //$NON-NLS-1$
 
 		// output invoke block, if it is defined
-		if (includeBlocks && this.getInvokeBlock() != null)
+		if (includeBlocks && this.hasInvokeBlock())
 		{
-			// Spit out something repeatable. block type for now
-			printer.printWithIndent("block: ").println(this.getInvokeBlock().getBlock().type.toString()); //$NON-NLS-1$
+			// Spit out something repeatable. block type for now. Don't load a deferred block just to print it
+			printer.printWithIndent("block: ").println( //$NON-NLS-1$
+					(_invokeBlock != null) ? _invokeBlock.getBlock().type.toString() : "deferred"); //$NON-NLS-1$
 		}
 	}
 
@@ -72,5 +115,6 @@ public class EnvironmentElement extends AbstractBundleElement
 	public void setInvokeBlock(RubyProc block)
 	{
 		this._invokeBlock = block;
+		this._deferredInvokeBlock = false;
 	}
 }
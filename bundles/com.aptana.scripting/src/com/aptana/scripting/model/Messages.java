@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -16,7 +16,7 @@ public class Messages extends NLS
 	public static String BundleCacher_ComparingTimestampSubTaskName;
 	public static String BundleCacher_FileReferencedInCacheMissingMsg;
 	public static String BundleCacher_LoadCacheTaskName;
-	public static String BundleCacher_LoadingYAMLError;
+	public static String BundleCacher_LoadingCacheError;
 	public static String BundleCacher_OutOfDateCacheMsg;
 	public static String BundleCacher_SerializationExceptionDeletingCacheFile;
 
@@ -0,0 +1,306 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.aptana.scope.BinarySelector;
+import com.aptana.scope.DescendantSelector;
+import com.aptana.scope.GroupSelector;
+import com.aptana.scope.IScopeSelector;
+import com.aptana.scope.ISelectorNode;
+import com.aptana.scope.IntersectionSelector;
+import com.aptana.scope.NameSelector;
+import com.aptana.scope.NegativeLookaheadSelector;
+import com.aptana.scope.OrSelector;
+import com.aptana.scope.ScopeSelector;
+import com.aptana.scripting.model.filters.AndFilter;
+import com.aptana.scripting.model.filters.IModelFilter;
+import com.aptana.scripting.model.filters.ScopeFilter;
+
+/**
+ * Indexes the visible elements of one kind by the scope segments their selectors need, so that scope-based queries
+ * only run the selectors that can possibly match. Every name of a selector matches a whole scope segment or its first
+ * dotted parts, so a selector can only match scopes holding a segment whose first part is the first part of one of its
+ * names. Elements whose selector has no such required name, e.g. the ones matching any scope, are candidates for every
+ * query.<br>
+ * The index is built on first use and dropped by {@link #invalidate()} whenever the visible elements may have changed.
+ */
+abstract class ScopeIndex<T extends AbstractBundleElement>
+{
+	private static final Pattern SPACES = Pattern.compile("\\s+"); //$NON-NLS-1$
+
+	/**
+	 * An immutable index over the elements visible when it was built
+	 */
+	private static class Snapshot<T>
+	{
+		final List<T> elements;
+		final Map<String, BitSet> elementsByName;
+		final BitSet unindexed;
+
+		Snapshot(List<T> elements, Map<String, BitSet> elementsByName, BitSet unindexed)
+		{
+			this.elements = elements;
+			this.elementsByName = elementsByName;
+			this.unindexed = unindexed;
+		}
+	}
+
+	private int _generation;
+	private volatile Snapshot<T> _snapshot;
+
+	/**
+	 * Returns the scopes a filter requires elements to match, if any
+	 * 
+	 * @param filter
+	 * @return The scopes of the scope filter the filter is or includes through an AndFilter, or null
+	 */
+	static String[] getScopes(IModelFilter filter)
+	{
+		if (filter instanceof ScopeFilter)
+		{
+			return ((ScopeFilter) filter).getScopes();
+		}
+		if (filter instanceof AndFilter)
+		{
+			for (IModelFilter child : ((AndFilter) filter).getFilters())
+			{
+				String[] scopes = getScopes(child);
+
+				if (scopes != null)
+				{
+					return scopes;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the first dotted part of the scope segments a selector needs to match
+	 * 
+	 * @param selector
+	 * @return A set of names, one of which a matching scope has to contain, or null if any scope may match
+	 */
+	static Set<String> getRequiredNames(IScopeSelector selector)
+	{
+		if (selector instanceof ScopeSelector)
+		{
+			ISelectorNode root = ((ScopeSelector) selector).getRoot();
+
+			// a selector that didn't parse doesn't match anything
+			return (root == null) ? Collections.<String> emptySet() : getRequiredNames(root);
+		}
+
+		return null;
+	}
+
+	private static Set<String> getRequiredNames(ISelectorNode node)
+	{
+		if (node instanceof NameSelector)
+		{
+			return Collections.singleton(getFirstPart(node.toString()));
+		}
+		if (node instanceof GroupSelector)
+		{
+			ISelectorNode child = ((GroupSelector) node).getChild();
+
+			return (child == null) ? null : getRequiredNames(child);
+		}
+		if (node instanceof OrSelector)
+		{
+			OrSelector or = (OrSelector) node;
+
+			// the right-hand side is only tried when there is a left-hand side
+			if (or.getLeftChild() == null)
+			{
+				return Collections.emptySet();
+			}
+
+			Set<String> left = getRequiredNames(or.getLeftChild());
+			Set<String> right = (or.getRightChild() == null) ? Collections.<String> emptySet() : getRequiredNames(or
+					.getRightChild());
+
+			if (left == null || right == null)
+			{
+				return null;
+			}
+
+			Set<String> result = new HashSet<String>(left);
+			result.addAll(right);
+			return result;
+		}
+		if (node instanceof DescendantSelector || node instanceof IntersectionSelector)
+		{
+			// both sides have to match, so the names of either side will do; prefer the deeper one
+			ISelectorNode left = ((BinarySelector) node).getLeftChild();
+			ISelectorNode right = ((BinarySelector) node).getRightChild();
+
+			if (left == null || right == null)
+			{
+				return Collections.emptySet();
+			}
+
+			Set<String> result = getRequiredNames(right);
+			return (result != null) ? result : getRequiredNames(left);
+		}
+		if (node instanceof NegativeLookaheadSelector)
+		{
+			NegativeLookaheadSelector lookahead = (NegativeLookaheadSelector) node;
+
+			// a lookahead missing a side matches anything
+			if (lookahead.getLeftChild() == null || lookahead.getRightChild() == null)
+			{
+				return null;
+			}
+
+			return getRequiredNames(lookahead.getLeftChild());
+		}
+
+		return null;
+	}
+
+	private static String getFirstPart(String name)
+	{
+		int index = name.indexOf('.');
+
+		return (index == -1) ? name : name.substring(0, index);
+	}
+
+	/**
+	 * Returns the visible elements, in the order queries return them
+	 * 
+	 * @return
+	 */
+	protected abstract List<T> getElements();
+
+	/**
+	 * Returns the visible elements that pass the specified filter
+	 * 
+	 * @param scopes
+	 *            The scopes the filter requires elements to match
+	 * @param filter
+	 *            The filter each returned element passes
+	 * @return
+	 */
+	List<T> filter(String[] scopes, IModelFilter filter)
+	{
+		Snapshot<T> snapshot = getSnapshot();
+		BitSet candidates = (BitSet) snapshot.unindexed.clone();
+
+		if (scopes != null)
+		{
+			for (String scope : scopes)
+			{
+				if (scope == null)
+				{
+					continue;
+				}
+
+				for (String segment : SPACES.split(scope))
+				{
+					BitSet elements = snapshot.elementsByName.get(getFirstPart(segment));
+
+					if (elements != null)
+					{
+						candidates.or(elements);
+					}
+				}
+			}
+		}
+
+		List<T> result = new ArrayList<T>();
+
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1))
+		{
+			T element = snapshot.elements.get(i);
+
+			if (filter.include(element))
+			{
+				result.add(element);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Drops the index, which is rebuilt by the next query
+	 */
+	synchronized void invalidate()
+	{
+		_generation++;
+		_snapshot = null;
+	}
+
+	private Snapshot<T> getSnapshot()
+	{
+		Snapshot<T> snapshot = _snapshot;
+
+		if (snapshot == null)
+		{
+			int generation;
+
+			synchronized (this)
+			{
+				generation = _generation;
+			}
+
+			List<T> elements = getElements();
+			Map<String, BitSet> elementsByName = new HashMap<String, BitSet>();
+			BitSet unindexed = new BitSet(elements.size());
+
+			for (int i = 0; i < elements.size(); i++)
+			{
+				Set<String> names = getRequiredNames(elements.get(i).getScopeSelector());
+
+				if (names == null)
+				{
+					unindexed.set(i);
+					continue;
+				}
+
+				for (String name : names)
+				{
+					BitSet indices = elementsByName.get(name);
+
+					if (indices == null)
+					{
+						indices = new BitSet(elements.size());
+						elementsByName.put(name, indices);
+					}
+
+					indices.set(i);
+				}
+			}
+
+			snapshot = new Snapshot<T>(elements, elementsByName, unindexed);
+
+			// an index built while the elements changed is used for this query only
+			synchronized (this)
+			{
+				if (generation == _generation)
+				{
+					_snapshot = snapshot;
+				}
+			}
+		}
+
+		return snapshot;
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -34,6 +34,16 @@ public class ScopeFilter implements IModelFilter
 		this._scopes = scopes;
 	}
 
+	/**
+	 * getScopes
+	 * 
+	 * @return
+	 */
+	public String[] getScopes()
+	{
+		return this._scopes;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.scripting.model.IModelFilter#include(com.aptana.scripting.model.AbstractElement)
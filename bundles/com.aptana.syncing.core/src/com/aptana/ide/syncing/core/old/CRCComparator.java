@@ -0,0 +1,188 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import com.aptana.core.io.vfs.IExtendedFileStore;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.ide.syncing.core.SyncingPlugin;
+
+/**
+ * Compares files by their CRC32, computed as cheaply as possible:
+ * <ul>
+ * <li>files of different lengths don't match, without reading either of them</li>
+ * <li>CRCs are remembered along with the length and modification time of the file they were computed for, and reused
+ * as long as the file doesn't change. The CRCs of server files are also kept in the site's {@link RemoteManifest}
+ * when there is one, so they survive restarts.</li>
+ * <li>servers that can checksum files themselves are asked to, instead of downloading the file</li>
+ * <li>otherwise the file is read through a large buffer</li>
+ * </ul>
+ */
+public class CRCComparator implements IContentComparator
+{
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_CACHED_CRCS = 10000;
+	private static final long NO_CRC = -1;
+
+	/**
+	 * The CRCs computed so far, by file URI. Each value holds the length, modification time and CRC of the file.
+	 */
+	private static final Map<String, long[]> CRCS = new LinkedHashMap<String, long[]>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest)
+		{
+			return size() > MAX_CACHED_CRCS;
+		}
+	};
+
+	private RemoteManifest manifest;
+
+	/**
+	 * Sets the manifest of the server files, which remembers their CRCs
+	 * 
+	 * @param manifest
+	 */
+	public void setRemoteManifest(RemoteManifest manifest)
+	{
+		this.manifest = manifest;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.ide.syncing.core.old.IContentComparator#compare(com.aptana.ide.syncing.core.old.VirtualFileSyncPair,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public int compare(VirtualFileSyncPair item, IProgressMonitor monitor) throws CoreException
+	{
+		IFileInfo clientInfo = getFileInfo(item.getSourceFileInfo(monitor));
+		IFileInfo serverInfo = getFileInfo(item.getDestinationFileInfo(monitor));
+		if (clientInfo == null || serverInfo == null)
+		{
+			// we assume the files match when neither of them has contents
+			return (clientInfo == serverInfo) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
+		}
+		if (clientInfo.getLength() != serverInfo.getLength())
+		{
+			return SyncState.CRCMismatch;
+		}
+
+		long clientCRC = getCRC(item.getSourceFile(), clientInfo, null, item, monitor);
+		long serverCRC = getCRC(item.getDestinationFile(), serverInfo, manifest, item, monitor);
+		return (clientCRC != NO_CRC && clientCRC == serverCRC) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
+	}
+
+	/**
+	 * Returns the info of a file with contents, or null for missing files and directories
+	 */
+	private static IFileInfo getFileInfo(IFileInfo info)
+	{
+		return (info == null || info.isDirectory()) ? null : info;
+	}
+
+	private static long getCRC(IFileStore file, IFileInfo info, RemoteManifest manifest, VirtualFileSyncPair item,
+			IProgressMonitor monitor) throws CoreException
+	{
+		String key = file.toURI().toString();
+		long crc = getCachedCRC(key, info);
+		if (crc == NO_CRC && manifest != null)
+		{
+			crc = manifest.getCRC(item.getRelativePath(), info);
+		}
+		if (crc == NO_CRC && file instanceof IExtendedFileStore)
+		{
+			crc = ((IExtendedFileStore) file).computeCRC32(monitor);
+		}
+		if (crc == NO_CRC)
+		{
+			crc = readCRC(file, item);
+			if (crc == NO_CRC)
+			{
+				return crc;
+			}
+		}
+
+		synchronized (CRCS)
+		{
+			CRCS.put(key, new long[] { info.getLength(), info.getLastModified(), crc });
+		}
+		if (manifest != null)
+		{
+			manifest.setCRC(item.getRelativePath(), info, crc);
+		}
+		return crc;
+	}
+
+	private static long getCachedCRC(String key, IFileInfo info)
+	{
+		long[] cached;
+		synchronized (CRCS)
+		{
+			cached = CRCS.get(key);
+		}
+		if (cached != null && cached[0] == info.getLength() && cached[1] == info.getLastModified())
+		{
+			return cached[2];
+		}
+		return NO_CRC;
+	}
+
+	/**
+	 * Reads a file to compute its CRC
+	 * 
+	 * @return the CRC, or -1 if the file couldn't be read
+	 */
+	private static long readCRC(IFileStore file, VirtualFileSyncPair item) throws CoreException
+	{
+		CRC32 crc = new CRC32();
+		InputStream stream = file.openInputStream(EFS.NONE, null);
+		try
+		{
+			// Direct buffers exist since 1.4, but CRC32 only takes a ByteBuffer from Java 8 on. Under J2SE-1.5 the bytes
+			// would be copied out of a direct buffer into an array anyway, so read straight into the array.
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int length;
+			while ((length = stream.read(buffer)) != -1)
+			{
+				crc.update(buffer, 0, length);
+			}
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorRetrievingCRC, e);
+			return NO_CRC;
+		}
+		finally
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(SyncingPlugin.getDefault(),
+						MessageFormat.format(Messages.Synchronizer_ErrorClosingStreams, item.getRelativePath()), e);
+			}
+		}
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,30 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Decides whether the client and server files of a pair have the same contents, when the {@link Synchronizer} is
+ * asked to check the contents of files whose modification times match.
+ * 
+ * @see Synchronizer#setContentComparator(IContentComparator)
+ */
+public interface IContentComparator
+{
+	/**
+	 * compare
+	 * 
+	 * @param item
+	 * @param monitor
+	 * @return {@link SyncState#ItemsMatch} or {@link SyncState#CRCMismatch}
+	 * @throws CoreException
+	 */
+	int compare(VirtualFileSyncPair item, IProgressMonitor monitor) throws CoreException;
+}
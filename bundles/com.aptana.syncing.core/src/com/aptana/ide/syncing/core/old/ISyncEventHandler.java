@@ -10,6 +10,16 @@ package com.aptana.ide.syncing.core.old;
 import org.eclipse.core.runtime.IProgressMonitor;
 
 /**
+ * Receives the events of a {@link Synchronizer}.
+ * <p>
+ * When the connections allow several transfers at once, {@link #syncDone(VirtualFileSyncPair, IProgressMonitor)} and
+ * {@link #syncErrorEvent(VirtualFileSyncPair, Exception, IProgressMonitor)} are called on the transfer threads rather
+ * than the thread running the synchronization, with the monitor of the transfer. The synchronizer holds its event lock
+ * during {@link #syncEvent(VirtualFileSyncPair, int, int, IProgressMonitor)}, {@link #syncDone(VirtualFileSyncPair,
+ * IProgressMonitor)} and {@link #syncErrorEvent(VirtualFileSyncPair, Exception, IProgressMonitor)}, so these are never
+ * called at the same time, but a handler must not block waiting on another thread of the synchronization (e.g. with a
+ * synchronous UI call from a thread the UI is waiting on), or the other transfers stall behind it.
+ * 
  * @author Kevin Lindsey
  */
 public interface ISyncEventHandler extends IConnectionPointEventHandler
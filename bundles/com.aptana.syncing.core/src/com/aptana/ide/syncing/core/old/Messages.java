@@ -107,6 +107,8 @@ public final class Messages extends NLS
 
 	public static String Synchronizer_Listing_Complete;
 
+	public static String Synchronizer_Using_Manifest;
+
 	/**
 	 * Synchronizer_ServerFileManagerCannotBeNull
 	 */
@@ -0,0 +1,408 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.Path;
+
+import com.aptana.core.io.vfs.ExtendedFileInfo;
+import com.aptana.core.io.vfs.IExtendedFileInfo;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.StringUtil;
+import com.aptana.ide.core.io.IConnectionPoint;
+import com.aptana.ide.syncing.core.SyncingPlugin;
+
+/**
+ * A local copy of the listing of a remote site: the path, size, modification time, permissions and (once computed)
+ * CRC of every file below the root of the site. It is stored in the plugin state location and kept up to date by the
+ * {@link Synchronizer} as it uploads and deletes files, so that the next synchronization can compare the local files
+ * against it instead of listing the whole server again when only uploading.
+ * <p>
+ * Changes made to the server by anything else aren't seen until the manifest is verified, i.e. refreshed from a full
+ * listing (see {@link Synchronizer#setVerifyRemoteManifest(boolean)}). For that reason it's never used for syncs that
+ * download or delete files (see {@link Synchronizer#setUploadOnly(boolean)}).
+ */
+public class RemoteManifest
+{
+	private static final String MANIFESTS_DIR = "manifests"; //$NON-NLS-1$
+	private static final String EXTENSION = ".manifest"; //$NON-NLS-1$
+	private static final int VERSION = 1;
+
+	/**
+	 * Used for CRCs that weren't computed yet.
+	 */
+	private static final long NO_CRC = -1;
+
+	private static class Entry
+	{
+		boolean directory;
+		long length;
+		long lastModified;
+		long permissions;
+		long crc = NO_CRC;
+		boolean listed;
+
+		boolean matches(IFileInfo info)
+		{
+			return directory == info.isDirectory() && length == info.getLength()
+					&& lastModified == info.getLastModified();
+		}
+	}
+
+	private final File file;
+	private final String rootURI;
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	private boolean complete;
+	private boolean dirty;
+
+	/**
+	 * Returns the manifest of a site, loading it from disk if it was saved before
+	 * 
+	 * @param connectionPoint
+	 *            The remote end of the site
+	 * @param root
+	 *            The directory the site is synchronized with
+	 * @return
+	 */
+	public static RemoteManifest getManifest(IConnectionPoint connectionPoint, IFileStore root)
+	{
+		String rootURI = root.toURI().toString();
+		File dir = SyncingPlugin.getDefault().getStateLocation().append(MANIFESTS_DIR).toFile();
+		RemoteManifest manifest = new RemoteManifest(new File(dir, StringUtil.md5(connectionPoint.getId() + rootURI)
+				+ EXTENSION), rootURI);
+		manifest.load();
+		return manifest;
+	}
+
+	RemoteManifest(File file, String rootURI)
+	{
+		this.file = file;
+		this.rootURI = rootURI;
+	}
+
+	/**
+	 * Returns whether the manifest holds the complete listing of the site. A manifest is incomplete until a listing of
+	 * the whole site was recorded in it.
+	 * 
+	 * @return
+	 */
+	public synchronized boolean isComplete()
+	{
+		return complete;
+	}
+
+	/**
+	 * Returns the file stores of all the files and directories in the manifest
+	 * 
+	 * @param root
+	 * @return
+	 */
+	synchronized IFileStore[] getFiles(IFileStore root)
+	{
+		IFileStore[] files = new IFileStore[entries.size()];
+		int i = 0;
+		for (String path : entries.keySet())
+		{
+			files[i++] = root.getFileStore(Path.fromPortableString(path));
+		}
+		return files;
+	}
+
+	/**
+	 * Returns the info of a file as it was last seen on the server
+	 * 
+	 * @param path
+	 *            The path of the file relative to the root
+	 * @return the info, or null if the file isn't in the manifest
+	 */
+	synchronized IFileInfo getInfo(String path)
+	{
+		Entry entry = entries.get(path);
+		if (entry == null)
+		{
+			return null;
+		}
+		ExtendedFileInfo info = new ExtendedFileInfo(Path.fromPortableString(path).lastSegment());
+		info.setExists(true);
+		info.setDirectory(entry.directory);
+		info.setLength(entry.length);
+		info.setLastModified(entry.lastModified);
+		info.setPermissions(entry.permissions);
+		return info;
+	}
+
+	/**
+	 * Starts recording a full listing of the site. Files that aren't recorded by the time {@link #endListing()} is
+	 * called are removed from the manifest.
+	 */
+	synchronized void beginListing()
+	{
+		complete = false;
+		for (Entry entry : entries.values())
+		{
+			entry.listed = false;
+		}
+	}
+
+	/**
+	 * Records a file of the listing, as returned by the server
+	 * 
+	 * @param path
+	 * @param info
+	 */
+	synchronized void listed(String path, IFileInfo info)
+	{
+		Entry entry = update(path, info);
+		entry.permissions = (info instanceof IExtendedFileInfo) ? ((IExtendedFileInfo) info).getPermissions() : 0;
+		entry.listed = true;
+	}
+
+	/**
+	 * Ends recording a full listing, which makes the manifest complete
+	 */
+	synchronized void endListing()
+	{
+		for (Iterator<Entry> i = entries.values().iterator(); i.hasNext();)
+		{
+			if (!i.next().listed)
+			{
+				i.remove();
+			}
+		}
+		complete = true;
+		dirty = true;
+	}
+
+	/**
+	 * Records a file or directory that was just copied to the server. Its length and modification time are those of
+	 * the source, and the permissions it had on the server are kept.
+	 * 
+	 * @param path
+	 * @param sourceInfo
+	 */
+	synchronized void transferred(String path, IFileInfo sourceInfo)
+	{
+		update(path, sourceInfo).listed = true;
+	}
+
+	/**
+	 * Removes a file that was deleted from the server, along with everything below it
+	 * 
+	 * @param path
+	 */
+	synchronized void removed(String path)
+	{
+		if (entries.remove(path) == null)
+		{
+			return;
+		}
+		String prefix = path + '/';
+		for (Iterator<String> i = entries.keySet().iterator(); i.hasNext();)
+		{
+			if (i.next().startsWith(prefix))
+			{
+				i.remove();
+			}
+		}
+		dirty = true;
+	}
+
+	/**
+	 * Returns the CRC of a file, if it was computed while the file was in the given state
+	 * 
+	 * @param path
+	 * @param info
+	 *            The current info of the file on the server
+	 * @return the CRC, or -1 if unknown
+	 */
+	synchronized long getCRC(String path, IFileInfo info)
+	{
+		Entry entry = entries.get(path);
+		return (entry != null && entry.matches(info)) ? entry.crc : NO_CRC;
+	}
+
+	/**
+	 * Remembers the CRC of a file
+	 * 
+	 * @param path
+	 * @param info
+	 *            The info of the file the CRC was computed for
+	 * @param crc
+	 */
+	synchronized void setCRC(String path, IFileInfo info, long crc)
+	{
+		Entry entry = entries.get(path);
+		if (entry != null && entry.matches(info))
+		{
+			entry.crc = crc;
+			dirty = true;
+		}
+	}
+
+	private Entry update(String path, IFileInfo info)
+	{
+		Entry entry = entries.get(path);
+		if (entry == null)
+		{
+			entry = new Entry();
+			entries.put(path, entry);
+		}
+		else if (!entry.matches(info))
+		{
+			entry.crc = NO_CRC;
+		}
+		entry.directory = info.isDirectory();
+		entry.length = info.getLength();
+		entry.lastModified = info.getLastModified();
+		dirty = true;
+		return entry;
+	}
+
+	/**
+	 * Forgets the listing, so the next synchronization lists the whole site again
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		complete = false;
+		dirty = false;
+		file.delete();
+	}
+
+	/**
+	 * Writes the manifest to disk, if it changed. Only complete manifests are stored.
+	 */
+	public synchronized void save()
+	{
+		if (!dirty)
+		{
+			return;
+		}
+		if (!complete)
+		{
+			file.delete();
+			dirty = false;
+			return;
+		}
+		File dir = file.getParentFile();
+		if (!dir.exists() && !dir.mkdirs())
+		{
+			return;
+		}
+		File tmp = new File(dir, file.getName() + ".tmp"); //$NON-NLS-1$
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			out.writeInt(VERSION);
+			out.writeUTF(rootURI);
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Entry> e : entries.entrySet())
+			{
+				Entry entry = e.getValue();
+				out.writeUTF(e.getKey());
+				out.writeBoolean(entry.directory);
+				out.writeLong(entry.length);
+				out.writeLong(entry.lastModified);
+				out.writeLong(entry.permissions);
+				out.writeLong(entry.crc);
+			}
+			out.close();
+			out = null;
+			file.delete();
+			if (tmp.renameTo(file))
+			{
+				dirty = false;
+			}
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(SyncingPlugin.getDefault(), e);
+		}
+		finally
+		{
+			if (out != null)
+			{
+				try
+				{
+					out.close();
+				}
+				catch (IOException e)
+				{
+					// ignores the exception
+				}
+			}
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Reads the manifest saved on disk. A manifest saved for another root, or in another format, is ignored.
+	 */
+	void load()
+	{
+		if (!file.isFile())
+		{
+			return;
+		}
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != VERSION || !rootURI.equals(in.readUTF()))
+			{
+				return;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++)
+			{
+				String path = in.readUTF();
+				Entry entry = new Entry();
+				entry.directory = in.readBoolean();
+				entry.length = in.readLong();
+				entry.lastModified = in.readLong();
+				entry.permissions = in.readLong();
+				entry.crc = in.readLong();
+				entries.put(path, entry);
+			}
+			complete = true;
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(SyncingPlugin.getDefault(), e);
+			entries.clear();
+		}
+		finally
+		{
+			if (in != null)
+			{
+				try
+				{
+					in.close();
+				}
+				catch (IOException e)
+				{
+					// ignores the exception
+				}
+			}
+		}
+	}
+}
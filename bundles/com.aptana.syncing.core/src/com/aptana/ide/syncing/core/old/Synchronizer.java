@@ -8,17 +8,16 @@
 package com.aptana.ide.syncing.core.old;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.CRC32;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -26,6 +25,7 @@ import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
@@ -78,6 +78,19 @@ public class Synchronizer implements ILoggable
 	private List<IFileStore> _newFilesDownloaded;
 	private List<IFileStore> _newFilesUploaded;
 
+	/**
+	 * Guards the counters, the log and the event handler against concurrent transfers
+	 */
+	private final Object _eventLock = new Object();
+
+	private RemoteManifest _manifest;
+	private boolean _verifyManifest;
+	private boolean _listingFromManifest;
+	private boolean _listingToManifest;
+	private boolean _uploadOnly;
+	private boolean _listedFromManifest;
+	private IContentComparator _contentComparator = new CRCComparator();
+
 	/**
 	 * Constructs a Synchronizer with default parameters.
 	 */
@@ -124,8 +137,8 @@ public class Synchronizer implements ILoggable
 		this._useCRC = calculateCrc;
 		this._includeCloakedFiles = includeCloakedFiles;
 		this._timeTolerance = timeTolerance;
-		_newFilesDownloaded = new ArrayList<IFileStore>();
-		_newFilesUploaded = new ArrayList<IFileStore>();
+		_newFilesDownloaded = Collections.synchronizedList(new ArrayList<IFileStore>());
+		_newFilesUploaded = Collections.synchronizedList(new ArrayList<IFileStore>());
 	}
 
 	/**
@@ -136,9 +149,12 @@ public class Synchronizer implements ILoggable
 	 */
 	protected void log(String message)
 	{
-		if (this.logger != null)
+		synchronized (_eventLock)
 		{
-			this.logger.logInfo(message, null);
+			if (this.logger != null)
+			{
+				this.logger.logInfo(message, null);
+			}
 		}
 	}
 
@@ -238,7 +254,7 @@ public class Synchronizer implements ILoggable
 	}
 
 	/**
-	 * Sets the current sync event handler
+	 * Sets the current sync event handler. It may be called from the transfer threads, see {@link ISyncEventHandler}.
 	 * 
 	 * @param eventHandler
 	 *            the event handler for syncing
@@ -324,6 +340,8 @@ public class Synchronizer implements ILoggable
 	public VirtualFileSyncPair[] getSyncItems(IConnectionPoint clientPoint, IConnectionPoint serverPoint,
 			IFileStore client, IFileStore server, IProgressMonitor monitor) throws CoreException
 	{
+		_listedFromManifest = false;
+
 		// store references to file managers
 		setClientFileManager(clientPoint);
 		setServerFileManager(serverPoint);
@@ -372,9 +390,20 @@ public class Synchronizer implements ILoggable
 
 				start = System.currentTimeMillis();
 				log(FileUtil.NEW_LINE);
-				log(MessageFormat.format(Messages.Synchronizer_Gathering_Destination,
-						new Object[] { server.toString() }));
-				serverFiles = EFSUtils.getFiles(server, true, _includeCloakedFiles, monitor);
+				if (_manifest != null && _manifest.isComplete() && !_verifyManifest && _uploadOnly)
+				{
+					log(MessageFormat.format(Messages.Synchronizer_Using_Manifest, new Object[] { server.toString() }));
+					serverFiles = _manifest.getFiles(server);
+					_listingFromManifest = true;
+					_listedFromManifest = true;
+				}
+				else
+				{
+					log(MessageFormat.format(Messages.Synchronizer_Gathering_Destination,
+							new Object[] { server.toString() }));
+					serverFiles = EFSUtils.getFiles(server, true, _includeCloakedFiles, monitor);
+					_listingToManifest = (_manifest != null);
+				}
 				log(MessageFormat.format(Messages.Synchronizer_Completed, System.currentTimeMillis() - start));
 
 				log(FileUtil.NEW_LINE);
@@ -387,12 +416,30 @@ public class Synchronizer implements ILoggable
 			removeClientEventHandler(client, server);
 		}
 
-		if (!syncContinue(monitor))
+		try
 		{
-			return null;
-		}
+			if (!syncContinue(monitor))
+			{
+				return null;
+			}
 
-		return createSyncItems(clientFiles, serverFiles, monitor);
+			if (_listingToManifest)
+			{
+				_manifest.beginListing();
+			}
+			VirtualFileSyncPair[] items = createSyncItems(clientFiles, serverFiles, monitor);
+			if (_listingToManifest && items != null)
+			{
+				_manifest.endListing();
+			}
+			return items;
+		}
+		finally
+		{
+			_listingFromManifest = false;
+			_listingToManifest = false;
+			saveManifest();
+		}
 	}
 
 	/**
@@ -449,8 +496,8 @@ public class Synchronizer implements ILoggable
 			monitor.worked(1);
 
 			IFileStore serverFile = serverFiles[i];
-			IFileInfo serverFileInfo = serverFile.fetchInfo(IExtendedFileStore.DETAILED, null);
 			String relativePath = getCanonicalPath(_serverFileRoot, serverFile);
+			IFileInfo serverFileInfo = fetchServerInfo(serverFile, relativePath);
 
 			logDebug(FileUtil.NEW_LINE);
 			logDebug(MessageFormat.format(Messages.Synchronizer_Comparing_Files, new Object[] { relativePath }));
@@ -462,6 +509,7 @@ public class Synchronizer implements ILoggable
 
 				VirtualFileSyncPair item = new VirtualFileSyncPair(null, serverFile, relativePath,
 						SyncState.ServerItemOnly);
+				item.setDestinationFileInfo(serverFileInfo);
 				fileList.put(relativePath, item);
 				logDebug(Messages.Synchronizer_Item_Not_On_Destination);
 				continue;
@@ -473,6 +521,7 @@ public class Synchronizer implements ILoggable
 
 			// associate this server file with that sync item
 			item.setDestinationFile(serverFile);
+			item.setDestinationFileInfo(serverFileInfo);
 
 			IFileInfo clientFileInfo = item.getSourceFileInfo(monitor);
 			if (clientFileInfo == null && item.getSyncState() == SyncState.ServerItemOnly)
@@ -511,7 +560,7 @@ public class Synchronizer implements ILoggable
 			{
 				if (this._useCRC && !serverFileInfo.isDirectory())
 				{
-					item.setSyncState(this.compareCRC(item));
+					item.setSyncState(this.compareCRC(item, monitor));
 				}
 				else
 				{
@@ -554,6 +603,32 @@ public class Synchronizer implements ILoggable
 		return syncItems;
 	}
 
+	/**
+	 * Fetches the info of a server file, from the manifest when the listing came from it
+	 * 
+	 * @param serverFile
+	 * @param relativePath
+	 * @return
+	 * @throws CoreException
+	 */
+	private IFileInfo fetchServerInfo(IFileStore serverFile, String relativePath) throws CoreException
+	{
+		if (_listingFromManifest)
+		{
+			IFileInfo info = _manifest.getInfo(relativePath);
+			if (info != null)
+			{
+				return info;
+			}
+		}
+		IFileInfo info = serverFile.fetchInfo(IExtendedFileStore.DETAILED, null);
+		if (_listingToManifest && info.exists())
+		{
+			_manifest.listed(relativePath, info);
+		}
+		return info;
+	}
+
 	/**
 	 * @param client
 	 * @param server
@@ -617,75 +692,88 @@ public class Synchronizer implements ILoggable
 	}
 
 	/**
-	 * compareCRC
+	 * Sets the manifest of the server's files. When it's complete and the sync only uploads (see
+	 * {@link #setUploadOnly(boolean)}), {@link #getSyncItems} compares the client files against it instead of listing
+	 * the server. The uploads and deletions on the server are recorded in it.
 	 * 
-	 * @param item
-	 * @return SyncState
-	 * @throws CoreException
+	 * @param manifest
+	 *            the manifest, or null to always list the server
 	 */
-	private int compareCRC(VirtualFileSyncPair item) throws CoreException
+	public void setRemoteManifest(RemoteManifest manifest)
 	{
-		InputStream clientStream = item.getSourceInputStream();
-		InputStream serverStream = item.getDestinationInputStream();
-		int result;
-
-		if (clientStream != null && serverStream != null)
-		{
-			// get individual CRC's
-			long clientCRC = getCRC(clientStream);
-			long serverCRC = getCRC(serverStream);
-
-			// close streams
-			try
-			{
-				clientStream.close();
-				serverStream.close();
-			}
-			catch (IOException e)
-			{
-				IdeLog.logError(SyncingPlugin.getDefault(),
-						MessageFormat.format(Messages.Synchronizer_ErrorClosingStreams, item.getRelativePath()), e);
-			}
-
-			result = (clientCRC == serverCRC) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
-		}
-		else
+		this._manifest = manifest;
+		if (_contentComparator instanceof CRCComparator)
 		{
-			// NOTE: clientStream can only equal serverStream if both are null,
-			// so we assume the files match in that case
-			result = (clientStream == serverStream) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
+			((CRCComparator) _contentComparator).setRemoteManifest(manifest);
 		}
+	}
 
-		return result;
+	/**
+	 * getRemoteManifest
+	 * 
+	 * @return the manifest of the server's files, or null
+	 */
+	public RemoteManifest getRemoteManifest()
+	{
+		return this._manifest;
 	}
 
 	/**
-	 * getCRC
+	 * Sets whether {@link #getSyncItems} should list the server even though the manifest is complete, reconciling the
+	 * manifest with what's actually on the server.
 	 * 
-	 * @param stream
-	 * @return CRC
+	 * @param verify
 	 */
-	private long getCRC(InputStream stream)
+	public void setVerifyRemoteManifest(boolean verify)
 	{
-		CRC32 crc = new CRC32();
+		this._verifyManifest = verify;
+	}
 
-		try
-		{
-			byte[] buffer = new byte[1024];
-			int length;
+	/**
+	 * Sets whether the items from {@link #getSyncItems} will only be used to upload files, without deleting any. The
+	 * manifest only knows about the files uploaded from here, so files others put on the server are missing from it;
+	 * the server is always listed for syncs that download or delete files. Defaults to false.
+	 * 
+	 * @param uploadOnly
+	 */
+	public void setUploadOnly(boolean uploadOnly)
+	{
+		this._uploadOnly = uploadOnly;
+	}
 
-			while ((length = stream.read(buffer)) != -1)
-			{
-				crc.update(buffer, 0, length);
-			}
-		}
-		catch (IOException e)
-		{
-			IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorRetrievingCRC, e);
+	/**
+	 * isListedFromManifest
+	 * 
+	 * @return whether the last call to {@link #getSyncItems} took the server's files from the manifest rather than
+	 *         listing the server
+	 */
+	public boolean isListedFromManifest()
+	{
+		return this._listedFromManifest;
+	}
 
-		}
+	/**
+	 * Sets how the contents of files are compared when CRC comparison is enabled
+	 * 
+	 * @param comparator
+	 */
+	public void setContentComparator(IContentComparator comparator)
+	{
+		this._contentComparator = comparator;
+		setRemoteManifest(_manifest);
+	}
 
-		return crc.getValue();
+	/**
+	 * compareCRC
+	 * 
+	 * @param item
+	 * @param monitor
+	 * @return SyncState
+	 * @throws CoreException
+	 */
+	private int compareCRC(VirtualFileSyncPair item, IProgressMonitor monitor) throws CoreException
+	{
+		return _contentComparator.compare(item, monitor);
 	}
 
 	// public void cancelAllOperations()
@@ -740,6 +828,7 @@ public class Synchronizer implements ILoggable
 	public boolean downloadAndDelete(VirtualFileSyncPair[] fileList, boolean delete, IProgressMonitor monitor)
 	{
 		FileWatcher.avoidNotify();
+		TransferScheduler scheduler = null;
 		try
 		{
 			checkFileManagers();
@@ -756,6 +845,13 @@ public class Synchronizer implements ILoggable
 					fileList.length);
 			Policy.checkCanceled(subMonitor);
 
+			scheduler = new TransferScheduler(TransferScheduler.getConcurrency(getClientFileManager(),
+					getServerFileManager()), subMonitor);
+			if (scheduler.isConcurrent())
+			{
+				fileList = TransferScheduler.order(fileList);
+			}
+
 			FILE_LOOP: for (int i = 0; i < fileList.length; i++)
 			{
 				final VirtualFileSyncPair item = fileList[i];
@@ -764,7 +860,15 @@ public class Synchronizer implements ILoggable
 
 				setSyncItemDirection(item, false, true);
 
-				SubMonitor childMonitor = subMonitor.newChild(1);
+				if (scheduler.isStopped())
+				{
+					result = false;
+					break;
+				}
+
+				// queued transfers report their work once they complete
+				SubMonitor childMonitor = subMonitor.newChild(scheduler.isConcurrent() ? 0 : 1);
+				boolean queued = false;
 				childMonitor.setTaskName(getSyncStatus(item));
 
 				try
@@ -825,40 +929,17 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								logDownloading(serverFile);
-								try
-								{
-									SyncUtils
-											.copy(serverFile, serverFileInfo, targetClientFile, EFS.NONE, childMonitor);
-									Synchronizer.this._serverFileTransferedCount++;
-									_newFilesDownloaded.add(targetClientFile);
-									// update permissions for the newly created file
-									if (!exists)
-									{
-										updatePermissions(serverFile, targetClientFile, true,
-												PermissionDirection.DOWNLOAD, childMonitor);
-									}
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
+								queued = transfer(scheduler, item, serverFile, serverFileInfo, targetClientFile, false,
+										true, exists, childMonitor);
 							}
 							break;
 
 						case SyncState.ServerItemIsNewer:
 						case SyncState.CRCMismatch:
 							// exists on both sides, but the server item is newer
-							logDownloading(serverFile);
 							if (serverFileInfo.isDirectory())
 							{
+								logDownloading(serverFile);
 								try
 								{
 									EFSUtils.setModificationTime(serverFileInfo.getLastModified(), clientFile);
@@ -873,22 +954,8 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								try
-								{
-									SyncUtils.copy(serverFile, serverFileInfo, clientFile, EFS.NONE, childMonitor);
-									Synchronizer.this._serverFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
+								queued = transfer(scheduler, item, serverFile, serverFileInfo, clientFile, false, false,
+										true, childMonitor);
 							}
 							break;
 
@@ -907,12 +974,28 @@ public class Synchronizer implements ILoggable
 						break FILE_LOOP;
 					}
 				}
+
+				if (scheduler.isConcurrent() && !queued)
+				{
+					subMonitor.worked(1);
+				}
+				scheduler.reportProgress(subMonitor);
 			}
 
+			scheduler.join(subMonitor);
+			if (scheduler.isStopped())
+			{
+				result = false;
+			}
 			return result;
 		}
 		finally
 		{
+			if (scheduler != null)
+			{
+				scheduler.dispose();
+			}
+			saveManifest();
 			FileWatcher.resumeNotify();
 		}
 	}
@@ -969,6 +1052,7 @@ public class Synchronizer implements ILoggable
 			IProgressMonitor monitor)
 	{
 		FileWatcher.avoidNotify();
+		TransferScheduler scheduler = null;
 		try
 		{
 			logBeginFullSyncing();
@@ -983,6 +1067,13 @@ public class Synchronizer implements ILoggable
 			SubMonitor subMonitor = SubMonitor.convert(monitor, Messages.Synchronizer_Synchronizing, fileList.length);
 			Policy.checkCanceled(subMonitor);
 
+			scheduler = new TransferScheduler(TransferScheduler.getConcurrency(getClientFileManager(),
+					getServerFileManager()), subMonitor);
+			if (scheduler.isConcurrent())
+			{
+				fileList = TransferScheduler.order(fileList);
+			}
+
 			// process all items in our list
 			FILE_LOOP: for (int i = 0; i < fileList.length; i++)
 			{
@@ -992,7 +1083,15 @@ public class Synchronizer implements ILoggable
 
 				setSyncItemDirection(item, false, true);
 
-				SubMonitor childMonitor = subMonitor.newChild(1);
+				if (scheduler.isStopped())
+				{
+					result = false;
+					break;
+				}
+
+				// queued transfers report their work once they complete
+				SubMonitor childMonitor = subMonitor.newChild(scheduler.isConcurrent() ? 0 : 1);
+				boolean queued = false;
 				childMonitor.setTaskName(getSyncStatus(item));
 
 				try
@@ -1013,33 +1112,17 @@ public class Synchronizer implements ILoggable
 					{
 						case SyncState.ClientItemIsNewer:
 							// item exists on both ends, but the client one is newer
-							logUploading(serverFile);
 							if (clientFileInfo.isDirectory())
 							{
+								logUploading(serverFile);
 								EFSUtils.setModificationTime(clientFileInfo.getLastModified(), serverFile);
 								logSuccess();
 								syncDone(item, childMonitor);
 							}
 							else
 							{
-								try
-								{
-									SyncUtils.copy(clientFile, clientFileInfo, serverFile, EFS.NONE, childMonitor);
-									Synchronizer.this._clientFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
-
+								queued = transfer(scheduler, item, clientFile, clientFileInfo, serverFile, true, false,
+										true, childMonitor);
 							}
 							break;
 
@@ -1076,6 +1159,7 @@ public class Synchronizer implements ILoggable
 									{
 										targetServerFile.mkdir(EFS.NONE, null);
 										this._serverDirectoryCreatedCount++;
+										manifestTransferred(item, clientFileInfo);
 										_newFilesUploaded.add(targetServerFile);
 										// update permissions for the newly created directory
 										updatePermissions(clientFile, targetServerFile, false,
@@ -1087,41 +1171,17 @@ public class Synchronizer implements ILoggable
 								}
 								else
 								{
-									logUploading(clientFile);
-									try
-									{
-										SyncUtils.copy(clientFile, clientFileInfo, targetServerFile, EFS.NONE,
-												childMonitor);
-										Synchronizer.this._clientFileTransferedCount++;
-										_newFilesUploaded.add(targetServerFile);
-										// update permissions for the newly created file
-										if (!exists)
-										{
-											updatePermissions(clientFile, targetServerFile, true,
-													PermissionDirection.UPLOAD, childMonitor);
-										}
-										logSuccess();
-										syncDone(item, childMonitor);
-									}
-									catch (CoreException e)
-									{
-										logError(e);
-
-										if (!syncError(item, e, childMonitor))
-										{
-											result = false;
-											break FILE_LOOP;
-										}
-									}
+									queued = transfer(scheduler, item, clientFile, clientFileInfo, targetServerFile,
+											true, true, exists, childMonitor);
 								}
 							}
 							break;
 
 						case SyncState.ServerItemIsNewer:
 							// item exists on both ends, but the server one is newer
-							logDownloading(clientFile);
 							if (serverFileInfo.isDirectory())
 							{
+								logDownloading(clientFile);
 								// just needs to set the modification time for directory
 								EFSUtils.setModificationTime(serverFileInfo.getLastModified(), clientFile);
 
@@ -1130,24 +1190,8 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								try
-								{
-									SyncUtils.copy(serverFile, serverFileInfo, clientFile, EFS.NONE, childMonitor);
-									Synchronizer.this._serverFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
-
+								queued = transfer(scheduler, item, serverFile, serverFileInfo, clientFile, false, false,
+										true, childMonitor);
 							}
 							break;
 
@@ -1159,6 +1203,7 @@ public class Synchronizer implements ILoggable
 								boolean wasDirectory = serverFileInfo.isDirectory();
 								// deletes the item
 								serverFile.delete(EFS.NONE, null); // server.deleteFile(serverFile);
+								manifestRemoved(item);
 								if (wasDirectory)
 								{
 									this._serverDirectoryDeletedCount++;
@@ -1195,33 +1240,8 @@ public class Synchronizer implements ILoggable
 								}
 								else
 								{
-									logDownloading(targetClientFile);
-
-									try
-									{
-										SyncUtils.copy(serverFile, serverFileInfo, targetClientFile, EFS.NONE,
-												childMonitor);
-										Synchronizer.this._serverFileTransferedCount++;
-										_newFilesDownloaded.add(targetClientFile);
-										// update permissions for the newly created file
-										if (!exists)
-										{
-											updatePermissions(serverFile, targetClientFile, true,
-													PermissionDirection.DOWNLOAD, childMonitor);
-										}
-										logSuccess();
-										syncDone(item, childMonitor);
-									}
-									catch (CoreException e)
-									{
-										logError(e);
-
-										if (!syncError(item, e, childMonitor))
-										{
-											result = false;
-											break FILE_LOOP;
-										}
-									}
+									queued = transfer(scheduler, item, serverFile, serverFileInfo, targetClientFile,
+											false, true, exists, childMonitor);
 								}
 							}
 							break;
@@ -1256,12 +1276,28 @@ public class Synchronizer implements ILoggable
 						break FILE_LOOP;
 					}
 				}
+
+				if (scheduler.isConcurrent() && !queued)
+				{
+					subMonitor.worked(1);
+				}
+				scheduler.reportProgress(subMonitor);
 			}
 
+			scheduler.join(subMonitor);
+			if (scheduler.isStopped())
+			{
+				result = false;
+			}
 			return result;
 		}
 		finally
 		{
+			if (scheduler != null)
+			{
+				scheduler.dispose();
+			}
+			saveManifest();
 			FileWatcher.resumeNotify();
 		}
 	}
@@ -1324,6 +1360,7 @@ public class Synchronizer implements ILoggable
 	public boolean uploadAndDelete(VirtualFileSyncPair[] fileList, boolean delete, IProgressMonitor monitor)
 	{
 		FileWatcher.avoidNotify();
+		TransferScheduler scheduler = null;
 		try
 		{
 			checkFileManagers();
@@ -1338,6 +1375,13 @@ public class Synchronizer implements ILoggable
 			SubMonitor subMonitor = SubMonitor.convert(monitor, Messages.Synchronizer_Uploading_Files, fileList.length);
 			Policy.checkCanceled(subMonitor);
 
+			scheduler = new TransferScheduler(TransferScheduler.getConcurrency(getClientFileManager(),
+					getServerFileManager()), subMonitor);
+			if (scheduler.isConcurrent())
+			{
+				fileList = TransferScheduler.order(fileList);
+			}
+
 			FILE_LOOP: for (int i = 0; i < fileList.length; i++)
 			{
 				final VirtualFileSyncPair item = fileList[i];
@@ -1346,7 +1390,15 @@ public class Synchronizer implements ILoggable
 
 				setSyncItemDirection(item, false, true);
 
-				SubMonitor childMonitor = subMonitor.newChild(1);
+				if (scheduler.isStopped())
+				{
+					result = false;
+					break;
+				}
+
+				// queued transfers report their work once they complete
+				SubMonitor childMonitor = subMonitor.newChild(scheduler.isConcurrent() ? 0 : 1);
+				boolean queued = false;
 				childMonitor.setTaskName(getSyncStatus(item));
 
 				try
@@ -1376,6 +1428,7 @@ public class Synchronizer implements ILoggable
 								{
 									targetServerFile.mkdir(EFS.NONE, null);
 									this._serverDirectoryCreatedCount++;
+									manifestTransferred(item, clientFileInfo);
 									_newFilesUploaded.add(targetServerFile);
 									// update permissions for the newly created directory
 									updatePermissions(clientFile, targetServerFile, false, PermissionDirection.UPLOAD,
@@ -1386,34 +1439,8 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								logUploading(clientFile);
-
-								try
-								{
-									SyncUtils
-											.copy(clientFile, clientFileInfo, targetServerFile, EFS.NONE, childMonitor);
-									Synchronizer.this._clientFileTransferedCount++;
-									_newFilesUploaded.add(targetServerFile);
-									// update permissions for the newly created file
-									if (!exists)
-									{
-										updatePermissions(clientFile, targetServerFile, true,
-												PermissionDirection.UPLOAD, childMonitor);
-									}
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
-
+								queued = transfer(scheduler, item, clientFile, clientFileInfo, targetServerFile, true,
+										true, exists, childMonitor);
 							}
 							break;
 
@@ -1425,6 +1452,7 @@ public class Synchronizer implements ILoggable
 								// false.
 								boolean wasDirectory = serverFileInfo.isDirectory();
 								serverFile.delete(EFS.NONE, childMonitor);
+								manifestRemoved(item);
 								if (wasDirectory)
 								{
 									this._serverDirectoryDeletedCount++;
@@ -1440,9 +1468,9 @@ public class Synchronizer implements ILoggable
 						case SyncState.ClientItemIsNewer:
 						case SyncState.CRCMismatch:
 							// exists on both sides, but the client item is newer
-							logUploading(clientFile);
 							if (clientFileInfo.isDirectory())
 							{
+								logUploading(clientFile);
 								// just needs to set the modification time for directory
 								try
 								{
@@ -1464,24 +1492,8 @@ public class Synchronizer implements ILoggable
 							}
 							else
 							{
-								try
-								{
-									SyncUtils.copy(clientFile, clientFileInfo, serverFile, EFS.NONE, childMonitor);
-									Synchronizer.this._clientFileTransferedCount++;
-									logSuccess();
-									syncDone(item, childMonitor);
-								}
-								catch (CoreException e)
-								{
-									logError(e);
-
-									if (!syncError(item, e, childMonitor))
-									{
-										result = false;
-										break FILE_LOOP;
-									}
-								}
-
+								queued = transfer(scheduler, item, clientFile, clientFileInfo, serverFile, true, false,
+										true, childMonitor);
 							}
 							break;
 
@@ -1500,12 +1512,28 @@ public class Synchronizer implements ILoggable
 						break FILE_LOOP;
 					}
 				}
+
+				if (scheduler.isConcurrent() && !queued)
+				{
+					subMonitor.worked(1);
+				}
+				scheduler.reportProgress(subMonitor);
 			}
 
+			scheduler.join(subMonitor);
+			if (scheduler.isStopped())
+			{
+				result = false;
+			}
 			return result;
 		}
 		finally
 		{
+			if (scheduler != null)
+			{
+				scheduler.dispose();
+			}
+			saveManifest();
 			FileWatcher.resumeNotify();
 		}
 	}
@@ -1714,6 +1742,145 @@ public class Synchronizer implements ILoggable
 		this.logger = logger;
 	}
 
+	/**
+	 * Copies a file, then updates the counters and notifies the event handler. When the scheduler is concurrent the copy
+	 * is queued and all of this happens on a transfer thread, so the log for the transfer is written once it completes
+	 * to keep its lines together.
+	 * 
+	 * @param scheduler
+	 * @param item
+	 * @param source
+	 * @param sourceInfo
+	 * @param target
+	 * @param upload
+	 *            Whether the file is copied from the client to the server
+	 * @param newFile
+	 *            Whether the file only exists on the source side
+	 * @param exists
+	 *            Whether the target file already exists
+	 * @param monitor
+	 *            The monitor of the item, used when the copy runs inline
+	 * @return true if the copy was queued, false if it already ran
+	 */
+	private boolean transfer(final TransferScheduler scheduler, final VirtualFileSyncPair item,
+			final IFileStore source, final IFileInfo sourceInfo, final IFileStore target, final boolean upload,
+			final boolean newFile, final boolean exists, final IProgressMonitor monitor)
+	{
+		final boolean concurrent = scheduler.isConcurrent();
+		if (!concurrent)
+		{
+			logTransfer(source, upload);
+		}
+		return scheduler.submit(new Runnable()
+		{
+			public void run()
+			{
+				IProgressMonitor transferMonitor = concurrent ? scheduler.newTransferMonitor() : monitor;
+				try
+				{
+					SyncUtils.copy(source, sourceInfo, target, EFS.NONE, transferMonitor);
+					// update permissions for the newly created file
+					if (newFile && !exists)
+					{
+						updatePermissions(source, target, true, upload ? PermissionDirection.UPLOAD
+								: PermissionDirection.DOWNLOAD, transferMonitor);
+					}
+					synchronized (_eventLock)
+					{
+						if (concurrent)
+						{
+							logTransfer(source, upload);
+						}
+						if (upload)
+						{
+							_clientFileTransferedCount++;
+							manifestTransferred(item, sourceInfo);
+						}
+						else
+						{
+							_serverFileTransferedCount++;
+						}
+						if (newFile)
+						{
+							(upload ? _newFilesUploaded : _newFilesDownloaded).add(target);
+						}
+						logSuccess();
+						syncDone(item, transferMonitor);
+					}
+				}
+				catch (CoreException e)
+				{
+					synchronized (_eventLock)
+					{
+						if (concurrent)
+						{
+							logTransfer(source, upload);
+						}
+						logError(e);
+						if (!syncError(item, e, transferMonitor))
+						{
+							scheduler.stop();
+						}
+					}
+				}
+				catch (OperationCanceledException e)
+				{
+					if (!concurrent)
+					{
+						throw e;
+					}
+					// the synchronization was canceled or stopped, the calling thread notices
+				}
+				catch (RuntimeException e)
+				{
+					if (!concurrent)
+					{
+						throw e;
+					}
+					IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorDuringSync, e);
+					syncError(item, e, transferMonitor);
+					scheduler.stop();
+				}
+			}
+		});
+	}
+
+	private void manifestTransferred(VirtualFileSyncPair item, IFileInfo sourceInfo)
+	{
+		if (_manifest != null)
+		{
+			_manifest.transferred(item.getRelativePath(), sourceInfo);
+		}
+	}
+
+	private void manifestRemoved(VirtualFileSyncPair item)
+	{
+		if (_manifest != null)
+		{
+			_manifest.removed(item.getRelativePath());
+		}
+	}
+
+	private void saveManifest()
+	{
+		if (_manifest != null)
+		{
+			_manifest.save();
+		}
+	}
+
+	private void logTransfer(IFileStore source, boolean upload)
+	{
+		if (upload)
+		{
+			logUploading(source);
+		}
+		else
+		{
+			logDownloading(source);
+		}
+	}
+
 	private void checkFileManagers()
 	{
 		if (getClientFileManager() == null)
@@ -1789,9 +1956,12 @@ public class Synchronizer implements ILoggable
 
 	private void syncDone(VirtualFileSyncPair item, IProgressMonitor monitor)
 	{
-		if (this._eventHandler != null)
+		synchronized (_eventLock)
 		{
-			this._eventHandler.syncDone(item, monitor);
+			if (this._eventHandler != null)
+			{
+				this._eventHandler.syncDone(item, monitor);
+			}
 		}
 
 		if (monitor != null)
@@ -1802,12 +1972,18 @@ public class Synchronizer implements ILoggable
 
 	private boolean syncError(VirtualFileSyncPair item, Exception e, IProgressMonitor monitor)
 	{
-		return this._eventHandler == null || this._eventHandler.syncErrorEvent(item, e, monitor);
+		synchronized (_eventLock)
+		{
+			return this._eventHandler == null || this._eventHandler.syncErrorEvent(item, e, monitor);
+		}
 	}
 
 	private boolean syncEvent(VirtualFileSyncPair item, int index, int totalItems, IProgressMonitor monitor)
 	{
-		return this._eventHandler == null || this._eventHandler.syncEvent(item, index, totalItems, monitor);
+		synchronized (_eventLock)
+		{
+			return this._eventHandler == null || this._eventHandler.syncEvent(item, index, totalItems, monitor);
+		}
 	}
 
 	private boolean syncContinue(IProgressMonitor monitor)
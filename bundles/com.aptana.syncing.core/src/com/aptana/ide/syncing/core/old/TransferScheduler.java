@@ -0,0 +1,313 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.aptana.core.io.vfs.IConcurrentConnectionFileManager;
+import com.aptana.core.io.vfs.IConnectionFileManager;
+import com.aptana.ide.core.io.IConnectionPoint;
+
+/**
+ * Runs the file transfers of a synchronization on a fixed number of threads, so that the round trips of one transfer
+ * overlap with the data of the others. Everything else (events, deletes, mkdirs) stays on the calling thread, in
+ * order.
+ * <p>
+ * With a single thread, transfers run inline on the calling thread with its own progress monitor, exactly as they
+ * always have.
+ */
+class TransferScheduler
+{
+	private final ExecutorService executor;
+	private final IProgressMonitor monitor;
+	private final List<Future<?>> pending = new LinkedList<Future<?>>();
+	private final AtomicInteger completed = new AtomicInteger();
+	private volatile boolean stopped;
+
+	/**
+	 * TransferScheduler
+	 * 
+	 * @param threads
+	 *            The number of transfers to run at once
+	 * @param monitor
+	 *            The monitor of the whole synchronization, checked for cancellation by the transfers
+	 */
+	TransferScheduler(int threads, IProgressMonitor monitor)
+	{
+		this.monitor = monitor;
+		if (threads > 1)
+		{
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "Sync Transfer " + count.incrementAndGet()); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		else
+		{
+			executor = null;
+		}
+	}
+
+	/**
+	 * Returns the number of transfers to run at once between two connection points. Only remote connections whose
+	 * streams use separate connections can transfer more than one file at a time; local ones don't limit the number,
+	 * but there's no latency to hide when neither side is remote.
+	 * 
+	 * @param client
+	 * @param server
+	 * @return
+	 */
+	static int getConcurrency(IConnectionPoint client, IConnectionPoint server)
+	{
+		int concurrency = Math.min(getConcurrency(client), getConcurrency(server));
+		return (concurrency == Integer.MAX_VALUE) ? 1 : concurrency;
+	}
+
+	private static int getConcurrency(IConnectionPoint connectionPoint)
+	{
+		Object fileManager = (connectionPoint == null) ? null : connectionPoint
+				.getAdapter(IConnectionFileManager.class);
+		if (fileManager instanceof IConcurrentConnectionFileManager)
+		{
+			return Math.max(1, ((IConcurrentConnectionFileManager) fileManager).getMaxConcurrentTransfers());
+		}
+		return (fileManager == null) ? Integer.MAX_VALUE : 1;
+	}
+
+	/**
+	 * Orders the items so that directories come first, in their original (parent before child) order, followed by the
+	 * files, largest first. The directories are then all created before the transfers start, and the largest transfers
+	 * don't end up running alone at the end.
+	 * 
+	 * @param items
+	 * @return
+	 */
+	static VirtualFileSyncPair[] order(VirtualFileSyncPair[] items)
+	{
+		final Map<VirtualFileSyncPair, Long> lengths = new IdentityHashMap<VirtualFileSyncPair, Long>();
+		for (VirtualFileSyncPair item : items)
+		{
+			lengths.put(item, getLength(item));
+		}
+		VirtualFileSyncPair[] ordered = new VirtualFileSyncPair[items.length];
+		System.arraycopy(items, 0, ordered, 0, items.length);
+		// the sort is stable, so directories keep their relative order
+		Arrays.sort(ordered, new Comparator<VirtualFileSyncPair>()
+		{
+			public int compare(VirtualFileSyncPair o1, VirtualFileSyncPair o2)
+			{
+				long l1 = lengths.get(o1);
+				long l2 = lengths.get(o2);
+				return (l1 > l2) ? -1 : ((l1 < l2) ? 1 : 0);
+			}
+		});
+		return ordered;
+	}
+
+	/**
+	 * Returns the length of the file an item will transfer, or {@link Long#MAX_VALUE} for directories so they sort
+	 * first
+	 * 
+	 * @param item
+	 * @return
+	 */
+	private static long getLength(VirtualFileSyncPair item)
+	{
+		IFileInfo sourceInfo = item.getSourceFileInfo();
+		IFileInfo destinationInfo = item.getDestinationFileInfo();
+		if ((sourceInfo != null && sourceInfo.isDirectory())
+				|| (destinationInfo != null && destinationInfo.isDirectory()))
+		{
+			return Long.MAX_VALUE;
+		}
+		long length = 0;
+		if (sourceInfo != null && sourceInfo.exists())
+		{
+			length = sourceInfo.getLength();
+		}
+		if (destinationInfo != null && destinationInfo.exists())
+		{
+			length = Math.max(length, destinationInfo.getLength());
+		}
+		return length;
+	}
+
+	/**
+	 * Returns whether transfers run on other threads
+	 * 
+	 * @return
+	 */
+	boolean isConcurrent()
+	{
+		return executor != null;
+	}
+
+	/**
+	 * Runs a transfer, on one of the transfer threads if concurrent. Nothing is run once the scheduler is stopped.
+	 * 
+	 * @param transfer
+	 * @return true if the transfer was queued, false if it ran inline or not at all
+	 */
+	boolean submit(Runnable transfer)
+	{
+		if (stopped)
+		{
+			return false;
+		}
+		if (executor == null)
+		{
+			transfer.run();
+			return false;
+		}
+		synchronized (pending)
+		{
+			pending.add(executor.submit(transfer));
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a progress monitor for a queued transfer. It is canceled along with the synchronization or once the
+	 * scheduler is stopped, and the work reported to it is handed back to the calling thread by
+	 * {@link #reportProgress(IProgressMonitor)}.
+	 * 
+	 * @return
+	 */
+	IProgressMonitor newTransferMonitor()
+	{
+		return new NullProgressMonitor()
+		{
+			@Override
+			public boolean isCanceled()
+			{
+				return stopped || monitor.isCanceled();
+			}
+
+			@Override
+			public void worked(int work)
+			{
+				completed.addAndGet(work);
+			}
+		};
+	}
+
+	/**
+	 * Reports the work done by the transfers that completed since the last call. Must be called on the calling thread.
+	 * 
+	 * @param parent
+	 */
+	void reportProgress(IProgressMonitor parent)
+	{
+		int work = completed.getAndSet(0);
+		if (work > 0)
+		{
+			parent.worked(work);
+		}
+	}
+
+	/**
+	 * Stop running transfers. Those already running are canceled through their monitor.
+	 */
+	void stop()
+	{
+		stopped = true;
+	}
+
+	/**
+	 * Returns whether the scheduler was stopped, e.g. because a transfer failed and its error handler asked for the
+	 * synchronization to stop
+	 * 
+	 * @return
+	 */
+	boolean isStopped()
+	{
+		return stopped;
+	}
+
+	/**
+	 * Waits for all the queued transfers to complete, reporting their progress as they do.
+	 * 
+	 * @param parent
+	 */
+	void join(IProgressMonitor parent)
+	{
+		while (true)
+		{
+			Future<?> future;
+			synchronized (pending)
+			{
+				if (pending.isEmpty())
+				{
+					break;
+				}
+				future = pending.remove(0);
+			}
+			try
+			{
+				future.get();
+			}
+			catch (InterruptedException e)
+			{
+				stop();
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (ExecutionException e)
+			{
+				// the transfers report their own errors
+			}
+			reportProgress(parent);
+		}
+		reportProgress(parent);
+	}
+
+	/**
+	 * Stops the transfer threads
+	 */
+	void dispose()
+	{
+		if (executor != null)
+		{
+			stop();
+			List<Future<?>> futures;
+			synchronized (pending)
+			{
+				futures = new ArrayList<Future<?>>(pending);
+				pending.clear();
+			}
+			for (Future<?> future : futures)
+			{
+				future.cancel(false);
+			}
+			executor.shutdown();
+		}
+	}
+}
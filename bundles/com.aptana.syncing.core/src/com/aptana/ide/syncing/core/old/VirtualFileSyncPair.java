@@ -211,6 +211,17 @@ public class VirtualFileSyncPair
 		this._destinationFileInfo = null;
 	}
 
+	/**
+	 * setDestinationFileInfo
+	 * 
+	 * @param destinationFileInfo
+	 *            The info of the destination file when it's already known, so it doesn't need to be fetched again
+	 */
+	public void setDestinationFileInfo(IFileInfo destinationFileInfo)
+	{
+		this._destinationFileInfo = destinationFileInfo;
+	}
+
 	/**
 	 * getRelativePath
 	 * 
@@ -270,11 +281,13 @@ public class VirtualFileSyncPair
 		{
 			return false;
 		}
-		if (getSourceFile() != null && getSourceFile().fetchInfo().isDirectory())
+		IFileInfo info = getSourceFileInfo();
+		if (info != null && info.isDirectory())
 		{
 			return true;
 		}
-		return getDestinationFile() != null && getDestinationFile().fetchInfo().isDirectory();
+		info = getDestinationFileInfo();
+		return info != null && info.isDirectory();
 	}
 
 	/**
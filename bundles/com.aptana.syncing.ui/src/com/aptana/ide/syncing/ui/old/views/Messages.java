@@ -92,6 +92,7 @@ public class Messages extends NLS
 	public static String SmartSyncDialog_Upload;
 	public static String SmartSyncDialog_UploadAll;
 	public static String SmartSyncDialog_UseCrc;
+	public static String SmartSyncDialog_VerifyRemote;
 	public static String SmartSyncDialog_ViewOptions;
 
 	public static String SmartSyncEventManager_ERR_ErrorNotifyingSmartSyncListener;
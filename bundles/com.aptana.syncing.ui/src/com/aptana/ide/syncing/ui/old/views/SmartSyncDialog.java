@@ -86,6 +86,7 @@ import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.FileUtil;
 import com.aptana.core.util.StringUtil;
 import com.aptana.ide.core.io.ConnectionPointType;
+import com.aptana.ide.core.io.ConnectionPointUtils;
 import com.aptana.ide.core.io.CoreIOPlugin;
 import com.aptana.ide.core.io.IConnectionPoint;
 import com.aptana.ide.core.io.WorkspaceConnectionPoint;
@@ -95,6 +96,7 @@ import com.aptana.ide.syncing.core.old.ConnectionPointSyncPair;
 import com.aptana.ide.syncing.core.old.ILogger;
 import com.aptana.ide.syncing.core.old.ISyncEventHandler;
 import com.aptana.ide.syncing.core.old.ISyncResource;
+import com.aptana.ide.syncing.core.old.RemoteManifest;
 import com.aptana.ide.syncing.core.old.SyncFile;
 import com.aptana.ide.syncing.core.old.SyncFolder;
 import com.aptana.ide.syncing.core.old.SyncJob;
@@ -158,6 +160,7 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 	private Button deleteRemoteFiles;
 	private Button deleteLocalFiles;
 	private Button useCrc;
+	private Button verifyRemote;
 	private Button syncInBackground;
 
 	private UpdatePermissionsComposite uploadPermComposite;
@@ -244,6 +247,10 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 		{
 			this.syncer.setServerFileManager(destManager);
 			this.syncer.setServerFileRoot(dest);
+			if (ConnectionPointUtils.isRemote(destManager))
+			{
+				this.syncer.setRemoteManifest(RemoteManifest.getManifest(destManager, dest));
+			}
 		}
 		this.syncer.setLogger(new ILogger()
 		{
@@ -833,6 +840,11 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 		syncInBackground.setSelection(getCoreUIPreferenceStore().getBoolean(COMPARE_IN_BACKGROUND));
 		syncInBackground.addSelectionListener(this);
 
+		verifyRemote = new Button(advancedOptions, SWT.CHECK);
+		verifyRemote.setText(Messages.SmartSyncDialog_VerifyRemote);
+		verifyRemote.setEnabled(syncer.getRemoteManifest() != null);
+		verifyRemote.addSelectionListener(this);
+
 		Group group = new Group(advancedOptions, SWT.NONE);
 		group.setText(Messages.SmartSyncDialog_LBL_PermforUploads);
 		group.setLayout(GridLayoutFactory.fillDefaults().create());
@@ -1194,6 +1206,7 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 				: (directionBar.getSelection() == DirectionToolBar.FORCE_UPLOAD);
 		final boolean forceDown = compareInBackground ? false
 				: (directionBar.getSelection() == DirectionToolBar.FORCE_DOWNLOAD);
+		syncer.setUploadOnly(isUploadOnly());
 
 		if (buildSmartSync != null)
 		{
@@ -1535,11 +1548,13 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 		{
 			saveDeleteLocalPreference(deleteLocalFiles.getSelection());
 			updateDeleteStates();
+			reloadIfListedFromManifest();
 		}
 		else if (source == deleteRemoteFiles)
 		{
 			saveDeleteRemotePreference(deleteRemoteFiles.getSelection());
 			updateDeleteStates();
+			reloadIfListedFromManifest();
 		}
 		else if (source == cancel)
 		{
@@ -1557,6 +1572,14 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 		{
 			getCoreUIPreferenceStore().setValue(COMPARE_IN_BACKGROUND, syncInBackground.getSelection());
 		}
+		else if (source == verifyRemote)
+		{
+			syncer.setVerifyRemoteManifest(verifyRemote.getSelection());
+			if (verifyRemote.getSelection())
+			{
+				load(false);
+			}
+		}
 		else if (source == retryLink)
 		{
 			load(true);
@@ -1637,7 +1660,7 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 		updateSyncArrows(directionBar.getSelection());
 		syncViewer.setSyncDirection(directionBar.getSelection());
 		saveDirectionPref(direction);
-		if (reload)
+		if (reload || (syncer.isListedFromManifest() && !isUploadOnly()))
 		{
 			load(false);
 		}
@@ -1647,6 +1670,28 @@ public class SmartSyncDialog extends TitleAreaDialog implements SelectionListene
 		}
 	}
 
+	/**
+	 * The remote manifest only knows about the files uploaded from here, so it may be used in place of listing the
+	 * server only when nothing is downloaded or deleted.
+	 * 
+	 * @return whether the selected options only upload files
+	 */
+	private boolean isUploadOnly()
+	{
+		return directionBar.getSelection() == DirectionToolBar.UPLOAD && !deleteRemoteFiles.getSelection();
+	}
+
+	/**
+	 * Lists the server again when the items came from the remote manifest and the options no longer allow it.
+	 */
+	private void reloadIfListedFromManifest()
+	{
+		if (syncer.isListedFromManifest() && !isUploadOnly())
+		{
+			load(false);
+		}
+	}
+
 	/**
 	 * @see com.aptana.ide.syncing.ui.views.views.OptionsToolBar.Client#stateChanged(int)
 	 */
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -12,7 +12,7 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 
 /**
  * @author Max Stepanov
- *
+ * 
  */
 public interface IWebServerPreferenceConstants {
 
@@ -28,6 +28,16 @@ public interface IWebServerPreferenceConstants {
 	 */
 	String PREF_HTTP_SERVER_PORTS = PREFIX + ".http_server_ports"; //$NON-NLS-1$
 
+	/**
+	 * Number of I/O threads of the built-in HTTP server
+	 */
+	String PREF_HTTP_SERVER_WORKER_COUNT = PREFIX + ".http_server_worker_count"; //$NON-NLS-1$
+
+	/**
+	 * Size of the socket send and receive buffers of the built-in HTTP server, in bytes
+	 */
+	String PREF_HTTP_SERVER_SOCKET_BUFFER_SIZE = PREFIX + ".http_server_socket_buffer_size"; //$NON-NLS-1$
+
 	/**
 	 * Default IP address
 	 */
@@ -37,4 +47,14 @@ public interface IWebServerPreferenceConstants {
 	 * Default ports range
 	 */
 	int[] DEFAULT_HTTP_SERVER_PORTS_RANGE = new int[] { 8020, 8079 };
+
+	/**
+	 * Default number of I/O threads
+	 */
+	int DEFAULT_HTTP_SERVER_WORKER_COUNT = 2;
+
+	/**
+	 * Default socket buffer size
+	 */
+	int DEFAULT_HTTP_SERVER_SOCKET_BUFFER_SIZE = 16 * 1024;
 }
@@ -0,0 +1,135 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.webserver.internal.core.builtin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+
+import com.aptana.core.util.IOUtil;
+
+/**
+ * Keeps the gzipped contents of the text files served by the built-in server, so that a file is only compressed again
+ * once it changed. The least recently served files are dropped once the cache grows over its size limit.
+ */
+/* package */class CompressedContentCache
+{
+
+	private static final long MAX_CACHE_SIZE = 8 * 1024 * 1024;
+	private static final long MIN_FILE_SIZE = 256;
+	private static final long MAX_FILE_SIZE = 1024 * 1024;
+
+	private static class Content
+	{
+		final long length;
+		final long lastModified;
+		final byte[] data;
+
+		Content(long length, long lastModified, byte[] data)
+		{
+			this.length = length;
+			this.lastModified = lastModified;
+			this.data = data;
+		}
+	}
+
+	private final Map<String, Content> contents = new LinkedHashMap<String, Content>(16, 0.75f, true);
+	private long size;
+
+	/**
+	 * Returns whether files of the given type and length are worth compressing. Small files don't get any smaller, and
+	 * images, archives and the like are already compressed.
+	 * 
+	 * @param mimeType
+	 * @param length
+	 * @return
+	 */
+	static boolean isCompressible(String mimeType, long length)
+	{
+		if (length < MIN_FILE_SIZE || length > MAX_FILE_SIZE || mimeType == null)
+		{
+			return false;
+		}
+		return mimeType.startsWith("text/") //$NON-NLS-1$
+				|| mimeType.endsWith("javascript") //$NON-NLS-1$
+				|| mimeType.endsWith("json") //$NON-NLS-1$
+				|| mimeType.endsWith("xml"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the gzipped contents of a file, compressing it unless the cache holds the current version already
+	 * 
+	 * @param fileStore
+	 * @param fileInfo
+	 * @return
+	 * @throws CoreException
+	 * @throws IOException
+	 */
+	byte[] get(IFileStore fileStore, IFileInfo fileInfo) throws CoreException, IOException
+	{
+		String key = fileStore.toURI().toString();
+		synchronized (this)
+		{
+			Content content = contents.get(key);
+			if (content != null && content.length == fileInfo.getLength()
+					&& content.lastModified == fileInfo.getLastModified())
+			{
+				return content.data;
+			}
+		}
+
+		// compresses outside the lock, so that other files can be served meanwhile
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) fileInfo.getLength() / 3);
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		InputStream in = fileStore.openInputStream(EFS.NONE, null);
+		try
+		{
+			IOUtil.pipe(in, out);
+		}
+		finally
+		{
+			in.close();
+		}
+		out.close();
+		byte[] data = bytes.toByteArray();
+
+		synchronized (this)
+		{
+			Content previous = contents.put(key, new Content(fileInfo.getLength(), fileInfo.getLastModified(), data));
+			if (previous != null)
+			{
+				size -= previous.data.length;
+			}
+			size += data.length;
+			for (Iterator<Content> i = contents.values().iterator(); size > MAX_CACHE_SIZE && i.hasNext();)
+			{
+				size -= i.next().data.length;
+				i.remove();
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Drops every cached file
+	 */
+	synchronized void clear()
+	{
+		contents.clear();
+		size = 0;
+	}
+}
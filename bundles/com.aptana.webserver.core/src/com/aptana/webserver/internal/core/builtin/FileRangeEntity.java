@@ -0,0 +1,175 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.webserver.internal.core.builtin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.ContentEncoderChannel;
+import org.apache.http.nio.FileContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * Sends a range of a file, the way {@link org.apache.http.nio.entity.NFileEntity} sends a whole one.
+ */
+/* package */class FileRangeEntity extends AbstractHttpEntity implements HttpAsyncContentProducer
+{
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final File file;
+	private final long offset;
+	private final long length;
+	private RandomAccessFile accessFile;
+	private FileChannel fileChannel;
+	private long position;
+
+	/**
+	 * @param file
+	 * @param offset
+	 *            The offset of the first byte to send
+	 * @param length
+	 *            The number of bytes to send
+	 * @param contentType
+	 */
+	FileRangeEntity(File file, long offset, long length, ContentType contentType)
+	{
+		this.file = file;
+		this.offset = offset;
+		this.length = length;
+		if (contentType != null)
+		{
+			setContentType(contentType.toString());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.nio.entity.HttpAsyncContentProducer#produceContent(org.apache.http.nio.ContentEncoder,
+	 * org.apache.http.nio.IOControl)
+	 */
+	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException
+	{
+		if (fileChannel == null)
+		{
+			accessFile = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			fileChannel = accessFile.getChannel();
+			position = offset;
+		}
+		long remaining = offset + length - position;
+		long transferred;
+		if (encoder instanceof FileContentEncoder)
+		{
+			transferred = ((FileContentEncoder) encoder).transfer(fileChannel, position, remaining);
+		}
+		else
+		{
+			transferred = fileChannel.transferTo(position, remaining, new ContentEncoderChannel(encoder));
+		}
+		if (transferred > 0)
+		{
+			position += transferred;
+		}
+		if (position >= offset + length)
+		{
+			encoder.complete();
+			close();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	public void close() throws IOException
+	{
+		if (accessFile != null)
+		{
+			accessFile.close();
+			accessFile = null;
+			fileChannel = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#isRepeatable()
+	 */
+	public boolean isRepeatable()
+	{
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#getContentLength()
+	 */
+	public long getContentLength()
+	{
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#isStreaming()
+	 */
+	public boolean isStreaming()
+	{
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#getContent()
+	 */
+	public InputStream getContent() throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream((int) length);
+		writeTo(out);
+		return new ByteArrayInputStream(out.toByteArray());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#writeTo(java.io.OutputStream)
+	 */
+	public void writeTo(OutputStream out) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try
+		{
+			in.seek(offset);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long remaining = length;
+			while (remaining > 0)
+			{
+				int count = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (count < 0)
+				{
+					break;
+				}
+				out.write(buffer, 0, count);
+				remaining -= count;
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -19,10 +19,13 @@ import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
 
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.impl.nio.DefaultHttpServerIODispatch;
 import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
 import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.NHttpServerConnection;
 import org.apache.http.nio.protocol.BasicAsyncRequestHandler;
 import org.apache.http.nio.protocol.HttpAsyncRequestHandler;
 import org.apache.http.nio.protocol.HttpAsyncRequestHandlerRegistry;
@@ -53,6 +56,7 @@ import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.SocketUtil;
 import com.aptana.webserver.core.SimpleWebServer;
 import com.aptana.webserver.core.WebServerCorePlugin;
+import com.aptana.webserver.core.preferences.IWebServerPreferenceConstants;
 import com.aptana.webserver.internal.core.preferences.WebServerPreferences;
 
 /**
@@ -67,12 +71,13 @@ public class LocalWebServer extends SimpleWebServer
 	private static final int SOCKET_TIMEOUT = 10000;
 	private static final long STARTUP_TIMEOUT = 10000;
 	private static final long SHUTDOWN_TIMEOUT = 2000;
-	private static final int SOCKET_BUFFER_SIZE = 16 * 1024; // $codepro.audit.disable
-																// multiplicationOrDivisionByPowersOf2
-	private static final int WORKER_COUNT = 2;
 
 	private Thread thread;
 	private ListeningIOReactor reactor;
+	private volatile LocalWebServerHttpRequestHandler requestHandler;
+	private final LocalWebServerLogger logger = new LocalWebServerLogger();
+	private int workerCount = IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_WORKER_COUNT;
+	private int socketBufferSize = IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_SOCKET_BUFFER_SIZE;
 
 	protected int port;
 	private String hostName;
@@ -81,6 +86,8 @@ public class LocalWebServer extends SimpleWebServer
 	public LocalWebServer(URI documentRoot)
 	{
 		this(WebServerPreferences.getServerAddress(), WebServerPreferences.getPortRange(), documentRoot);
+		setWorkerCount(WebServerPreferences.getWorkerCount());
+		setSocketBufferSize(WebServerPreferences.getSocketBufferSize());
 	}
 
 	public LocalWebServer(InetAddress host, int[] portRange, URI documentRoot)
@@ -106,6 +113,36 @@ public class LocalWebServer extends SimpleWebServer
 		}
 	}
 
+	/**
+	 * Sets the number of I/O threads. Only applies when the server is started next.
+	 * 
+	 * @param workerCount
+	 */
+	public void setWorkerCount(int workerCount)
+	{
+		this.workerCount = Math.max(1, workerCount);
+	}
+
+	/**
+	 * Sets the size of the socket buffers, in bytes. Only applies when the server is started next.
+	 * 
+	 * @param socketBufferSize
+	 */
+	public void setSocketBufferSize(int socketBufferSize)
+	{
+		this.socketBufferSize = socketBufferSize;
+	}
+
+	/**
+	 * Returns the connection and request counters of the server
+	 * 
+	 * @return
+	 */
+	/* package */LocalWebServerLogger getLogger()
+	{
+		return logger;
+	}
+
 	private void testConnection(URL url) throws CoreException
 	{
 		CoreException exception = null;
@@ -141,13 +178,13 @@ public class LocalWebServer extends SimpleWebServer
 	private void startServer(final InetAddress host, final int port)
 	{
 		updateState(State.STARTING);
+		requestHandler = new LocalWebServerHttpRequestHandler(this);
 		thread = new Thread()
 		{
 			@Override
 			public void run()
 			{
-				runServer(new InetSocketAddress(host, port), new BasicAsyncRequestHandler(
-						new LocalWebServerHttpRequestHandler(LocalWebServer.this)));
+				runServer(new InetSocketAddress(host, port), new BasicAsyncRequestHandler(requestHandler));
 			}
 		};
 		thread.setDaemon(true);
@@ -178,12 +215,14 @@ public class LocalWebServer extends SimpleWebServer
 		HttpParams params = new BasicHttpParams();
 		params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, SOCKET_TIMEOUT)
 				.setBooleanParameter(CoreConnectionPNames.STALE_CONNECTION_CHECK, false)
-				.setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, SOCKET_BUFFER_SIZE)
+				.setIntParameter(CoreConnectionPNames.SOCKET_BUFFER_SIZE, socketBufferSize)
 				.setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true)
 				.setParameter(CoreProtocolPNames.ORIGIN_SERVER,
 						"HttpComponents/" + EclipseUtil.getPluginVersion("org.apache.httpcomponents.httpcore")); //$NON-NLS-1$ //$NON-NLS-2$
 
 		BasicHttpProcessor httpProcessor = new BasicHttpProcessor();
+		httpProcessor.addInterceptor((HttpRequestInterceptor) logger);
+		httpProcessor.addInterceptor((HttpResponseInterceptor) logger);
 		httpProcessor.addInterceptor(new ResponseDate());
 		httpProcessor.addInterceptor(new ResponseServer());
 		httpProcessor.addInterceptor(new ResponseContent());
@@ -193,12 +232,35 @@ public class LocalWebServer extends SimpleWebServer
 		handlerRegistry.register("*", httpRequestHandler); //$NON-NLS-1$
 
 		HttpAsyncService serviceHandler = new HttpAsyncService(httpProcessor, new DefaultConnectionReuseStrategy(),
-				handlerRegistry, params);
-		// serviceHandler.setEventListener(new LocalWebServerLogger());
+				handlerRegistry, params)
+		{
+			@Override
+			public void connected(NHttpServerConnection conn)
+			{
+				logger.connectionOpen(conn);
+				super.connected(conn);
+			}
+
+			@Override
+			public void closed(NHttpServerConnection conn)
+			{
+				logger.connectionClosed(conn);
+				super.closed(conn);
+			}
+
+			@Override
+			public void timeout(NHttpServerConnection conn) throws IOException
+			{
+				logger.connectionTimeout(conn);
+				super.timeout(conn);
+			}
+		};
 
 		IOReactorConfig config = new IOReactorConfig();
-		config.setIoThreadCount(WORKER_COUNT);
+		config.setIoThreadCount(workerCount);
 		config.setConnectTimeout(SOCKET_TIMEOUT);
+		config.setSndBufSize(socketBufferSize);
+		config.setRcvBufSize(socketBufferSize);
 		config.setTcpNoDelay(true);
 		config.setSoKeepalive(true);
 
@@ -249,6 +311,12 @@ public class LocalWebServer extends SimpleWebServer
 				// ignore
 			}
 		}
+		if (requestHandler != null)
+		{
+			requestHandler.dispose();
+			requestHandler = null;
+			IdeLog.logInfo(WebServerCorePlugin.getDefault(), logger.getSummary());
+		}
 		return Status.OK_STATUS;
 	}
 
@@ -270,6 +338,21 @@ public class LocalWebServer extends SimpleWebServer
 		return Status.OK_STATUS;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.webserver.core.SimpleWebServer#setDocumentRoot(java.net.URI)
+	 */
+	@Override
+	public void setDocumentRoot(URI uri)
+	{
+		super.setDocumentRoot(uri);
+		LocalWebServerHttpRequestHandler handler = requestHandler;
+		if (handler != null)
+		{
+			handler.clearCache();
+		}
+	}
+
 	public boolean isPersistent()
 	{
 		return false;
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -9,23 +9,31 @@
 
 package com.aptana.webserver.internal.core.builtin;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.text.MessageFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.MethodNotSupportedException;
+import org.apache.http.NameValuePair;
 import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.entity.NFileEntity;
 import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.protocol.HTTP;
@@ -58,7 +66,30 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 
 	private final static Pattern PATTERN_INDEX = Pattern.compile("(index|default)\\.x?html?"); //$NON-NLS-1$
 
+	private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding"; //$NON-NLS-1$
+	private static final String HEADER_ACCEPT_RANGES = "Accept-Ranges"; //$NON-NLS-1$
+	private static final String HEADER_CACHE_CONTROL = "Cache-Control"; //$NON-NLS-1$
+	private static final String HEADER_CONTENT_RANGE = "Content-Range"; //$NON-NLS-1$
+	private static final String HEADER_ETAG = "ETag"; //$NON-NLS-1$
+	private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since"; //$NON-NLS-1$
+	private static final String HEADER_IF_NONE_MATCH = "If-None-Match"; //$NON-NLS-1$
+	private static final String HEADER_IF_RANGE = "If-Range"; //$NON-NLS-1$
+	private static final String HEADER_LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
+	private static final String HEADER_RANGE = "Range"; //$NON-NLS-1$
+	private static final String HEADER_VARY = "Vary"; //$NON-NLS-1$
+
+	private static final String BYTES = "bytes"; //$NON-NLS-1$
+	private static final String GZIP = "gzip"; //$NON-NLS-1$
+	private static final String NO_CACHE = "no-cache"; //$NON-NLS-1$
+	private static final String PATTERN_RFC1123 = "EEE, dd MMM yyyy HH:mm:ss zzz"; //$NON-NLS-1$
+	private static final TimeZone GMT = TimeZone.getTimeZone("GMT"); //$NON-NLS-1$
+
+	private static final Pattern PATTERN_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)"); //$NON-NLS-1$
+	private static final long[] UNSATISFIABLE_RANGE = new long[0];
+
 	private IURIMapper uriMapper;
+	private final ResolvedFileCache resolvedFiles = new ResolvedFileCache();
+	private final CompressedContentCache compressedContents = new CompressedContentCache();
 
 	/**
 	 * @param documentRoot
@@ -66,14 +97,36 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 	protected LocalWebServerHttpRequestHandler(IURIMapper uriMapper)
 	{
 		this.uriMapper = uriMapper;
+		resolvedFiles.start();
 	}
 
-	private void handleRequest(HttpRequest request, HttpResponse response, boolean head) throws HttpException,
-			IOException, CoreException, URISyntaxException
+	/**
+	 * Forgets what the request paths resolved to, e.g. once the document root changed
+	 */
+	void clearCache()
 	{
-		String target = URLDecoder.decode(request.getRequestLine().getUri(), IOUtil.UTF_8);
-		URI uri = URIUtil.fromString(target);
-		IFileStore fileStore = uriMapper.resolve(uri);
+		resolvedFiles.clear();
+		compressedContents.clear();
+	}
+
+	/**
+	 * Stops tracking workspace changes, once the server stopped
+	 */
+	void dispose()
+	{
+		resolvedFiles.dispose();
+		compressedContents.clear();
+	}
+
+	private ResolvedFileCache.Entry resolve(String target, URI uri) throws CoreException
+	{
+		ResolvedFileCache.Entry entry = resolvedFiles.get(target);
+		if (entry != null)
+		{
+			return entry;
+		}
+		IFileStore requested = uriMapper.resolve(uri);
+		IFileStore fileStore = requested;
 		IFileInfo fileInfo = fileStore.fetchInfo();
 		if (fileInfo.isDirectory())
 		{
@@ -83,49 +136,90 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 				fileStore = fileStore.getChild(fileInfo.getName());
 			}
 		}
+		return resolvedFiles.put(target, requested, fileStore, fileInfo);
+	}
+
+	private void handleRequest(HttpRequest request, HttpResponse response, boolean head) throws HttpException,
+			IOException, CoreException, URISyntaxException
+	{
+		String target = URLDecoder.decode(request.getRequestLine().getUri(), IOUtil.UTF_8);
+		URI uri = URIUtil.fromString(target);
+		ResolvedFileCache.Entry entry = resolve(target, uri);
+		IFileStore fileStore = entry.fileStore;
+		IFileInfo fileInfo = entry.fileInfo;
 		if (!fileInfo.exists())
 		{
 			response.setStatusCode(HttpStatus.SC_NOT_FOUND);
 			response.setEntity(createTextEntity(MessageFormat.format(
 					Messages.LocalWebServerHttpRequestHandler_FILE_NOT_FOUND, uri.getPath())));
+			return;
 		}
-		else if (fileInfo.isDirectory())
+		if (fileInfo.isDirectory())
 		{
 			response.setStatusCode(HttpStatus.SC_FORBIDDEN);
 			response.setEntity(createTextEntity(Messages.LocalWebServerHttpRequestHandler_FORBIDDEN));
+			return;
+		}
+
+		long length = fileInfo.getLength();
+		long lastModified = fileInfo.getLastModified();
+		ContentType contentType = getMimeType(fileStore.getName());
+		boolean compressible = CompressedContentCache.isCompressible(contentType.getMimeType(), length);
+		// ranges are always served from the identity encoding, so If-Range is checked against its ETag
+		long[] range = getRange(request, getETag(length, lastModified, false), length);
+		boolean compress = compressible && (range == null || range == UNSATISFIABLE_RANGE) && acceptsGzip(request);
+		String etag = getETag(length, lastModified, compress);
+
+		// the preview reloads often, so browsers have to check whether files changed; most of the time they didn't
+		response.setHeader(HEADER_CACHE_CONTROL, NO_CACHE);
+		response.setHeader(HEADER_ETAG, etag);
+		response.setHeader(HEADER_LAST_MODIFIED, formatDate(lastModified));
+		response.setHeader(HEADER_ACCEPT_RANGES, BYTES);
+		if (compressible)
+		{
+			response.setHeader(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+		}
+		if (isNotModified(request, etag, lastModified))
+		{
+			response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+			response.setEntity(null);
+			return;
+		}
+
+		if (range == UNSATISFIABLE_RANGE)
+		{
+			response.setStatusCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setHeader(HEADER_CONTENT_RANGE, BYTES + " */" + length); //$NON-NLS-1$
+			response.setEntity(null);
+			return;
+		}
+		if (range != null)
+		{
+			response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+			response.setHeader(HEADER_CONTENT_RANGE, MessageFormat.format("{0} {1}-{2}/{3}", BYTES, //$NON-NLS-1$
+					Long.toString(range[0]), Long.toString(range[0] + range[1] - 1), Long.toString(length)));
 		}
 		else
 		{
 			response.setStatusCode(HttpStatus.SC_OK);
-			if (head)
-			{
-				response.setEntity(null);
-			}
-			else
-			{
-				File file = fileStore.toLocalFile(EFS.NONE, new NullProgressMonitor());
-				final File temporaryFile = (file == null) ? fileStore.toLocalFile(EFS.CACHE, new NullProgressMonitor())
-						: null;
-				response.setEntity(new NFileEntity((file != null) ? file : temporaryFile, getMimeType(fileStore
-						.getName()))
-				{
-					@Override
-					public void close() throws IOException
-					{
-						try
-						{
-							super.close();
-						}
-						finally
-						{
-							if (temporaryFile != null && !temporaryFile.delete())
-							{
-								temporaryFile.deleteOnExit();
-							}
-						}
-					}
-				});
-			}
+		}
+		if (head)
+		{
+			response.setEntity(null);
+		}
+		else if (range != null)
+		{
+			response.setEntity(new FileRangeEntity(entry.getLocalFile(), range[0], range[1], contentType));
+		}
+		else if (compress)
+		{
+			NByteArrayEntity entity = new NByteArrayEntity(compressedContents.get(fileStore, fileInfo), contentType);
+			entity.setContentEncoding(GZIP);
+			response.setEntity(entity);
+		}
+		else
+		{
+			response.setEntity(new NFileEntity(entry.getLocalFile(), contentType));
 		}
 	}
 
@@ -182,6 +276,146 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 		return EFS.getNullFileSystem().getStore(Path.EMPTY).fetchInfo();
 	}
 
+	private static String getETag(long length, long lastModified, boolean compressed)
+	{
+		StringBuilder etag = new StringBuilder();
+		etag.append('"').append(Long.toHexString(length)).append('-').append(Long.toHexString(lastModified));
+		if (compressed)
+		{
+			etag.append('-').append(GZIP);
+		}
+		return etag.append('"').toString();
+	}
+
+	private static boolean acceptsGzip(HttpRequest request)
+	{
+		for (Header header : request.getHeaders(HEADER_ACCEPT_ENCODING))
+		{
+			for (HeaderElement element : header.getElements())
+			{
+				if (GZIP.equalsIgnoreCase(element.getName()))
+				{
+					NameValuePair quality = element.getParameterByName("q"); //$NON-NLS-1$
+					return quality == null || !quality.getValue().matches("0(\\.0*)?"); //$NON-NLS-1$
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks the conditional headers of a request. If-None-Match takes precedence over If-Modified-Since.
+	 */
+	private static boolean isNotModified(HttpRequest request, String etag, long lastModified)
+	{
+		Header ifNoneMatch = request.getFirstHeader(HEADER_IF_NONE_MATCH);
+		if (ifNoneMatch != null)
+		{
+			for (String tag : ifNoneMatch.getValue().split(",")) //$NON-NLS-1$
+			{
+				tag = tag.trim();
+				if (tag.startsWith("W/")) //$NON-NLS-1$
+				{
+					tag = tag.substring(2);
+				}
+				if ("*".equals(tag) || etag.equals(tag)) //$NON-NLS-1$
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+		Header ifModifiedSince = request.getFirstHeader(HEADER_IF_MODIFIED_SINCE);
+		if (ifModifiedSince != null)
+		{
+			long since = parseDate(ifModifiedSince.getValue());
+			// HTTP dates only have a precision of a second
+			return since != -1 && lastModified / 1000 <= since / 1000;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the range requested, as the offset and length of the bytes to send. Only single ranges are supported,
+	 * the whole file is sent for the others.
+	 * 
+	 * @return the range, null to send the whole file, or {@link #UNSATISFIABLE_RANGE}
+	 */
+	private static long[] getRange(HttpRequest request, String etag, long length)
+	{
+		Header rangeHeader = request.getFirstHeader(HEADER_RANGE);
+		if (rangeHeader == null)
+		{
+			return null;
+		}
+		Header ifRange = request.getFirstHeader(HEADER_IF_RANGE);
+		if (ifRange != null && !etag.equals(ifRange.getValue().trim()))
+		{
+			return null;
+		}
+		Matcher matcher = PATTERN_RANGE.matcher(rangeHeader.getValue().trim());
+		if (!matcher.matches() || (matcher.group(1).length() == 0 && matcher.group(2).length() == 0))
+		{
+			return null;
+		}
+		try
+		{
+			long first;
+			long last;
+			if (matcher.group(1).length() == 0)
+			{
+				// the last bytes of the file
+				first = Math.max(0, length - Long.parseLong(matcher.group(2)));
+				last = length - 1;
+			}
+			else
+			{
+				first = Long.parseLong(matcher.group(1));
+				last = length - 1;
+				if (matcher.group(2).length() != 0)
+				{
+					long requestedLast = Long.parseLong(matcher.group(2));
+					if (requestedLast < first)
+					{
+						// an invalid range is ignored rather than unsatisfiable (RFC 7233, 3.1)
+						return null;
+					}
+					last = Math.min(last, requestedLast);
+				}
+			}
+			if (first >= length || last < first)
+			{
+				return UNSATISFIABLE_RANGE;
+			}
+			return new long[] { first, last - first + 1 };
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	private static String formatDate(long time)
+	{
+		SimpleDateFormat format = new SimpleDateFormat(PATTERN_RFC1123, Locale.US);
+		format.setTimeZone(GMT);
+		return format.format(new Date(time));
+	}
+
+	private static long parseDate(String date)
+	{
+		SimpleDateFormat format = new SimpleDateFormat(PATTERN_RFC1123, Locale.US);
+		format.setTimeZone(GMT);
+		try
+		{
+			return format.parse(date).getTime();
+		}
+		catch (ParseException e)
+		{
+			return -1;
+		}
+	}
+
 	private static ContentType getMimeType(String fileName)
 	{
 		return ContentType.create(MimeTypesRegistry.INSTANCE.getMimeType(Path.fromPortableString(fileName)
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -9,20 +9,44 @@
 package com.aptana.webserver.internal.core.builtin;
 
 import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
 import org.apache.http.nio.NHttpConnection;
 import org.apache.http.nio.protocol.EventListener;
+import org.apache.http.protocol.HttpContext;
 
 import com.aptana.core.logging.IdeLog;
 import com.aptana.webserver.core.WebServerCorePlugin;
 
 /**
+ * Logs the failures of the built-in server, and counts its connections and requests. Requests are timed from the
+ * moment their head is received to the moment the head of their response is sent, which is the time spent resolving
+ * and opening the file.
+ * 
  * @author Max Stepanov
  */
-/* package */class LocalWebServerLogger implements EventListener
+/* package */class LocalWebServerLogger implements EventListener, HttpRequestInterceptor, HttpResponseInterceptor
 {
 
+	private static final String ATTRIBUTE_START_TIME = "com.aptana.webserver.start_time"; //$NON-NLS-1$
+
+	private final AtomicInteger openConnections = new AtomicInteger();
+	private final AtomicLong connections = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong notModified = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong totalTime = new AtomicLong();
+	private final AtomicLong maxTime = new AtomicLong();
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.apache.http.nio.protocol.EventListener#fatalIOException(java.io.IOException,
@@ -49,6 +73,8 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 	 */
 	public void connectionOpen(NHttpConnection conn)
 	{
+		connections.incrementAndGet();
+		openConnections.incrementAndGet();
 	}
 
 	/*
@@ -57,6 +83,7 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 	 */
 	public void connectionClosed(NHttpConnection conn)
 	{
+		openConnections.decrementAndGet();
 	}
 
 	/*
@@ -65,6 +92,107 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 	 */
 	public void connectionTimeout(NHttpConnection conn)
 	{
+		timeouts.incrementAndGet();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpRequestInterceptor#process(org.apache.http.HttpRequest,
+	 * org.apache.http.protocol.HttpContext)
+	 */
+	public void process(HttpRequest request, HttpContext context) throws HttpException, IOException
+	{
+		context.setAttribute(ATTRIBUTE_START_TIME, Long.valueOf(System.nanoTime()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpResponseInterceptor#process(org.apache.http.HttpResponse,
+	 * org.apache.http.protocol.HttpContext)
+	 */
+	public void process(HttpResponse response, HttpContext context) throws HttpException, IOException
+	{
+		Object start = context.removeAttribute(ATTRIBUTE_START_TIME);
+		if (!(start instanceof Long))
+		{
+			return;
+		}
+		long time = System.nanoTime() - (Long) start;
+		requests.incrementAndGet();
+		totalTime.addAndGet(time);
+		long max;
+		while (time > (max = maxTime.get()) && !maxTime.compareAndSet(max, time))
+		{
+			// another request updated the maximum meanwhile
+		}
+		int status = response.getStatusLine().getStatusCode();
+		if (status == HttpStatus.SC_NOT_MODIFIED)
+		{
+			notModified.incrementAndGet();
+		}
+		else if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR)
+		{
+			errors.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of requests answered so far
+	 */
+	long getRequestCount()
+	{
+		return requests.get();
+	}
+
+	/**
+	 * @return the number of connections accepted so far
+	 */
+	long getConnectionCount()
+	{
+		return connections.get();
+	}
+
+	/**
+	 * @return the number of connections currently open
+	 */
+	int getOpenConnectionCount()
+	{
+		return openConnections.get();
+	}
+
+	/**
+	 * @return the number of requests answered with a server error
+	 */
+	long getErrorCount()
+	{
+		return errors.get();
+	}
+
+	/**
+	 * @return the average time spent on a request, in microseconds
+	 */
+	long getAverageTime()
+	{
+		long count = requests.get();
+		return (count == 0) ? 0 : totalTime.get() / count / 1000;
+	}
+
+	/**
+	 * @return the longest time spent on a request, in microseconds
+	 */
+	long getMaxTime()
+	{
+		return maxTime.get() / 1000;
+	}
+
+	/**
+	 * Returns a one line summary of the counters
+	 * 
+	 * @return
+	 */
+	String getSummary()
+	{
+		return MessageFormat.format(Messages.LocalWebServerLogger_Summary, new Object[] { requests.get(),
+				notModified.get(), errors.get(), getAverageTime(), getMaxTime(), connections.get(), timeouts.get() });
+	}
 }
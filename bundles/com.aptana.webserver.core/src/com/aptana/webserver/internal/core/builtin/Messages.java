@@ -20,6 +20,8 @@ public class Messages extends NLS
 	public static String LocalWebServerHttpRequestHandler_INTERNAL_SERVER_ERROR;
 	public static String LocalWebServerHttpRequestHandler_UNSUPPORTED_METHOD;
 
+	public static String LocalWebServerLogger_Summary;
+
 	static
 	{
 		// initialize resource bundle
@@ -0,0 +1,329 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.webserver.internal.core.builtin;
+
+import java.io.File;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.webserver.core.WebServerCorePlugin;
+
+/**
+ * Remembers what the request paths of the built-in server resolved to, so that repeated requests for the same file
+ * don't go through the URI mapper and the file system each time. Entries of workspace files are dropped as soon as a
+ * resource delta reports them changed. Since files can change without the workspace being refreshed, they are also
+ * checked against the file system once they're a couple of seconds old, and kept for another while if they're
+ * unchanged. Other files are only trusted for a couple of seconds, as nothing tells us when they change.
+ */
+/* package */class ResolvedFileCache implements IResourceChangeListener
+{
+
+	private static final int MAX_ENTRIES = 1000;
+	private static final long TTL = 2000;
+
+	/**
+	 * A resolved request path
+	 */
+	static class Entry
+	{
+		final IFileStore fileStore;
+		final IFileInfo fileInfo;
+		private final String requestedURI;
+		private final String resolvedURI;
+		private final boolean inWorkspace;
+		private long time;
+		private File localFile;
+		private boolean temporary;
+
+		private Entry(IFileStore requested, IFileStore fileStore, IFileInfo fileInfo, boolean inWorkspace)
+		{
+			this.fileStore = fileStore;
+			this.fileInfo = fileInfo;
+			this.requestedURI = requested.toURI().toString();
+			this.resolvedURI = fileStore.toURI().toString();
+			this.inWorkspace = inWorkspace;
+			this.time = System.currentTimeMillis();
+		}
+
+		/**
+		 * Returns the file to send. Files that aren't local are copied once, and the copy is kept as long as the
+		 * entry.
+		 * 
+		 * @return
+		 * @throws CoreException
+		 */
+		synchronized File getLocalFile() throws CoreException
+		{
+			if (localFile == null)
+			{
+				localFile = fileStore.toLocalFile(EFS.NONE, new NullProgressMonitor());
+				if (localFile == null)
+				{
+					localFile = fileStore.toLocalFile(EFS.CACHE, new NullProgressMonitor());
+					temporary = true;
+				}
+			}
+			return localFile;
+		}
+
+		/**
+		 * Checks whether the entry can still be used. Must be called with the cache locked.
+		 * 
+		 * @param now
+		 * @return
+		 */
+		private boolean isCurrent(long now)
+		{
+			if (now - time <= TTL)
+			{
+				return true;
+			}
+			if (!inWorkspace)
+			{
+				return false;
+			}
+			IFileInfo current = fileStore.fetchInfo();
+			// @formatter:off
+			boolean unchanged =
+					current.exists() == fileInfo.exists()
+				&&	current.isDirectory() == fileInfo.isDirectory()
+				&&	current.getLength() == fileInfo.getLength()
+				&&	current.getLastModified() == fileInfo.getLastModified();
+			// @formatter:on
+			if (unchanged)
+			{
+				time = now;
+			}
+			return unchanged;
+		}
+
+		private synchronized void dispose()
+		{
+			if (temporary && localFile != null && !localFile.delete())
+			{
+				localFile.deleteOnExit();
+			}
+			localFile = null;
+		}
+	}
+
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+		{
+			if (size() > MAX_ENTRIES)
+			{
+				eldest.getValue().dispose();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Starts listening to workspace changes
+	 */
+	void start()
+	{
+		try
+		{
+			ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+		}
+		catch (IllegalStateException e)
+		{
+			// no workspace, every file is treated as an external one
+		}
+	}
+
+	/**
+	 * Stops listening to workspace changes, and forgets every entry
+	 */
+	void dispose()
+	{
+		try
+		{
+			ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+		}
+		catch (IllegalStateException e)
+		{
+			// the workspace is already gone
+		}
+		clear();
+	}
+
+	/**
+	 * Returns what a request path resolved to, if it's still current
+	 * 
+	 * @param target
+	 * @return the entry, or null
+	 */
+	synchronized Entry get(String target)
+	{
+		Entry entry = entries.get(target);
+		if (entry != null && !entry.isCurrent(System.currentTimeMillis()))
+		{
+			entries.remove(target);
+			entry.dispose();
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Remembers what a request path resolved to
+	 * 
+	 * @param target
+	 *            The request path
+	 * @param requested
+	 *            The file store the path maps to
+	 * @param fileStore
+	 *            The file store to serve, which is the index file of the requested one for directories
+	 * @param fileInfo
+	 *            The info of the file store to serve
+	 * @return the new entry
+	 */
+	Entry put(String target, IFileStore requested, IFileStore fileStore, IFileInfo fileInfo)
+	{
+		Entry entry = new Entry(requested, fileStore, fileInfo, isInWorkspace(fileStore));
+		Entry previous;
+		synchronized (this)
+		{
+			previous = entries.put(target, entry);
+		}
+		if (previous != null)
+		{
+			previous.dispose();
+		}
+		return entry;
+	}
+
+	/**
+	 * Forgets every entry, e.g. once the document root changed
+	 */
+	synchronized void clear()
+	{
+		for (Entry entry : entries.values())
+		{
+			entry.dispose();
+		}
+		entries.clear();
+	}
+
+	private static boolean isInWorkspace(IFileStore fileStore)
+	{
+		try
+		{
+			URI uri = fileStore.toURI();
+			IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+			return root.findFilesForLocationURI(uri).length > 0 || root.findContainersForLocationURI(uri).length > 0;
+		}
+		catch (IllegalStateException e)
+		{
+			return false;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent
+	 * )
+	 */
+	public void resourceChanged(IResourceChangeEvent event)
+	{
+		IResourceDelta delta = event.getDelta();
+		if (delta == null)
+		{
+			return;
+		}
+		final Set<String> changed = new HashSet<String>();
+		try
+		{
+			delta.accept(new IResourceDeltaVisitor()
+			{
+				public boolean visit(IResourceDelta delta) throws CoreException
+				{
+					IResource resource = delta.getResource();
+					switch (delta.getKind())
+					{
+						case IResourceDelta.ADDED:
+						case IResourceDelta.REMOVED:
+							addLocation(changed, resource);
+							// the index of the parent directory may have changed
+							addLocation(changed, resource.getParent());
+							break;
+						case IResourceDelta.CHANGED:
+							if ((delta.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED)) != 0)
+							{
+								addLocation(changed, resource);
+							}
+							break;
+						default:
+							break;
+					}
+					return true;
+				}
+			});
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(WebServerCorePlugin.getDefault(), e);
+			clear();
+			return;
+		}
+		if (changed.isEmpty())
+		{
+			return;
+		}
+		synchronized (this)
+		{
+			for (Iterator<Entry> i = entries.values().iterator(); i.hasNext();)
+			{
+				Entry entry = i.next();
+				if (changed.contains(entry.resolvedURI) || changed.contains(entry.requestedURI))
+				{
+					i.remove();
+					entry.dispose();
+				}
+			}
+		}
+	}
+
+	private static void addLocation(Set<String> locations, IResource resource)
+	{
+		if (resource != null)
+		{
+			URI uri = resource.getLocationURI();
+			if (uri != null)
+			{
+				locations.add(uri.toString());
+			}
+		}
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -34,6 +34,10 @@ public class WebServerPreferenceInitializer extends AbstractPreferenceInitialize
 		node.put(IWebServerPreferenceConstants.PREF_HTTP_SERVER_PORTS,
 				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_PORTS_RANGE[0]
 						+ "-" + IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_PORTS_RANGE[1]); //$NON-NLS-1$
+		node.putInt(IWebServerPreferenceConstants.PREF_HTTP_SERVER_WORKER_COUNT,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_WORKER_COUNT);
+		node.putInt(IWebServerPreferenceConstants.PREF_HTTP_SERVER_SOCKET_BUFFER_SIZE,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_SOCKET_BUFFER_SIZE);
 	}
 
 }
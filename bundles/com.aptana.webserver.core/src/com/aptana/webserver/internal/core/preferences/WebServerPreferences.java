@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -31,6 +31,9 @@ public class WebServerPreferences
 {
 
 	private static final String PORTS_PATTERN = "^(\\d+)(-(\\d+))?$"; //$NON-NLS-1$
+	private static final int MAX_WORKER_COUNT = 64;
+	private static final int MIN_SOCKET_BUFFER_SIZE = 1024;
+	private static final int MAX_SOCKET_BUFFER_SIZE = 1024 * 1024;
 
 	private WebServerPreferences()
 	{
@@ -103,4 +106,32 @@ public class WebServerPreferences
 		return new int[] { portsStart, portsEnd };
 	}
 
+	/**
+	 * Returns preferences-specified number of I/O threads of the local webserver
+	 * 
+	 * @return
+	 */
+	public static int getWorkerCount()
+	{
+		int count = Platform.getPreferencesService().getInt(WebServerCorePlugin.PLUGIN_ID,
+				IWebServerPreferenceConstants.PREF_HTTP_SERVER_WORKER_COUNT,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_WORKER_COUNT,
+				new IScopeContext[] { InstanceScope.INSTANCE, DefaultScope.INSTANCE });
+		return Math.max(1, Math.min(MAX_WORKER_COUNT, count));
+	}
+
+	/**
+	 * Returns preferences-specified socket buffer size of the local webserver
+	 * 
+	 * @return
+	 */
+	public static int getSocketBufferSize()
+	{
+		int size = Platform.getPreferencesService().getInt(WebServerCorePlugin.PLUGIN_ID,
+				IWebServerPreferenceConstants.PREF_HTTP_SERVER_SOCKET_BUFFER_SIZE,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_SOCKET_BUFFER_SIZE,
+				new IScopeContext[] { InstanceScope.INSTANCE, DefaultScope.INSTANCE });
+		return Math.max(MIN_SOCKET_BUFFER_SIZE, Math.min(MAX_SOCKET_BUFFER_SIZE, size));
+	}
+
 }
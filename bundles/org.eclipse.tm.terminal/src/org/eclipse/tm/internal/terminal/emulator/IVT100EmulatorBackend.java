@@ -119,6 +119,16 @@ public interface IVT100EmulatorBackend {
 	 */
 	void appendString(String buffer);
 
+	/**
+	 * Like {@link #appendString(String)}, for a run of characters taken
+	 * straight from the input buffer.
+	 *
+	 * @param chars
+	 * @param start index of the first character in chars
+	 * @param len number of characters to append
+	 */
+	void appendChars(char[] chars, int start, int len);
+
 	/**
 	 * Process a newline (Control-J) character. A newline (NL) character just
 	 * moves the cursor to the same column on the next line, creating new lines
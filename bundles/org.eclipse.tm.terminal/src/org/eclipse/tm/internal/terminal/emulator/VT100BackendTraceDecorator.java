@@ -27,6 +27,11 @@ public class VT100BackendTraceDecorator implements IVT100EmulatorBackend {
 		fBackend.appendString(buffer);
 	}
 
+	public void appendChars(char[] chars, int start, int len) {
+		fWriter.println("appendChars(\""+new String(chars,start,len)+"\")"); //$NON-NLS-1$ //$NON-NLS-2$
+		fBackend.appendChars(chars, start, len);
+	}
+
 	public void clearAll() {
 		fWriter.println("clearAll()"); //$NON-NLS-1$
 		fBackend.clearAll();
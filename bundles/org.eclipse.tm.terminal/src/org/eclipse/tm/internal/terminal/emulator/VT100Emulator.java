@@ -17,6 +17,7 @@
  * Martin Oberhuber (Wind River) - [168197] Fix Terminal for CDC-1.1/Foundation-1.1
  * Michael Scharf (Wind River) - [262996] get rid of TerminalState.OPENED
  * Martin Oberhuber (Wind River) - [334969] Fix multi-command SGR sequence
+ * Appcelerator - process runs of text straight from a read buffer
  *******************************************************************************/
 package org.eclipse.tm.internal.terminal.emulator;
 
@@ -308,7 +309,7 @@ public class VT100Emulator implements ControlListener {
 					break;
 
 				default:
-					processNonControlCharacters(character);
+					processNonControlCharacters();
 					break;
 				}
 				break;
@@ -1040,31 +1041,46 @@ public class VT100Emulator implements ControlListener {
 	 * This method processes a contiguous sequence of non-control characters.
 	 * This is a performance optimization, so that we don't have to insert or
 	 * append each non-control character individually to the StyledText widget.
-	 * A non-control character is any character that passes the condition in the
-	 * below while loop.
-	 * @throws IOException
+	 * The sequence starts with the character just returned by
+	 * {@link #getNextChar()} and ends before the next character for which
+	 * {@link #isControlCharacter(char)} is true, or at the end of the read
+	 * buffer. It is handed to the terminal without being copied.
 	 */
-	private void processNonControlCharacters(char character) throws IOException {
-		StringBuffer buffer=new StringBuffer();
-		buffer.append(character);
-		// Identify a contiguous sequence of non-control characters, starting at
-		// firstNonControlCharacterIndex in newText.
-		while(hasNextChar()) {
-			character=getNextChar();
-			if(character == '\u0000' || character == '\b' || character == '\t'
-				|| character == '\u0007' || character == '\n'
-				|| character == '\r' || character == '\u001b'
-				|| character == '\u000e' || character == '\u000f') {
-				pushBackChar(character);
-				break;
-			}
-			buffer.append(character);
-		}
+	private void processNonControlCharacters() {
+		int start=fBufferPos-1;
+		int end=fBufferPos;
+		while(end<fBufferLength && !isControlCharacter(fBuffer[end]))
+			end++;
+		fBufferPos=end;
 
 		// Now insert the sequence of non-control characters in the StyledText widget
 		// at the location of the cursor.
 
-		displayNewText(buffer.toString());
+		displayNewText(fBuffer, start, end-start);
+	}
+
+	/**
+	 * @param character
+	 * @return true if the character is handled by {@link #processNewText()}
+	 * in the initial state, rather than displayed
+	 */
+	private static boolean isControlCharacter(char character) {
+		if(character > '\u001b')
+			return false;
+		switch (character) {
+		case '\u0000':
+		case '\u0007':
+		case '\b':
+		case '\t':
+		case '\n':
+		case '\r':
+		case '\u001b':
+		case '\u000e':
+		case '\u000f':
+			return true;
+		default:
+			return false;
+		}
 	}
 
 	/**
@@ -1078,11 +1094,11 @@ public class VT100Emulator implements ControlListener {
 	 * returns, and tabs).
 	 * <p>
 	 */
-	private void displayNewText(String buffer) {
+	private void displayNewText(char[] buffer, int start, int len) {
 		if (insertMode) {
-			text.insertCharacters(buffer.length());
+			text.insertCharacters(len);
 		}
-		text.appendString(buffer);
+		text.appendChars(buffer, start, len);
 	}
 
 
@@ -1260,43 +1276,42 @@ public class VT100Emulator implements ControlListener {
 //	}
 
 	/**
-	 * Buffer for {@link #pushBackChar(char)}.
+	 * The characters read from {@link #fReader} in one go. The characters from
+	 * {@link #fBufferPos} to {@link #fBufferLength} have not been processed yet.
 	 */
-	private int fNextChar=-1;
+	private final char[] fBuffer=new char[8192];
+	private int fBufferPos;
+	private int fBufferLength;
 	private char getNextChar() throws IOException {
-		int c=-1;
-		if(fNextChar!=-1) {
-			c= fNextChar;
-			fNextChar=-1;
-		} else {
-			c = fReader.read();
-		}
-		// workaround for unicode characters (for some reasons they appear as 137 63 63)
-		if (c == 137) {
-			c = ' ';
-		}
 		// TODO: better end of file handling
-		if(c==-1)
-			c=0;
-		return (char)c;
+		if(!hasNextChar())
+			return 0;
+		return fBuffer[fBufferPos++];
 	}
 
+	/**
+	 * Reads whatever is available into the buffer once all of it has been
+	 * processed.
+	 */
 	private boolean hasNextChar() throws IOException  {
-		if(fNextChar>=0)
+		if(fBufferPos<fBufferLength)
 			return true;
-		return fReader.ready();
+		fBufferPos=0;
+		fBufferLength=0;
+		if(!fReader.ready())
+			return false;
+		int n=fReader.read(fBuffer, 0, fBuffer.length);
+		if(n<=0)
+			return false;
+		// workaround for unicode characters (for some reasons they appear as 137 63 63)
+		for (int i = 0; i < n; i++) {
+			if(fBuffer[i]==137)
+				fBuffer[i]=' ';
+		}
+		fBufferLength=n;
+		return true;
 	}
 
-	/**
-	 * Put back one character to the stream. This method can push
-	 * back exactly one character. The character is the next character
-	 * returned by {@link #getNextChar}
-	 * @param c the character to be pushed back.
-	 */
-	void pushBackChar(char c) {
-		//assert fNextChar!=-1: "Already a character waiting:"+fNextChar; //$NON-NLS-1$
-		fNextChar=c;
-	}
 	private int getCursorColumn() {
 		return text.getCursorColumn();
 	}
@@ -294,15 +294,21 @@ public class VT100EmulatorBackend implements IVT100EmulatorBackend {
 	 * @see org.eclipse.tm.internal.terminal.emulator.IVT100EmulatorBackend#appendString(java.lang.String)
 	 */
 	public void appendString(String buffer) {
+		appendChars(buffer.toCharArray(), 0, buffer.length());
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.internal.terminal.emulator.IVT100EmulatorBackend#appendChars(char[], int, int)
+	 */
+	public void appendChars(char[] chars, int start, int len) {
 		synchronized (fTerminal) {
-			char[] chars=buffer.toCharArray();
-			int i=0;
-			while (i < chars.length) {
+			int i=start;
+			int end=start+len;
+			while (i < end) {
 				if (wrapNewLine) {
 					doNewline();
 				}
 				int line=toAbsoluteLine(fCursorLine);
-				int n=Math.min(fColumns-fCursorColumn,chars.length-i);
+				int n=Math.min(fColumns-fCursorColumn,end-i);
 				fTerminal.setChars(line, fCursorColumn, chars, i, n, fStyle);
 				int col=fCursorColumn+n;
 				i+=n;
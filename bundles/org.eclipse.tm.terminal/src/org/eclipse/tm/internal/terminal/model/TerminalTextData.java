@@ -78,8 +78,9 @@ public class TerminalTextData implements ITerminalTextData {
 	}
 
 	public TerminalTextData() {
-		this(new TerminalTextDataFastScroll());
+		this(new TerminalTextDataCompactStore());
 
+//		this(new TerminalTextDataFastScroll());
 //		this(new TerminalTextDataStore());
 	}
 	public TerminalTextData(ITerminalTextData data) {
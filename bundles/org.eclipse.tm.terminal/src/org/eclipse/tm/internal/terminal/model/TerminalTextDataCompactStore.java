@@ -0,0 +1,616 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.ITerminalTextDataSnapshot;
+import org.eclipse.tm.terminal.model.LineSegment;
+import org.eclipse.tm.terminal.model.Style;
+
+/**
+ * A compact alternative to {@link TerminalTextDataStore} for large scrollback
+ * buffers. Instead of one {@link Style} reference per cell, the styles of a
+ * line are kept as runs of interned style ids in a packed <code>int[]</code>,
+ * next to a <code>char[]</code> with the text of the line.
+ * <p>
+ * The lines are kept in a circular buffer: scrolling the entire
+ * {@link #getHeight()} (which is what {@link #addLine()} does once the
+ * {@link #getMaxHeight()} is reached) only moves the offset of the first line
+ * and resets the lines that appear. Their arrays are reused for the new content.
+ * <p>
+ * Like {@link TerminalTextDataStore}, this class is not synchronized.
+ *
+ */
+public class TerminalTextDataCompactStore implements ITerminalTextData {
+	/**
+	 * Index of the number of columns of the line in its runs array
+	 */
+	private static final int LENGTH=0;
+	/**
+	 * Index of the number of style runs in the runs array
+	 */
+	private static final int COUNT=1;
+	/**
+	 * Index of the first run in the runs array. Each run is a pair of its start
+	 * column and its style id. The runs start at column 0, are sorted by column
+	 * and adjacent runs never have the same style id.
+	 */
+	private static final int HEADER=2;
+
+	/**
+	 * Maps styles to their ids. Style ids are shared by all instances, so lines
+	 * can be copied between them without decoding the styles.
+	 */
+	private static final Map fgStyleIds=new HashMap();
+	/**
+	 * The styles by id. Id 0 is the <code>null</code> style. Replaced, never
+	 * modified, when a style is added.
+	 */
+	private static volatile Style[] fgStyles=new Style[] {null};
+
+	/**
+	 * The text of the lines by row, or null for empty lines
+	 */
+	private char[][] fChars;
+	/**
+	 * The length and the style runs of the lines by row, or null for empty lines
+	 */
+	private int[][] fRuns;
+	/**
+	 * The row of line 0
+	 */
+	private int fFirst;
+	private int fWidth;
+	private int fHeight;
+	private int fMaxHeight;
+	private int fCursorColumn;
+	private int fCursorLine;
+	/**
+	 * The style looked up last and its id, since most writes use the same style
+	 * as the previous one
+	 */
+	private Style fLastStyle;
+	private int fLastStyleId;
+
+	public TerminalTextDataCompactStore() {
+		fChars=new char[0][];
+		fRuns=new int[0][];
+		fWidth=0;
+	}
+	/**
+	 * This is used in asserts to throw an {@link RuntimeException}.
+	 * This is useful for tests.
+	 * @return never -- throws an exception
+	 */
+	private boolean throwRuntimeException() {
+		throw new RuntimeException();
+	}
+
+	/**
+	 * @param style
+	 * @return the id of the style, 0 for <code>null</code>
+	 */
+	private int getStyleId(Style style) {
+		if(style==null)
+			return 0;
+		if(style==fLastStyle)
+			return fLastStyleId;
+		int id;
+		synchronized (fgStyleIds) {
+			Integer cached=(Integer) fgStyleIds.get(style);
+			if(cached==null) {
+				Style[] styles=new Style[fgStyles.length+1];
+				System.arraycopy(fgStyles, 0, styles, 0, fgStyles.length);
+				cached=new Integer(fgStyles.length);
+				styles[cached.intValue()]=style;
+				fgStyles=styles;
+				fgStyleIds.put(style, cached);
+			}
+			id=cached.intValue();
+		}
+		fLastStyle=style;
+		fLastStyleId=id;
+		return id;
+	}
+	/**
+	 * @param line
+	 * @return the row of the line in {@link #fChars} and {@link #fRuns}
+	 */
+	private int getRow(int line) {
+		int capacity=fChars.length;
+		if(line<0 || line>=capacity)
+			throw new ArrayIndexOutOfBoundsException(line);
+		int row=fFirst+line;
+		if(row>=capacity)
+			row-=capacity;
+		return row;
+	}
+	/**
+	 * @param runs
+	 * @param column a column within the length of the line
+	 * @return the index of the run that contains the column
+	 */
+	private static int findRun(int[] runs, int column) {
+		int low=0;
+		int high=runs[COUNT]-1;
+		while(low<high) {
+			int mid=(low+high+1)>>>1;
+			if(runs[HEADER+2*mid]<=column)
+				low=mid;
+			else
+				high=mid-1;
+		}
+		return low;
+	}
+	/**
+	 * Appends a run, unless the last run already has the style
+	 * @param runs a runs array that has room for the run
+	 * @param start
+	 * @param id
+	 */
+	private static void putRun(int[] runs, int start, int id) {
+		int n=runs[COUNT];
+		if(n>0 && runs[HEADER+2*n-1]==id)
+			return;
+		runs[HEADER+2*n]=start;
+		runs[HEADER+2*n+1]=id;
+		runs[COUNT]=n+1;
+	}
+	/**
+	 * Extends a line to the given length, giving the new columns the style
+	 * @param row
+	 * @param length
+	 * @param id
+	 */
+	private void extendLine(int row, int length, int id) {
+		if(length>fWidth)
+			throw new RuntimeException();
+		int[] runs=fRuns[row];
+		if(runs==null) {
+			runs=new int[HEADER+4];
+			fRuns[row]=runs;
+		}
+		int oldLength=runs[LENGTH];
+		if(length<=oldLength)
+			return;
+		char[] chars=fChars[row];
+		if(chars==null || chars.length<length) {
+			// grow geometrically, as lines are mostly written from left to right
+			char[] newChars=new char[chars==null ? length : Math.max(length, Math.min(2*chars.length, fWidth))];
+			if(chars!=null)
+				System.arraycopy(chars, 0, newChars, 0, oldLength);
+			fChars[row]=newChars;
+		} else {
+			// the array may hold text of a line that has been reset
+			for (int i = oldLength; i < length; i++) {
+				chars[i]=0;
+			}
+		}
+		int n=runs[COUNT];
+		if(n==0 || runs[HEADER+2*n-1]!=id) {
+			if(HEADER+2*n+2>runs.length) {
+				int[] newRuns=new int[2*runs.length];
+				System.arraycopy(runs, 0, newRuns, 0, HEADER+2*n);
+				runs=newRuns;
+				fRuns[row]=runs;
+			}
+			putRun(runs, oldLength, id);
+		}
+		runs[LENGTH]=length;
+	}
+	/**
+	 * Sets the style of columns within the length of the line
+	 * @param row
+	 * @param from first column
+	 * @param to column after the last one
+	 * @param id
+	 */
+	private void setStyle(int row, int from, int to, int id) {
+		int[] runs=fRuns[row];
+		int n=runs[COUNT];
+		int length=runs[LENGTH];
+		int k=findRun(runs, from);
+		int end=(k+1<n) ? runs[HEADER+2*k+2] : length;
+		if(runs[HEADER+2*k+1]==id && to<=end)
+			return;
+		int idAtTo=(to<length) ? runs[HEADER+2*findRun(runs, to)+1] : -1;
+		int[] result=new int[HEADER+2*n+4];
+		result[LENGTH]=length;
+		for (int i = 0; i < n && runs[HEADER+2*i]<from; i++) {
+			putRun(result, runs[HEADER+2*i], runs[HEADER+2*i+1]);
+		}
+		putRun(result, from, id);
+		if(idAtTo>=0)
+			putRun(result, to, idAtTo);
+		for (int i = 0; i < n; i++) {
+			if(runs[HEADER+2*i]>to)
+				putRun(result, runs[HEADER+2*i], runs[HEADER+2*i+1]);
+		}
+		fRuns[row]=result;
+	}
+	/**
+	 * Makes room for len chars of the style at column
+	 * @param row
+	 * @param column
+	 * @param len
+	 * @param style
+	 */
+	private void prepareWrite(int row, int column, int len, Style style) {
+		if(column<0)
+			throw new ArrayIndexOutOfBoundsException(column);
+		int id=getStyleId(style);
+		int oldLength=(fRuns[row]==null) ? 0 : fRuns[row][LENGTH];
+		if(column>oldLength)
+			extendLine(row, column, 0);
+		extendLine(row, column+len, id);
+		if(column<oldLength && len>0)
+			setStyle(row, column, Math.min(column+len, oldLength), id);
+	}
+	/**
+	 * Empties a line, dropping its arrays
+	 * @param row
+	 */
+	private void cleanRow(int row) {
+		fChars[row]=null;
+		fRuns[row]=null;
+	}
+	/**
+	 * Empties a line, keeping its arrays for the next content
+	 * @param row
+	 */
+	private void resetRow(int row) {
+		int[] runs=fRuns[row];
+		if(runs!=null) {
+			runs[LENGTH]=0;
+			runs[COUNT]=0;
+		}
+	}
+	private void setRow(int row, char[] chars, Style[] styles) {
+		if(chars==null) {
+			cleanRow(row);
+			return;
+		}
+		int length=chars.length;
+		int[] runs=new int[HEADER+4];
+		runs[LENGTH]=length;
+		for (int i = 0; i < length; i++) {
+			int id=getStyleId((styles!=null && i<styles.length) ? styles[i] : null);
+			int n=runs[COUNT];
+			if(n>0 && runs[HEADER+2*n-1]==id)
+				continue;
+			if(HEADER+2*n+2>runs.length) {
+				int[] newRuns=new int[2*runs.length];
+				System.arraycopy(runs, 0, newRuns, 0, HEADER+2*n);
+				runs=newRuns;
+			}
+			putRun(runs, i, id);
+		}
+		fChars[row]=(char[]) chars.clone();
+		fRuns[row]=runs;
+	}
+	/**
+	 * Moves the lines into new arrays of the given capacity, starting at row 0
+	 * @param capacity
+	 */
+	private void setCapacity(int capacity) {
+		char[][] chars=new char[capacity][];
+		int[][] runs=new int[capacity][];
+		int n=Math.min(capacity, fChars.length);
+		for (int i = 0; i < n; i++) {
+			int row=getRow(i);
+			chars[i]=fChars[row];
+			runs[i]=fRuns[row];
+		}
+		fChars=chars;
+		fRuns=runs;
+		fFirst=0;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextDataReadOnly#getWidth()
+	 */
+	public int getWidth() {
+		return fWidth;
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextDataReadOnly#getHeight()
+	 */
+	public int getHeight() {
+		return fHeight;
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextData#setDimensions(int, int)
+	 */
+	public void setDimensions(int height, int width) {
+		assert height>=0 || throwRuntimeException();
+		assert width>=0  || throwRuntimeException();
+		// just extend the region
+		if(height>fChars.length) {
+			int capacity=Math.max(height, 3*fChars.length/2);
+			if(fMaxHeight>=height && capacity>fMaxHeight)
+				capacity=fMaxHeight;
+			setCapacity(capacity);
+		}
+		// clean the new lines
+		for (int i = fHeight; i < height; i++) {
+			cleanRow(getRow(i));
+		}
+		// set dimensions after successful resize!
+		fWidth=width;
+		fHeight=height;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextDataReadOnly#getLineSegments(int, int, int)
+	 */
+	public LineSegment[] getLineSegments(int line, int column, int len) {
+		int row=getRow(line);
+		char[] chars=fChars[row];
+		int[] runs=fRuns[row];
+		int length=(runs==null) ? 0 : runs[LENGTH];
+		int n=column+len;
+		Style[] styles=fgStyles;
+		List segments=new ArrayList();
+		int col=column;
+		while(col<n) {
+			int end=n;
+			int id=0;
+			if(col<length) {
+				int k=findRun(runs, col);
+				id=runs[HEADER+2*k+1];
+				if(k+1<runs[COUNT])
+					end=Math.min(n, runs[HEADER+2*k+2]);
+				else if(id!=0)
+					// the columns after the end of the line have no style
+					end=Math.min(n, length);
+			}
+			char[] text=new char[end-col];
+			if(col<length)
+				System.arraycopy(chars, col, text, 0, Math.min(end, length)-col);
+			segments.add(new LineSegment(col,new String(text),styles[id]));
+			col=end;
+		}
+		return (LineSegment[]) segments.toArray(new LineSegment[segments.size()]);
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextDataReadOnly#getChar(int, int)
+	 */
+	public char getChar(int line, int column) {
+		assert column<fWidth || throwRuntimeException();
+		int row=getRow(line);
+		if(column<0)
+			throw new ArrayIndexOutOfBoundsException(column);
+		int[] runs=fRuns[row];
+		if(runs==null || column>=runs[LENGTH])
+			return 0;
+		return fChars[row][column];
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextDataReadOnly#getStyle(int, int)
+	 */
+	public Style getStyle(int line, int column) {
+		assert column<fWidth || throwRuntimeException();
+		int row=getRow(line);
+		if(column<0)
+			throw new ArrayIndexOutOfBoundsException(column);
+		int[] runs=fRuns[row];
+		if(runs==null || column>=runs[LENGTH])
+			return null;
+		return fgStyles[runs[HEADER+2*findRun(runs, column)+1]];
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextData#setChar(int, int, char, org.eclipse.tm.terminal.model.Style)
+	 */
+	public void setChar(int line, int column, char c, Style style) {
+		int row=getRow(line);
+		prepareWrite(row, column, 1, style);
+		fChars[row][column]=c;
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextData#setChars(int, int, char[], org.eclipse.tm.terminal.model.Style)
+	 */
+	public void setChars(int line, int column, char[] chars, Style style) {
+		setChars(line,column,chars,0,chars.length,style);
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextData#setChars(int, int, char[], int, int, org.eclipse.tm.terminal.model.Style)
+	 */
+	public void setChars(int line, int column, char[] chars, int start, int len, Style style) {
+		int row=getRow(line);
+		prepareWrite(row, column, len, style);
+		if(len>0)
+			System.arraycopy(chars, start, fChars[row], column, len);
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.tm.terminal.model.ITerminalTextData#scroll(int, int, int)
+	 */
+	public void scroll(int startLine, int size, int shift) {
+		assert startLine+size <= getHeight() || throwRuntimeException();
+		if(startLine==0 && size==fHeight && shift!=0 && Math.abs(shift)<fHeight) {
+			// the whole height scrolls: just move the first line
+			int capacity=fChars.length;
+			if(shift<0) {
+				fFirst=(fFirst-shift)%capacity;
+				for (int i = fHeight+shift; i < fHeight; i++) {
+					resetRow(getRow(i));
+				}
+			} else {
+				fFirst=(fFirst+capacity-shift)%capacity;
+				for (int i = 0; i < shift; i++) {
+					resetRow(getRow(i));
+				}
+			}
+		} else if(shift<0) {
+			// move the region up
+			// shift is negative!!
+			for (int i = startLine; i < startLine+size+shift; i++) {
+				moveLine(i-shift, i);
+			}
+			// then clean the opened lines
+			cleanLines(Math.max(startLine, startLine+size+shift),Math.min(-shift, getHeight()-startLine));
+		} else {
+			for (int i = startLine+size-1; i >=startLine && i-shift>=0; i--) {
+				moveLine(i-shift, i);
+			}
+			cleanLines(startLine, Math.min(shift, getHeight()-startLine));
+		}
+	}
+	/**
+	 * Moves the arrays of a line to another line. Both lines refer to the same
+	 * arrays until the source line is cleaned or replaced.
+	 * @param sourceLine
+	 * @param destLine
+	 */
+	private void moveLine(int sourceLine, int destLine) {
+		int source=getRow(sourceLine);
+		int dest=getRow(destLine);
+		fChars[dest]=fChars[source];
+		fRuns[dest]=fRuns[source];
+	}
+	/**
+	 * Replaces the lines with new empty data
+	 * @param line
+	 * @param len
+	 */
+	private void cleanLines(int line, int len) {
+		for (int i = line; i < line+len; i++) {
+			cleanRow(getRow(i));
+		}
+	}
+
+	/*
+	 * @return a text representation of the object.
+	 * Lines are separated by '\n'. No style information is returned.
+	 */
+	public String toString() {
+		StringBuffer buff=new StringBuffer();
+		for (int line = 0; line < getHeight(); line++) {
+			if(line>0)
+				buff.append("\n"); //$NON-NLS-1$
+			for (int column = 0; column < fWidth; column++) {
+				buff.append(getChar(line, column));
+			}
+		}
+		return buff.toString();
+	}
+
+	public ITerminalTextDataSnapshot makeSnapshot() {
+		throw new UnsupportedOperationException();
+	}
+
+	public void addLine() {
+		if(fMaxHeight>0 && getHeight()<fMaxHeight) {
+			setDimensions(getHeight()+1, getWidth());
+		} else {
+			scroll(0,getHeight(),-1);
+		}
+	}
+
+	public void copy(ITerminalTextData source) {
+		fWidth=source.getWidth();
+		int n=source.getHeight();
+		if(fChars.length!=n) {
+			fChars=new char[n][];
+			fRuns=new int[n][];
+			fFirst=0;
+		}
+		for (int i = 0; i < n; i++) {
+			copyLine(source, i, i);
+		}
+		fHeight=n;
+		fCursorLine=source.getCursorLine();
+		fCursorColumn=source.getCursorColumn();
+	}
+	public void copyRange(ITerminalTextData source, int sourceStartLine, int destStartLine,int length) {
+		for (int i = 0; i < length; i++) {
+			copyLine(source, i+sourceStartLine, i+destStartLine);
+		}
+	}
+
+	public void copyLine(ITerminalTextData source, int sourceLine, int destLine) {
+		int row=getRow(destLine);
+		if(source instanceof TerminalTextDataCompactStore) {
+			// the style ids are shared, so the runs can be copied as they are
+			TerminalTextDataCompactStore store=(TerminalTextDataCompactStore) source;
+			int sourceRow=store.getRow(sourceLine);
+			int[] runs=store.fRuns[sourceRow];
+			if(runs==null || runs[LENGTH]==0) {
+				cleanRow(row);
+			} else {
+				int[] newRuns=new int[HEADER+2*runs[COUNT]];
+				System.arraycopy(runs, 0, newRuns, 0, newRuns.length);
+				char[] newChars=new char[runs[LENGTH]];
+				System.arraycopy(store.fChars[sourceRow], 0, newChars, 0, newChars.length);
+				fChars[row]=newChars;
+				fRuns[row]=newRuns;
+			}
+		} else {
+			setRow(row, source.getChars(sourceLine), source.getStyles(sourceLine));
+		}
+	}
+
+	public char[] getChars(int line) {
+		int row=getRow(line);
+		int[] runs=fRuns[row];
+		if(runs==null || runs[LENGTH]==0)
+			return null;
+		char[] chars=new char[runs[LENGTH]];
+		System.arraycopy(fChars[row], 0, chars, 0, chars.length);
+		return chars;
+	}
+
+	public Style[] getStyles(int line) {
+		int row=getRow(line);
+		int[] runs=fRuns[row];
+		if(runs==null || runs[LENGTH]==0)
+			return null;
+		Style[] styles=new Style[runs[LENGTH]];
+		Style[] stylesById=fgStyles;
+		int n=runs[COUNT];
+		for (int k = 0; k < n; k++) {
+			int end=(k+1<n) ? runs[HEADER+2*k+2] : styles.length;
+			Style style=stylesById[runs[HEADER+2*k+1]];
+			for (int i = runs[HEADER+2*k]; i < end; i++) {
+				styles[i]=style;
+			}
+		}
+		return styles;
+	}
+
+	public void setMaxHeight(int height) {
+		fMaxHeight=height;
+	}
+
+	public int getMaxHeight() {
+		return fMaxHeight;
+	}
+
+	public void cleanLine(int line) {
+		cleanRow(getRow(line));
+	}
+	public int getCursorColumn() {
+		return fCursorColumn;
+	}
+	public int getCursorLine() {
+		return fCursorLine;
+	}
+	public void setCursorColumn(int column) {
+		fCursorColumn=column;
+	}
+	public void setCursorLine(int line) {
+		fCursorLine=line;
+	}
+}
@@ -8,6 +8,7 @@
  * Contributors:
  * Michael Scharf (Wind River) - initial API and implementation
  * Martin Oberhuber (Wind River) - [168197] Fix Terminal for CDC-1.1/Foundation-1.1
+ * Appcelerator - repaint the ranges changed by an update at once
  *******************************************************************************/
 package org.eclipse.tm.internal.terminal.textcanvas;
 
@@ -41,6 +42,14 @@ abstract public class AbstractTextCanvasModel implements ITextCanvasModel {
 	 */
 	boolean fInUpdate;
 	private int fCols;
+	/**
+	 * true while {@link #update()} collects the changed cells into one range
+	 */
+	private boolean fInFrame;
+	private int fFrameFirstColumn;
+	private int fFrameFirstLine;
+	private int fFrameLastColumn;
+	private int fFrameLastLine;
 
 	public AbstractTextCanvasModel(ITerminalTextDataSnapshot snapshot) {
 		fSnapshot=snapshot;
@@ -55,6 +64,21 @@ abstract public class AbstractTextCanvasModel implements ITextCanvasModel {
 	}
 
 	protected void fireCellRangeChanged(int x, int y, int width, int height) {
+		if(fInFrame) {
+			// repainted at the end of the frame
+			if(fFrameFirstLine>fFrameLastLine) {
+				fFrameFirstColumn=x;
+				fFrameFirstLine=y;
+				fFrameLastColumn=x+width-1;
+				fFrameLastLine=y+height-1;
+			} else {
+				fFrameFirstColumn=Math.min(fFrameFirstColumn,x);
+				fFrameFirstLine=Math.min(fFrameFirstLine,y);
+				fFrameLastColumn=Math.max(fFrameLastColumn,x+width-1);
+				fFrameLastLine=Math.max(fFrameLastLine,y+height-1);
+			}
+			return;
+		}
 		for (Iterator iter = fListeners.iterator(); iter.hasNext();) {
 			ITextCanvasModelListener listener = (ITextCanvasModelListener) iter.next();
 			listener.rangeChanged(x, y, width, height);
@@ -110,12 +134,33 @@ abstract public class AbstractTextCanvasModel implements ITextCanvasModel {
 	}
 	/**
 	 * must be called from the UI thread
+	 * <p>
+	 * All the cells that change during the update (including the updates
+	 * triggered by the listeners, e.g. by scrolling to the end) are reported
+	 * as a single range when it is done, so a flood of output costs one
+	 * repaint per update rather than one per change.
 	 */
 	public void update() {
-		// do the poll....
-		updateSnapshot();
-		updateSelection();
-		updateCursor();
+		if(fInFrame) {
+			// part of the running frame
+			updateSnapshot();
+			updateSelection();
+			updateCursor();
+			return;
+		}
+		fInFrame=true;
+		fFrameFirstLine=0;
+		fFrameLastLine=-1;
+		try {
+			// do the poll....
+			updateSnapshot();
+			updateSelection();
+			updateCursor();
+		} finally {
+			fInFrame=false;
+		}
+		if(fFrameFirstLine<=fFrameLastLine)
+			fireCellRangeChanged(fFrameFirstColumn, fFrameFirstLine, fFrameLastColumn-fFrameFirstColumn+1, fFrameLastLine-fFrameFirstLine+1);
 	}
 
 
@@ -7,6 +7,7 @@
  * 
  * Contributors: 
  * Michael Scharf (Wind River) - initial API and implementation
+ * Appcelerator - back off while updates take longer than the interval
  *******************************************************************************/
 package org.eclipse.tm.internal.terminal.textcanvas;
 import org.eclipse.swt.widgets.Display;
@@ -25,8 +26,12 @@ public class PollingTextCanvasModel extends AbstractTextCanvasModel {
 		super(snapshot);
 		Display.getDefault().timerExec(fPollInterval,new Runnable(){
 			public void run() {
+				long t0=System.currentTimeMillis();
 				update();
-				Display.getDefault().timerExec(fPollInterval,this);
+				// when the terminal is flooded, an update may take longer than the
+				// interval: wait at least as long, so the UI thread stays responsive
+				int t=(int) (System.currentTimeMillis()-t0);
+				Display.getDefault().timerExec(Math.max(fPollInterval,t),this);
 			}});
 	}
 	public void setUpdateInterval(int t) {
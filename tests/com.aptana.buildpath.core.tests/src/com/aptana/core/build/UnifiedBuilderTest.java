@@ -293,6 +293,78 @@ public class UnifiedBuilderTest
 		// PROBLEM/TASK types?
 	}
 
+	@Test
+	public void testParallelFullBuild() throws Exception
+	{
+		final int fileCount = 20;
+		IFolder folder = project.getFolder("folder");
+		folder.create(true, true, null);
+		for (int i = 0; i < fileCount; i++)
+		{
+			IFile file = folder.getFile("file" + i + ".txt");
+			file.create(new ByteArrayInputStream(("Hello world " + i).getBytes()), true, null);
+		}
+
+		participant = new RequiredBuildParticipant()
+		{
+			@Override
+			public boolean isThreadSafe()
+			{
+				return true;
+			}
+
+			public void deleteFile(BuildContext context, IProgressMonitor monitor)
+			{
+			}
+
+			public void buildFile(BuildContext context, IProgressMonitor monitor)
+			{
+				Collection<IProblem> problems = new ArrayList<IProblem>();
+				problems.add(createTask(context.getURI().toString(), context.getName(), IMarker.PRIORITY_HIGH, 1, 0,
+						1));
+				context.putProblems(IMarkerConstants.TASK_MARKER, problems);
+			}
+		};
+		builder = new UnifiedBuilder()
+		{
+			@Override
+			protected IProject getProjectHandle()
+			{
+				return project;
+			}
+
+			@Override
+			protected IBuildParticipantManager getBuildParticipantManager()
+			{
+				return manager;
+			}
+
+			@Override
+			protected boolean isParallelBuildEnabled()
+			{
+				return true;
+			}
+
+			@Override
+			protected int getBuildThreadCount()
+			{
+				return 4;
+			}
+		};
+		builder.build(IncrementalProjectBuilder.FULL_BUILD, null, new NullProgressMonitor());
+
+		// Every file, including the .project file, should have exactly its own task marker
+		for (int i = 0; i < fileCount; i++)
+		{
+			IFile file = folder.getFile("file" + i + ".txt");
+			IMarker[] markers = file.findMarkers(IMarkerConstants.TASK_MARKER, true, IResource.DEPTH_ZERO);
+			assertEquals(1, markers.length);
+			assertEquals(file.getName(), markers[0].getAttribute(IMarker.MESSAGE));
+		}
+		IFile file = project.getFile(IProjectDescription.DESCRIPTION_FILE_NAME);
+		assertEquals(1, file.findMarkers(IMarkerConstants.TASK_MARKER, true, IResource.DEPTH_ZERO).length);
+	}
+
 	@Test
 	public void testIncrementalBuildWithNoDeltaDoesFullBuild() throws Exception
 	{
@@ -27,6 +27,7 @@ import org.junit.runners.Suite;
 	ImmutableTupleNTest.class,
 	InputStreamGobblerTest.class,
 	IOUtilTest.class,
+	KeepAliveObjectPoolTest.class,
 	ObjectUtilTest.class,
 	OrFilterTest.class,
 	OutputStreamThreadTest.class,
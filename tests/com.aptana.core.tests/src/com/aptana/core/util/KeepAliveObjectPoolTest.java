@@ -0,0 +1,141 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeepAliveObjectPoolTest
+{
+
+	private static class Item
+	{
+		boolean valid = true;
+	}
+
+	private static class ItemPool extends KeepAliveObjectPool<Item>
+	{
+		List<Item> expired = new ArrayList<Item>();
+
+		ItemPool()
+		{
+			super(60000);
+		}
+
+		public Item create()
+		{
+			return new Item();
+		}
+
+		public void expire(Item o)
+		{
+			synchronized (expired)
+			{
+				expired.add(o);
+			}
+		}
+
+		public boolean validate(Item o)
+		{
+			return o.valid;
+		}
+	}
+
+	private ItemPool pool;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		pool = new ItemPool();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		pool.dispose();
+		pool = null;
+	}
+
+	@Test
+	public void testReusesCheckedInItem()
+	{
+		Item item = pool.checkOut();
+		pool.checkIn(item);
+		assertSame(item, pool.checkOut());
+		pool.checkIn(item);
+
+		KeepAliveObjectPool.Statistics statistics = pool.getStatistics();
+		assertEquals(2, statistics.getCheckOuts());
+		assertEquals(1, statistics.getCreated());
+		assertEquals(0, statistics.getBusy());
+		assertEquals(1, statistics.getIdle());
+	}
+
+	@Test
+	public void testReplacesInvalidItem()
+	{
+		Item item = pool.checkOut();
+		pool.checkIn(item);
+		item.valid = false;
+		Item other = pool.checkOut();
+		assertNotSame(item, other);
+		assertTrue(pool.expired.contains(item));
+		pool.checkIn(other);
+		assertEquals(1, pool.getStatistics().getExpired());
+	}
+
+	@Test
+	public void testTimesOutWhenFull()
+	{
+		pool.setLimits(0, 1);
+		pool.setWaitTimeout(100);
+		Item item = pool.checkOut();
+		assertNull(pool.checkOut());
+		pool.checkIn(item);
+
+		KeepAliveObjectPool.Statistics statistics = pool.getStatistics();
+		assertEquals(1, statistics.getWaits());
+		assertEquals(1, statistics.getTimeouts());
+		assertTrue(statistics.getWaitTime() >= 100);
+	}
+
+	@Test
+	public void testWaiterGetsCheckedInItem() throws Exception
+	{
+		pool.setLimits(0, 1);
+		final Item item = pool.checkOut();
+		final Item[] result = new Item[1];
+		Thread waiter = new Thread()
+		{
+			public void run()
+			{
+				result[0] = pool.checkOut();
+			}
+		};
+		waiter.start();
+		Thread.sleep(100);
+		pool.checkIn(item);
+		waiter.join(5000);
+
+		assertNotNull(result[0]);
+		assertSame(item, result[0]);
+		pool.checkIn(result[0]);
+		assertEquals(1, pool.getStatistics().getCreated());
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -9,6 +9,8 @@ package com.aptana.editor.html.parsing;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.text.MessageFormat;
 import java.util.List;
@@ -27,6 +29,7 @@ import com.aptana.editor.html.parsing.ast.HTMLElementNode;
 import com.aptana.js.core.IJSConstants;
 import com.aptana.js.core.parsing.ast.JSParseRootNode;
 import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParsingEngine;
 import com.aptana.parsing.ast.INameNode;
 import com.aptana.parsing.ast.IParseError;
 import com.aptana.parsing.ast.IParseNode;
@@ -388,6 +391,62 @@ public class HTMLParserTest
 		assertEquals(1, errors.size());
 	}
 
+	@Test
+	public void testEmbeddedRegionsParsedAsBatch() throws Exception
+	{
+		// large enough for the two scripts to be parsed on other threads
+		StringBuilder script = new StringBuilder();
+		while (script.length() < EmbeddedRegionBatch.PARALLEL_PARSE_THRESHOLD)
+		{
+			script.append("var one = 1;\n");
+		}
+		String first = "<div onclick=\"foo(); bar();\" style=\"color: red; margin: 0;\"></div><script>";
+		String second = script + "</script><p></b></p><script>";
+		String source = first + second + script + "var two = ;</script>";
+		fParseState = new HTMLParseState(source);
+		ParseResult parseResult = fParser.parse(fParseState);
+		IParseNode result = parseResult.getRootNode();
+
+		HTMLElementNode div = (HTMLElementNode) result.getChild(0);
+		assertEquals(2, div.getJSAttributeNodes().length);
+		assertEquals(2, div.getCSSStyleNodes().length);
+
+		IParseNode firstScript = result.getChild(1).getChild(0);
+		assertEquals(IJSConstants.CONTENT_TYPE_JS, firstScript.getLanguage());
+		assertEquals(first.length(), firstScript.getStartingOffset());
+		IParseNode secondScript = result.getChild(3).getChild(0);
+		assertEquals(IJSConstants.CONTENT_TYPE_JS, secondScript.getLanguage());
+		assertEquals((first + second).length(), secondScript.getStartingOffset());
+
+		// the errors of the scripts come in document order with the ones of the HTML
+		List<IParseError> errors = parseResult.getErrors();
+		assertEquals(2, errors.size());
+		assertEquals(IHTMLConstants.CONTENT_TYPE_HTML, errors.get(0).getLangauge());
+		assertEquals(IJSConstants.CONTENT_TYPE_JS, errors.get(1).getLangauge());
+		assertTrue(errors.get(1).getOffset() > (first + second).length());
+	}
+
+	@Test
+	public void testCacheableScriptParsedThroughCache() throws Exception
+	{
+		// big enough for the parse cache, but parsed on this thread
+		StringBuilder script = new StringBuilder();
+		while (script.length() < ParsingEngine.MINIMUM_NUMBER_OF_CHARS_TO_ENTER_CACHE)
+		{
+			script.append("var one = 1;\n");
+		}
+		assertTrue(script.length() < EmbeddedRegionBatch.PARALLEL_PARSE_THRESHOLD);
+
+		fParseState = new HTMLParseState("<script>" + script + "</script><p>one</p>");
+		IParseNode first = parse().getChild(0).getChild(0);
+		fParseState = new HTMLParseState("<script>" + script + "</script><p>two</p>");
+		IParseNode second = parse().getChild(0).getChild(0);
+
+		// the second document reuses the cached parse of the script
+		assertEquals(IJSConstants.CONTENT_TYPE_JS, second.getLanguage());
+		assertSame(first, second);
+	}
+
 	protected void parseTest(String source) throws Exception
 	{
 		parseTest(source, source);
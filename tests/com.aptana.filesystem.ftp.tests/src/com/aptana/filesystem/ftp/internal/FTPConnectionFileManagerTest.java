@@ -0,0 +1,35 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.ftp.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class FTPConnectionFileManagerTest
+{
+
+	@Test
+	public void testParseCRC32Reply()
+	{
+		assertEquals(0xB2A1E77CL, FTPConnectionFileManager.parseCRC32Reply("B2A1E77C"));
+		assertEquals(0xB2A1E77CL, FTPConnectionFileManager.parseCRC32Reply("b2a1e77c\r\n"));
+		assertEquals(0x1234L, FTPConnectionFileManager.parseCRC32Reply("XCRC successful 0x1234"));
+		assertEquals(0L, FTPConnectionFileManager.parseCRC32Reply("00000000"));
+	}
+
+	@Test
+	public void testParseCRC32ReplyWithoutChecksum()
+	{
+		assertEquals(-1, FTPConnectionFileManager.parseCRC32Reply(""));
+		assertEquals(-1, FTPConnectionFileManager.parseCRC32Reply("File not found"));
+		assertEquals(-1, FTPConnectionFileManager.parseCRC32Reply("1FFFFFFFF"));
+		assertEquals(-1, FTPConnectionFileManager.parseCRC32Reply("-1"));
+	}
+}
@@ -13,10 +13,12 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import com.aptana.filesystem.ftp.FTPConnectionPointTest;
+import com.aptana.filesystem.ftp.internal.FTPConnectionFileManagerTest;
 import com.aptana.testing.categories.IntegrationTests;
 
 @RunWith(Suite.class)
-@SuiteClasses({ FTPConnectionPointTest.class, FTPConnectionTest.class, FTPConnectionWithBasePathTest.class, })
+@SuiteClasses({ FTPConnectionPointTest.class, FTPConnectionFileManagerTest.class, FTPConnectionTest.class,
+		FTPConnectionWithBasePathTest.class, })
 @Category({ IntegrationTests.class })
 public class AllTests
 {
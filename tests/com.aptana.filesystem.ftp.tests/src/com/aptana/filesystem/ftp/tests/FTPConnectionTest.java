@@ -8,10 +8,19 @@
 
 package com.aptana.filesystem.ftp.tests;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.runtime.Path;
+import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
 import com.aptana.core.io.tests.CommonConnectionTest;
+import com.aptana.core.io.vfs.IExtendedFileStore;
 import com.aptana.filesystem.ftp.FTPConnectionPoint;
 import com.aptana.testing.categories.IntegrationTests;
 
@@ -73,4 +82,34 @@ public class FTPConnectionTest extends CommonConnectionTest
 	{
 		return Boolean.parseBoolean(getConfig().getProperty("ftp.supports.permissions"));
 	}
+
+	/**
+	 * Whether the server checksums files through the XCRC command
+	 */
+	protected boolean supportsCRC32()
+	{
+		return Boolean.parseBoolean(getConfig().getProperty("ftp.supports.xcrc"));
+	}
+
+	@Test
+	public void testComputeCRC32() throws Exception
+	{
+		IFileStore fs = cp.getRoot().getFileStore(testPath.append("/file.txt")); //$NON-NLS-1$
+		OutputStream out = fs.openOutputStream(EFS.NONE, null);
+		out.write(BYTES);
+		out.close();
+
+		long crc = ((IExtendedFileStore) fs).computeCRC32(null);
+		if (supportsCRC32())
+		{
+			CRC32 expected = new CRC32();
+			expected.update(BYTES);
+			assertEquals(expected.getValue(), crc);
+		}
+		else
+		{
+			// the comparator then falls back to reading the file
+			assertEquals(-1, crc);
+		}
+	}
 }
@@ -0,0 +1,146 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.secureftp.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.aptana.filesystem.secureftp.internal.BlockDelta.Operation;
+
+public class BlockDeltaTest
+{
+	private static final int BLOCK_SIZE = 2048;
+
+	static byte[] random(int length, long seed)
+	{
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	static byte[] apply(BlockDelta delta, byte[] previous, byte[] content)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (Operation operation : delta.getOperations())
+		{
+			out.write(operation.isCopy() ? previous : content, operation.getOffset(), operation.getLength());
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testRollingChecksum()
+	{
+		byte[] data = random(5000, 1);
+		int checksum = BlockDelta.checksum(data, 0, BLOCK_SIZE);
+		for (int i = 1; i + BLOCK_SIZE <= data.length; i++)
+		{
+			checksum = BlockDelta.roll(checksum, data[i - 1], data[i + BLOCK_SIZE - 1], BLOCK_SIZE);
+			assertEquals(BlockDelta.checksum(data, i, BLOCK_SIZE), checksum);
+		}
+	}
+
+	@Test
+	public void testIdentical()
+	{
+		byte[] previous = random(100000, 2);
+		BlockDelta delta = BlockDelta.compute(previous, previous.clone(), BLOCK_SIZE);
+
+		assertEquals(0, delta.getLiteralLength());
+		assertEquals(1, delta.getOperations().size());
+		assertArrayEquals(previous, apply(delta, previous, previous));
+	}
+
+	@Test
+	public void testChangedBytes()
+	{
+		byte[] previous = random(100000, 3);
+		byte[] current = previous.clone();
+		current[10] ^= 1;
+		current[50000] ^= 1;
+
+		BlockDelta delta = BlockDelta.compute(previous, current, BLOCK_SIZE);
+
+		assertEquals(2 * BLOCK_SIZE, delta.getLiteralLength());
+		assertFalse(delta.isAppend());
+		assertArrayEquals(current, apply(delta, previous, current));
+	}
+
+	@Test
+	public void testInsertion()
+	{
+		byte[] previous = random(100000, 4);
+		byte[] inserted = random(100, 5);
+		byte[] current = new byte[previous.length + inserted.length];
+		System.arraycopy(previous, 0, current, 0, 30000);
+		System.arraycopy(inserted, 0, current, 30000, inserted.length);
+		System.arraycopy(previous, 30000, current, 30000 + inserted.length, previous.length - 30000);
+
+		BlockDelta delta = BlockDelta.compute(previous, current, BLOCK_SIZE);
+
+		// only the block the data was inserted in is sent, the blocks after it are found at their new offset
+		assertEquals(BLOCK_SIZE + inserted.length, delta.getLiteralLength());
+		assertArrayEquals(current, apply(delta, previous, current));
+	}
+
+	@Test
+	public void testAppend()
+	{
+		byte[] previous = random(100000, 6);
+		byte[] current = new byte[previous.length + 1000];
+		System.arraycopy(previous, 0, current, 0, previous.length);
+		System.arraycopy(random(1000, 7), 0, current, previous.length, 1000);
+
+		BlockDelta delta = BlockDelta.compute(previous, current, BLOCK_SIZE);
+
+		assertTrue(delta.isAppend());
+		assertEquals(1000, delta.getLiteralLength());
+		assertArrayEquals(current, apply(delta, previous, current));
+	}
+
+	@Test
+	public void testUnrelated()
+	{
+		byte[] previous = random(100000, 8);
+		byte[] current = random(90000, 9);
+
+		BlockDelta delta = BlockDelta.compute(previous, current, BLOCK_SIZE);
+
+		assertEquals(current.length, delta.getLiteralLength());
+		assertArrayEquals(current, apply(delta, previous, current));
+	}
+
+	@Test
+	public void testTruncated()
+	{
+		byte[] previous = random(100000, 10);
+		byte[] current = new byte[40000];
+		System.arraycopy(previous, 0, current, 0, current.length);
+
+		BlockDelta delta = BlockDelta.compute(previous, current, BLOCK_SIZE);
+
+		assertFalse(delta.isAppend());
+		assertTrue(delta.getLiteralLength() < BLOCK_SIZE);
+		assertArrayEquals(current, apply(delta, previous, current));
+	}
+
+	@Test
+	public void testBlockSize()
+	{
+		assertEquals(2048, BlockDelta.getBlockSize(1000));
+		assertEquals(2236, BlockDelta.getBlockSize(5000000));
+		assertEquals(4096, BlockDelta.getBlockSize(16 * 1024 * 1024));
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.secureftp.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.util.FileUtil;
+import com.aptana.filesystem.secureftp.internal.BlockDelta.Operation;
+
+public class DeltaUploadOutputStreamTest
+{
+	private static final int LENGTH = 200000;
+
+	/**
+	 * Stands in for an SFTP server, serving the files of a local directory. Like a server with the copy-data
+	 * extension, it can assemble any delta by copying ranges of the previous version into a temporary file; with
+	 * appendOnly, it only assembles appends, which is what SFTPConnectionFileManager can do with plain SFTP.
+	 */
+	private class LocalServer implements IDeltaTarget
+	{
+		private final File file;
+		private final boolean appendOnly;
+		private final DeltaBaseCache cache;
+		long sent;
+		boolean assembled;
+
+		LocalServer(String name, boolean appendOnly)
+		{
+			this.file = new File(root, name);
+			this.appendOnly = appendOnly;
+			this.cache = new DeltaBaseCache(new File(root, "cache"));
+		}
+
+		byte[] getPreviousVersion()
+		{
+			return file.isFile() ? cache.get(file.getPath(), file.length(), file.lastModified()) : null;
+		}
+
+		public OutputStream openUpload() throws IOException
+		{
+			return new FilterOutputStream(new FileOutputStream(file))
+			{
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException
+				{
+					sent += len;
+					out.write(b, off, len);
+				}
+			};
+		}
+
+		public boolean assemble(BlockDelta delta, byte[] content) throws IOException
+		{
+			if (appendOnly && !delta.isAppend())
+			{
+				return false;
+			}
+			File temp = new File(root, file.getName() + ".tmp");
+			RandomAccessFile previous = new RandomAccessFile(file, "r");
+			FileOutputStream out = new FileOutputStream(temp);
+			try
+			{
+				for (Operation operation : delta.getOperations())
+				{
+					if (operation.isCopy())
+					{
+						byte[] block = new byte[operation.getLength()];
+						previous.seek(operation.getOffset());
+						previous.readFully(block);
+						out.write(block);
+					}
+					else
+					{
+						out.write(content, operation.getOffset(), operation.getLength());
+						sent += operation.getLength();
+					}
+				}
+			}
+			finally
+			{
+				out.close();
+				previous.close();
+			}
+			assertTrue(file.delete());
+			assertTrue(temp.renameTo(file));
+			assembled = true;
+			return true;
+		}
+
+		public void uploaded(byte[] content)
+		{
+			cache.put(file.getPath(), content, file.lastModified());
+		}
+
+		byte[] read() throws IOException
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			FileInputStream in = new FileInputStream(file);
+			try
+			{
+				byte[] buffer = new byte[8192];
+				int n;
+				while ((n = in.read(buffer)) != -1)
+				{
+					out.write(buffer, 0, n);
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private File root;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		root = File.createTempFile("delta", "");
+		root.delete();
+		root.mkdirs();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		FileUtil.deleteRecursively(root);
+	}
+
+	private void upload(LocalServer server, byte[] content) throws IOException
+	{
+		server.sent = 0;
+		server.assembled = false;
+		OutputStream out = new DeltaUploadOutputStream(server, server.getPreviousVersion());
+		// writes in chunks, the way streams are copied
+		for (int offset = 0; offset < content.length; offset += 8192)
+		{
+			out.write(content, offset, Math.min(8192, content.length - offset));
+		}
+		out.close();
+		assertArrayEquals(content, server.read());
+	}
+
+	@Test
+	public void testNewFileIsUploadedWhole() throws Exception
+	{
+		LocalServer server = new LocalServer("bundle.js", false);
+		assertNull(server.getPreviousVersion());
+
+		upload(server, BlockDeltaTest.random(LENGTH, 1));
+
+		assertFalse(server.assembled);
+		assertEquals(LENGTH, server.sent);
+	}
+
+	@Test
+	public void testOnlyChangesAreSent() throws Exception
+	{
+		LocalServer server = new LocalServer("bundle.js", false);
+		byte[] content = BlockDeltaTest.random(LENGTH, 2);
+		upload(server, content);
+
+		content[1000] ^= 1;
+		content[150000] ^= 1;
+		upload(server, content);
+
+		assertTrue(server.assembled);
+		assertTrue(server.sent < LENGTH / 10);
+	}
+
+	@Test
+	public void testAppendOnlyServer() throws Exception
+	{
+		LocalServer server = new LocalServer("site.log", true);
+		byte[] content = BlockDeltaTest.random(LENGTH, 3);
+		upload(server, content);
+
+		byte[] appended = new byte[LENGTH + 500];
+		System.arraycopy(content, 0, appended, 0, LENGTH);
+		upload(server, appended);
+		assertTrue(server.assembled);
+		assertEquals(500, server.sent);
+
+		// the server can't assemble changes in place, which are uploaded whole
+		appended[10] ^= 1;
+		upload(server, appended);
+		assertFalse(server.assembled);
+		assertEquals(appended.length, server.sent);
+	}
+
+	@Test
+	public void testChangedOnServerIsUploadedWhole() throws Exception
+	{
+		LocalServer server = new LocalServer("bundle.js", false);
+		byte[] content = BlockDeltaTest.random(LENGTH, 4);
+		upload(server, content);
+
+		// someone else changed the file, the local copy no longer applies
+		RandomAccessFile file = new RandomAccessFile(new File(root, "bundle.js"), "rw");
+		file.setLength(LENGTH - 1);
+		file.close();
+		assertNull(server.getPreviousVersion());
+
+		upload(server, content);
+		assertFalse(server.assembled);
+		assertEquals(LENGTH, server.sent);
+	}
+
+	@Test
+	public void testSmallFilesAreUploadedWhole() throws Exception
+	{
+		LocalServer server = new LocalServer("small.js", false);
+		byte[] content = BlockDeltaTest.random(1000, 5);
+		upload(server, content);
+		content[0] ^= 1;
+		upload(server, content);
+
+		assertFalse(server.assembled);
+		assertEquals(1000, server.sent);
+	}
+
+	@Test
+	public void testRewrittenFileIsUploadedWhole() throws Exception
+	{
+		LocalServer server = new LocalServer("bundle.js", false);
+		upload(server, BlockDeltaTest.random(LENGTH, 6));
+		upload(server, BlockDeltaTest.random(LENGTH, 7));
+
+		assertFalse(server.assembled);
+		assertEquals(LENGTH, server.sent);
+	}
+}
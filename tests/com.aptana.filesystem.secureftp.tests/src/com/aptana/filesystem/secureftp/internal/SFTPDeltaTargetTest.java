@@ -0,0 +1,266 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filesystem.secureftp.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Random;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.hamcrest.Description;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.Sequence;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.util.FileUtil;
+import com.enterprisedt.net.ftp.FTPException;
+import com.enterprisedt.net.ftp.ssh.SSHFTPClient;
+
+public class SFTPDeltaTargetTest
+{
+	private static final int LENGTH = 100000;
+	private static final String KEY = "user@host:22/dir/file.js";
+	private static final String FILENAME = "/dir/file.js";
+	private static final String TEMP_FILENAME = "/dir/" + SFTPConnectionFileManager.generateTempFileName("file.js");
+
+	private Mockery context = new Mockery()
+	{
+		{
+			setImposteriser(ClassImposteriser.INSTANCE);
+		}
+	};
+
+	private SSHFTPClient client;
+	private File root;
+	private DeltaBaseCache cache;
+	private Date modificationTime;
+	private int changes;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		client = context.mock(SSHFTPClient.class);
+		root = File.createTempFile("sftpdelta", "");
+		root.delete();
+		root.mkdirs();
+		cache = new DeltaBaseCache(root);
+		modificationTime = new Date();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		FileUtil.deleteRecursively(root);
+		context = null;
+		client = null;
+		cache = null;
+	}
+
+	private SFTPDeltaTarget createTarget()
+	{
+		IPath path = Path.fromPortableString(FILENAME);
+		return new SFTPDeltaTarget(client, cache, KEY, path, 0644, modificationTime)
+		{
+			public OutputStream openUpload() throws IOException
+			{
+				fail("Assembly should not fall back to a full upload");
+				return null;
+			}
+
+			@Override
+			protected void changed()
+			{
+				changes++;
+			}
+		};
+	}
+
+	private static byte[] randomBytes(int length)
+	{
+		byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	private static byte[] append(byte[] previous, byte[] added)
+	{
+		byte[] content = new byte[previous.length + added.length];
+		System.arraycopy(previous, 0, content, 0, previous.length);
+		System.arraycopy(added, 0, content, previous.length, added.length);
+		return content;
+	}
+
+	/**
+	 * Reads the stream passed to put() into a buffer
+	 */
+	private static class RecordPut implements Action
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		public Object invoke(Invocation invocation) throws Throwable
+		{
+			InputStream in = (InputStream) invocation.getParameter(0);
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1)
+			{
+				bytes.write(buffer, 0, n);
+			}
+			return invocation.getParameter(1);
+		}
+
+		public void describeTo(Description description)
+		{
+			description.appendText("records the uploaded bytes");
+		}
+	}
+
+	@Test
+	public void testAssembleAppend() throws Exception
+	{
+		byte[] previous = randomBytes(LENGTH);
+		final byte[] added = randomBytes(1000);
+		byte[] content = append(previous, added);
+		final RecordPut put = new RecordPut();
+		final Sequence sequence = context.sequence("assemble");
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(client).rename(FILENAME, TEMP_FILENAME);
+				inSequence(sequence);
+				oneOf(client).put(with(any(InputStream.class)), with(equal(TEMP_FILENAME)), with(equal(true)));
+				inSequence(sequence);
+				will(put);
+				oneOf(client).rename(TEMP_FILENAME, FILENAME);
+				inSequence(sequence);
+				oneOf(client).setModTime(FILENAME, modificationTime);
+				inSequence(sequence);
+				oneOf(client).changeMode(0644, FILENAME);
+				inSequence(sequence);
+			}
+		});
+
+		assertTrue(createTarget().assemble(BlockDelta.compute(previous, content), content));
+		context.assertIsSatisfied();
+		// only the new bytes went over the wire
+		assertArrayEquals(added, put.bytes.toByteArray());
+		assertEquals(1, changes);
+	}
+
+	@Test
+	public void testChangesAreNotAssembled() throws Exception
+	{
+		byte[] previous = randomBytes(LENGTH);
+		byte[] content = previous.clone();
+		content[LENGTH / 2] ^= 0xff;
+
+		// no calls to the client at all
+		assertFalse(createTarget().assemble(BlockDelta.compute(previous, content), content));
+		context.assertIsSatisfied();
+		assertEquals(0, changes);
+	}
+
+	@Test
+	public void testFailedAppendRestoresOriginal() throws Exception
+	{
+		byte[] previous = randomBytes(LENGTH);
+		byte[] content = append(previous, randomBytes(1000));
+		final Sequence sequence = context.sequence("assemble");
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(client).rename(FILENAME, TEMP_FILENAME);
+				inSequence(sequence);
+				oneOf(client).put(with(any(InputStream.class)), with(equal(TEMP_FILENAME)), with(equal(true)));
+				inSequence(sequence);
+				will(throwException(new FTPException("Connection lost")));
+				// the original is put back rather than deleted
+				oneOf(client).rename(TEMP_FILENAME, FILENAME);
+				inSequence(sequence);
+				never(client).delete(with(any(String.class)));
+			}
+		});
+
+		try
+		{
+			createTarget().assemble(BlockDelta.compute(previous, content), content);
+			fail("Expected the failed append to be reported");
+		}
+		catch (IOException e)
+		{
+			// expected, so the stream falls back to a full upload
+		}
+		context.assertIsSatisfied();
+		assertEquals(1, changes);
+	}
+
+	@Test
+	public void testFailedRenameRestoresOriginal() throws Exception
+	{
+		byte[] previous = randomBytes(LENGTH);
+		byte[] content = append(previous, randomBytes(1000));
+		final Sequence sequence = context.sequence("assemble");
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(client).rename(FILENAME, TEMP_FILENAME);
+				inSequence(sequence);
+				oneOf(client).put(with(any(InputStream.class)), with(equal(TEMP_FILENAME)), with(equal(true)));
+				inSequence(sequence);
+				oneOf(client).rename(TEMP_FILENAME, FILENAME);
+				inSequence(sequence);
+				will(throwException(new FTPException("Busy")));
+				oneOf(client).rename(TEMP_FILENAME, FILENAME);
+				inSequence(sequence);
+				never(client).delete(with(any(String.class)));
+			}
+		});
+
+		try
+		{
+			createTarget().assemble(BlockDelta.compute(previous, content), content);
+			fail("Expected the failed rename to be reported");
+		}
+		catch (IOException e)
+		{
+			// expected
+		}
+		context.assertIsSatisfied();
+	}
+
+	@Test
+	public void testUploadedKeepsPreviousVersion() throws Exception
+	{
+		byte[] content = randomBytes(LENGTH);
+		SFTPDeltaTarget target = createTarget();
+		target.uploaded(content);
+		assertArrayEquals(content, cache.get(KEY, content.length, modificationTime.getTime()));
+
+		// small files are uploaded whole, so their copy is dropped
+		target.uploaded(randomBytes(100));
+		assertNull(cache.get(KEY, content.length, modificationTime.getTime()));
+	}
+}
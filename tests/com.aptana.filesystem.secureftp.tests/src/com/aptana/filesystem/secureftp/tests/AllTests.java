@@ -13,10 +13,14 @@ import org.junit.runners.Suite.SuiteClasses;
 
 import com.aptana.filesystem.secureftp.FTPSConnectionPointTest;
 import com.aptana.filesystem.secureftp.SFTPConnectionPointTest;
+import com.aptana.filesystem.secureftp.internal.BlockDeltaTest;
+import com.aptana.filesystem.secureftp.internal.DeltaUploadOutputStreamTest;
+import com.aptana.filesystem.secureftp.internal.SFTPDeltaTargetTest;
 
 @RunWith(Suite.class)
 @SuiteClasses({ SFTPConnectionPointTest.class, SFTPConnectionTest.class, FTPSConnectionPointTest.class,
-		FTPSConnectionTest.class, FTPSConnectionWithBasePathTest.class, ImplicitFTPSConnectionTest.class, })
+		FTPSConnectionTest.class, FTPSConnectionWithBasePathTest.class, ImplicitFTPSConnectionTest.class,
+		BlockDeltaTest.class, DeltaUploadOutputStreamTest.class, SFTPDeltaTargetTest.class, })
 public class AllTests
 {
 
@@ -0,0 +1,298 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.filewatcher.watchservice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.contentobjects.jnotify.IJNotify;
+import net.contentobjects.jnotify.JNotifyListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class WatchServiceNotifierTest
+{
+	/**
+	 * How long to wait for an event. The JDK watch service polls on some platforms, so this is generous.
+	 */
+	private static final long TIMEOUT = 15000;
+
+	/**
+	 * How long to wait to be reasonably sure no event is coming
+	 */
+	private static final long QUIET_PERIOD = 1500;
+
+	private static class RecordingListener implements JNotifyListener
+	{
+		private final List<String> events = new ArrayList<String>();
+
+		public synchronized void fileCreated(int wd, String rootPath, String name)
+		{
+			add("created " + name);
+		}
+
+		public synchronized void fileDeleted(int wd, String rootPath, String name)
+		{
+			add("deleted " + name);
+		}
+
+		public synchronized void fileModified(int wd, String rootPath, String name)
+		{
+			add("modified " + name);
+		}
+
+		public synchronized void fileRenamed(int wd, String rootPath, String oldName, String newName)
+		{
+			add("renamed " + oldName + " " + newName);
+		}
+
+		private void add(String event)
+		{
+			events.add(event);
+			notifyAll();
+		}
+
+		/**
+		 * Wait until the event has been reported
+		 */
+		public synchronized boolean waitFor(String event, long timeout) throws InterruptedException
+		{
+			long end = System.currentTimeMillis() + timeout;
+
+			while (!events.contains(event))
+			{
+				long remaining = end - System.currentTimeMillis();
+
+				if (remaining <= 0)
+				{
+					return false;
+				}
+				wait(remaining);
+			}
+			return true;
+		}
+
+		public synchronized List<String> getEvents()
+		{
+			return new ArrayList<String>(events);
+		}
+
+		public synchronized void clear()
+		{
+			events.clear();
+		}
+	}
+
+	private WatchServiceNotifier notifier;
+	private RecordingListener listener;
+	private File root;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		notifier = new WatchServiceNotifier();
+		listener = new RecordingListener();
+		root = Files.createTempDirectory("watch").toFile().getCanonicalFile();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		try
+		{
+			notifier.shutdown();
+			delete(root);
+		}
+		finally
+		{
+			notifier = null;
+			listener = null;
+			root = null;
+		}
+	}
+
+	private void delete(File file)
+	{
+		File[] children = file.listFiles();
+
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private void write(File file, String content) throws IOException
+	{
+		FileWriter writer = new FileWriter(file);
+
+		try
+		{
+			writer.write(content);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private void assertEvent(String event) throws InterruptedException
+	{
+		assertTrue("Expected '" + event + "' but got " + listener.getEvents(), listener.waitFor(event, TIMEOUT));
+	}
+
+	private void assertNoEvents() throws InterruptedException
+	{
+		Thread.sleep(QUIET_PERIOD);
+		assertEquals(0, listener.getEvents().size());
+	}
+
+	@Test
+	public void testCreateModifyDelete() throws Exception
+	{
+		notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, false, false, listener);
+
+		File file = new File(root, "a.txt");
+
+		write(file, "a");
+		assertEvent("created a.txt");
+
+		listener.clear();
+		write(file, "ab");
+		assertEvent("modified a.txt");
+
+		listener.clear();
+		assertTrue(file.delete());
+		assertEvent("deleted a.txt");
+	}
+
+	@Test
+	public void testMask() throws Exception
+	{
+		notifier.addWatch(root.getPath(), IJNotify.FILE_DELETED, false, false, listener);
+
+		File file = new File(root, "a.txt");
+
+		write(file, "a");
+		assertNoEvents();
+
+		assertTrue(file.delete());
+		assertEvent("deleted a.txt");
+		assertEquals(1, listener.getEvents().size());
+	}
+
+	@Test
+	public void testNewSubdirectoryIsWatched() throws Exception
+	{
+		notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, true, true, listener);
+
+		File directory = new File(root, "sub");
+
+		assertTrue(directory.mkdir());
+		assertEvent("created sub");
+
+		write(new File(directory, "b.txt"), "b");
+		assertEvent("created sub" + File.separator + "b.txt");
+	}
+
+	@Test
+	public void testExistingSubdirectoryIsWatched() throws Exception
+	{
+		File directory = new File(root, "sub");
+
+		assertTrue(directory.mkdir());
+		notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, true, true, listener);
+
+		// the subdirectories are registered in the background, so keep poking until it's noticed
+		long end = System.currentTimeMillis() + TIMEOUT;
+		File file = new File(directory, "b.txt");
+		String event = "created sub" + File.separator + "b.txt";
+
+		while (!listener.waitFor(event, 200) && System.currentTimeMillis() < end)
+		{
+			file.delete();
+			write(file, "b");
+		}
+		assertEvent(event);
+	}
+
+	@Test
+	public void testRemovedWatchIsNotNotified() throws Exception
+	{
+		int other = notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, false, false, new RecordingListener());
+		int wd = notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, false, false, listener);
+
+		assertTrue(notifier.removeWatch(wd));
+		assertFalse(notifier.removeWatch(wd));
+
+		write(new File(root, "a.txt"), "a");
+		assertNoEvents();
+
+		assertTrue(notifier.removeWatch(other));
+	}
+
+	@Test
+	public void testRemovingLastWatchStopsThread() throws Exception
+	{
+		int first = notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, false, false, listener);
+		int second = notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, false, false, listener);
+		Thread thread = notifier.getThread();
+
+		assertNotNull(thread);
+
+		notifier.removeWatch(first);
+		assertTrue(thread.isAlive());
+
+		notifier.removeWatch(second);
+		assertNull(notifier.getThread());
+		thread.join(TIMEOUT);
+		assertFalse(thread.isAlive());
+
+		// the next watch starts over with a new service and thread
+		notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, false, false, listener);
+		assertNotNull(notifier.getThread());
+		assertNotSame(thread, notifier.getThread());
+
+		write(new File(root, "a.txt"), "a");
+		assertEvent("created a.txt");
+	}
+
+	@Test
+	public void testShutdown() throws Exception
+	{
+		int wd = notifier.addWatch(root.getPath(), IJNotify.FILE_ANY, true, true, listener);
+		Thread thread = notifier.getThread();
+
+		notifier.shutdown();
+
+		assertNull(notifier.getThread());
+		thread.join(TIMEOUT);
+		assertFalse(thread.isAlive());
+		assertFalse(notifier.removeWatch(wd));
+
+		write(new File(root, "a.txt"), "a");
+		assertNoEvents();
+	}
+}
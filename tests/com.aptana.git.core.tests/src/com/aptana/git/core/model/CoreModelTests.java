@@ -13,7 +13,8 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
 @SuiteClasses({ GitExecutableTest.class, GitIndexRefreshJobTest.class, GitIndexTest.class, GitRefTest.class,
-		GitRevSpecifierTest.class, GitRepositoryTest.class })
+		GitLogParserTest.class, GitRevisionPagerTest.class, GitRevSpecifierTest.class, GitRepositoryTest.class,
+		GitStatusParserTest.class })
 public class CoreModelTests
 {
 }
@@ -0,0 +1,139 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class GitLogParserTest
+{
+	private static final String SHA1 = "1111111111111111111111111111111111111111";
+	private static final String SHA2 = "2222222222222222222222222222222222222222";
+	private static final String SHA3 = "3333333333333333333333333333333333333333";
+
+	/**
+	 * 5 minutes, see the HACK in {@link GitLogParser}
+	 */
+	private static final long OFFSET = 5 * 60 * 1000;
+
+	private List<GitCommit> parse(String output, boolean raw, boolean showSign) throws Exception
+	{
+		GitLogParser parser = new GitLogParser(null, new ByteArrayInputStream(output.getBytes("UTF-8")), raw,
+				showSign);
+		List<GitCommit> commits = new ArrayList<GitCommit>();
+		GitCommit commit;
+		while ((commit = parser.next()) != null)
+		{
+			commits.add(commit);
+		}
+		return commits;
+	}
+
+	private String record(String sha, String author, String email, String message, String parents, String time)
+	{
+		return sha + "\1\1" + author + "\1" + email + "\1" + message + "\1" + parents + "\1" + time;
+	}
+
+	@Test
+	public void testEmpty() throws Exception
+	{
+		assertEquals(0, parse("", true, false).size());
+	}
+
+	@Test
+	public void testCommits() throws Exception
+	{
+		List<GitCommit> commits = parse(
+				record(SHA1, "Jane Doe", "jane@example.com", "Second\n\nWith a body\n", SHA2 + " " + SHA3,
+						"1300000000")
+						+ "\0"
+						+ record(SHA2, "Jane Doe", "jane@example.com", "First", "", "1200000000"), true, false);
+
+		assertEquals(2, commits.size());
+		GitCommit merge = commits.get(0);
+		assertEquals(SHA1, merge.sha());
+		assertEquals("Second", merge.getSubject());
+		assertEquals("Second\n\nWith a body\n", merge.getComment());
+		assertEquals("Jane Doe", merge.getAuthor());
+		assertEquals("jane@example.com", merge.getAuthorEmail());
+		assertEquals(1300000000000L + OFFSET, merge.getTimestamp());
+		assertEquals(2, merge.parentCount());
+		assertEquals(SHA2, merge.parents().get(0));
+		assertEquals(SHA3, merge.parents().get(1));
+
+		GitCommit root = commits.get(1);
+		assertEquals("First", root.getSubject());
+		assertNull(root.parents());
+		assertEquals(1200000000000L + OFFSET, root.getTimestamp());
+
+		// repeated authors are shared between commits
+		assertSame(merge.getAuthor(), root.getAuthor());
+		assertSame(merge.getAuthorEmail(), root.getAuthorEmail());
+	}
+
+	@Test
+	public void testTrailingRecordSeparator() throws Exception
+	{
+		List<GitCommit> commits = parse(record(SHA1, "a", "a@b.c", "msg", "", "1") + "\0", true, false);
+
+		assertEquals(1, commits.size());
+		assertEquals(1000L + OFFSET, commits.get(0).getTimestamp());
+	}
+
+	@Test
+	public void testLegacyFormat() throws Exception
+	{
+		List<GitCommit> commits = parse(SHA1 + "\1\1a\1a@b.c\1Subject\1Body\1" + SHA2 + "\1" + "1300000000", false,
+				false);
+
+		assertEquals(1, commits.size());
+		assertEquals("Subject", commits.get(0).getSubject());
+		assertEquals("Body", commits.get(0).getComment());
+		assertEquals(SHA2, commits.get(0).parents().get(0));
+	}
+
+	@Test
+	public void testSign() throws Exception
+	{
+		List<GitCommit> commits = parse(record(SHA1, "a", "a@b.c", "msg", "", "1300000000") + "\1>\0"
+				+ record(SHA2, "a", "a@b.c", "msg", "", "1300000000") + "\1<", true, true);
+
+		assertEquals(2, commits.size());
+		assertEquals(SHA2, commits.get(1).sha());
+	}
+
+	@Test
+	public void testEncoding() throws Exception
+	{
+		String output = SHA1 + "\1ISO-8859-1\1Ren\u00e9\1r@b.c\1msg\1\1" + "1300000000";
+		GitLogParser parser = new GitLogParser(null, new ByteArrayInputStream(output.getBytes("ISO-8859-1")), true,
+				false);
+
+		assertEquals("Ren\u00e9", parser.next().getAuthor());
+		assertNull(parser.next());
+	}
+
+	@Test
+	public void testSkipsMalformedRecords() throws Exception
+	{
+		List<GitCommit> commits = parse(record(SHA1, "a", "a@b.c", "bad parents", "1234", "1300000000") + "\0"
+				+ SHA2 + "\1truncated\0" + record(SHA3, "a", "a@b.c", "bad time", "", "13x") + "\0"
+				+ record(SHA2, "a", "a@b.c", "good", "", "1300000000"), true, false);
+
+		assertEquals(1, commits.size());
+		assertEquals("good", commits.get(0).getSubject());
+	}
+}
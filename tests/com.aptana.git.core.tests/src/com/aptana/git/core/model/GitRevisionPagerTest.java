@@ -0,0 +1,207 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.After;
+import org.junit.Test;
+
+import com.aptana.core.util.FileUtil;
+
+@SuppressWarnings("nls")
+public class GitRevisionPagerTest extends GitTestCase
+{
+	private IPath cacheLocation;
+
+	@After
+	public void tearDown() throws Exception
+	{
+		try
+		{
+			if (cacheLocation != null)
+			{
+				FileUtil.deleteRecursively(cacheLocation.toFile());
+			}
+		}
+		finally
+		{
+			cacheLocation = null;
+			super.tearDown();
+		}
+	}
+
+	private void commit(int count) throws Exception
+	{
+		GitRepository repo = getRepo();
+		int start = countCommits(repo);
+
+		for (int i = start; i < start + count; i++)
+		{
+			IStatus status = repo.execute(GitRepository.ReadWrite.WRITE, "commit", "--allow-empty", "-m", "Commit "
+					+ i);
+			assertTrue(status.getMessage(), status.isOK());
+		}
+	}
+
+	private int countCommits(GitRepository repo)
+	{
+		IStatus status = repo.execute(GitRepository.ReadWrite.READ, "rev-list", "--count", "--all");
+		return status.isOK() ? Integer.parseInt(status.getMessage().trim()) : 0;
+	}
+
+	private IPath cacheLocation() throws Exception
+	{
+		if (cacheLocation == null)
+		{
+			cacheLocation = FileUtil.getTempDirectory().append("git_history" + System.currentTimeMillis());
+		}
+		return cacheLocation;
+	}
+
+	private GitRevisionPager createPager(int pageSize, int limit, IPath cacheLocation) throws Exception
+	{
+		return new GitRevisionPager(getRepo(), null, pageSize, limit, cacheLocation);
+	}
+
+	private List<String> subjects(List<GitCommit> commits)
+	{
+		List<String> subjects = new ArrayList<String>(commits.size());
+
+		for (GitCommit commit : commits)
+		{
+			subjects.add(commit.getSubject());
+		}
+		return subjects;
+	}
+
+	private List<String> expectedSubjects(int from, int to)
+	{
+		List<String> subjects = new ArrayList<String>();
+
+		for (int i = from; i >= to; i--)
+		{
+			subjects.add("Commit " + i);
+		}
+		return subjects;
+	}
+
+	private List<String> readAll(GitRevisionPager pager) throws Exception
+	{
+		List<String> subjects = new ArrayList<String>();
+
+		while (pager.hasMore())
+		{
+			subjects.addAll(subjects(pager.nextPage(new NullProgressMonitor())));
+		}
+		return subjects;
+	}
+
+	@Test
+	public void testPages() throws Exception
+	{
+		commit(7);
+		GitRevisionPager pager = createPager(3, -1, null);
+
+		assertEquals(expectedSubjects(6, 4), subjects(pager.nextPage(new NullProgressMonitor())));
+		assertTrue(pager.hasMore());
+		assertEquals(expectedSubjects(3, 1), subjects(pager.nextPage(new NullProgressMonitor())));
+		assertTrue(pager.hasMore());
+		assertEquals(expectedSubjects(0, 0), subjects(pager.nextPage(new NullProgressMonitor())));
+		assertFalse(pager.hasMore());
+		assertEquals(7, pager.getCount());
+		assertTrue(pager.nextPage(new NullProgressMonitor()).isEmpty());
+	}
+
+	@Test
+	public void testLastFullPageIsFollowedByEmptyPage() throws Exception
+	{
+		commit(6);
+		GitRevisionPager pager = createPager(3, -1, null);
+
+		assertEquals(3, pager.nextPage(new NullProgressMonitor()).size());
+		assertEquals(3, pager.nextPage(new NullProgressMonitor()).size());
+		assertTrue(pager.hasMore());
+		assertTrue(pager.nextPage(new NullProgressMonitor()).isEmpty());
+		assertFalse(pager.hasMore());
+	}
+
+	@Test
+	public void testLimit() throws Exception
+	{
+		commit(7);
+		GitRevisionPager pager = createPager(3, 5, null);
+
+		assertEquals(expectedSubjects(6, 2), readAll(pager));
+		assertEquals(5, pager.getCount());
+	}
+
+	@Test
+	public void testPauseResumesAfterCommitsRead() throws Exception
+	{
+		commit(7);
+		GitRevisionPager pager = createPager(3, -1, null);
+
+		assertEquals(expectedSubjects(6, 4), subjects(pager.nextPage(new NullProgressMonitor())));
+		pager.pause();
+		assertTrue(pager.hasMore());
+		assertEquals(expectedSubjects(3, 0), readAll(pager));
+	}
+
+	@Test
+	public void testPagesAreReadBackFromCache() throws Exception
+	{
+		commit(7);
+
+		assertEquals(expectedSubjects(6, 0), readAll(createPager(3, -1, cacheLocation())));
+
+		File[] histories = cacheLocation().toFile().listFiles();
+		assertEquals(1, histories.length);
+		assertTrue(new File(histories[0], "0.page").isFile());
+		assertTrue(new File(histories[0], "2.page").isFile());
+		assertTrue(new File(histories[0], "complete").isFile());
+
+		assertEquals(expectedSubjects(6, 0), readAll(createPager(3, -1, cacheLocation())));
+		assertEquals(1, cacheLocation().toFile().listFiles().length);
+	}
+
+	@Test
+	public void testPausedWalkResumesPastCachedPages() throws Exception
+	{
+		commit(7);
+
+		GitRevisionPager pager = createPager(3, -1, cacheLocation());
+		pager.nextPage(new NullProgressMonitor());
+		pager.close();
+
+		pager = createPager(3, -1, cacheLocation());
+		assertEquals(expectedSubjects(6, 4), subjects(pager.nextPage(new NullProgressMonitor())));
+		pager.pause();
+		assertEquals(expectedSubjects(3, 0), readAll(pager));
+	}
+
+	@Test
+	public void testNewCommitStartsNewCache() throws Exception
+	{
+		commit(4);
+		assertEquals(expectedSubjects(3, 0), readAll(createPager(3, -1, cacheLocation())));
+
+		commit(1);
+		assertEquals(expectedSubjects(4, 0), readAll(createPager(3, -1, cacheLocation())));
+		assertEquals(2, cacheLocation().toFile().listFiles().length);
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.git.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class GitStatusParserTest
+{
+	private static final String HEAD_SHA = "1111111111111111111111111111111111111111";
+	private static final String INDEX_SHA = "2222222222222222222222222222222222222222";
+	private static final String NULL_SHA = "0000000000000000000000000000000000000000";
+
+	private Map<IPath, ChangedFile> parse(String output) throws Exception
+	{
+		return new GitStatusParser(null, new ByteArrayInputStream(output.getBytes("UTF-8"))).parse();
+	}
+
+	private ChangedFile get(Map<IPath, ChangedFile> files, String path)
+	{
+		return files.get(Path.fromPortableString(path));
+	}
+
+	@Test
+	public void testEmpty() throws Exception
+	{
+		assertTrue(parse("").isEmpty());
+	}
+
+	@Test
+	public void testUnstagedModification() throws Exception
+	{
+		Map<IPath, ChangedFile> files = parse("1 .M N... 100644 100644 100644 " + HEAD_SHA + " " + INDEX_SHA
+				+ " src/file.js\0");
+
+		ChangedFile file = get(files, "src/file.js");
+		assertEquals(1, files.size());
+		assertEquals(ChangedFile.Status.MODIFIED, file.getStatus());
+		assertFalse(file.hasStagedChanges());
+		assertTrue(file.hasUnstagedChanges());
+		assertEquals("100644", file.getCommitBlobMode());
+		assertEquals(INDEX_SHA, file.getCommitBlobSHA());
+	}
+
+	@Test
+	public void testStagedAndUnstagedModification() throws Exception
+	{
+		ChangedFile file = get(parse("1 MM N... 100644 100755 100755 " + HEAD_SHA + " " + INDEX_SHA
+				+ " path with spaces.txt\0"), "path with spaces.txt");
+
+		assertEquals(ChangedFile.Status.MODIFIED, file.getStatus());
+		assertTrue(file.hasStagedChanges());
+		assertTrue(file.hasUnstagedChanges());
+		// staged changes refer to HEAD
+		assertEquals("100644", file.getCommitBlobMode());
+		assertEquals(HEAD_SHA, file.getCommitBlobSHA());
+	}
+
+	@Test
+	public void testAddedAndDeleted() throws Exception
+	{
+		Map<IPath, ChangedFile> files = parse("1 A. N... 000000 100644 100644 " + NULL_SHA + " " + INDEX_SHA
+				+ " added.txt\0" + "1 D. N... 100644 000000 000000 " + HEAD_SHA + " " + NULL_SHA + " removed.txt\0"
+				+ "1 .D N... 100644 100644 000000 " + HEAD_SHA + " " + HEAD_SHA + " missing.txt\0");
+
+		assertEquals(3, files.size());
+		ChangedFile added = get(files, "added.txt");
+		assertEquals(ChangedFile.Status.NEW, added.getStatus());
+		assertTrue(added.hasStagedChanges());
+		assertEquals("000000", added.getCommitBlobMode());
+
+		ChangedFile removed = get(files, "removed.txt");
+		assertEquals(ChangedFile.Status.DELETED, removed.getStatus());
+		assertTrue(removed.hasStagedChanges());
+		assertFalse(removed.hasUnstagedChanges());
+
+		ChangedFile missing = get(files, "missing.txt");
+		assertEquals(ChangedFile.Status.DELETED, missing.getStatus());
+		assertFalse(missing.hasStagedChanges());
+		assertTrue(missing.hasUnstagedChanges());
+	}
+
+	@Test
+	public void testRename() throws Exception
+	{
+		Map<IPath, ChangedFile> files = parse("2 R. N... 100644 100644 100644 " + HEAD_SHA + " " + HEAD_SHA
+				+ " R100 new name.txt\0old name.txt\0");
+
+		assertEquals(2, files.size());
+		ChangedFile renamed = get(files, "new name.txt");
+		assertEquals(ChangedFile.Status.NEW, renamed.getStatus());
+		assertTrue(renamed.hasStagedChanges());
+		assertEquals(NULL_SHA, renamed.getCommitBlobSHA());
+
+		ChangedFile original = get(files, "old name.txt");
+		assertEquals(ChangedFile.Status.DELETED, original.getStatus());
+		assertTrue(original.hasStagedChanges());
+		assertEquals(HEAD_SHA, original.getCommitBlobSHA());
+	}
+
+	@Test
+	public void testUnmerged() throws Exception
+	{
+		ChangedFile file = get(parse("u UU N... 100644 100644 100644 100644 " + NULL_SHA + " " + HEAD_SHA + " "
+				+ INDEX_SHA + " conflict.txt\0"), "conflict.txt");
+
+		assertEquals(ChangedFile.Status.UNMERGED, file.getStatus());
+		assertTrue(file.hasUnmergedChanges());
+		assertTrue(file.hasStagedChanges());
+		assertTrue(file.hasUnstagedChanges());
+		assertEquals(HEAD_SHA, file.getCommitBlobSHA());
+	}
+
+	@Test
+	public void testUntracked() throws Exception
+	{
+		Map<IPath, ChangedFile> files = parse("? dir/untracked.txt\0? \u00e9t\u00e9.txt\0");
+
+		assertEquals(2, files.size());
+		ChangedFile file = get(files, "dir/untracked.txt");
+		assertEquals(ChangedFile.Status.NEW, file.getStatus());
+		assertFalse(file.hasStagedChanges());
+		assertTrue(file.hasUnstagedChanges());
+		assertNull(file.getCommitBlobSHA());
+		assertEquals(ChangedFile.Status.NEW, get(files, "\u00e9t\u00e9.txt").getStatus());
+	}
+
+	@Test
+	public void testIgnoresHeadersAndMalformedRecords() throws Exception
+	{
+		Map<IPath, ChangedFile> files = parse("# branch.oid " + HEAD_SHA + "\0# branch.head master\0"
+				+ "1 .M truncated\0! ignored.txt\0? kept.txt\0");
+
+		assertEquals(1, files.size());
+		assertEquals(ChangedFile.Status.NEW, get(files, "kept.txt").getStatus());
+	}
+}
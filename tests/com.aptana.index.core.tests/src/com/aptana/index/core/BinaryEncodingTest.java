@@ -0,0 +1,171 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+@SuppressWarnings("nls")
+public class BinaryEncodingTest
+{
+	@Test
+	public void testInts()
+	{
+		int[] values = new int[] { 0, 1, 0x7E, 0x7F, 0x3FE, 0x3FF, 0x400, 0x3FFF, 0x4000, 0x12345, Integer.MAX_VALUE };
+		BinaryOutput out = new BinaryOutput();
+
+		for (int value : values)
+		{
+			out.writeInt(value);
+		}
+
+		String encoding = out.toString();
+		BinaryInput in = new BinaryInput(encoding, 0);
+
+		for (int value : values)
+		{
+			assertEquals(value, in.readInt());
+		}
+
+		assertEquals(-1, encoding.indexOf('\0'));
+
+		// the index writes words in UTF-8, where these take at most two bytes
+		for (char c : encoding.toCharArray())
+		{
+			assertTrue(Integer.toHexString(c), c <= 0x7FF);
+		}
+	}
+
+	@Test
+	public void testSmallIntsAreSingleByte()
+	{
+		for (int value = 0; value < 0x7F; value++)
+		{
+			BinaryOutput out = new BinaryOutput();
+
+			out.writeInt(value);
+
+			// the marker, the string count and the value
+			String encoding = out.toString();
+
+			assertEquals(3, encoding.length());
+			assertTrue(encoding.charAt(2) <= 0x7F);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeInt()
+	{
+		new BinaryOutput().writeInt(-1);
+	}
+
+	@Test
+	public void testStrings()
+	{
+		BinaryOutput out = new BinaryOutput();
+
+		out.writeString("Window");
+		out.writeString(null);
+		out.writeString("");
+		out.writeString("Window");
+		out.writeBoolean(true);
+
+		String encoding = out.toString();
+
+		// the repeated string is only stored once
+		assertEquals(encoding.indexOf("Window"), encoding.lastIndexOf("Window"));
+
+		BinaryInput in = new BinaryInput(encoding, 0);
+		String first = in.readString();
+
+		assertEquals("Window", first);
+		assertNull(in.readString());
+		assertEquals("", in.readString());
+		assertSame(first, in.readString());
+		assertTrue(in.readBoolean());
+	}
+
+	@Test
+	public void testStringLists()
+	{
+		BinaryOutput out = new BinaryOutput();
+
+		out.writeStrings(Arrays.asList("a", "b", "a"));
+		out.writeStrings(null);
+
+		BinaryInput in = new BinaryInput(out.toString(), 0);
+
+		assertEquals(Arrays.asList("a", "b", "a"), in.readStrings());
+		assertNull(in.readStrings());
+	}
+
+	@Test
+	public void testSections()
+	{
+		BinaryOutput out = new BinaryOutput();
+		BinaryOutput section = out.createSection();
+
+		out.writeString("before");
+		section.writeString("inside");
+		section.writeInt(0x4000);
+		out.writeSection(section);
+		out.writeString("after");
+
+		BinaryInput in = new BinaryInput(out.toString(), 0);
+
+		assertEquals("before", in.readString());
+
+		BinaryInput details = in.readSection();
+
+		assertEquals("after", in.readString());
+		assertEquals("inside", details.readString());
+		assertEquals(0x4000, details.readInt());
+	}
+
+	@Test
+	public void testEncodingAtOffset()
+	{
+		BinaryOutput out = new BinaryOutput();
+
+		out.writeString("name");
+
+		String word = "type\0name\0" + out.toString();
+		int offset = word.lastIndexOf('\0') + 1;
+
+		assertTrue(BinaryInput.isBinary(word, offset));
+		assertEquals("name", new BinaryInput(word, offset).readString());
+	}
+
+	@Test
+	public void testIsBinary()
+	{
+		assertFalse(BinaryInput.isBinary("{\"name\":\"foo\"}", 0));
+		assertFalse(BinaryInput.isBinary("", 0));
+		assertFalse(BinaryInput.isBinary(null, 0));
+		assertTrue(BinaryInput.isBinary(new BinaryOutput().toString(), 0));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTruncatedEncoding()
+	{
+		BinaryOutput out = new BinaryOutput();
+
+		out.writeInt(Integer.MAX_VALUE);
+
+		String encoding = out.toString();
+
+		new BinaryInput(encoding.substring(0, encoding.length() - 1), 0).readInt();
+	}
+}
@@ -84,4 +84,55 @@ public class BuildContextTest
 		assertEquals(parseRootNode, ast);
 		assertEquals(2, reparses[0]);
 	}
+
+	@Test
+	public void testOnlyParsedASTIsCached() throws Exception
+	{
+		final int[] reparses = new int[] { 0 };
+		final ParseResult[] results = new ParseResult[] { null };
+		BuildContext buildContext = new BuildContext(null)
+		{
+			@Override
+			public String getContentType() throws CoreException
+			{
+				return "test";
+			}
+
+			@Override
+			protected ParseResult parse(String contentType, IParseState parseState, WorkingParseResult working)
+					throws Exception
+			{
+				reparses[0] += 1;
+				return results[0];
+			}
+
+			@Override
+			public synchronized String getContents()
+			{
+				return "";
+			}
+		};
+
+		// nothing came out of the parse, so it's tried again
+		assertNull(buildContext.getAST());
+		assertEquals(1, reparses[0]);
+		buildContext.getAST();
+		assertEquals(2, reparses[0]);
+
+		ParseRootNode parseRootNode = new ParseRootNode(new Symbol[0], 0, 0)
+		{
+			public String getLanguage()
+			{
+				return "test";
+			}
+		};
+		WorkingParseResult working = new WorkingParseResult();
+		working.setParseResult(parseRootNode);
+		results[0] = working.getImmutableResult();
+
+		assertEquals(parseRootNode, buildContext.getAST());
+		assertEquals(3, reparses[0]);
+		assertEquals(parseRootNode, buildContext.getAST());
+		assertEquals(3, reparses[0]);
+	}
 }
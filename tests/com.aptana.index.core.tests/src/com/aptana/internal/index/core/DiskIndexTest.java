@@ -7,23 +7,58 @@
  */
 package com.aptana.internal.index.core;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.util.HashSet;
+import java.util.Map;
 
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.ResourceUtil;
+import com.aptana.index.core.QueryResult;
+import com.aptana.index.core.SearchPattern;
 
 @SuppressWarnings("nls")
 public class DiskIndexTest
 {
+	private static final String[] CATEGORIES = new String[] { "category" };
+
+	private File indexFile;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		indexFile = File.createTempFile("disk_index", ".index");
+		indexFile.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		if (indexFile != null)
+		{
+			indexFile.delete();
+			indexFile = null;
+		}
+	}
 
 	@Test
 	public void testAPSTUD3393() throws Exception
@@ -47,4 +82,178 @@ public class DiskIndexTest
 			fail("Expected an IOException, so that we'd catch it up the stack and clean up the index. Instead we got a NegativeArraySizeException!");
 		}
 	}
+
+	@Test
+	public void testPrefixAndExactQueriesAfterMerge() throws Exception
+	{
+		DiskIndex index = new DiskIndex(indexFile.getAbsolutePath());
+		index.initialize(false);
+
+		MemoryIndex memoryIndex = new MemoryIndex();
+		for (int i = 0; i < 500; i++)
+		{
+			memoryIndex.addEntry("category", "word" + i, "doc" + (i % 7) + ".js");
+		}
+		memoryIndex.addEntry("category", "Word", "upper.js");
+		memoryIndex.addEntry("other", "word1", "other.js");
+
+		index = index.mergeWith(memoryIndex);
+		index.close();
+
+		// re-read it from disk
+		index = new DiskIndex(indexFile.getAbsolutePath());
+		index.initialize(true);
+
+		Map<String, QueryResult> results = index.addQueryResults(CATEGORIES, "word1",
+				SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null);
+		assertNotNull(results);
+		assertEquals(1, results.size());
+		assertEquals(CollectionsUtil.newSet("doc1.js"), results.get("word1").getDocuments());
+
+		// word1, word10-19, word100-199
+		results = index.addQueryResults(CATEGORIES, "word1", SearchPattern.PREFIX_MATCH | SearchPattern.CASE_SENSITIVE,
+				null);
+		assertEquals(111, results.size());
+
+		// case insensitive prefix also picks up "Word"
+		results = index.addQueryResults(CATEGORIES, "WORD", SearchPattern.PREFIX_MATCH, null);
+		assertEquals(501, results.size());
+
+		results = index.addQueryResults(CATEGORIES, "wORD", SearchPattern.EXACT_MATCH, null);
+		assertEquals(CollectionsUtil.newSet("Word"), results.keySet());
+
+		assertNull(index.addQueryResults(CATEGORIES, "nothing", SearchPattern.PREFIX_MATCH, null));
+		index.close();
+	}
+
+	@Test
+	public void testCamelCaseQueries() throws Exception
+	{
+		DiskIndex index = new DiskIndex(indexFile.getAbsolutePath());
+		index.initialize(false);
+
+		MemoryIndex memoryIndex = new MemoryIndex();
+		memoryIndex.addEntry("category", "getElementById", "a.js");
+		memoryIndex.addEntry("category", "getElementsByTagName", "a.js");
+		memoryIndex.addEntry("category", "getEventTarget", "b.js");
+		memoryIndex.addEntry("category", "get_element", "b.js");
+		memoryIndex.addEntry("category", "NullPointerException", "c.js");
+		memoryIndex.addEntry("category", "XMLHttpRequest", "c.js");
+		index = index.mergeWith(memoryIndex);
+
+		Map<String, QueryResult> results = index.addQueryResults(CATEGORIES, "gEBI", SearchPattern.CAMEL_CASE_MATCH,
+				null);
+		assertEquals(CollectionsUtil.newSet("getElementById"), results.keySet());
+
+		results = index.addQueryResults(CATEGORIES, "gE", SearchPattern.CAMEL_CASE_MATCH, null);
+		assertEquals(CollectionsUtil.newSet("getElementById", "getElementsByTagName", "getEventTarget", "get_element"),
+				results.keySet());
+
+		results = index.addQueryResults(CATEGORIES, "getElemBTN", SearchPattern.CAMEL_CASE_MATCH, null);
+		assertEquals(CollectionsUtil.newSet("getElementsByTagName"), results.keySet());
+
+		results = index.addQueryResults(CATEGORIES, "NPE", SearchPattern.CAMEL_CASE_MATCH, null);
+		assertEquals(CollectionsUtil.newSet("NullPointerException"), results.keySet());
+
+		results = index.addQueryResults(CATEGORIES, "XHR", SearchPattern.CAMEL_CASE_MATCH, null);
+		assertEquals(CollectionsUtil.newSet("XMLHttpRequest"), results.keySet());
+
+		// a single part is a case-insensitive prefix
+		results = index.addQueryResults(CATEGORIES, "nullp", SearchPattern.CAMEL_CASE_MATCH, null);
+		assertEquals(CollectionsUtil.newSet("NullPointerException"), results.keySet());
+
+		assertNull(index.addQueryResults(CATEGORIES, "gEI", SearchPattern.CAMEL_CASE_MATCH, null));
+		index.close();
+	}
+
+	@Test
+	public void testMigratesLegacyFormat() throws Exception
+	{
+		writeLegacyIndex(indexFile);
+
+		DiskIndex index = new DiskIndex(indexFile.getAbsolutePath());
+		index.initialize(true);
+
+		Map<String, QueryResult> results = index.addQueryResults(CATEGORIES, "bar",
+				SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE, null);
+		assertEquals(CollectionsUtil.newSet("a.js", "b.js"), results.get("bar").getDocuments());
+
+		results = index.addQueryResults(CATEGORIES, "f", SearchPattern.PREFIX_MATCH, null);
+		assertEquals(CollectionsUtil.newSet("foo"), results.keySet());
+		assertEquals(CollectionsUtil.newSet("a.js"), results.get("foo").getDocuments());
+		assertEquals(CollectionsUtil.newSet("a.js", "b.js"), new HashSet<String>(index.getDocuments()));
+		index.close();
+
+		// the file has been rewritten in the new format
+		DataInputStream in = new DataInputStream(new FileInputStream(indexFile));
+		try
+		{
+			assertEquals("INDEX VERSION 0.3", in.readUTF());
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes an "INDEX VERSION 0.1" file with two documents and one category holding "foo" (a.js) and "bar" (a.js and
+	 * b.js).
+	 */
+	private void writeLegacyIndex(File file) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeUTF("INDEX VERSION 0.1");
+		int headerOffsetPosition = out.size();
+		out.writeInt(-1);
+
+		// one chunk of document names, "b.js" shares the ".js" suffix with "a.js"
+		int chunkOffset = out.size();
+		out.writeUTF("a.js");
+		out.writeByte(0);
+		out.writeByte(3);
+		out.writeUTF("b");
+		int startOfCategoryTables = out.size() + 1;
+
+		// the category table
+		int categoryOffset = out.size();
+		out.writeInt(2);
+		out.writeUTF("foo");
+		out.writeInt(0); // single document 0
+		out.writeUTF("bar");
+		out.writeInt(2); // in-lined array of two one byte references
+		out.writeByte(0);
+		out.writeByte(1);
+
+		// header
+		int headerOffset = out.size();
+		out.writeInt(1); // number of chunks
+		out.writeByte(2); // size of last chunk
+		out.writeByte(1); // document reference size
+		out.writeByte('/');
+		out.writeInt(chunkOffset);
+		out.writeInt(startOfCategoryTables);
+		out.writeInt(1);
+		out.writeUTF("category");
+		out.writeInt(categoryOffset);
+		out.close();
+
+		byte[] content = bytes.toByteArray();
+		content[headerOffsetPosition] = (byte) (headerOffset >> 24);
+		content[headerOffsetPosition + 1] = (byte) (headerOffset >> 16);
+		content[headerOffsetPosition + 2] = (byte) (headerOffset >> 8);
+		content[headerOffsetPosition + 3] = (byte) headerOffset;
+
+		FileOutputStream stream = new FileOutputStream(file);
+		try
+		{
+			stream.write(content);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
 }
@@ -1,9 +1,13 @@
 package com.aptana.js.core.index;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.jobs.Job;
 import org.junit.After;
@@ -13,6 +17,7 @@ import org.junit.Test;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
+import com.aptana.js.core.model.PropertyElement;
 import com.aptana.js.core.model.TypeElement;
 import com.aptana.js.internal.core.index.JSIndexWriter;
 import com.aptana.js.internal.core.index.JSMetadataLoader;
@@ -74,4 +79,44 @@ public class JSIndexQueryHelperTest
 		assertTrue("ancestors contains Object", ancestors.contains("Object"));
 	}
 
+	@Test
+	public void testAllTypeMembersAreCachedUntilIndexChanges() throws Exception
+	{
+		JSIndexWriter writer = new JSIndexWriter();
+		writer.writeType(index, createType("CachedType", "first"));
+
+		List<PropertyElement> members = helper.getAllTypeMembers("CachedType");
+		assertTrue("members contains first", getNames(members).contains("first"));
+		assertSame("cached members", members, helper.getAllTypeMembers("CachedType"));
+		assertSame("members shared by helpers of the same project", members, new JSIndexQueryHelper(
+				project.getInnerProject()).getAllTypeMembers("CachedType"));
+
+		writer.writeType(index, createType("CachedType", "second"));
+
+		List<PropertyElement> updated = helper.getAllTypeMembers("CachedType");
+		assertNotSame("members after index changed", members, updated);
+		assertTrue("updated members contains first", getNames(updated).contains("first"));
+		assertTrue("updated members contains second", getNames(updated).contains("second"));
+	}
+
+	private TypeElement createType(String typeName, String propertyName)
+	{
+		PropertyElement property = new PropertyElement();
+		property.setName(propertyName);
+
+		TypeElement type = new TypeElement();
+		type.setName(typeName);
+		type.addProperty(property);
+		return type;
+	}
+
+	private Set<String> getNames(List<PropertyElement> members)
+	{
+		Set<String> names = new HashSet<String>();
+		for (PropertyElement member : members)
+		{
+			names.add(member.getName());
+		}
+		return names;
+	}
 }
@@ -0,0 +1,75 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.inferencing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.aptana.js.core.JSTypeConstants;
+import com.aptana.js.core.index.JSIndexQueryHelper;
+import com.aptana.js.core.parsing.ast.JSNode;
+import com.aptana.js.core.parsing.ast.JSParseRootNode;
+
+public class InferenceCacheTest extends InferencingTestsBase
+{
+	private JSNodeTypeInferrer createInferrer(JSScope globals)
+	{
+		return new JSNodeTypeInferrer(globals, getIndex(), getLocation(), new JSIndexQueryHelper(getIndex()));
+	}
+
+	@Test
+	public void testRepeatedInferenceIsCached()
+	{
+		JSParseRootNode root = (JSParseRootNode) getParseRootNode("var a = 5; var b = a; b;");
+		JSScope globals = getGlobals(root);
+		JSNode statement = (JSNode) root.getLastChild();
+
+		List<String> types = createInferrer(globals).getTypes(statement);
+		assertEquals(1, types.size());
+		assertEquals(JSTypeConstants.NUMBER_TYPE, types.get(0));
+
+		List<String> cached = globals.getInferenceCache().getTypes(globals, statement);
+		assertNotNull(cached);
+		assertEquals(types, cached);
+		assertSame(cached, createInferrer(globals).getTypes(statement));
+	}
+
+	@Test
+	public void testAddingSymbolsClearsCache()
+	{
+		JSParseRootNode root = (JSParseRootNode) getParseRootNode("var a = 5; a;");
+		JSScope globals = getGlobals(root);
+		JSNode statement = (JSNode) root.getLastChild();
+
+		createInferrer(globals).getTypes(statement);
+		assertNotNull(globals.getInferenceCache().getTypes(globals, statement));
+
+		globals.addSymbol("c", null);
+		assertNull(globals.getInferenceCache().getTypes(globals, statement));
+	}
+
+	@Test
+	public void testTypesInferredFromPlaceholdersAreNotCached()
+	{
+		JSScope globals = getGlobals("var a = b, b = a;");
+		JSNode value = globals.getSymbol("a").getValues().get(0);
+
+		// inferring a infers b, whose value refers back to a while a has its placeholder type
+		List<String> types = getTypes(globals, value);
+
+		JSNode otherValue = globals.getSymbol("b").getValues().get(0);
+		assertNull(globals.getInferenceCache().getTypes(globals, otherValue));
+		assertEquals(types, getTypes(globals, value));
+	}
+}
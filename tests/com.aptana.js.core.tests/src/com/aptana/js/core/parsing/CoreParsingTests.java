@@ -4,8 +4,11 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import com.aptana.js.core.parsing.ast.JSParseResultSerializerTest;
+
 @RunWith(Suite.class)
-@SuiteClasses({ JSFlexScannerTest.class, GraalJSParserTest.class, SDocNodeAttachmentTest.class, })
+@SuiteClasses({ JSFlexScannerTest.class, GraalJSParserTest.class, JSIncrementalReparserTest.class,
+		SDocNodeAttachmentTest.class, JSParseResultSerializerTest.class, })
 public class CoreParsingTests
 {
 }
@@ -0,0 +1,249 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.util.ParseUtil;
+
+@SuppressWarnings("nls")
+public class JSIncrementalReparserTest
+{
+	// @formatter:off
+	private static final String SOURCE =
+		"var a = 1;\n" +
+		"// leading comment\n" +
+		"function foo(x) {\n" +
+		"  var y = x + 1;\n" +
+		"  return y;\n" +
+		"}\n" +
+		"function bar() {\n" +
+		"  return 2;\n" +
+		"}\n" +
+		"/* trailing comment */\n" +
+		"var b = 3;\n";
+	// @formatter:on
+
+	private GraalJSParser parser;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		parser = new GraalJSParser();
+	}
+
+	private ParseResult parse(String source) throws Exception
+	{
+		ParseResult result = parser.parse(new ParseState(source));
+
+		assertTrue(result.getErrors().isEmpty());
+		return result;
+	}
+
+	private void assertSameTree(IParseNode expected, IParseNode actual)
+	{
+		assertSameTree(expected, actual, true);
+	}
+
+	private void assertSameTree(IParseNode expected, IParseNode actual, boolean checkParents)
+	{
+		assertEquals(expected.getNodeType(), actual.getNodeType());
+		assertEquals(expected.getStartingOffset(), actual.getStartingOffset());
+		assertEquals(expected.getEndingOffset(), actual.getEndingOffset());
+		assertEquals(expected.getChildCount(), actual.getChildCount());
+
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			assertSameTree(expected.getChild(i), actual.getChild(i), checkParents);
+
+			if (checkParents)
+			{
+				IParseNode parent = actual.getChild(i).getParent();
+
+				// a subtree shared with the previous tree may be parented to the identical node in there
+				if (parent != actual)
+				{
+					assertSameTree(actual, parent, false);
+				}
+			}
+		}
+	}
+
+	private void assertPreviousParents(IParseNode node)
+	{
+		for (IParseNode child : node)
+		{
+			assertSame(node, child.getParent());
+			assertPreviousParents(child);
+		}
+	}
+
+	private void assertSameComments(IParseNode[] expected, IParseNode[] actual)
+	{
+		assertEquals(expected.length, actual.length);
+
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertEquals(expected[i].getStartingOffset(), actual[i].getStartingOffset());
+			assertEquals(expected[i].getEndingOffset(), actual[i].getEndingOffset());
+		}
+	}
+
+	/**
+	 * Apply the edit incrementally and verify the result matches a full parse of the new source
+	 *
+	 * @param target
+	 *            The text to replace
+	 * @param replacement
+	 * @return the result of the incremental parse
+	 * @throws Exception
+	 */
+	private ParseResult assertIncremental(String target, String replacement) throws Exception
+	{
+		ParseResult previous = parse(SOURCE);
+		String previousTree = ParseUtil.toTreeString(previous.getRootNode());
+		String source = SOURCE.replace(target, replacement);
+		JSIncrementalParseState parseState = new JSIncrementalParseState(source, SOURCE, previous);
+
+		assertNotNull(new JSIncrementalReparser(parser).reparse(parseState));
+
+		ParseResult incremental = parser.parse(parseState);
+		ParseResult full = parse(source);
+
+		assertSameTree(full.getRootNode(), incremental.getRootNode());
+		assertSameComments(full.getRootNode().getCommentNodes(), incremental.getRootNode().getCommentNodes());
+		assertEquals(ParseUtil.toTreeString(full.getRootNode()), ParseUtil.toTreeString(incremental.getRootNode()));
+
+		// the previous tree is shared through the parse cache, so its offsets, children and parents must be left
+		// untouched
+		assertEquals(previousTree, ParseUtil.toTreeString(previous.getRootNode()));
+		assertEquals(SOURCE.length() - 1, previous.getRootNode().getEndingOffset());
+		assertPreviousParents(previous.getRootNode());
+
+		return incremental;
+	}
+
+	@Test
+	public void testEditInsideFunctionBody() throws Exception
+	{
+		assertIncremental("x + 1", "x + 42");
+	}
+
+	@Test
+	public void testShrinkInsideFunctionBody() throws Exception
+	{
+		assertIncremental("return 2;", "return;");
+	}
+
+	@Test
+	public void testAddStatementToFunctionBody() throws Exception
+	{
+		assertIncremental("  return y;\n", "  y++;\n  return y;\n");
+	}
+
+	@Test
+	public void testAddCommentToFunctionBody() throws Exception
+	{
+		assertIncremental("  return 2;\n", "  // two\n  return 2;\n");
+	}
+
+	@Test
+	public void testOnlySpineIsCopied() throws Exception
+	{
+		ParseResult previous = parse(SOURCE);
+		String source = SOURCE.replace("return 2;", "return 22;");
+		IParseNode result = new JSIncrementalReparser(parser).reparse(new JSIncrementalParseState(source, SOURCE,
+				previous));
+		IParseNode before = previous.getRootNode();
+
+		assertNotNull(result);
+		assertNotSame(before, result);
+		// var a and function foo come before the edit, only their nodes are copied to parent them to the new root
+		assertNotSame(before.getChild(0), result.getChild(0));
+		assertSame(before.getChild(0).getChild(0), result.getChild(0).getChild(0));
+		assertNotSame(before.getChild(1), result.getChild(1));
+		assertSame(before.getChild(1).getChild(0), result.getChild(1).getChild(0));
+		assertSame(result, result.getChild(1).getParent());
+		assertSame(before, before.getChild(1).getParent());
+		// function bar encloses the edit, var b follows it and moves
+		assertNotSame(before.getChild(2), result.getChild(2));
+		assertNotSame(before.getChild(3), result.getChild(3));
+		assertEquals(before.getChild(3).getStartingOffset() + 1, result.getChild(3).getStartingOffset());
+
+		// an edit that keeps the length shares what follows as well
+		previous = parse(SOURCE);
+		before = previous.getRootNode();
+		source = SOURCE.replace("return 2;", "return 3;");
+		result = new JSIncrementalReparser(parser).reparse(new JSIncrementalParseState(source, SOURCE, previous));
+
+		assertNotNull(result);
+		assertNotSame(before.getChild(2), result.getChild(2));
+		assertSame(before.getChild(3).getChild(0), result.getChild(3).getChild(0));
+		assertSame(before, before.getChild(3).getParent());
+		assertSameTree(parse(source).getRootNode(), result);
+	}
+
+	@Test
+	public void testEditAcrossStatementsFallsBack() throws Exception
+	{
+		ParseResult previous = parse(SOURCE);
+		String source = SOURCE.replace("}\nfunction bar() {", "  bar();\n}\nfunction baz() {");
+		JSIncrementalParseState parseState = new JSIncrementalParseState(source, SOURCE, previous);
+
+		assertNull(new JSIncrementalReparser(parser).reparse(parseState));
+		assertSameTree(parse(source).getRootNode(), parser.parse(parseState).getRootNode());
+	}
+
+	@Test
+	public void testEditIntroducingErrorFallsBack() throws Exception
+	{
+		ParseResult previous = parse(SOURCE);
+		String source = SOURCE.replace("x + 1", "x +");
+		JSIncrementalParseState parseState = new JSIncrementalParseState(source, SOURCE, previous);
+
+		assertNull(new JSIncrementalReparser(parser).reparse(parseState));
+		assertTrue(!parser.parse(parseState).getErrors().isEmpty());
+	}
+
+	@Test
+	public void testPreviousResultWithErrorsFallsBack() throws Exception
+	{
+		String broken = SOURCE.replace("x + 1", "x +");
+		ParseResult previous = parser.parse(new ParseState(broken));
+
+		assertTrue(!previous.getErrors().isEmpty());
+
+		JSIncrementalParseState parseState = new JSIncrementalParseState(SOURCE, broken, previous);
+
+		assertNull(new JSIncrementalReparser(parser).reparse(parseState));
+		assertSameTree(parse(SOURCE).getRootNode(), parser.parse(parseState).getRootNode());
+	}
+
+	@Test
+	public void testExplicitEdit() throws Exception
+	{
+		ParseResult previous = parse(SOURCE);
+		int offset = SOURCE.indexOf("return 2");
+		String source = SOURCE.substring(0, offset) + "return 22" + SOURCE.substring(offset + "return 2".length());
+		JSIncrementalParseState parseState = new JSIncrementalParseState(source, previous, offset + 7, 1, 2);
+
+		assertNotNull(new JSIncrementalReparser(parser).reparse(parseState));
+		assertSameTree(parse(source).getRootNode(), parser.parse(parseState).getRootNode());
+	}
+}
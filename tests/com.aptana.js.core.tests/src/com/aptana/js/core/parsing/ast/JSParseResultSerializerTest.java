@@ -0,0 +1,174 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.core.parsing.ast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.js.core.parsing.GraalJSParser;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.IParseNode;
+
+@SuppressWarnings("nls")
+public class JSParseResultSerializerTest
+{
+	private GraalJSParser parser;
+	private JSParseResultSerializer serializer;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		parser = new GraalJSParser();
+		serializer = new JSParseResultSerializer();
+	}
+
+	private ParseResult roundTrip(String source) throws Exception
+	{
+		ParseState parseState = new ParseState(source);
+		ParseResult expected = parser.parse(parseState);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		serializer.write(expected, out);
+		out.close();
+
+		ParseResult actual = serializer.read(parseState,
+				new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertNotNull(actual);
+		assertSame(JSParseRootNode.class, actual.getRootNode().getClass());
+		assertSameTree(expected.getRootNode(), actual.getRootNode());
+		assertSameNodes(expected.getRootNode().getCommentNodes(), actual.getRootNode().getCommentNodes());
+		assertSameErrors(expected.getErrors(), actual.getErrors());
+		assertEquals(expected.getRootNode(), actual.getRootNode());
+		assertEquals(expected.getRootNode().toString(), actual.getRootNode().toString());
+
+		return actual;
+	}
+
+	private void assertSameTree(IParseNode expected, IParseNode actual)
+	{
+		assertSame(expected.getClass(), actual.getClass());
+		assertEquals(expected.getNodeType(), actual.getNodeType());
+		assertEquals(expected.getStartingOffset(), actual.getStartingOffset());
+		assertEquals(expected.getEndingOffset(), actual.getEndingOffset());
+		assertEquals(expected.getText(), actual.getText());
+		assertEquals(expected.getChildCount(), actual.getChildCount());
+
+		if (expected instanceof JSNode)
+		{
+			assertEquals(((JSNode) expected).getSemicolonIncluded(), ((JSNode) actual).getSemicolonIncluded());
+		}
+
+		for (int i = 0; i < expected.getChildCount(); i++)
+		{
+			assertSameTree(expected.getChild(i), actual.getChild(i));
+			assertSame(actual, actual.getChild(i).getParent());
+		}
+	}
+
+	private void assertSameNodes(IParseNode[] expected, IParseNode[] actual)
+	{
+		assertEquals(expected.length, actual.length);
+
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertSameTree(expected[i], actual[i]);
+		}
+	}
+
+	private void assertSameErrors(List<IParseError> expected, List<IParseError> actual)
+	{
+		assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.get(i).getOffset(), actual.get(i).getOffset());
+			assertEquals(expected.get(i).getLength(), actual.get(i).getLength());
+			assertEquals(expected.get(i).getLineNumber(), actual.get(i).getLineNumber());
+			assertEquals(expected.get(i).getMessage(), actual.get(i).getMessage());
+			assertEquals(expected.get(i).getSeverity(), actual.get(i).getSeverity());
+		}
+	}
+
+	@Test
+	public void testScript() throws Exception
+	{
+		// @formatter:off
+		roundTrip(
+			"/* leading comment */\n" +
+			"var a = 1, b = [1, , 'two', /re+/g], c = { x: a, 'y': b[0], get z() { return this.x; }, set z(v) {} };\n" +
+			"function foo(x, y) {\n" +
+			"  // line comment\n" +
+			"  if (x > y && !(x === null)) { x++; --y; } else { return x ? y : -x; }\n" +
+			"  for (var i = 0; i < 10; i += 2) { continue; }\n" +
+			"  for (var k in c) { delete c[k]; }\n" +
+			"  outer: while (true) { do { break outer; } while (false); }\n" +
+			"  switch (typeof x) { case 'number': x = void 0; break; default: ; }\n" +
+			"  try { throw new Error('boom'); } catch (e) { x = e; } finally { y = null; }\n" +
+			"  with (c) { x = z; }\n" +
+			"  return foo.call(this, x, y), typeof x;\n" +
+			"}\n");
+		// @formatter:on
+	}
+
+	@Test
+	public void testModule() throws Exception
+	{
+		// @formatter:off
+		roundTrip(
+			"import def, { a as b, c } from 'mod';\n" +
+			"import * as all from 'all';\n" +
+			"export default class Foo extends Bar {\n" +
+			"  static create(...args) { return new Foo(...args); }\n" +
+			"  get size() { return 1; }\n" +
+			"  *items() { yield 1; yield; }\n" +
+			"}\n" +
+			"export const add = (x, y = 1) => x + y;\n" +
+			"export { add as plus };\n" +
+			"export * from 'other';\n" +
+			"let { p, q: [r] } = { p: 1, q: [2], ['computed']: 3 };\n" +
+			"for (const v of [p, r]) { all.use(v); }\n");
+		// @formatter:on
+	}
+
+	@Test
+	public void testErrors() throws Exception
+	{
+		ParseResult result = roundTrip("var a = ;\nfunction (\n");
+
+		assertFalse(result.getErrors().isEmpty());
+	}
+
+	@Test
+	public void testOtherFormatVersionIsMiss() throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeInt(-1);
+		out.close();
+
+		assertNull(serializer.read(new ParseState("var a;"),
+				new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+	}
+}
@@ -0,0 +1,176 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.js.internal.core.build;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Platform;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.build.IProblem;
+import com.aptana.core.build.ReconcileContext;
+import com.aptana.core.util.IOUtil;
+import com.aptana.index.core.build.BuildContext;
+import com.aptana.js.core.IJSConstants;
+import com.aptana.js.core.JSCorePlugin;
+import com.aptana.js.core.tests.ITestFiles;
+
+/**
+ * Lints the JS performance corpus serially and from a pool of threads sharing one validator, and reports the time
+ * each took. Not part of the regular suite; the load can be changed through the
+ * <code>jsstyle.benchmark.rounds</code> and <code>jsstyle.benchmark.threads</code> system properties.
+ */
+public class JSStyleValidatorBenchmark
+{
+
+	private static final int ROUNDS = Integer.getInteger("jsstyle.benchmark.rounds", 5); //$NON-NLS-1$
+	private static final int THREADS = Integer.getInteger("jsstyle.benchmark.threads", Runtime.getRuntime() //$NON-NLS-1$
+			.availableProcessors());
+
+	private JSStyleValidator validator;
+	private List<BuildContext> contexts;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		validator = new JSStyleValidator()
+		{
+			@Override
+			protected String getPreferenceNode()
+			{
+				return JSCorePlugin.PLUGIN_ID;
+			}
+
+			@Override
+			public String getId()
+			{
+				return ID;
+			}
+
+			@Override
+			public List<String> getFilters()
+			{
+				return Collections.emptyList();
+			}
+		};
+
+		// parse up front, so only the linting is measured
+		contexts = new ArrayList<BuildContext>();
+		for (String file : ITestFiles.JAXER_FILES)
+		{
+			InputStream stream = FileLocator.openStream(Platform.getBundle(JSCorePlugin.PLUGIN_ID), new Path(file),
+					false);
+			BuildContext context = new ReconcileContext(IJSConstants.CONTENT_TYPE_JS, URI.create("file:/" + file), //$NON-NLS-1$
+					IOUtil.read(stream));
+			context.getAST();
+			contexts.add(context);
+		}
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		if (executor != null)
+		{
+			executor.shutdownNow();
+			executor = null;
+		}
+		validator = null;
+		contexts = null;
+	}
+
+	@Test
+	public void testSerialVersusParallel() throws Exception
+	{
+		// warm up
+		lintSerially();
+		lintInParallel();
+
+		long start = System.nanoTime();
+		int[] serial = null;
+		for (int i = 0; i < ROUNDS; i++)
+		{
+			serial = lintSerially();
+		}
+		long serialTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int[] parallel = null;
+		for (int i = 0; i < ROUNDS; i++)
+		{
+			parallel = lintInParallel();
+		}
+		long parallelTime = System.nanoTime() - start;
+
+		System.out.println(MessageFormat.format(
+				"{0} files x {1} rounds: serial {2}ms, {3} threads {4}ms, speedup {5,number,0.00}x", //$NON-NLS-1$
+				contexts.size(), ROUNDS, serialTime / 1000000, THREADS, parallelTime / 1000000, (double) serialTime
+						/ parallelTime));
+
+		// the files linted concurrently have to come out the same as when linted one at a time
+		assertArrayEquals(serial, parallel);
+	}
+
+	private int[] lintSerially()
+	{
+		int[] counts = new int[contexts.size()];
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] = lint(contexts.get(i));
+		}
+		return counts;
+	}
+
+	private int[] lintInParallel() throws Exception
+	{
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>(contexts.size());
+		for (final BuildContext context : contexts)
+		{
+			futures.add(executor.submit(new Callable<Integer>()
+			{
+				public Integer call() throws Exception
+				{
+					return lint(context);
+				}
+			}));
+		}
+
+		int[] counts = new int[futures.size()];
+		for (int i = 0; i < counts.length; i++)
+		{
+			counts[i] = futures.get(i).get();
+		}
+		return counts;
+	}
+
+	private int lint(BuildContext context)
+	{
+		validator.buildFile(context, new NullProgressMonitor());
+		Collection<IProblem> problems = context.getProblems().get(IJSConstants.JSSTYLE_PROBLEM_MARKER_TYPE);
+		return (problems == null) ? 0 : problems.size();
+	}
+}
@@ -8,8 +8,8 @@
 package com.aptana.js.internal.core.index;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
-import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -34,10 +34,12 @@ import com.aptana.core.IUserAgentManager;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.IOUtil;
 import com.aptana.core.util.StringUtil;
+import com.aptana.index.core.BinaryInput;
+import com.aptana.index.core.BinaryOutput;
+import com.aptana.index.core.IBinaryConvertible;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
-import com.aptana.index.core.IndexReader;
 import com.aptana.index.core.QueryResult;
 import com.aptana.index.core.SearchPattern;
 import com.aptana.index.core.build.BuildContext;
@@ -46,12 +48,16 @@ import com.aptana.js.core.JSCorePlugin;
 import com.aptana.js.core.index.IJSIndexConstants;
 import com.aptana.js.core.index.JSFileIndexingParticipant;
 import com.aptana.js.core.index.JSIndexQueryHelper;
+import com.aptana.js.core.model.ClassGroupElement;
 import com.aptana.js.core.model.EventElement;
 import com.aptana.js.core.model.EventPropertyElement;
+import com.aptana.js.core.model.ExceptionElement;
 import com.aptana.js.core.model.FunctionElement;
 import com.aptana.js.core.model.IHasPredefinedValues;
+import com.aptana.js.core.model.JSElement;
 import com.aptana.js.core.model.ParameterElement;
 import com.aptana.js.core.model.PropertyElement;
+import com.aptana.js.core.model.SinceElement;
 import com.aptana.js.core.model.TypeElement;
 import com.aptana.js.core.model.UserAgentElement;
 import com.aptana.parsing.ast.IParseRootNode;
@@ -483,22 +489,123 @@ public class JSIndexTest
 		assertNotNull(properties);
 		assertEquals(1, properties.size());
 
-		// split result into columns
+		// make sure the last column holds the binary encoding
 		String word = properties.get(0).getWord();
-		String[] columns = IndexReader.DELIMITER_PATTERN.split(word);
-		assertEquals(3, columns.length);
+		int offset = word.indexOf(IJSIndexConstants.DELIMITER, word.indexOf(IJSIndexConstants.DELIMITER) + 1) + 1;
+		assertTrue("Expected a binary encoded property", BinaryInput.isBinary(word, offset));
 
-		// grab last column and parse as JSON
-		String json = columns[2];
-		Object m = JSON.parse(json);
+		// decode it and make sure the special value survived
+		PropertyElement decoded = new PropertyElement();
+		decoded.fromBinary(new BinaryInput(word, offset));
+		assertTrue("Expected property to use all user agents", decoded.hasAllUserAgents());
+	}
+
+	/**
+	 * Make sure functions survive a round trip through the binary encoding, including the documentation details that
+	 * are decoded lazily
+	 */
+	@Test
+	public void testFunctionBinaryRoundTrip()
+	{
+		FunctionElement function = new FunctionElement();
+		function.setName("myFunction");
+		function.setOwningType("MyClass");
+		function.setDescription("Does something");
+		function.setIsMethod(true);
+		function.addReference("otherFunction");
+		function.addExample("myFunction(1, 'a')");
+
+		ParameterElement parameter = new ParameterElement();
+		parameter.setName("count");
+		parameter.addType("Number");
+		parameter.setDescription("How many");
+		function.addParameter(parameter);
+
+		ParameterElement parameter2 = new ParameterElement();
+		parameter2.setName("label");
+		parameter2.addType("String");
+		function.addParameter(parameter2);
+
+		function.addReturnType("String");
+
+		ExceptionElement exception = new ExceptionElement();
+		exception.setType("Error");
+		exception.setDescription("When count is negative");
+		function.addException(exception);
+
+		SinceElement since = new SinceElement();
+		since.setName("MyLib");
+		since.setVersion("1.0");
+		function.addSince(since);
+
+		BinaryOutput out = new BinaryOutput();
+		function.toBinary(out);
+
+		FunctionElement decoded = new FunctionElement();
+		decoded.fromBinary(new BinaryInput(out.toString(), 0));
+
+		assertEquals("myFunction", decoded.getName());
+		assertEquals("MyClass", decoded.getOwningType());
+		assertTrue(decoded.isMethod());
+		assertEquals(CollectionsUtil.newList("count", "label"), decoded.getParameterNames());
+		assertEquals(CollectionsUtil.newList("Number"), decoded.getParameters().get(0).getTypes());
+		assertEquals("How many", decoded.getParameters().get(0).getDescription());
+		assertEquals(CollectionsUtil.newList("String"), decoded.getReturnTypeNames());
+		assertEquals("Does something", decoded.getDescription());
+		assertEquals(CollectionsUtil.newList("otherFunction"), decoded.getReferences());
+		assertEquals(CollectionsUtil.newList("myFunction(1, 'a')"), decoded.getExamples());
+		assertEquals(CollectionsUtil.newList("Error"), decoded.getExceptionTypes());
+		assertEquals(1, decoded.getSinceList().size());
+		assertEquals("1.0", decoded.getSinceList().get(0).getVersion());
+		assertEquals(function.toSource(), decoded.toSource());
+	}
+
+	/**
+	 * Only the elements whose fields are all encoded may be written in binary, the others still go through JSON
+	 */
+	@Test
+	public void testOnlyEncodedElementsAreBinary()
+	{
+		assertTrue(IBinaryConvertible.class.isAssignableFrom(PropertyElement.class));
+		assertTrue(IBinaryConvertible.class.isAssignableFrom(FunctionElement.class));
+		assertTrue(IBinaryConvertible.class.isAssignableFrom(EventElement.class));
+		assertTrue(IBinaryConvertible.class.isAssignableFrom(EventPropertyElement.class));
+		assertFalse(IBinaryConvertible.class.isAssignableFrom(TypeElement.class));
+		assertFalse(IBinaryConvertible.class.isAssignableFrom(ClassGroupElement.class));
+		assertFalse(IBinaryConvertible.class.isAssignableFrom(JSElement.class));
+	}
+
+	/**
+	 * Indexes written by older releases store members as JSON. Make sure those can still be read.
+	 */
+	@Test
+	public void testReadsLegacyJSONMembers()
+	{
+		FunctionElement function = new FunctionElement();
+		function.setName("legacyFunction");
+		function.setOwningType("Legacy");
+		function.setDescription("Written as JSON");
+		function.addReturnType("Number");
 
-		// make sure we have a map
-		assertTrue("Expected a Map from the JSON string", m instanceof Map);
-		Map<?, ?> map = (Map<?, ?>) m;
+		// @formatter:off
+		String key = StringUtil.join(
+			IJSIndexConstants.DELIMITER,
+			function.getOwningType(),
+			function.getName(),
+			JSON.toString(function)
+		);
+		// @formatter:on
+		getIndex().addEntry(IJSIndexConstants.FUNCTION, key, URI.create("legacy.js"));
 
-		// test userAgents for "special value" which is really just a null value.
-		assertTrue("Expected a userAgents property", map.containsKey("userAgents"));
-		assertNull("Expected userAgents property to be null", map.get("userAgents"));
+		JSIndexReader reader = new JSIndexReader();
+		List<FunctionElement> functions = reader.getFunctions(getIndex(), "Legacy");
+
+		assertEquals(1, functions.size());
+		FunctionElement retrieved = functions.get(0);
+		assertEquals("legacyFunction", retrieved.getName());
+		assertEquals("Written as JSON", retrieved.getDescription());
+		assertEquals(CollectionsUtil.newList("Number"), retrieved.getReturnTypeNames());
+		assertEquals(CollectionsUtil.newList("legacy.js"), retrieved.getDocuments());
 	}
 
 	/**
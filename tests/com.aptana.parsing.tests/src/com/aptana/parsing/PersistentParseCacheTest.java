@@ -0,0 +1,230 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import beaver.Symbol;
+
+import com.aptana.core.util.FileUtil;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.ParseRootNode;
+
+@SuppressWarnings("nls")
+public class PersistentParseCacheTest
+{
+	private static final String CONTENT_TYPE = "com.aptana.test.contentType";
+
+	private static class TestRootNode extends ParseRootNode
+	{
+		public TestRootNode(int start, int end)
+		{
+			super(new Symbol[0], start, end);
+		}
+
+		public String getLanguage()
+		{
+			return CONTENT_TYPE;
+		}
+	}
+
+	/**
+	 * Only persists the range of the root node
+	 */
+	private static class TestSerializer implements IParseResultSerializer
+	{
+		public ParseResult read(IParseState parseState, DataInput in) throws IOException
+		{
+			int start = in.readInt();
+			int end = in.readInt();
+
+			return new ParseResult(new TestRootNode(start, end), Collections.<IParseError> emptyList());
+		}
+
+		public void write(ParseResult result, DataOutput out) throws IOException
+		{
+			out.writeInt(result.getRootNode().getStartingOffset());
+			out.writeInt(result.getRootNode().getEndingOffset());
+		}
+	}
+
+	private File directory;
+	private IParseResultSerializer serializer;
+	private PersistentParseCache cache;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		directory = new File(FileUtil.getTempDirectory().toOSString(), "parseCache_" + System.currentTimeMillis());
+		serializer = new TestSerializer();
+		cache = createCache(1024 * 1024);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		if (cache != null)
+		{
+			cache.clear();
+			cache = null;
+		}
+
+		if (directory != null)
+		{
+			directory.delete();
+			directory = null;
+		}
+	}
+
+	private PersistentParseCache createCache(long size)
+	{
+		return new PersistentParseCache(directory, size, new PersistentParseCache.ISerializerProvider()
+		{
+			public IParseResultSerializer getSerializer(String contentTypeId)
+			{
+				return CONTENT_TYPE.equals(contentTypeId) ? serializer : null;
+			}
+		});
+	}
+
+	private ParseResult createResult(String source)
+	{
+		return new ParseResult(new TestRootNode(0, source.length() - 1), Collections.<IParseError> emptyList());
+	}
+
+	private void put(PersistentParseCache cache, String source)
+	{
+		ParseState parseState = new ParseState(source);
+
+		cache.put(CONTENT_TYPE, parseState.getCacheKey(CONTENT_TYPE), parseState, createResult(source));
+		cache.flush();
+	}
+
+	private ParseResult get(PersistentParseCache cache, String source)
+	{
+		ParseState parseState = new ParseState(source);
+
+		return cache.get(CONTENT_TYPE, parseState.getCacheKey(CONTENT_TYPE), parseState);
+	}
+
+	@Test
+	public void testRoundTrip()
+	{
+		String source = "var x = 1;\nvar y = 2;\n";
+
+		assertNull(get(cache, source));
+		put(cache, source);
+
+		ParseResult result = get(cache, source);
+
+		assertNotNull(result);
+		assertEquals(0, result.getRootNode().getStartingOffset());
+		assertEquals(source.length() - 1, result.getRootNode().getEndingOffset());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getWriteCount());
+	}
+
+	@Test
+	public void testSurvivesNewInstance()
+	{
+		String source = "function foo() { return 42; }";
+
+		put(cache, source);
+
+		PersistentParseCache other = createCache(1024 * 1024);
+
+		assertNotNull(get(other, source));
+		assertEquals(1, other.getHitCount());
+	}
+
+	@Test
+	public void testChangedSourceMisses()
+	{
+		put(cache, "function foo() { return 42; }");
+
+		assertNull(get(cache, "function foo() { return 43; }"));
+	}
+
+	@Test
+	public void testNoSerializer()
+	{
+		ParseState parseState = new ParseState("some other content");
+		String contentType = "com.aptana.test.other";
+
+		cache.put(contentType, parseState.getCacheKey(contentType), parseState, createResult("some other content"));
+		cache.flush();
+
+		assertEquals(0, cache.getWriteCount());
+		assertNull(cache.get(contentType, parseState.getCacheKey(contentType), parseState));
+	}
+
+	@Test
+	public void testCorruptEntryIsDiscarded() throws Exception
+	{
+		String source = "var corrupt = true;";
+
+		put(cache, source);
+
+		File[] files = directory.listFiles();
+
+		assertEquals(1, files.length);
+		assertTrue(files[0].delete());
+		assertTrue(files[0].createNewFile());
+
+		assertNull(get(cache, source));
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	@Test
+	public void testEviction()
+	{
+		put(cache, "var first = 1;");
+
+		long entrySize = cache.getSize();
+
+		// room for about four entries
+		cache = createCache(entrySize * 4 + entrySize / 2);
+
+		for (int i = 0; i < 10; i++)
+		{
+			put(cache, "var value" + i + " = " + i + ";");
+		}
+
+		assertTrue(cache.getEvictionCount() > 0);
+		assertTrue(cache.getSize() <= entrySize * 4 + entrySize / 2);
+	}
+
+	@Test
+	public void testClearDropsPendingWrites()
+	{
+		String source = "var pending = true;";
+		ParseState parseState = new ParseState(source);
+
+		// may or may not have been written by the time the cache is cleared
+		cache.put(CONTENT_TYPE, parseState.getCacheKey(CONTENT_TYPE), parseState, createResult(source));
+		cache.clear();
+		cache.flush();
+
+		assertNull(get(cache, source));
+		assertEquals(0, cache.getSize());
+	}
+}
@@ -12,7 +12,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ ParsingPoolFactoryTest.class, })
+@SuiteClasses({ ParsingEngineThroughputTest.class, ParsingPoolFactoryTest.class, })
 public class AllTests
 {
 
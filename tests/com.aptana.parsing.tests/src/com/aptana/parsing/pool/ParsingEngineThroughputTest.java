@@ -0,0 +1,258 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.parsing.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import beaver.Symbol;
+
+import com.aptana.parsing.IParseState;
+import com.aptana.parsing.IParser;
+import com.aptana.parsing.IParserPool;
+import com.aptana.parsing.ParseResult;
+import com.aptana.parsing.ParseState;
+import com.aptana.parsing.ParsingEngine;
+import com.aptana.parsing.ast.IParseError;
+import com.aptana.parsing.ast.ParseRootNode;
+
+/**
+ * Measures the throughput of the parse cache at increasing thread counts, and verifies that concurrent requests for
+ * the same source share a single parse, so every measured request is a cache hit.
+ */
+@SuppressWarnings("nls")
+public class ParsingEngineThroughputTest
+{
+	private static final String CONTENT_TYPE = "test";
+	private static final int SOURCES = 256;
+	private static final int PARSES_PER_THREAD = 20000;
+
+	/**
+	 * A thread-safe parser that records how often each source was parsed
+	 */
+	private static class CountingParser implements IParser
+	{
+		private final ConcurrentMap<String, AtomicInteger> parses = new ConcurrentHashMap<String, AtomicInteger>();
+
+		public ParseResult parse(IParseState parseState) throws Exception
+		{
+			AtomicInteger count = new AtomicInteger();
+			AtomicInteger existing = parses.putIfAbsent(parseState.getSource(), count);
+
+			((existing != null) ? existing : count).incrementAndGet();
+
+			// simulate some parsing work
+			Thread.sleep(1);
+
+			ParseRootNode root = new ParseRootNode(new Symbol[0], 0, parseState.getSource().length())
+			{
+				public String getLanguage()
+				{
+					return CONTENT_TYPE;
+				}
+			};
+
+			return new ParseResult(root, Collections.<IParseError> emptyList());
+		}
+	}
+
+	private CountingParser parser;
+	private ParsingEngine parsingEngine;
+	private List<String> sources;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		parser = new CountingParser();
+		// big enough that nothing gets evicted
+		parsingEngine = createParsingEngine(64 * 1024 * 1024);
+		sources = createSources(SOURCES, "");
+	}
+
+	private ParsingEngine createParsingEngine(int cacheSize)
+	{
+		final IParserPool pool = new IParserPool()
+		{
+			public IParser checkOut()
+			{
+				return parser;
+			}
+
+			public void checkIn(IParser t)
+			{
+			}
+
+			public IParser create()
+			{
+				return parser;
+			}
+
+			public boolean validate(IParser o)
+			{
+				return true;
+			}
+
+			public void expire(IParser o)
+			{
+			}
+
+			public void dispose()
+			{
+			}
+		};
+
+		// no minimum size so every parse goes through the cache
+		return new ParsingEngine(new ParsingEngine.IParserPoolProvider()
+		{
+			public IParserPool getParserPool(String contentTypeId)
+			{
+				return pool;
+			}
+		}, cacheSize, 0)
+		{
+			// Note: empty body (class just created to access protected constructor).
+		};
+	}
+
+	private List<String> createSources(int count, String padding)
+	{
+		List<String> result = new ArrayList<String>(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			result.add("var value" + i + " = " + i + "; // some padding to make the source longer" + padding);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Checks that every source was parsed exactly once, i.e. all the other requests were served by the cache
+	 */
+	private void assertParsedOnce()
+	{
+		assertEquals(sources.size(), parser.parses.size());
+
+		for (String source : sources)
+		{
+			assertEquals(source, 1, parser.parses.get(source).get());
+		}
+	}
+
+	@Test
+	public void testThroughput() throws Exception
+	{
+		// fill the cache (and warm up the JIT) so the measurements below reflect cache lookups rather than parses
+		runParses(4);
+
+		for (int threads : new int[] { 1, 4, 16 })
+		{
+			long elapsed = runParses(threads);
+			long operations = (long) threads * PARSES_PER_THREAD;
+
+			System.out.println(MessageFormat.format("ParsingEngine: {0} thread(s), {1} parses in {2} ms, {3} ops/ms",
+					threads, operations, elapsed, operations / Math.max(1, elapsed)));
+		}
+
+		// the measurements were of cache hits only
+		assertParsedOnce();
+	}
+
+	@Test
+	public void testConcurrentRequestsShareParse() throws Exception
+	{
+		runParses(16);
+
+		assertParsedOnce();
+	}
+
+	@Test
+	public void testConcurrentRequestsForLargeSourcesShareParse() throws Exception
+	{
+		// segments of 2k chars, so sources over 1k go to the single segment for large sources, which holds 16k
+		StringBuilder padding = new StringBuilder();
+
+		while (padding.length() < 1024)
+		{
+			padding.append(" // more padding");
+		}
+
+		parsingEngine = createParsingEngine(16 * 1024);
+		sources = createSources(8, padding.toString());
+
+		runParses(16);
+
+		assertParsedOnce();
+	}
+
+	/**
+	 * Have the specified number of threads parse all the sources repeatedly
+	 * 
+	 * @param threads
+	 * @return the elapsed time in milliseconds
+	 * @throws Exception
+	 */
+	private long runParses(int threads) throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threads);
+
+		for (int t = 0; t < threads; t++)
+		{
+			final int offset = t * 7;
+
+			tasks.add(new Callable<Object>()
+			{
+				public Object call() throws Exception
+				{
+					for (int i = 0; i < PARSES_PER_THREAD; i++)
+					{
+						String source = sources.get((offset + i) % sources.size());
+						ParseResult result = parsingEngine.parse(CONTENT_TYPE, new ParseState(source));
+
+						assertNotNull(result.getRootNode());
+					}
+
+					return null;
+				}
+			});
+		}
+
+		try
+		{
+			long start = System.currentTimeMillis();
+
+			for (Future<Object> future : executor.invokeAll(tasks))
+			{
+				// rethrows any failure
+				future.get();
+			}
+
+			return System.currentTimeMillis() - start;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}
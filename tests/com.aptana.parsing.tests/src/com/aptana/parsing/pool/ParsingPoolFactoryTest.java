@@ -10,6 +10,7 @@ package com.aptana.parsing.pool;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.util.HashMap;
@@ -404,20 +405,24 @@ public class ParsingPoolFactoryTest
 		contentTypeToPool.put("mainContent", new ParserPool(mainParser));
 		contentTypeToPool.put("subContent", new ParserPool(subParser));
 
-		parsingEngine = new ParsingEngine(new ParserPoolProvider(contentTypeToPool), 4, 0)
+		// Use a single segment so that all the parses share the same LRU.
+		parsingEngine = new ParsingEngine(new ParserPoolProvider(contentTypeToPool), 4, 0, 1)
 		{
 			// Empty body just to access protected constructor.
 		};
 
 		// Change the cache for a cache with an auxiliary cache that's predictable.
-		Field declaredField = ParsingEngine.class.getDeclaredField("fParseCache");
+		Field segmentsField = ParsingEngine.class.getDeclaredField("fSegments");
+		segmentsField.setAccessible(true);
+		Object segment = Array.get(segmentsField.get(parsingEngine), 0);
+		Field declaredField = segment.getClass().getDeclaredField("fCache");
 		declaredField.setAccessible(true);
 		Map auxiliaryCache = new HashMap();
 		Constructor<LRUCacheWithSoftPrunedValues> constructor = LRUCacheWithSoftPrunedValues.class
 				.getDeclaredConstructor(int.class, Map.class);
 		constructor.setAccessible(true);
 		LRUCacheWithSoftPrunedValues cache = constructor.newInstance(4, auxiliaryCache);
-		declaredField.set(parsingEngine, cache);
+		declaredField.set(segment, cache);
 
 		mainParser.setParsingEngine(parsingEngine);
 
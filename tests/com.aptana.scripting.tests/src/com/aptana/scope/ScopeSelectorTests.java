@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -445,4 +445,27 @@ public class ScopeSelectorTests
 		assertFalse("Selector shouldn't match, but does",
 				textSourceSelector.matches("text.html.basic source.ruby.embedded.html"));
 	}
+
+	@Test
+	public void testCachedMatchResults()
+	{
+		String scope = "text.html.basic source.php.embedded.html string.quoted.double.php";
+		ScopeSelector.clearMatchCache();
+
+		ScopeSelector first = new ScopeSelector("source.php string");
+		assertTrue(first.matches(scope));
+		assertEquals(Arrays.asList(0, 10, 6), first.getMatchResults());
+
+		// compareTo pads the results of the selectors it compares, which must not leak into the cache
+		ScopeSelector longer = new ScopeSelector("text source string");
+		assertTrue(longer.matches(scope + " punctuation.definition.string.end.php"));
+		first.compareTo(longer);
+
+		ScopeSelector second = new ScopeSelector("source.php string");
+		assertTrue(second.matches(scope));
+		assertEquals(Arrays.asList(0, 10, 6), second.getMatchResults());
+
+		assertFalse(second.matches("text.html.basic"));
+		assertFalse(new ScopeSelector("source.php string").matches("text.html.basic"));
+	}
 }
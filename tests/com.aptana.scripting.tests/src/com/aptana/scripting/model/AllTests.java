@@ -14,6 +14,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 // @formatter:off
 @SuiteClasses({
+	BundleCacherTests.class,
 	BundleTests.class,
 	BundleVisibilityTests.class,
 	CommandBlockRunnerTests.class,
@@ -26,6 +27,7 @@ import org.junit.runners.Suite.SuiteClasses;
 	SnippetCategoryTests.class,
 	WithDefaultsTests.class,
 	ProjectBundleMonitorTests.class,
+	ScopeIndexTests.class,
 	UserBundleMonitorTests.class,
 })
 // @formatter:on
@@ -0,0 +1,168 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BundleCacherTests extends BundleTestBase
+{
+	private File cacheDirectory;
+	private BundleCacher cacher;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		getBundleManagerInstance().setUseCache(false);
+
+		cacheDirectory = File.createTempFile(getClass().getSimpleName(), "temp");
+		assertTrue(cacheDirectory.delete());
+		assertTrue(cacheDirectory.mkdir());
+		cacher = new BundleCacher(getBundleManagerInstance(), cacheDirectory);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		File[] files = cacheDirectory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		cacheDirectory.delete();
+		getBundleManagerInstance().setUseCache(true);
+
+		super.tearDown();
+	}
+
+	/**
+	 * Loads a bundle from its scripts, caches it, and restores it from the cache after a reset
+	 * 
+	 * @param bundleName
+	 * @return the restored bundle
+	 */
+	private BundleElement roundTrip(String bundleName)
+	{
+		return roundTrip(bundleName, BundlePrecedence.APPLICATION);
+	}
+
+	/**
+	 * Loads a bundle from its scripts, caches it, and restores it from the cache after a reset
+	 * 
+	 * @param bundleName
+	 * @param precedence
+	 * @return the restored bundle
+	 */
+	private BundleElement roundTrip(String bundleName, BundlePrecedence precedence)
+	{
+		BundleElement bundle = loadBundle(bundleName, precedence);
+		File bundleDirectory = bundle.getBundleDirectory();
+
+		assertTrue(cacher.cache(bundleDirectory, null));
+		BundleManager.getInstance().reset();
+		assertNull(getBundleManagerInstance().getBundleEntry(bundleName));
+
+		BundleElement restored = cacher.load(bundleDirectory, null);
+		assertNotNull(restored);
+		getBundleManagerInstance().addBundle(restored);
+		assertEquals(bundleName, restored.getDisplayName());
+		assertEquals(bundle.getPath(), restored.getPath());
+
+		return restored;
+	}
+
+	@Test
+	public void testCommandRoundTrip()
+	{
+		roundTrip("bundleWithCommand");
+
+		List<CommandElement> commands = getBundleManagerInstance().getBundleEntry("bundleWithCommand").getCommands();
+		assertEquals(1, commands.size());
+		assertEquals("Application Command", commands.get(0).getDisplayName());
+		assertEquals("cd", commands.get(0).getInvoke());
+		assertFalse(commands.get(0).hasDeferredInvokeBlock());
+	}
+
+	@Test
+	public void testMenuRoundTrip()
+	{
+		roundTrip("bundleWithMenu");
+
+		List<MenuElement> menus = getBundleManagerInstance().getBundleEntry("bundleWithMenu").getMenus();
+		assertEquals(1, menus.size());
+		assertEquals("MyMenu", menus.get(0).getDisplayName());
+	}
+
+	@Test
+	public void testSnippetRoundTrip()
+	{
+		roundTrip("bundleWithSnippet");
+
+		List<SnippetElement> snippets = getBundleManagerInstance().getBundleEntry("bundleWithSnippet").getSnippets();
+		assertEquals(1, snippets.size());
+	}
+
+	@Test
+	public void testDeletedCacheIsNotLoaded()
+	{
+		BundleElement bundle = loadBundle("loneBundle", BundlePrecedence.APPLICATION);
+		File bundleDirectory = bundle.getBundleDirectory();
+
+		assertTrue(cacher.cache(bundleDirectory, null));
+		cacher.delete(bundleDirectory);
+		BundleManager.getInstance().reset();
+
+		assertNull(cacher.load(bundleDirectory, null));
+	}
+
+	@Test
+	public void testDeferredInvokeBlockIsLoaded()
+	{
+		roundTrip("requireInCommand", BundlePrecedence.PROJECT);
+
+		List<CommandElement> commands = getBundleManagerInstance().getBundleEntry("requireInCommand").getCommands();
+		assertEquals(1, commands.size());
+		assertTrue(commands.get(0).hasDeferredInvokeBlock());
+		assertNotNull(commands.get(0).getInvokeBlock());
+		assertFalse(commands.get(0).hasDeferredInvokeBlock());
+	}
+
+	@Test
+	public void testAddedLibraryInvalidatesCache() throws Exception
+	{
+		BundleElement bundle = loadBundle("requireInCommand", BundlePrecedence.PROJECT);
+		File bundleDirectory = bundle.getBundleDirectory();
+		File library = new File(BundleUtils.getBundleLibDirectory(bundleDirectory), "other_thing.rb");
+
+		assertTrue(cacher.cache(bundleDirectory, null));
+		BundleManager.getInstance().reset();
+
+		try
+		{
+			assertTrue(library.createNewFile());
+			assertNull(cacher.load(bundleDirectory, null));
+		}
+		finally
+		{
+			library.delete();
+		}
+	}
+}
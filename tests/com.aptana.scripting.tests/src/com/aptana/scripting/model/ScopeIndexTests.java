@@ -0,0 +1,102 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.aptana.core.util.CollectionsUtil;
+import com.aptana.scope.MatchAnyScopeSelector;
+import com.aptana.scope.ScopeSelector;
+import com.aptana.scripting.model.filters.AndFilter;
+import com.aptana.scripting.model.filters.HasTriggerFilter;
+import com.aptana.scripting.model.filters.IModelFilter;
+import com.aptana.scripting.model.filters.ScopeFilter;
+
+public class ScopeIndexTests extends BundleTestBase
+{
+	private static final String[] SCOPES = { null, "source.js", "source.ruby", "text.html source.js",
+			"source.php - string", "text.html, source.css", "source.js & meta.function", "(string | comment)",
+			"text.html - (source | string)", "string.quoted.double" };
+
+	private static Set<String> names(String... names)
+	{
+		return new HashSet<String>(Arrays.asList(names));
+	}
+
+	@Test
+	public void testRequiredNames()
+	{
+		assertNull(ScopeIndex.getRequiredNames(new MatchAnyScopeSelector()));
+		assertEquals(names("source"), ScopeIndex.getRequiredNames(new ScopeSelector("source.js")));
+		assertEquals(names("source"), ScopeIndex.getRequiredNames(new ScopeSelector("text.html source.js")));
+		assertEquals(names("text", "source"), ScopeIndex.getRequiredNames(new ScopeSelector("text.html, source.css")));
+		assertEquals(names("source"), ScopeIndex.getRequiredNames(new ScopeSelector("source.php - string")));
+		assertEquals(names("string", "comment"), ScopeIndex.getRequiredNames(new ScopeSelector("(string | comment)")));
+		assertEquals(names("meta"), ScopeIndex.getRequiredNames(new ScopeSelector("source.js & meta.function")));
+	}
+
+	@Test
+	public void testScopes()
+	{
+		ScopeFilter scopeFilter = new ScopeFilter("source.js");
+
+		assertNull(ScopeIndex.getScopes(null));
+		assertNull(ScopeIndex.getScopes(new HasTriggerFilter()));
+		assertSame(scopeFilter.getScopes(), ScopeIndex.getScopes(scopeFilter));
+		assertSame(scopeFilter.getScopes(), ScopeIndex.getScopes(new AndFilter(new HasTriggerFilter(), scopeFilter)));
+	}
+
+	@Test
+	public void testIndexedQueriesMatchFullScan()
+	{
+		BundleManager manager = getBundleManagerInstance();
+		BundleElement bundle = new BundleElement(manager.getUserBundlesPath() + "/scopeIndexBundle");
+		bundle.setDisplayName("scopeIndexBundle");
+
+		for (int i = 0; i < SCOPES.length; i++)
+		{
+			CommandElement command = new CommandElement(bundle.getPath() + "/commands/command" + i + ".rb");
+			command.setDisplayName("command" + i);
+			command.setScope(SCOPES[i]);
+			bundle.addChild(command);
+		}
+		manager.addBundle(bundle);
+
+		String[] queries = { "source.js", "text.html.basic source.js.embedded.html", "text.html.basic",
+				"source.php string.quoted.double.php", "source.js meta.function.js", "comment.line.js", "text.xml" };
+
+		for (String query : queries)
+		{
+			IModelFilter filter = new ScopeFilter(query);
+			List<CommandElement> expected = new ArrayList<CommandElement>();
+
+			CollectionsUtil.filter(manager.getBundleCommands(bundle.getDisplayName()), expected, filter);
+
+			assertEquals(query, expected, manager.getCommands(filter));
+		}
+
+		// elements added later are seen by the next query
+		CommandElement command = new CommandElement(bundle.getPath() + "/commands/late.rb");
+		command.setDisplayName("late");
+		command.setScope("text.xml");
+		bundle.addChild(command);
+
+		assertTrue(manager.getCommands(new ScopeFilter("text.xml")).contains(command));
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.IFileTree;
+import org.eclipse.core.filesystem.provider.FileInfo;
+import org.eclipse.core.filesystem.provider.FileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.io.vfs.IExtendedFileStore;
+import com.aptana.core.io.vfs.IFileTreeVisitor;
+
+@SuppressWarnings("nls")
+public class CRCComparatorTest
+{
+	/**
+	 * A file in memory that counts how often it is read, and may be checksummed by its "server"
+	 */
+	private static class TestFileStore extends FileStore implements IExtendedFileStore
+	{
+		private final URI uri;
+		private byte[] contents;
+		private long lastModified;
+		private long serverCRC = -1;
+		private int reads;
+
+		TestFileStore(URI uri, String contents, long lastModified)
+		{
+			this.uri = uri;
+			this.contents = contents.getBytes();
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public String[] childNames(int options, IProgressMonitor monitor)
+		{
+			return EMPTY_STRING_ARRAY;
+		}
+
+		@Override
+		public IFileInfo fetchInfo(int options, IProgressMonitor monitor)
+		{
+			FileInfo info = new FileInfo(getName());
+			info.setExists(true);
+			info.setLength(contents.length);
+			info.setLastModified(lastModified);
+			return info;
+		}
+
+		@Override
+		public IFileStore getChild(String name)
+		{
+			return null;
+		}
+
+		@Override
+		public String getName()
+		{
+			return uri.getPath().substring(uri.getPath().lastIndexOf('/') + 1);
+		}
+
+		@Override
+		public IFileStore getParent()
+		{
+			return null;
+		}
+
+		@Override
+		public InputStream openInputStream(int options, IProgressMonitor monitor)
+		{
+			reads++;
+			return new ByteArrayInputStream(contents);
+		}
+
+		@Override
+		public URI toURI()
+		{
+			return uri;
+		}
+
+		public URI toCanonicalURI()
+		{
+			return uri;
+		}
+
+		public IFileTree fetchFileTree(IFileTreeVisitor visitor, IProgressMonitor monitor)
+		{
+			return null;
+		}
+
+		public long computeCRC32(IProgressMonitor monitor)
+		{
+			return serverCRC;
+		}
+	}
+
+	private CRCComparator comparator;
+	private String root;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		comparator = new CRCComparator();
+		// the computed CRCs are remembered across comparators, so keep the files of each test apart
+		root = "test://host/" + System.nanoTime() + "/";
+	}
+
+	private TestFileStore file(String name, String contents)
+	{
+		return new TestFileStore(URI.create(root + name), contents, 1000);
+	}
+
+	private int compare(IFileStore client, IFileStore server) throws CoreException
+	{
+		return comparator.compare(new VirtualFileSyncPair(client, server, "file.txt", SyncState.Unknown), null);
+	}
+
+	private static long crc(String contents)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(contents.getBytes());
+		return crc.getValue();
+	}
+
+	@Test
+	public void testSameContentsMatch() throws Exception
+	{
+		assertEquals(SyncState.ItemsMatch, compare(file("client/file.txt", "abc"), file("server/file.txt", "abc")));
+	}
+
+	@Test
+	public void testDifferentContentsMismatch() throws Exception
+	{
+		assertEquals(SyncState.CRCMismatch, compare(file("client/file.txt", "abc"), file("server/file.txt", "abd")));
+	}
+
+	@Test
+	public void testDifferentLengthsMismatchWithoutReading() throws Exception
+	{
+		TestFileStore client = file("client/file.txt", "abc");
+		TestFileStore server = file("server/file.txt", "abcd");
+
+		assertEquals(SyncState.CRCMismatch, compare(client, server));
+		assertEquals(0, client.reads);
+		assertEquals(0, server.reads);
+	}
+
+	@Test
+	public void testMissingFiles() throws Exception
+	{
+		assertEquals(SyncState.ItemsMatch, compare(null, null));
+		assertEquals(SyncState.CRCMismatch, compare(file("client/file.txt", "abc"), null));
+		assertEquals(SyncState.CRCMismatch, compare(null, file("server/file.txt", "abc")));
+	}
+
+	@Test
+	public void testCRCIsReusedWhileFileIsUnchanged() throws Exception
+	{
+		TestFileStore client = file("client/file.txt", "abc");
+		TestFileStore server = file("server/file.txt", "abc");
+
+		assertEquals(SyncState.ItemsMatch, compare(client, server));
+		assertEquals(SyncState.ItemsMatch, compare(client, server));
+		assertEquals(1, client.reads);
+		assertEquals(1, server.reads);
+
+		// same length, new timestamp
+		server.contents = "abd".getBytes();
+		server.lastModified = 2000;
+		assertEquals(SyncState.CRCMismatch, compare(client, server));
+		assertEquals(1, client.reads);
+		assertEquals(2, server.reads);
+	}
+
+	@Test
+	public void testServerComputesCRC() throws Exception
+	{
+		TestFileStore client = file("client/file.txt", "abc");
+		TestFileStore server = file("server/file.txt", "abc");
+		server.serverCRC = crc("abc");
+
+		assertEquals(SyncState.ItemsMatch, compare(client, server));
+		assertEquals(1, client.reads);
+		assertEquals(0, server.reads);
+	}
+
+	@Test
+	public void testServerCRCMismatch() throws Exception
+	{
+		TestFileStore client = file("client/file.txt", "abc");
+		TestFileStore server = file("server/file.txt", "abd");
+		server.serverCRC = crc("abd");
+
+		assertEquals(SyncState.CRCMismatch, compare(client, server));
+		assertEquals(0, server.reads);
+	}
+}
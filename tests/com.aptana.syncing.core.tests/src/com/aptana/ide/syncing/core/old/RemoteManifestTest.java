@@ -0,0 +1,300 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.io.vfs.ExtendedFileInfo;
+import com.aptana.core.util.FileUtil;
+import com.aptana.ide.core.io.LocalConnectionPoint;
+
+@SuppressWarnings("nls")
+public class RemoteManifestTest
+{
+	private static final String ROOT_URI = "sftp://user@host/var/www";
+
+	private File dir;
+	private File file;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		dir = File.createTempFile("manifest", "");
+		dir.delete();
+		dir.mkdirs();
+		file = new File(dir, "site.manifest");
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		FileUtil.deleteRecursively(dir);
+		dir = null;
+		file = null;
+	}
+
+	private static IFileInfo info(String name, long length, long lastModified)
+	{
+		ExtendedFileInfo info = new ExtendedFileInfo(name);
+		info.setExists(true);
+		info.setLength(length);
+		info.setLastModified(lastModified);
+		info.setPermissions(0644);
+		return info;
+	}
+
+	private static IFileInfo directoryInfo(String name)
+	{
+		ExtendedFileInfo info = new ExtendedFileInfo(name);
+		info.setExists(true);
+		info.setDirectory(true);
+		return info;
+	}
+
+	private RemoteManifest createListedManifest()
+	{
+		RemoteManifest manifest = new RemoteManifest(file, ROOT_URI);
+		manifest.beginListing();
+		manifest.listed("index.html", info("index.html", 100, 1000));
+		manifest.listed("js", directoryInfo("js"));
+		manifest.listed("js/app.js", info("app.js", 200, 2000));
+		manifest.endListing();
+		return manifest;
+	}
+
+	@Test
+	public void testIncompleteUntilListed()
+	{
+		RemoteManifest manifest = new RemoteManifest(file, ROOT_URI);
+		assertFalse(manifest.isComplete());
+		manifest.beginListing();
+		manifest.listed("index.html", info("index.html", 100, 1000));
+		assertFalse(manifest.isComplete());
+		manifest.endListing();
+		assertTrue(manifest.isComplete());
+
+		IFileInfo info = manifest.getInfo("index.html");
+		assertNotNull(info);
+		assertEquals(100, info.getLength());
+		assertEquals(1000, info.getLastModified());
+	}
+
+	@Test
+	public void testListingDropsFilesNoLongerOnServer()
+	{
+		RemoteManifest manifest = createListedManifest();
+		manifest.beginListing();
+		manifest.listed("index.html", info("index.html", 100, 1000));
+		manifest.endListing();
+
+		assertNotNull(manifest.getInfo("index.html"));
+		assertNull(manifest.getInfo("js"));
+		assertNull(manifest.getInfo("js/app.js"));
+	}
+
+	@Test
+	public void testChangesByOthersAreNotSeenUntilListed()
+	{
+		RemoteManifest manifest = createListedManifest();
+
+		// someone else changed app.js and uploaded a new file; the manifest still has what was last listed
+		assertEquals(200, manifest.getInfo("js/app.js").getLength());
+		assertNull(manifest.getInfo("js/other.js"));
+
+		manifest.beginListing();
+		manifest.listed("index.html", info("index.html", 100, 1000));
+		manifest.listed("js", directoryInfo("js"));
+		manifest.listed("js/app.js", info("app.js", 250, 3000));
+		manifest.listed("js/other.js", info("other.js", 50, 3000));
+		manifest.endListing();
+
+		assertEquals(250, manifest.getInfo("js/app.js").getLength());
+		assertNotNull(manifest.getInfo("js/other.js"));
+	}
+
+	@Test
+	public void testCRCInvalidatedWhenFileChanges()
+	{
+		RemoteManifest manifest = createListedManifest();
+		IFileInfo info = info("app.js", 200, 2000);
+		manifest.setCRC("js/app.js", info, 42);
+		assertEquals(42, manifest.getCRC("js/app.js", info));
+
+		// the file on the server differs from the one the CRC was computed for
+		assertEquals(-1, manifest.getCRC("js/app.js", info("app.js", 200, 2500)));
+		assertEquals(-1, manifest.getCRC("js/app.js", info("app.js", 201, 2000)));
+
+		// a CRC computed for another version of the file isn't kept
+		manifest.setCRC("index.html", info("index.html", 100, 999), 7);
+		assertEquals(-1, manifest.getCRC("index.html", info("index.html", 100, 1000)));
+	}
+
+	@Test
+	public void testTransferInvalidatesCRC()
+	{
+		RemoteManifest manifest = createListedManifest();
+		manifest.setCRC("js/app.js", info("app.js", 200, 2000), 42);
+
+		IFileInfo uploaded = info("app.js", 300, 4000);
+		manifest.transferred("js/app.js", uploaded);
+		assertEquals(-1, manifest.getCRC("js/app.js", uploaded));
+		assertEquals(300, manifest.getInfo("js/app.js").getLength());
+		// the permissions the file had on the server are kept
+		assertEquals(0644, ((ExtendedFileInfo) manifest.getInfo("js/app.js")).getPermissions());
+	}
+
+	@Test
+	public void testRemovedDirectoryRemovesChildren()
+	{
+		RemoteManifest manifest = createListedManifest();
+		manifest.removed("js");
+		assertNull(manifest.getInfo("js"));
+		assertNull(manifest.getInfo("js/app.js"));
+		assertNotNull(manifest.getInfo("index.html"));
+	}
+
+	@Test
+	public void testSaveAndLoad()
+	{
+		RemoteManifest manifest = createListedManifest();
+		IFileInfo info = info("app.js", 200, 2000);
+		manifest.setCRC("js/app.js", info, 42);
+		manifest.save();
+		assertTrue(file.isFile());
+
+		RemoteManifest loaded = new RemoteManifest(file, ROOT_URI);
+		loaded.load();
+		assertTrue(loaded.isComplete());
+		assertEquals(42, loaded.getCRC("js/app.js", info));
+		assertTrue(loaded.getInfo("js").isDirectory());
+		assertEquals(100, loaded.getInfo("index.html").getLength());
+	}
+
+	@Test
+	public void testManifestOfAnotherRootIsIgnored()
+	{
+		createListedManifest().save();
+
+		RemoteManifest loaded = new RemoteManifest(file, "sftp://user@host/var/other");
+		loaded.load();
+		assertFalse(loaded.isComplete());
+		assertNull(loaded.getInfo("index.html"));
+	}
+
+	@Test
+	public void testIncompleteManifestIsNotSaved()
+	{
+		RemoteManifest manifest = createListedManifest();
+		manifest.save();
+		assertTrue(file.isFile());
+
+		// an interrupted listing leaves the manifest incomplete, which removes the stale copy on disk
+		manifest.beginListing();
+		manifest.listed("index.html", info("index.html", 100, 1000));
+		manifest.save();
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testClear()
+	{
+		RemoteManifest manifest = createListedManifest();
+		manifest.save();
+		manifest.clear();
+		assertFalse(manifest.isComplete());
+		assertNull(manifest.getInfo("index.html"));
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testServerIsListedUnlessUploadOnly() throws Exception
+	{
+		File clientDir = new File(dir, "client");
+		File serverDir = new File(dir, "server");
+		clientDir.mkdirs();
+		serverDir.mkdirs();
+		write(new File(clientDir, "index.html"), "<html/>");
+		write(new File(serverDir, "index.html"), "<html/>");
+		// put on the server by someone else
+		write(new File(serverDir, "other.html"), "<p/>");
+
+		LocalConnectionPoint client = new LocalConnectionPoint();
+		client.setPath(new Path(clientDir.getAbsolutePath()));
+		LocalConnectionPoint server = new LocalConnectionPoint();
+		server.setPath(new Path(serverDir.getAbsolutePath()));
+		IFileStore serverRoot = server.getRoot();
+
+		// a complete manifest that only knows about index.html
+		RemoteManifest manifest = new RemoteManifest(file, serverRoot.toURI().toString());
+		manifest.beginListing();
+		manifest.listed("index.html", serverRoot.getChild("index.html").fetchInfo());
+		manifest.endListing();
+
+		Synchronizer synchronizer = new Synchronizer();
+		synchronizer.setRemoteManifest(manifest);
+
+		// by default the sync may download or delete files, so the server is listed
+		Map<String, Integer> states = getSyncStates(synchronizer, client, server);
+		assertFalse(synchronizer.isListedFromManifest());
+		assertEquals(Integer.valueOf(SyncState.ServerItemOnly), states.get("other.html"));
+		assertNotNull(manifest.getInfo("other.html"));
+
+		manifest.removed("other.html");
+		synchronizer.setUploadOnly(true);
+		states = getSyncStates(synchronizer, client, server);
+		assertTrue(synchronizer.isListedFromManifest());
+		assertNull(states.get("other.html"));
+
+		synchronizer.setUploadOnly(false);
+		states = getSyncStates(synchronizer, client, server);
+		assertFalse(synchronizer.isListedFromManifest());
+		assertEquals(Integer.valueOf(SyncState.ServerItemOnly), states.get("other.html"));
+	}
+
+	private static Map<String, Integer> getSyncStates(Synchronizer synchronizer, LocalConnectionPoint client,
+			LocalConnectionPoint server) throws Exception
+	{
+		Map<String, Integer> states = new HashMap<String, Integer>();
+		for (VirtualFileSyncPair item : synchronizer.getSyncItems(client, server, client.getRoot(), server.getRoot(),
+				null))
+		{
+			states.put(item.getRelativePath(), item.getSyncState());
+		}
+		return states;
+	}
+
+	private static void write(File file, String content) throws IOException
+	{
+		FileWriter writer = new FileWriter(file);
+		try
+		{
+			writer.write(content);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+}
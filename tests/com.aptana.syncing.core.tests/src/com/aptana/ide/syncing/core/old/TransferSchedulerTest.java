@@ -0,0 +1,398 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.filesystem.provider.FileInfo;
+import org.eclipse.core.filesystem.provider.FileStore;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.core.io.vfs.IConcurrentConnectionFileManager;
+import com.aptana.core.io.vfs.IConnectionFileManager;
+import com.aptana.core.util.FileUtil;
+import com.aptana.ide.core.io.IConnectionPoint;
+import com.aptana.ide.core.io.LocalConnectionPoint;
+import com.aptana.ide.syncing.core.old.handlers.SyncEventHandlerAdapter;
+
+@SuppressWarnings("nls")
+public class TransferSchedulerTest
+{
+	/**
+	 * A file or directory that only has info
+	 */
+	private static class InfoFileStore extends FileStore
+	{
+		private final FileInfo info;
+
+		InfoFileStore(String name, boolean directory, long length)
+		{
+			info = new FileInfo(name);
+			info.setExists(true);
+			info.setDirectory(directory);
+			info.setLength(length);
+		}
+
+		@Override
+		public String[] childNames(int options, IProgressMonitor monitor)
+		{
+			return EMPTY_STRING_ARRAY;
+		}
+
+		@Override
+		public IFileInfo fetchInfo(int options, IProgressMonitor monitor)
+		{
+			return info;
+		}
+
+		@Override
+		public IFileStore getChild(String name)
+		{
+			return null;
+		}
+
+		@Override
+		public String getName()
+		{
+			return info.getName();
+		}
+
+		@Override
+		public IFileStore getParent()
+		{
+			return null;
+		}
+
+		@Override
+		public InputStream openInputStream(int options, IProgressMonitor monitor)
+		{
+			return null;
+		}
+
+		@Override
+		public URI toURI()
+		{
+			return URI.create("test:/" + info.getName());
+		}
+	}
+
+	/**
+	 * A local connection point that claims its file manager can run several transfers at once
+	 */
+	private static class ConcurrentConnectionPoint extends LocalConnectionPoint
+	{
+		private final Object fileManager = fileManager(IConcurrentConnectionFileManager.class, 4);
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public Object getAdapter(Class adapter)
+		{
+			if (IConnectionFileManager.class.equals(adapter))
+			{
+				return fileManager;
+			}
+			return super.getAdapter(adapter);
+		}
+	}
+
+	private File root;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		root = File.createTempFile("transfer", "");
+		root.delete();
+		assertTrue(root.mkdir());
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		try
+		{
+			FileUtil.deleteRecursively(root);
+		}
+		finally
+		{
+			root = null;
+		}
+	}
+
+	private static Object fileManager(Class<?> type, final int maxConcurrentTransfers)
+	{
+		return Proxy.newProxyInstance(TransferSchedulerTest.class.getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler()
+				{
+					public Object invoke(Object proxy, Method method, Object[] args)
+					{
+						if ("getMaxConcurrentTransfers".equals(method.getName()))
+						{
+							return maxConcurrentTransfers;
+						}
+						return null;
+					}
+				});
+	}
+
+	private static IConnectionPoint connectionPoint(final Object fileManager)
+	{
+		return (IConnectionPoint) Proxy.newProxyInstance(TransferSchedulerTest.class.getClassLoader(),
+				new Class<?>[] { IConnectionPoint.class }, new InvocationHandler()
+				{
+					public Object invoke(Object proxy, Method method, Object[] args)
+					{
+						if ("getAdapter".equals(method.getName()) && IConnectionFileManager.class.equals(args[0]))
+						{
+							return fileManager;
+						}
+						return null;
+					}
+				});
+	}
+
+	private static VirtualFileSyncPair file(String name, long sourceLength, long destinationLength)
+	{
+		return new VirtualFileSyncPair(new InfoFileStore(name, false, sourceLength), new InfoFileStore(name, false,
+				destinationLength), name, SyncState.Unknown);
+	}
+
+	private static VirtualFileSyncPair directory(String name)
+	{
+		return new VirtualFileSyncPair(new InfoFileStore(name, true, 0), null, name, SyncState.ClientItemOnly);
+	}
+
+	private static List<String> paths(VirtualFileSyncPair[] items)
+	{
+		List<String> paths = new ArrayList<String>();
+
+		for (VirtualFileSyncPair item : items)
+		{
+			paths.add(item.getRelativePath());
+		}
+		return paths;
+	}
+
+	private File createDirectory(String name)
+	{
+		File directory = new File(root, name);
+
+		assertTrue(directory.mkdir());
+		return directory;
+	}
+
+	private void write(File file, String content) throws Exception
+	{
+		FileWriter writer = new FileWriter(file);
+
+		try
+		{
+			writer.write(content);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	@Test
+	public void testOrderPutsDirectoriesFirstAndLargestFilesNext() throws Exception
+	{
+		VirtualFileSyncPair[] items = new VirtualFileSyncPair[] { file("small", 1, 0), directory("a"),
+				file("large", 10, 0), directory("a/b"), file("updated", 2, 20), directory("c") };
+
+		VirtualFileSyncPair[] ordered = TransferScheduler.order(items);
+
+		// the items themselves are left alone
+		assertEquals(Arrays.asList("small", "a", "large", "a/b", "updated", "c"), paths(items));
+		assertEquals(Arrays.asList("a", "a/b", "c", "updated", "large", "small"), paths(ordered));
+	}
+
+	@Test
+	public void testConcurrencyOfLocalConnections() throws Exception
+	{
+		// nothing to overlap when neither side is remote
+		assertEquals(1, TransferScheduler.getConcurrency(connectionPoint(null), connectionPoint(null)));
+		assertEquals(1, TransferScheduler.getConcurrency(null, null));
+	}
+
+	@Test
+	public void testConcurrencyIsLimitedByRemoteConnection() throws Exception
+	{
+		IConnectionPoint local = connectionPoint(null);
+		IConnectionPoint concurrent = connectionPoint(fileManager(IConcurrentConnectionFileManager.class, 3));
+		IConnectionPoint sequential = connectionPoint(fileManager(IConnectionFileManager.class, 3));
+
+		assertEquals(3, TransferScheduler.getConcurrency(local, concurrent));
+		assertEquals(3, TransferScheduler.getConcurrency(concurrent, local));
+		assertEquals(1, TransferScheduler.getConcurrency(local, sequential));
+		assertEquals(1, TransferScheduler.getConcurrency(concurrent, sequential));
+		assertEquals(1, TransferScheduler.getConcurrency(local,
+				connectionPoint(fileManager(IConcurrentConnectionFileManager.class, 0))));
+	}
+
+	@Test
+	public void testSingleThreadRunsInline() throws Exception
+	{
+		TransferScheduler scheduler = new TransferScheduler(1, new NullProgressMonitor());
+		final List<Thread> threads = new ArrayList<Thread>();
+
+		try
+		{
+			assertFalse(scheduler.isConcurrent());
+			assertFalse(scheduler.submit(new Runnable()
+			{
+				public void run()
+				{
+					threads.add(Thread.currentThread());
+				}
+			}));
+			assertEquals(Collections.singletonList(Thread.currentThread()), threads);
+		}
+		finally
+		{
+			scheduler.dispose();
+		}
+	}
+
+	@Test
+	public void testConcurrentTransfersReportProgressOnJoin() throws Exception
+	{
+		final TransferScheduler scheduler = new TransferScheduler(3, new NullProgressMonitor());
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		final int[] worked = new int[1];
+
+		try
+		{
+			assertTrue(scheduler.isConcurrent());
+			for (int i = 0; i < 10; i++)
+			{
+				assertTrue(scheduler.submit(new Runnable()
+				{
+					public void run()
+					{
+						threads.add(Thread.currentThread());
+						scheduler.newTransferMonitor().worked(1);
+					}
+				}));
+			}
+			scheduler.join(new NullProgressMonitor()
+			{
+				@Override
+				public void worked(int work)
+				{
+					worked[0] += work;
+				}
+			});
+
+			assertEquals(10, worked[0]);
+			assertFalse(threads.contains(Thread.currentThread()));
+		}
+		finally
+		{
+			scheduler.dispose();
+		}
+	}
+
+	@Test
+	public void testStoppedSchedulerRunsNothing() throws Exception
+	{
+		TransferScheduler scheduler = new TransferScheduler(2, new NullProgressMonitor());
+		final boolean[] ran = new boolean[1];
+
+		try
+		{
+			IProgressMonitor monitor = scheduler.newTransferMonitor();
+
+			assertFalse(monitor.isCanceled());
+			scheduler.stop();
+			assertTrue(scheduler.isStopped());
+			assertTrue(monitor.isCanceled());
+			assertFalse(scheduler.submit(new Runnable()
+			{
+				public void run()
+				{
+					ran[0] = true;
+				}
+			}));
+			scheduler.join(new NullProgressMonitor());
+			assertFalse(ran[0]);
+		}
+		finally
+		{
+			scheduler.dispose();
+		}
+	}
+
+	@Test
+	public void testCountersAfterConcurrentUpload() throws Exception
+	{
+		int count = 20;
+		File client = createDirectory("client");
+		File server = createDirectory("server");
+
+		for (int i = 0; i < count; i++)
+		{
+			write(new File(client, "file" + i + ".txt"), "contents of file " + i);
+		}
+
+		ConcurrentConnectionPoint clientPoint = new ConcurrentConnectionPoint();
+		clientPoint.setPath(new Path(client.getAbsolutePath()));
+		ConcurrentConnectionPoint serverPoint = new ConcurrentConnectionPoint();
+		serverPoint.setPath(new Path(server.getAbsolutePath()));
+
+		Synchronizer synchronizer = new Synchronizer(false, 1000);
+		final List<String> done = Collections.synchronizedList(new ArrayList<String>());
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		synchronizer.setEventHandler(new SyncEventHandlerAdapter()
+		{
+			@Override
+			public void syncDone(VirtualFileSyncPair item, IProgressMonitor monitor)
+			{
+				done.add(item.getRelativePath());
+				threads.add(Thread.currentThread());
+			}
+		});
+
+		VirtualFileSyncPair[] items = synchronizer.getSyncItems(clientPoint, serverPoint, clientPoint.getRoot(),
+				serverPoint.getRoot(), null);
+		assertEquals(count, items.length);
+		assertTrue(synchronizer.upload(items, new NullProgressMonitor()));
+
+		assertEquals(count, synchronizer.getClientFileTransferedCount());
+		assertEquals(0, synchronizer.getServerFileTransferedCount());
+		assertEquals(0, synchronizer.getServerDirectoryCreatedCount());
+		assertEquals(count, synchronizer.getNewFilesUploaded().length);
+		assertEquals(count, done.size());
+		assertEquals(count, new HashSet<String>(done).size());
+		assertFalse(threads.contains(Thread.currentThread()));
+		assertEquals(count, server.list().length);
+	}
+}
@@ -11,10 +11,15 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import com.aptana.ide.syncing.core.old.CRCComparatorTest;
+import com.aptana.ide.syncing.core.old.RemoteManifestTest;
+import com.aptana.ide.syncing.core.old.TransferSchedulerTest;
+
 @RunWith(Suite.class)
 @SuiteClasses({ LocalSyncingTest.class, LocalSyncingWithSpacesTest.class, FTPSyncingTest.class,
 		FTPSyncingWithSpacesTest.class, SFTPSyncingTest.class, SFTPSyncingWithSpacesTest.class,
-		LocalLargeSampleSyncingTest.class, FTPLargeSampleSyncingTest.class, })
+		LocalLargeSampleSyncingTest.class, FTPLargeSampleSyncingTest.class, CRCComparatorTest.class,
+		RemoteManifestTest.class, TransferSchedulerTest.class, })
 public class AllTests
 {
 }
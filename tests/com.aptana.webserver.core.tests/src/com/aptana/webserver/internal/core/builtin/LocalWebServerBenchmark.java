@@ -0,0 +1,340 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.webserver.internal.core.builtin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.debug.core.ILaunchManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aptana.webserver.core.preferences.IWebServerPreferenceConstants;
+
+/**
+ * Drives the built-in server with many concurrent keep-alive connections, and reports the throughput and latencies it
+ * measured. Not part of the regular suite; the load can be changed through the
+ * <code>webserver.benchmark.connections</code>, <code>webserver.benchmark.requests</code> and
+ * <code>webserver.benchmark.workers</code> system properties.
+ */
+public class LocalWebServerBenchmark
+{
+
+	private static final int CONNECTIONS = Integer.getInteger("webserver.benchmark.connections", 16); //$NON-NLS-1$
+	private static final int REQUESTS = Integer.getInteger("webserver.benchmark.requests", 500); //$NON-NLS-1$
+	private static final int WORKERS = Integer.getInteger("webserver.benchmark.workers", //$NON-NLS-1$
+			IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_WORKER_COUNT);
+
+	private static final String[] FILES = { "index.html", "style.css", "app.js" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	private static final int[] FILE_SIZES = { 2 * 1024, 16 * 1024, 128 * 1024 };
+
+	private File documentRoot;
+	private LocalWebServer webServer;
+
+	/**
+	 * The outcome of one connection
+	 */
+	private static class Client extends Thread
+	{
+		private final URL baseURL;
+		private final String[] etags;
+		private final long[] latencies = new long[REQUESTS];
+		private int completed;
+		private Exception failure;
+
+		Client(URL baseURL, String[] etags)
+		{
+			this.baseURL = baseURL;
+			this.etags = etags;
+		}
+
+		@Override
+		public void run()
+		{
+			Socket socket = null;
+			try
+			{
+				socket = new Socket(baseURL.getHost(), baseURL.getPort());
+				socket.setTcpNoDelay(true);
+				OutputStream out = socket.getOutputStream();
+				InputStream in = new BufferedInputStream(socket.getInputStream());
+				for (int i = 0; i < REQUESTS; ++i)
+				{
+					int file = i % FILES.length;
+					StringBuilder request = new StringBuilder();
+					request.append("GET /").append(FILES[file]).append(" HTTP/1.1\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+					request.append("Host: ").append(baseURL.getHost()).append("\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+					if (etags != null)
+					{
+						request.append("If-None-Match: ").append(etags[file]).append("\r\n"); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					request.append("\r\n"); //$NON-NLS-1$
+
+					long start = System.nanoTime();
+					out.write(request.toString().getBytes("US-ASCII")); //$NON-NLS-1$
+					out.flush();
+					int status = readResponse(in, null);
+					latencies[i] = System.nanoTime() - start;
+					if (status != ((etags != null) ? 304 : 200))
+					{
+						throw new IOException("Unexpected status " + status); //$NON-NLS-1$
+					}
+					completed++;
+				}
+			}
+			catch (Exception e)
+			{
+				failure = e;
+			}
+			finally
+			{
+				if (socket != null)
+				{
+					try
+					{
+						socket.close();
+					}
+					catch (IOException e)
+					{
+						// ignore
+					}
+				}
+			}
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception
+	{
+		documentRoot = File.createTempFile(getClass().getSimpleName(), "temp"); //$NON-NLS-1$
+		assertTrue(documentRoot.delete());
+		assertTrue(documentRoot.mkdir());
+		for (int i = 0; i < FILES.length; ++i)
+		{
+			byte[] content = new byte[FILE_SIZES[i]];
+			for (int j = 0; j < content.length; ++j)
+			{
+				content[j] = (byte) ('a' + (j % 26));
+			}
+			OutputStream out = new FileOutputStream(new File(documentRoot, FILES[i]));
+			out.write(content);
+			out.close();
+		}
+
+		webServer = new LocalWebServer(InetAddress.getByName(IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_ADDRESS),
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_PORTS_RANGE, documentRoot.toURI());
+		webServer.setWorkerCount(WORKERS);
+		webServer.start(ILaunchManager.RUN_MODE, new NullProgressMonitor());
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		if (webServer != null)
+		{
+			webServer.stop(true, new NullProgressMonitor());
+			webServer = null;
+		}
+		for (String file : FILES)
+		{
+			new File(documentRoot, file).delete();
+		}
+		documentRoot.delete();
+	}
+
+	@Test
+	public void testKeepAliveGet() throws Exception
+	{
+		run("GET", null); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testKeepAliveRevalidation() throws Exception
+	{
+		String[] etags = new String[FILES.length];
+		for (int i = 0; i < FILES.length; ++i)
+		{
+			Socket socket = new Socket(webServer.getBaseURL().getHost(), webServer.getBaseURL().getPort());
+			try
+			{
+				socket.getOutputStream().write(
+						MessageFormat.format("GET /{0} HTTP/1.1\r\nHost: {1}\r\nConnection: close\r\n\r\n", //$NON-NLS-1$
+								FILES[i], webServer.getBaseURL().getHost()).getBytes("US-ASCII")); //$NON-NLS-1$
+				List<String> headers = new ArrayList<String>();
+				assertEquals(200, readResponse(new BufferedInputStream(socket.getInputStream()), headers));
+				for (String header : headers)
+				{
+					if (header.toLowerCase(Locale.ENGLISH).startsWith("etag:")) //$NON-NLS-1$
+					{
+						etags[i] = header.substring(5).trim();
+					}
+				}
+			}
+			finally
+			{
+				socket.close();
+			}
+			assertTrue(etags[i] != null);
+		}
+		run("If-None-Match", etags); //$NON-NLS-1$
+	}
+
+	private void run(String name, String[] etags) throws Exception
+	{
+		long requestsBefore = webServer.getLogger().getRequestCount();
+		Client[] clients = new Client[CONNECTIONS];
+		for (int i = 0; i < clients.length; ++i)
+		{
+			clients[i] = new Client(webServer.getBaseURL(), etags);
+		}
+		long start = System.nanoTime();
+		for (Client client : clients)
+		{
+			client.start();
+		}
+		for (Client client : clients)
+		{
+			client.join();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		long[] latencies = new long[CONNECTIONS * REQUESTS];
+		int count = 0;
+		for (Client client : clients)
+		{
+			if (client.failure != null)
+			{
+				throw client.failure;
+			}
+			System.arraycopy(client.latencies, 0, latencies, count, client.completed);
+			count += client.completed;
+		}
+		Arrays.sort(latencies, 0, count);
+
+		System.out.println(MessageFormat.format(
+				"{0}: {1} connections x {2} requests, {3} workers: {4} req/s, p50 {5} ms, p99 {6} ms, max {7} ms", //$NON-NLS-1$
+				name, CONNECTIONS, REQUESTS, WORKERS, (long) (count / (elapsed / 1e9)),
+				toMillis(percentile(latencies, count, 50)), toMillis(percentile(latencies, count, 99)),
+				toMillis(latencies[count - 1])));
+		System.out.println(webServer.getLogger().getSummary());
+
+		assertEquals(CONNECTIONS * REQUESTS, count);
+		assertEquals(CONNECTIONS * REQUESTS, webServer.getLogger().getRequestCount() - requestsBefore);
+		assertEquals(0, webServer.getLogger().getErrorCount());
+	}
+
+	private static long percentile(long[] sorted, int count, int percent)
+	{
+		int index = (int) Math.ceil(count * percent / 100.0) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, index))];
+	}
+
+	private static String toMillis(long nanos)
+	{
+		return String.format(Locale.ENGLISH, "%.2f", nanos / 1e6); //$NON-NLS-1$
+	}
+
+	/**
+	 * Reads a response, skipping its body
+	 * 
+	 * @return the status code
+	 */
+	private static int readResponse(InputStream in, List<String> headers) throws IOException
+	{
+		String statusLine = readLine(in);
+		String[] parts = statusLine.split(" "); //$NON-NLS-1$
+		int status = Integer.parseInt(parts[1]);
+		long length = 0;
+		boolean chunked = false;
+		String line;
+		while ((line = readLine(in)).length() > 0)
+		{
+			if (headers != null)
+			{
+				headers.add(line);
+			}
+			String lower = line.toLowerCase(Locale.ENGLISH);
+			if (lower.startsWith("content-length:")) //$NON-NLS-1$
+			{
+				length = Long.parseLong(line.substring(15).trim());
+			}
+			else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) //$NON-NLS-1$ //$NON-NLS-2$
+			{
+				chunked = true;
+			}
+		}
+		if (chunked)
+		{
+			long chunk;
+			while ((chunk = Long.parseLong(readLine(in).trim(), 16)) > 0)
+			{
+				skip(in, chunk);
+				readLine(in);
+			}
+			readLine(in);
+		}
+		else
+		{
+			skip(in, length);
+		}
+		return status;
+	}
+
+	private static String readLine(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int c;
+		while ((c = in.read()) != '\n')
+		{
+			if (c == -1)
+			{
+				throw new IOException("Connection closed"); //$NON-NLS-1$
+			}
+			if (c != '\r')
+			{
+				line.write(c);
+			}
+		}
+		return line.toString("US-ASCII"); //$NON-NLS-1$
+	}
+
+	private static void skip(InputStream in, long length) throws IOException
+	{
+		while (length > 0)
+		{
+			long skipped = in.skip(length);
+			if (skipped <= 0)
+			{
+				if (in.read() == -1)
+				{
+					throw new IOException("Connection closed"); //$NON-NLS-1$
+				}
+				skipped = 1;
+			}
+			length -= skipped;
+		}
+	}
+}
@@ -1,6 +1,6 @@
 /**
  * Aptana Studio
- * Copyright (c) 2005-2011 by Appcelerator, Inc. All Rights Reserved.
+ * Copyright (c) 2005-2014 by Appcelerator, Inc. All Rights Reserved.
  * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
  * Please see the license.html included with this distribution for details.
  * Any modifications to this file must keep this entire header intact.
@@ -12,6 +12,9 @@
 package com.aptana.webserver.internal.core.builtin;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -22,6 +25,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.zip.GZIPInputStream;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -77,4 +81,218 @@ public class LocalWebServerTest
 			}
 		}
 	}
+
+	@Test
+	public void testConditionalGet() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(dir.toURI());
+			webServer.start(ILaunchManager.RUN_MODE, new NullProgressMonitor());
+			URL url = new URL(webServer.getBaseURL(), "index.html"); //$NON-NLS-1$
+			HttpURLConnection connection = openConnection(url);
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			String etag = connection.getHeaderField("ETag"); //$NON-NLS-1$
+			String lastModified = connection.getHeaderField("Last-Modified"); //$NON-NLS-1$
+			assertNotNull(etag);
+			assertNotNull(lastModified);
+			assertEquals(PAGE_CONTENTS, read(connection.getInputStream()));
+
+			connection = openConnection(url);
+			connection.setRequestProperty("If-None-Match", etag); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+
+			connection = openConnection(url);
+			connection.setRequestProperty("If-Modified-Since", lastModified); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+
+			connection = openConnection(url);
+			connection.setRequestProperty("If-None-Match", "\"other\""); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertEquals(PAGE_CONTENTS, read(connection.getInputStream()));
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	@Test
+	public void testRange() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(dir.toURI());
+			webServer.start(ILaunchManager.RUN_MODE, new NullProgressMonitor());
+			URL url = new URL(webServer.getBaseURL(), "index.html"); //$NON-NLS-1$
+			HttpURLConnection connection = openConnection(url);
+			connection.setRequestProperty("Range", "bytes=6-11"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_PARTIAL, connection.getResponseCode());
+			assertEquals("bytes 6-11/" + PAGE_CONTENTS.length(), connection.getHeaderField("Content-Range")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(PAGE_CONTENTS.substring(6, 12), read(connection.getInputStream()));
+
+			connection = openConnection(url);
+			connection.setRequestProperty("Range", "bytes=-5"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_PARTIAL, connection.getResponseCode());
+			assertEquals(PAGE_CONTENTS.substring(PAGE_CONTENTS.length() - 5), read(connection.getInputStream()));
+
+			connection = openConnection(url);
+			connection.setRequestProperty("Range", "bytes=1000-"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(416, connection.getResponseCode());
+
+			// an invalid range is ignored
+			connection = openConnection(url);
+			connection.setRequestProperty("Range", "bytes=5-2"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertEquals(PAGE_CONTENTS, read(connection.getInputStream()));
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	@Test
+	public void testGzip() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		StringBuffer contents = new StringBuffer();
+		for (int i = 0; i < 100; ++i)
+		{
+			contents.append(PAGE_CONTENTS);
+		}
+		File file = new File(dir, "large.html"); //$NON-NLS-1$
+		OutputStreamWriter w = new OutputStreamWriter(new FileOutputStream(file));
+		w.write(contents.toString());
+		w.close();
+
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(dir.toURI());
+			webServer.start(ILaunchManager.RUN_MODE, new NullProgressMonitor());
+			URL url = new URL(webServer.getBaseURL(), "large.html"); //$NON-NLS-1$
+			for (int i = 0; i < 2; ++i)
+			{
+				HttpURLConnection connection = openConnection(url);
+				connection.setRequestProperty("Accept-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+				assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+				assertEquals("gzip", connection.getContentEncoding()); //$NON-NLS-1$
+				assertTrue(connection.getContentLength() < contents.length());
+				assertEquals(contents.toString(), read(new GZIPInputStream(connection.getInputStream())));
+			}
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	@Test
+	public void testRangeOfCompressibleFile() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		StringBuffer contents = new StringBuffer();
+		for (int i = 0; i < 100; ++i)
+		{
+			contents.append(PAGE_CONTENTS);
+		}
+		File file = new File(dir, "large.html"); //$NON-NLS-1$
+		OutputStreamWriter w = new OutputStreamWriter(new FileOutputStream(file));
+		w.write(contents.toString());
+		w.close();
+
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(dir.toURI());
+			webServer.start(ILaunchManager.RUN_MODE, new NullProgressMonitor());
+			URL url = new URL(webServer.getBaseURL(), "large.html"); //$NON-NLS-1$
+			HttpURLConnection connection = openConnection(url);
+			connection.setRequestProperty("Accept-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			String gzipETag = connection.getHeaderField("ETag"); //$NON-NLS-1$
+			read(new GZIPInputStream(connection.getInputStream()));
+
+			// the range is of the identity encoding, and so is its ETag
+			connection = openConnection(url);
+			connection.setRequestProperty("Accept-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+			connection.setRequestProperty("Range", "bytes=6-11"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_PARTIAL, connection.getResponseCode());
+			assertNull(connection.getContentEncoding());
+			String etag = connection.getHeaderField("ETag"); //$NON-NLS-1$
+			assertFalse(etag.equals(gzipETag));
+			assertEquals(contents.substring(6, 12), read(connection.getInputStream()));
+
+			connection = openConnection(url);
+			connection.setRequestProperty("Accept-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+			connection.setRequestProperty("Range", "bytes=6-11"); //$NON-NLS-1$ //$NON-NLS-2$
+			connection.setRequestProperty("If-Range", etag); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_PARTIAL, connection.getResponseCode());
+			assertEquals(contents.substring(6, 12), read(connection.getInputStream()));
+
+			// the ETag of the gzipped variant doesn't validate a range, so the whole file is sent
+			connection = openConnection(url);
+			connection.setRequestProperty("Accept-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+			connection.setRequestProperty("Range", "bytes=6-11"); //$NON-NLS-1$ //$NON-NLS-2$
+			connection.setRequestProperty("If-Range", gzipETag); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertEquals("gzip", connection.getContentEncoding()); //$NON-NLS-1$
+			assertEquals(contents.toString(), read(new GZIPInputStream(connection.getInputStream())));
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	private static File createDocumentRoot() throws IOException
+	{
+		File dir = File.createTempFile(LocalWebServerTest.class.getSimpleName(), "temp"); //$NON-NLS-1$
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+		File file = new File(dir, "index.html"); //$NON-NLS-1$
+		OutputStreamWriter w = new OutputStreamWriter(new FileOutputStream(file));
+		w.write(PAGE_CONTENTS);
+		w.close();
+		return dir;
+	}
+
+	private static HttpURLConnection openConnection(URL url) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setAllowUserInteraction(false);
+		connection.setUseCaches(false);
+		return connection;
+	}
+
+	private static String read(InputStream stream) throws IOException
+	{
+		InputStreamReader in = new InputStreamReader(stream);
+		StringBuffer sb = new StringBuffer();
+		int n;
+		char[] cbuf = new char[1024];
+		while ((n = in.read(cbuf)) > 0)
+		{
+			sb.append(new String(cbuf, 0, n));
+		}
+		in.close();
+		return sb.toString();
+	}
 }
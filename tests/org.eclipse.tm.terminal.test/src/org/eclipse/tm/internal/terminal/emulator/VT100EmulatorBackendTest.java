@@ -1104,6 +1104,38 @@ public class VT100EmulatorBackendTest extends TestCase {
 
 	}
 
+	public void testAppendChars() {
+		ITerminalTextData term=makeITerminalTextData();
+		IVT100EmulatorBackend vt100=makeBakend(term);
+		term.setMaxHeight(6);
+		vt100.setDimensions(3, 4);
+		vt100.setCursor(0, 0);
+		char[] chars="x012345678y".toCharArray();
+		vt100.appendChars(chars, 1, 3);
+		assertEqualsTerm(
+				"012 \n" +
+				"    \n" +
+				"    ", toMultiLineText(term));
+		assertEquals(0,vt100.getCursorLine());
+		assertEquals(3,vt100.getCursorColumn());
+
+		vt100.appendChars(chars, 4, 6);
+		assertEqualsTerm(
+				"0123\n" +
+				"4567\n" +
+				"8   ", toMultiLineText(term));
+		assertEquals(2,vt100.getCursorLine());
+		assertEquals(1,vt100.getCursorColumn());
+
+		vt100.appendChars(chars, 10, 0);
+		assertEqualsTerm(
+				"0123\n" +
+				"4567\n" +
+				"8   ", toMultiLineText(term));
+		assertEquals(2,vt100.getCursorLine());
+		assertEquals(1,vt100.getCursorColumn());
+	}
+
 	public void testProcessNewline() {
 		ITerminalTextData term=makeITerminalTextData();
 		IVT100EmulatorBackend vt100=makeBakend(term);
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.emulator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.text.MessageFormat;
+
+import junit.framework.TestCase;
+
+import org.eclipse.tm.internal.terminal.control.impl.ITerminalControlForText;
+import org.eclipse.tm.internal.terminal.model.TerminalTextData;
+import org.eclipse.tm.internal.terminal.model.TerminalTextTestHelper;
+import org.eclipse.tm.internal.terminal.provisional.api.ITerminalConnector;
+import org.eclipse.tm.internal.terminal.provisional.api.TerminalState;
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+
+/**
+ * Replays an ANSI log through the {@link VT100Emulator}, once handing it the
+ * text in large chunks and once a character at a time, and reports the
+ * throughput of each. Not part of the regular suite. A recorded log (e.g. the
+ * output of <code>script</code> around <code>npm install</code>) can be given
+ * with the <code>terminal.benchmark.log</code> system property; without it a
+ * log of about <code>terminal.benchmark.size</code> bytes (4MB by default) of
+ * colored build output and progress lines is generated.
+ */
+public class VT100EmulatorBenchmark extends TestCase {
+	private static final int ROUNDS=Integer.getInteger("terminal.benchmark.rounds", 5).intValue(); //$NON-NLS-1$
+	private static final int SIZE=Integer.getInteger("terminal.benchmark.size", 4*1024*1024).intValue(); //$NON-NLS-1$
+	private static final String ENCODING="UTF-8"; //$NON-NLS-1$
+	private static final String ESC="\u001b"; //$NON-NLS-1$
+
+	private byte[] fLog;
+
+	/**
+	 * Returns at most one character per read, like the emulator used to
+	 * consume its input.
+	 */
+	private static class OneCharReader extends FilterReader {
+		OneCharReader(Reader in) {
+			super(in);
+		}
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return super.read(cbuf, off, Math.min(len, 1));
+		}
+	}
+
+	private static class Control implements ITerminalControlForText {
+		private final OutputStream fOut=new ByteArrayOutputStream();
+		public TerminalState getState() {
+			return TerminalState.CONNECTED;
+		}
+		public void setState(TerminalState state) {
+		}
+		public void setTerminalTitle(String title) {
+		}
+		public void setApplicationKeypad(boolean mode) {
+		}
+		public ITerminalConnector getTerminalConnector() {
+			return null;
+		}
+		public OutputStream getOutputStream() {
+			return fOut;
+		}
+	}
+
+	protected void setUp() throws Exception {
+		String file=System.getProperty("terminal.benchmark.log"); //$NON-NLS-1$
+		fLog=(file==null) ? generateLog(SIZE) : readFile(new File(file));
+	}
+
+	protected void tearDown() throws Exception {
+		fLog=null;
+	}
+
+	public void testChunkedVersusOneCharAtATime() throws Exception {
+		// warm up
+		replay(false);
+		replay(true);
+
+		long t0=System.nanoTime();
+		ITerminalTextData chunked=null;
+		for (int i = 0; i < ROUNDS; i++) {
+			chunked=replay(false);
+		}
+		long chunkedTime=System.nanoTime()-t0;
+
+		t0=System.nanoTime();
+		ITerminalTextData oneChar=null;
+		for (int i = 0; i < ROUNDS; i++) {
+			oneChar=replay(true);
+		}
+		long oneCharTime=System.nanoTime()-t0;
+
+		double mb=(double) fLog.length*ROUNDS/(1024*1024);
+		System.out.println(MessageFormat.format(
+				"{0,number,0.0}MB x {1} rounds: chunked {2,number,0.0}MB/s, one char at a time {3,number,0.0}MB/s, speedup {4,number,0.00}x", //$NON-NLS-1$
+				new Object[] {new Double((double) fLog.length/(1024*1024)), new Integer(ROUNDS),
+						new Double(mb*1e9/chunkedTime), new Double(mb*1e9/oneCharTime),
+						new Double((double) oneCharTime/chunkedTime)}));
+
+		// where the runs of text are split must not change what ends up on the screen
+		assertEquals(TerminalTextTestHelper.toMultiLineText(oneChar), TerminalTextTestHelper.toMultiLineText(chunked));
+		assertEquals(oneChar.getCursorLine(), chunked.getCursorLine());
+		assertEquals(oneChar.getCursorColumn(), chunked.getCursorColumn());
+	}
+
+	private ITerminalTextData replay(boolean oneChar) throws IOException {
+		ITerminalTextData data=new TerminalTextData();
+		data.setMaxHeight(1000);
+		Reader reader=new InputStreamReader(new ByteArrayInputStream(fLog), ENCODING);
+		if(oneChar)
+			reader=new OneCharReader(reader);
+		VT100Emulator emulator=new VT100Emulator(data, new Control(), reader);
+		emulator.setDimensions(24, 80);
+		emulator.setCrAfterNewLine(true);
+		emulator.processText();
+		return data;
+	}
+
+	/**
+	 * @param size
+	 * @return what a long <code>npm install</code> looks like
+	 */
+	private static byte[] generateLog(int size) throws IOException {
+		String[] colors=new String[] {"31", "32", "33", "36", "1;37"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+		StringBuffer log=new StringBuffer(size+1024);
+		int n=0;
+		while(log.length()<size) {
+			// a colored status line
+			log.append(ESC).append('[').append(colors[n%colors.length]).append('m');
+			log.append("npm http GET").append(ESC).append("[0m "); //$NON-NLS-1$ //$NON-NLS-2$
+			log.append("https://registry.npmjs.org/package-").append(n).append("/-/package-").append(n).append("-1.0.").append(n%97).append(".tgz\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			// a progress bar redrawn in place
+			if(n%16==0) {
+				for (int i = 0; i <= 40; i+=4) {
+					log.append('\r').append(ESC).append("[K["); //$NON-NLS-1$
+					for (int j = 0; j < 40; j++) {
+						log.append(j<i ? '#' : ' ');
+					}
+					log.append("] ").append(i*100/40).append('%'); //$NON-NLS-1$
+				}
+				log.append('\n');
+			}
+			// a compiler warning with tabs and a cursor movement
+			if(n%50==0) {
+				log.append(ESC).append("[1;33mWARN").append(ESC).append("[0m\tdeprecated\tpackage-").append(n).append('\n'); //$NON-NLS-1$ //$NON-NLS-2$
+				log.append(ESC).append("[1A").append(ESC).append("[2K").append(ESC).append("]0;npm install ").append(n).append('\u0007'); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+			n++;
+		}
+		return log.toString().getBytes(ENCODING);
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		InputStream in=new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out=new ByteArrayOutputStream((int) file.length());
+			byte[] buffer=new byte[64*1024];
+			int n;
+			while((n=in.read(buffer))!=-1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+}
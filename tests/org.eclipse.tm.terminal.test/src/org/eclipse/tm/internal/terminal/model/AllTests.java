@@ -22,6 +22,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
 	SnapshotChangesTest.class,
 	SynchronizedTerminalTextDataTest.class,
+	TerminalTextDataCompactStoreTest.class,
 	TerminalTextDataFastScrollTest.class,
 	TerminalTextDataFastScrollTestMaxHeigth.class,
 	TerminalTextDataSnapshotTest.class,
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.model;
+
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.LineSegment;
+import org.eclipse.tm.terminal.model.Style;
+
+public class TerminalTextDataCompactStoreTest extends AbstractITerminalTextDataTest {
+	protected ITerminalTextData makeITerminalTextData() {
+		return new TerminalTextDataCompactStore();
+	}
+
+	public void testScrollbackWrapsAround() {
+		ITerminalTextData term=makeITerminalTextData();
+		term.setMaxHeight(4);
+		term.setDimensions(1, 3);
+		for (int i = 0; i < 10; i++) {
+			if(i>0)
+				term.addLine();
+			term.setChars(term.getHeight()-1, 0, (""+i+i).toCharArray(), null);
+		}
+		assertEquals(4, term.getHeight());
+		assertEqualsTerm(
+				"66\000\n" +
+				"77\000\n" +
+				"88\000\n" +
+				"99\000", toMultiLineText(term));
+		// the reused lines must not show what they held before
+		term.addLine();
+		assertEqualsTerm(
+				"77\000\n" +
+				"88\000\n" +
+				"99\000\n" +
+				"\000\000\000", toMultiLineText(term));
+		assertNull(term.getChars(3));
+		term.setChar(3, 2, 'x', null);
+		assertEqualsTerm(
+				"77\000\n" +
+				"88\000\n" +
+				"99\000\n" +
+				"\000\000x", toMultiLineText(term));
+	}
+
+	public void testOverwriteStyles() {
+		Style s1=getDefaultStyle();
+		Style s2=s1.setBold(true);
+		ITerminalTextData term=makeITerminalTextData();
+		term.setDimensions(1, 10);
+		term.setChars(0, 0, "0123456789".toCharArray(), s1);
+		term.setChars(0, 3, "abc".toCharArray(), s2);
+		term.setChars(0, 4, "x".toCharArray(), s2);
+		term.setChar(0, 9, 'y', null);
+		LineSegment[] segments=term.getLineSegments(0, 0, term.getWidth());
+		assertEquals(4, segments.length);
+		assertSegment(0, "012", s1, segments[0]);
+		assertSegment(3, "axc", s2, segments[1]);
+		assertSegment(6, "678", s1, segments[2]);
+		assertSegment(9, "y", null, segments[3]);
+
+		// writing the surrounding style over a run merges the runs
+		term.setChars(0, 3, "345".toCharArray(), s1);
+		segments=term.getLineSegments(0, 0, term.getWidth());
+		assertEquals(2, segments.length);
+		assertSegment(0, "012345678", s1, segments[0]);
+		assertSegment(9, "y", null, segments[1]);
+
+		Style[] styles=term.getStyles(0);
+		assertEquals(10, styles.length);
+		assertSame(s1, styles[0]);
+		assertSame(s1, styles[8]);
+		assertNull(styles[9]);
+	}
+
+	public void testCopyKeepsStyles() {
+		Style s1=getDefaultStyle();
+		Style s2=s1.setUnderline(true);
+		ITerminalTextData term=makeITerminalTextData();
+		term.setDimensions(2, 4);
+		term.setChars(0, 0, "ab".toCharArray(), s1);
+		term.setChars(0, 2, "cd".toCharArray(), s2);
+		ITerminalTextData copy=makeITerminalTextData();
+		copy.copy(term);
+		ITerminalTextData store=new TerminalTextDataStore();
+		store.copy(term);
+		for (int column = 0; column < 4; column++) {
+			assertSame(term.getStyle(0, column), copy.getStyle(0, column));
+			assertSame(term.getStyle(0, column), store.getStyle(0, column));
+		}
+		// changing the copy doesn't change the original
+		copy.setChar(0, 0, 'x', s2);
+		assertEquals('a', term.getChar(0, 0));
+		assertSame(s1, term.getStyle(0, 0));
+	}
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Appcelerator, Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Appcelerator - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.tm.internal.terminal.textcanvas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.tm.internal.terminal.model.TerminalTextData;
+import org.eclipse.tm.terminal.model.ITerminalTextData;
+import org.eclipse.tm.terminal.model.ITerminalTextDataSnapshot;
+
+public class AbstractTextCanvasModelTest extends TestCase {
+	private static final int WIDTH=20;
+	private static final int HEIGHT=10;
+
+	/**
+	 * records the ranges reported to it
+	 */
+	static class RecordingListener implements ITextCanvasModelListener {
+		final List fRanges=new ArrayList();
+		int fDataChanged;
+		public void rangeChanged(int col, int line, int width, int height) {
+			fRanges.add(col+","+line+" "+width+"x"+height); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		public void dimensionsChanged(int cols, int rows) {
+		}
+		public void terminalDataChanged() {
+			fDataChanged++;
+		}
+	}
+
+	ITerminalTextData fTerm;
+	AbstractTextCanvasModel fModel;
+
+	protected void setUp() throws Exception {
+		fTerm=new TerminalTextData();
+		fTerm.setDimensions(HEIGHT, WIDTH);
+		ITerminalTextDataSnapshot snapshot=fTerm.makeSnapshot();
+		snapshot.setInterestWindow(0, HEIGHT);
+		fModel=new AbstractTextCanvasModel(snapshot) {
+		};
+		fModel.setCursorEnabled(true);
+		// get the initial contents and cursor out of the way
+		fModel.update();
+	}
+
+	public void testUpdateReportsOneRange() {
+		RecordingListener listener=new RecordingListener();
+		fModel.addCellCanvasModelListener(listener);
+
+		fTerm.setChar(2, 4, 'a', null);
+		fTerm.setChar(3, 1, 'b', null);
+		fModel.update();
+
+		assertEquals(1, listener.fDataChanged);
+		assertEquals("[0,2 20x2]", listener.fRanges.toString()); //$NON-NLS-1$
+	}
+
+	public void testNestedUpdatesReportOneCombinedRange() {
+		final RecordingListener listener=new RecordingListener() {
+			public void terminalDataChanged() {
+				super.terminalDataChanged();
+				// like the canvas scrolling to the end while the model updates;
+				// the nested update is the one that sees the cursor move
+				fModel.update();
+				// nothing is repainted before the outer update is done
+				assertEquals(0, fRanges.size());
+			}
+		};
+		fModel.addCellCanvasModelListener(listener);
+
+		fTerm.setChar(2, 4, 'a', null);
+		fTerm.setCursorLine(5);
+		fTerm.setCursorColumn(3);
+		fModel.update();
+
+		assertEquals(1, listener.fDataChanged);
+		// the changed line 2, the old cursor at 0,0 and the new one at 3,5
+		assertEquals("[0,0 20x6]", listener.fRanges.toString()); //$NON-NLS-1$
+
+		// the next update starts a new range
+		listener.fRanges.clear();
+		fTerm.setChar(8, 0, 'c', null);
+		fModel.update();
+		assertEquals("[0,8 20x1]", listener.fRanges.toString()); //$NON-NLS-1$
+	}
+
+	public void testUpdateWithoutChangesReportsNothing() {
+		RecordingListener listener=new RecordingListener();
+		fModel.addCellCanvasModelListener(listener);
+
+		fModel.update();
+
+		assertEquals(0, listener.fDataChanged);
+		assertEquals(0, listener.fRanges.size());
+	}
+
+	public void testChangesOutsideUpdateAreReportedAtOnce() {
+		RecordingListener listener=new RecordingListener();
+		fModel.addCellCanvasModelListener(listener);
+
+		fModel.setCursorEnabled(false);
+
+		assertEquals("[0,0 1x1]", listener.fRanges.toString()); //$NON-NLS-1$
+	}
+}
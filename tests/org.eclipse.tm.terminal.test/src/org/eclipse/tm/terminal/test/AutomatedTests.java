@@ -24,7 +24,8 @@ import org.junit.runners.Suite.SuiteClasses;
 	org.eclipse.tm.internal.terminal.model.AllTests.class,
 	org.eclipse.tm.terminal.model.AllTests.class,
 	org.eclipse.tm.internal.terminal.connector.TerminalConnectorTest.class,
-	org.eclipse.tm.internal.terminal.connector.TerminalToRemoteInjectionOutputStreamTest.class
+	org.eclipse.tm.internal.terminal.connector.TerminalToRemoteInjectionOutputStreamTest.class,
+	org.eclipse.tm.internal.terminal.textcanvas.AbstractTextCanvasModelTest.class
 })
 //@formatter:on
 public class AutomatedTests